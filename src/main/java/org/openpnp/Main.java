@@ -30,6 +30,7 @@ import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.components.ThemeDialog;
 import org.openpnp.gui.components.ThemeInfo;
 import org.openpnp.gui.components.ThemeSettingsPanel;
+import org.openpnp.logging.AsyncWriter;
 import org.openpnp.logging.ConsoleWriter;
 import org.openpnp.logging.SystemLogger;
 import org.openpnp.model.Configuration;
@@ -37,6 +38,7 @@ import org.pmw.tinylog.Configurator;
 import org.pmw.tinylog.Level;
 import org.pmw.tinylog.Logger;
 import org.pmw.tinylog.writers.RollingFileWriter;
+import org.pmw.tinylog.writers.Writer;
 import org.apache.commons.io.FileUtils;
 
 import javassist.CannotCompileException;
@@ -93,14 +95,37 @@ public class Main {
         return "https://github.com/openpnp/openpnp/blob/"+version+"/";
     }
 
+    private static AsyncWriter logWriter;
+
+    /**
+     * @return the writer of the log file and console, with its dropped, queued and written counts,
+     * or null if logging is synchronous (-DsynchronousLogging=true).
+     */
+    public static AsyncWriter getLogWriter() {
+        return logWriter;
+    }
+
     private static void configureLogging(File configurationDirectory) {
         File logDirectory = new File(configurationDirectory, "log");
         File logFile = new File(logDirectory, "OpenPnP.log");
-        Configurator
-            .currentConfig()
-            .writer(new RollingFileWriter(logFile.getAbsolutePath(), 100))
-            .addWriter(new ConsoleWriter(System.out, System.err))
-            .activate();
+        if (Boolean.getBoolean("synchronousLogging")) {
+            Configurator
+                .currentConfig()
+                .writer(new RollingFileWriter(logFile.getAbsolutePath(), 100))
+                .addWriter(new ConsoleWriter(System.out, System.err))
+                .activate();
+        }
+        else {
+            // The log file is buffered and flushed after each batch of the writer thread.
+            Writer fileWriter = new RollingFileWriter(logFile.getAbsolutePath(), 100, true);
+            logWriter = new AsyncWriter(Integer.getInteger("logBufferSize", 16384),
+                    Level.valueOf(System.getProperty("logBlockLevel", Level.DEBUG.name())),
+                    fileWriter, new ConsoleWriter(System.out, System.err));
+            Configurator
+                .currentConfig()
+                .writer(logWriter)
+                .activate();
+        }
         Configurator.currentConfig()
             .formatPattern("{date:yyyy-MM-dd HH:mm:ss.SSS} {class_name} {level}: {message}")
             .activate();
@@ -672,6 +672,7 @@ public class FeedersPanel extends JPanel implements WizardContainer {
         nozzle.moveToSafeZ();
         Configuration.get().getScripting().on("Feeder.BeforeFeed", globals);
         feeder.feed(nozzle);
+        feeder.completeFeed(nozzle);
         Configuration.get().getScripting().on("Feeder.AfterFeed", globals);
         return nozzle;
     }
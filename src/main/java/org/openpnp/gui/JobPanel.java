@@ -100,6 +100,7 @@ import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.PlacementsHolderLocation;
 import org.openpnp.model.Job;
+import org.openpnp.model.JobSnapshot;
 import org.openpnp.model.Length;
 import org.openpnp.model.Location;
 import org.openpnp.model.Panel;
@@ -566,6 +567,10 @@ public class JobPanel extends JPanel {
 
     public void setJob(Job job) {
         if (this.job != null) {
+            if (this.job != job) {
+                // The job is closed, its progress snapshot is no longer needed.
+                JobSnapshot.discard(this.job.getFile());
+            }
             this.job.removePropertyChangeListener("dirty", titlePropertyChangeListener); //$NON-NLS-1$
             this.job.removePropertyChangeListener("file", titlePropertyChangeListener); //$NON-NLS-1$
             this.job.getRootPanelLocation().getPanel().removeAllChildren();
@@ -15,6 +15,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.prefs.Preferences;
 
 import javax.swing.AbstractAction;
+import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
@@ -25,17 +26,22 @@ import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.border.TitledBorder;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 
+import org.openpnp.Main;
 import org.openpnp.Translations;
 import org.openpnp.gui.support.AutoScroller;
 import org.openpnp.gui.support.Icons;
 import org.openpnp.gui.support.LogEntryListCellRenderer;
 import org.openpnp.gui.support.LogEntryListModel;
+import org.openpnp.logging.AsyncWriter;
 import org.openpnp.logging.SystemLogger;
 import org.pmw.tinylog.Configurator;
 import org.pmw.tinylog.Level;
@@ -54,18 +60,15 @@ public class LogPanel extends JPanel {
     private JList<LogEntry> logEntryJList = new JList<>(logEntries);
 
     private Level filterLogLevel = Level.TRACE;
-    private LogEntryListModel.LogEntryFilter logLevelFilter = new LogEntryListModel.LogEntryFilter();
-    private LogEntryListModel.LogEntryFilter searchBarFilter = new LogEntryListModel.LogEntryFilter();
     private LogEntryListModel.LogEntryFilter systemOutFilter = new LogEntryListModel.LogEntryFilter();
 
     private ScheduledExecutorService scheduledExecutor;
+    private int charWidth;
 
     public LogPanel() {
 
         loadLoggingPreferences();
 
-        logEntries.addFilter(logLevelFilter);
-        logEntries.addFilter(searchBarFilter);
         logEntries.addFilter(systemOutFilter);
 
         setLayout(new BorderLayout(0, 0));
@@ -103,6 +106,7 @@ public class LogPanel extends JPanel {
 
         filterContentPanel.add(createSearchFieldPanel());
         filterContentPanel.add(createFilterLogLevelPanel());
+        filterContentPanel.add(createFilterThreadPanel());
 
         filterContentPanel.add(createSystemOutputCheckbox());
 
@@ -113,7 +117,10 @@ public class LogPanel extends JPanel {
         JButton btnClear = new JButton(Icons.delete);
         btnClear.setToolTipText(Translations.getString("LogPanel.FilterLoggingPanel.ClearButton.toolTipText")); //$NON-NLS-1$
 
-        btnClear.addActionListener(e -> logEntries.clear());
+        btnClear.addActionListener(e -> {
+            logEntries.clear();
+            updateCellWidth();
+        });
 
         filterControlPanel.add(btnClear);
 
@@ -123,7 +130,7 @@ public class LogPanel extends JPanel {
 
         btnCopyToClipboard.addActionListener(e -> {
             StringBuilder sb = new StringBuilder();
-            logEntries.getFilteredLogEntries().forEach(logEntry -> sb.append(logEntry.getRenderedLogEntry()));
+            logEntries.forEachFilteredLogEntry(logEntry -> sb.append(logEntry.getRenderedLogEntry()));
             copyStringToClipboard(sb.toString());
         });
 
@@ -143,7 +150,13 @@ public class LogPanel extends JPanel {
         settingsAndFilterPanel.add(filterPanel);
 
         // Log Panel
-        logEntryJList.setCellRenderer(new LogEntryListCellRenderer());
+        LogEntryListCellRenderer cellRenderer = new LogEntryListCellRenderer();
+        logEntryJList.setCellRenderer(cellRenderer);
+        // All cells have the same height and, with the monospaced font, a width given by the
+        // longest entry. Fixed cell sizes spare the list from measuring every cell on each refresh.
+        logEntryJList.setFixedCellHeight(cellRenderer.getPreferredSize().height);
+        charWidth = cellRenderer.getCharWidth();
+        updateCellWidth();
 
         logEntryJList.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_C, Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()), "log-copy");
         logEntryJList.getActionMap().put("log-copy", new AbstractAction() {
@@ -206,9 +219,13 @@ public class LogPanel extends JPanel {
                 .level(level)
                 .activate();
 
+        // Like the log file, the list is fed by its own writer thread, so logging threads never
+        // wait on the list while it is being filtered.
+        AsyncWriter logWriter = Main.getLogWriter();
         Configurator
                 .currentConfig()
-                .addWriter(logEntries)
+                .addWriter(logWriter == null ? logEntries
+                        : new AsyncWriter(logWriter.getCapacity(), logWriter.getBlockLevel(), logEntries))
                 .activate();
     }
 
@@ -223,9 +240,7 @@ public class LogPanel extends JPanel {
 
             private void updateSearchBarFilter() {
                 LogEntry entry = getSelectedEntry();
-                String searchText = searchTextField.getText();
-                searchBarFilter.setFilter((logEntry -> logEntry.getRenderedLogEntry().toLowerCase().contains(searchText.toLowerCase())));
-                logEntries.filter();
+                logEntries.setSearchText(searchTextField.getText());
                 setSelectedEntry(entry);
             }
 
@@ -258,15 +273,54 @@ public class LogPanel extends JPanel {
         logLevelFilterComboBox.setSelectedItem(filterLogLevel);
         logLevelFilterComboBox.addActionListener(e -> {
             LogEntry entry = getSelectedEntry();
-            Level logLevel = (Level) logLevelFilterComboBox.getSelectedItem();
-            logLevelFilter.setFilter(logEntry -> logEntry.getLevel().compareTo(logLevel) >= 0);
-            logEntries.filter();
+            logEntries.setMinimumLevel((Level) logLevelFilterComboBox.getSelectedItem());
             setSelectedEntry(entry);
         });
         filterLogLevelPanel.add(logLevelFilterComboBox);
         return filterLogLevelPanel;
     }
 
+    private JPanel createFilterThreadPanel() {
+        JPanel filterThreadPanel = new JPanel();
+        filterThreadPanel.add(new JLabel(Translations.getString(
+                "LogPanel.FilterLoggingPanel.ThreadLabel.text"))); //$NON-NLS-1$
+        String allThreads = Translations.getString("LogPanel.FilterLoggingPanel.AllThreads.text"); //$NON-NLS-1$
+        JComboBox<String> threadFilterComboBox = new JComboBox<>(new String[] { allThreads });
+        threadFilterComboBox.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                // Offer the threads currently in the log.
+                Object selected = threadFilterComboBox.getSelectedItem();
+                DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>();
+                model.addElement(allThreads);
+                for (String threadName : logEntries.getThreadNames()) {
+                    model.addElement(threadName);
+                }
+                if (model.getIndexOf(selected) < 0) {
+                    model.addElement((String) selected);
+                }
+                model.setSelectedItem(selected);
+                threadFilterComboBox.setModel(model);
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
+        threadFilterComboBox.addActionListener(e -> {
+            LogEntry entry = getSelectedEntry();
+            Object selected = threadFilterComboBox.getSelectedItem();
+            logEntries.setThreadName(selected == allThreads ? null : (String) selected);
+            setSelectedEntry(entry);
+        });
+        filterThreadPanel.add(threadFilterComboBox);
+        return filterThreadPanel;
+    }
+
     private JPanel createGlobalLogLevelPanel() {
         JPanel globalLogLevelPanel = new JPanel();
         globalLogLevelPanel.add(new JLabel(Translations.getString(
@@ -295,10 +349,18 @@ public class LogPanel extends JPanel {
         if (MainFrame.get().getTabs().getSelectedComponent() == LogPanel.this) {
             if (logEntries.isRefreshNeeded()) {
                 logEntries.refresh();
+                SwingUtilities.invokeLater(() -> updateCellWidth());
             }
         }
     }
 
+    protected void updateCellWidth() {
+        int width = Math.max(1, logEntries.getMaxLength() + 1)*charWidth;
+        if (logEntryJList.getFixedCellWidth() != width) {
+            logEntryJList.setFixedCellWidth(width);
+        }
+    }
+
     protected LogEntry getSelectedEntry() {
         int index = logEntryJList.getSelectedIndex();
         if (index >= 0) {
@@ -309,7 +371,7 @@ public class LogPanel extends JPanel {
 
     protected void setSelectedEntry(LogEntry entry) {
         if (entry != null) {
-            int index = logEntries.getFilteredLogEntries().indexOf(entry);
+            int index = logEntries.indexOf(entry);
             if (index >= 0) {
                 logEntryJList.setSelectedIndex(index);
             }
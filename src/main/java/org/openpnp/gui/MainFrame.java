@@ -95,6 +95,7 @@ import org.openpnp.model.Board;
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Configuration.TablesLinked;
+import org.openpnp.model.JobSnapshot;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.scripting.ScriptFileWatcher;
 import org.openpnp.util.UiUtils;
@@ -1118,6 +1119,16 @@ public class MainFrame extends JFrame {
         catch (Exception e) {
             e.printStackTrace();
         }
+        // The job is closed properly, its progress snapshot is no longer needed.
+        if (jobPanel.getJob() != null) {
+            JobSnapshot.discard(jobPanel.getJob().getFile());
+            try {
+                JobSnapshot.flush();
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
         Logger.info("Shutdown complete, exiting."); //$NON-NLS-1$
         System.exit(0);
         return true;
@@ -12,7 +12,20 @@ public class LogEntryListCellRenderer extends JTextField implements ListCellRend
     final Color colorWarning = new Color(255, 0, 0);
     final Color colorError = new Color(255, 0, 0);
     final Color colorErrorBg = new Color(255, 255, 220);
-    
+    static final Font font = new Font("Monospaced", Font.PLAIN, 13);
+
+    public LogEntryListCellRenderer() {
+        setFont(font);
+        setBorder(null);
+    }
+
+    /**
+     * @return the width of a character of the monospaced font.
+     */
+    public int getCharWidth() {
+        return getFontMetrics(font).charWidth('m');
+    }
+
     @Override
     public Component getListCellRendererComponent(JList<? extends LogEntry> list, LogEntry logEntry, int index, boolean isSelected, boolean cellHasFocus) {
 
@@ -21,8 +34,6 @@ public class LogEntryListCellRenderer extends JTextField implements ListCellRend
         }
 
         this.setText(logEntry.getRenderedLogEntry());
-        this.setFont(new Font("Monospaced", Font.PLAIN, 13));
-        this.setBorder(null);
 
         if (isSelected) {
             setBackground(list.getSelectionBackground());
@@ -1,25 +1,56 @@
 package org.openpnp.gui.support;
 
 import org.pmw.tinylog.Configuration;
+import org.pmw.tinylog.Level;
 import org.pmw.tinylog.LogEntry;
 import org.pmw.tinylog.writers.LogEntryValue;
 import org.pmw.tinylog.writers.Writer;
 
 import javax.swing.*;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
- * A LogEntry List Model which contains LogEntries from tinylog
+ * A LogEntry List Model which contains LogEntries from tinylog.
+ *
+ * The entries are kept in a ring of fixed capacity, addressed by their sequence number, so the
+ * oldest entries are dropped without copying. The entries are indexed by level and by thread.
+ * The filtered view is a list of sequence numbers: new entries are filtered incrementally as they
+ * are added, and a level or thread filter only visits the indexed entries. A search text that
+ * extends the previous one only rechecks the entries already shown.
  */
 public class LogEntryListModel extends AbstractListModel<LogEntry> implements Writer {
 
-    private List<LogEntry> originalLogEntries = new ArrayList<>();
-    private List<LogEntry> filteredLogEntries = new ArrayList<>(originalLogEntries);
-    private List<LogEntry> newLogEntries = new ArrayList<>();
+    private static final int LINE_LIMIT = 10000;
+
+    private final int capacity;
+    private final LogEntry[] entries;
+    private final String[] threadNames;
+    /**
+     * Sequence number of the oldest entry kept.
+     */
+    private long firstSequence;
+    /**
+     * Sequence number of the next entry added.
+     */
+    private long nextSequence;
+    private final SequenceList[] levelIndex = new SequenceList[Level.values().length];
+    private final Map<String, SequenceList> threadIndex = new TreeMap<>();
+    private SequenceList filteredSequences = new SequenceList();
+    private int maxLength;
+
+    private Level minimumLevel = Level.TRACE;
+    private String threadName;
+    private String searchText = "";
     private HashSet<LogEntryFilter> filters = new HashSet<>();
 
+    /**
+     * Entries written since the last refresh, coalesced until the panel is refreshed. Guarded by
+     * itself, so writing does not wait on filtering.
+     */
+    private final ArrayDeque<LogEntry> newLogEntries = new ArrayDeque<>();
+
     public static class LogEntryFilter {
         Predicate<LogEntry> filter;
 
@@ -40,14 +71,83 @@ public class LogEntryListModel extends AbstractListModel<LogEntry> implements Wr
         }
     }
 
-    private static final int LINE_LIMIT = 10000;
+    /**
+     * Growable list of ascending sequence numbers, that can be cut at the front in constant time.
+     */
+    static class SequenceList {
+        private long[] values = new long[64];
+        private int start;
+        private int end;
+
+        int size() {
+            return end - start;
+        }
+
+        long get(int index) {
+            return values[start + index];
+        }
+
+        void add(long value) {
+            if (end == values.length) {
+                if (start > values.length / 2) {
+                    System.arraycopy(values, start, values, 0, end - start);
+                }
+                else {
+                    values = Arrays.copyOf(values, values.length * 2);
+                    System.arraycopy(values, start, values, 0, end - start);
+                }
+                end -= start;
+                start = 0;
+            }
+            values[end++] = value;
+        }
+
+        /**
+         * Removes the values below the sequence number.
+         *
+         * @return the number of values removed.
+         */
+        int removeBelow(long sequence) {
+            int removed = 0;
+            while (start < end && values[start] < sequence) {
+                start++;
+                removed++;
+            }
+            return removed;
+        }
+
+        /**
+         * @return the index of the sequence number, or -1 if not in the list.
+         */
+        int indexOf(long sequence) {
+            int index = Arrays.binarySearch(values, start, end, sequence);
+            return index < 0 ? -1 : index - start;
+        }
+    }
+
+    public LogEntryListModel() {
+        this(LINE_LIMIT);
+    }
+
+    public LogEntryListModel(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LogEntry[capacity];
+        this.threadNames = new String[capacity];
+        for (int i = 0; i < levelIndex.length; i++) {
+            levelIndex[i] = new SequenceList();
+        }
+    }
 
     /**
      * Returns a snapshot copy of the original log entries.
-     * @return 
+     * @return
      */
     public synchronized List<LogEntry> getOriginalLogEntries() {
-        return new ArrayList<>(originalLogEntries);
+        List<LogEntry> list = new ArrayList<>((int) (nextSequence - firstSequence));
+        for (long sequence = firstSequence; sequence < nextSequence; sequence++) {
+            list.add(getEntry(sequence));
+        }
+        return list;
     }
 
     /**
@@ -55,20 +155,57 @@ public class LogEntryListModel extends AbstractListModel<LogEntry> implements Wr
      * @return
      */
     public synchronized List<LogEntry> getFilteredLogEntries() {
-        return new ArrayList<>(filteredLogEntries);
+        List<LogEntry> list = new ArrayList<>(filteredSequences.size());
+        forEachFilteredLogEntry(list::add);
+        return list;
+    }
+
+    /**
+     * Passes the filtered log entries to the consumer, without copying them.
+     */
+    public synchronized void forEachFilteredLogEntry(Consumer<LogEntry> consumer) {
+        for (int i = 0; i < filteredSequences.size(); i++) {
+            consumer.accept(getEntry(filteredSequences.get(i)));
+        }
+    }
+
+    /**
+     * @return the index of the entry in the filtered log entries, or -1 if not shown.
+     */
+    public synchronized int indexOf(LogEntry logEntry) {
+        for (int i = filteredSequences.size() - 1; i >= 0; i--) {
+            if (getEntry(filteredSequences.get(i)) == logEntry) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the names of the threads of the log entries, sorted.
+     */
+    public synchronized List<String> getThreadNames() {
+        return new ArrayList<>(threadIndex.keySet());
+    }
+
+    /**
+     * @return the length of the longest rendered log entry kept.
+     */
+    public synchronized int getMaxLength() {
+        return maxLength;
     }
 
     @Override
     public synchronized int getSize() {
-        return filteredLogEntries.size();
+        return filteredSequences.size();
     }
 
     @Override
     public synchronized LogEntry getElementAt(int index) {
         // This check is needed to exclude race conditions in heavily threaded logging, i.e. calls to getSize()
-        // followed by getElementAt() are not atomic. 
-        if (index < filteredLogEntries.size()) {
-            return filteredLogEntries.get(index);
+        // followed by getElementAt() are not atomic.
+        if (index < filteredSequences.size()) {
+            return getEntry(filteredSequences.get(index));
         }
         return null;
     }
@@ -83,9 +220,49 @@ public class LogEntryListModel extends AbstractListModel<LogEntry> implements Wr
         filter();
     }
 
+    /**
+     * Shows the entries of this level and above.
+     */
+    public synchronized void setMinimumLevel(Level minimumLevel) {
+        this.minimumLevel = minimumLevel;
+        filter();
+    }
+
+    /**
+     * Shows the entries of this thread only, or of all threads if null.
+     */
+    public synchronized void setThreadName(String threadName) {
+        this.threadName = threadName;
+        filter();
+    }
+
+    /**
+     * Shows the entries containing the text, ignoring case.
+     */
+    public synchronized void setSearchText(String searchText) {
+        String previousSearchText = this.searchText;
+        this.searchText = searchText;
+        if (containsIgnoreCase(searchText, previousSearchText)) {
+            // Narrowed down, only the entries shown can still match.
+            SequenceList sequences = new SequenceList();
+            for (int i = 0; i < filteredSequences.size(); i++) {
+                long sequence = filteredSequences.get(i);
+                if (containsIgnoreCase(getEntry(sequence).getRenderedLogEntry(), searchText)) {
+                    sequences.add(sequence);
+                }
+            }
+            filteredSequences = sequences;
+            fireContentsChanged();
+        }
+        else {
+            filter();
+        }
+    }
+
     @Override
     public Set<LogEntryValue> getRequiredLogEntryValues() {
-        return EnumSet.of(LogEntryValue.RENDERED_LOG_ENTRY);
+        return EnumSet.of(LogEntryValue.LEVEL, LogEntryValue.THREAD, LogEntryValue.CLASS,
+                LogEntryValue.RENDERED_LOG_ENTRY);
     }
 
     @Override
@@ -94,41 +271,163 @@ public class LogEntryListModel extends AbstractListModel<LogEntry> implements Wr
     }
 
     @Override
-    public synchronized void write(LogEntry logEntry) throws Exception {
-        newLogEntries.add(logEntry);
+    public void write(LogEntry logEntry) throws Exception {
+        synchronized (newLogEntries) {
+            if (newLogEntries.size() >= capacity) {
+                // Older entries would be dropped by the refresh anyway.
+                newLogEntries.removeFirst();
+            }
+            newLogEntries.addLast(logEntry);
+        }
     }
 
     public synchronized void clear() {
-        this.originalLogEntries.clear();
-        filter();
+        Arrays.fill(entries, null);
+        Arrays.fill(threadNames, null);
+        firstSequence = nextSequence;
+        removeDropped();
+        maxLength = 0;
+        fireContentsChanged();
     }
 
+    /**
+     * Rebuilds the filtered log entries, e.g. after a filter has changed.
+     */
     public synchronized void filter() {
-        // Reduce all filters to a single one and apply it to our logEntries
-        this.filteredLogEntries = originalLogEntries.stream().filter(
-                filters.stream().map(LogEntryFilter::getFilter).reduce(Predicate::and).orElse(t -> false)
-        ).collect(Collectors.toList());
-
-        SwingUtilities.invokeLater(() -> fireContentsChanged(this, 0, filteredLogEntries.size() - 1));
+        SequenceList sequences = new SequenceList();
+        if (threadName != null) {
+            SequenceList threadSequences = threadIndex.get(threadName);
+            for (int i = 0; threadSequences != null && i < threadSequences.size(); i++) {
+                addIfMatching(sequences, threadSequences.get(i));
+            }
+        }
+        else if (minimumLevel.ordinal() > Level.TRACE.ordinal()) {
+            // Merge the sequences of the levels shown.
+            List<SequenceList> lists = new ArrayList<>();
+            for (int level = minimumLevel.ordinal(); level < levelIndex.length; level++) {
+                lists.add(levelIndex[level]);
+            }
+            int [] positions = new int[lists.size()];
+            while (true) {
+                int next = -1;
+                for (int i = 0; i < lists.size(); i++) {
+                    if (positions[i] < lists.get(i).size() && (next < 0
+                            || lists.get(i).get(positions[i]) < lists.get(next).get(positions[next]))) {
+                        next = i;
+                    }
+                }
+                if (next < 0) {
+                    break;
+                }
+                addIfMatching(sequences, lists.get(next).get(positions[next]++));
+            }
+        }
+        else {
+            for (long sequence = firstSequence; sequence < nextSequence; sequence++) {
+                addIfMatching(sequences, sequence);
+            }
+        }
+        filteredSequences = sequences;
+        fireContentsChanged();
     }
 
-    public synchronized boolean isRefreshNeeded() {
-        return !newLogEntries.isEmpty();
+    public boolean isRefreshNeeded() {
+        synchronized (newLogEntries) {
+            return !newLogEntries.isEmpty();
+        }
     }
 
+    /**
+     * Adds the entries written since the last refresh, filtering only these.
+     */
     public synchronized void refresh() {
-        if (newLogEntries.size() > LINE_LIMIT) {
-            // New Log entries alone already surpass the limit. 
-            newLogEntries.subList(0, newLogEntries.size() - LINE_LIMIT).clear();
-            originalLogEntries.clear();
+        List<LogEntry> newLogEntries;
+        synchronized (this.newLogEntries) {
+            newLogEntries = new ArrayList<>(this.newLogEntries);
+            this.newLogEntries.clear();
         }
-        else if (originalLogEntries.size() + newLogEntries.size() > LINE_LIMIT) {
-            // Make space for the new log entries.
-            originalLogEntries.subList(0, Math.max(0, originalLogEntries.size() - newLogEntries.size() - LINE_LIMIT)).clear();
+        for (LogEntry logEntry : newLogEntries) {
+            long sequence = nextSequence++;
+            int slot = (int) (sequence % capacity);
+            String name = logEntry.getThread() == null ? "" : logEntry.getThread().getName();
+            entries[slot] = logEntry;
+            threadNames[slot] = name;
+            levelIndex[logEntry.getLevel().ordinal()].add(sequence);
+            threadIndex.computeIfAbsent(name, (key) -> new SequenceList()).add(sequence);
+            String rendered = logEntry.getRenderedLogEntry();
+            if (rendered != null) {
+                maxLength = Math.max(maxLength, rendered.length());
+            }
+            addIfMatching(filteredSequences, sequence);
         }
-        originalLogEntries.addAll(newLogEntries);
-        newLogEntries.clear();
-        filter();
+        firstSequence = Math.max(firstSequence, nextSequence - capacity);
+        removeDropped();
+        fireContentsChanged();
+    }
+
+    private LogEntry getEntry(long sequence) {
+        return entries[(int) (sequence % capacity)];
+    }
+
+    private void addIfMatching(SequenceList sequences, long sequence) {
+        if (sequence < firstSequence) {
+            return;
+        }
+        int slot = (int) (sequence % capacity);
+        LogEntry logEntry = entries[slot];
+        if (logEntry.getLevel().ordinal() < minimumLevel.ordinal()) {
+            return;
+        }
+        if (threadName != null && !threadName.equals(threadNames[slot])) {
+            return;
+        }
+        if (!searchText.isEmpty() && !containsIgnoreCase(logEntry.getRenderedLogEntry(), searchText)) {
+            return;
+        }
+        for (LogEntryFilter filter : filters) {
+            if (!filter.getFilter().test(logEntry)) {
+                return;
+            }
+        }
+        sequences.add(sequence);
+    }
+
+    /**
+     * Removes the dropped entries from the indexes and the filtered entries.
+     */
+    private void removeDropped() {
+        for (SequenceList sequences : levelIndex) {
+            sequences.removeBelow(firstSequence);
+        }
+        for (Iterator<SequenceList> iterator = threadIndex.values().iterator(); iterator.hasNext(); ) {
+            SequenceList sequences = iterator.next();
+            sequences.removeBelow(firstSequence);
+            if (sequences.size() == 0) {
+                iterator.remove();
+            }
+        }
+        filteredSequences.removeBelow(firstSequence);
+    }
+
+    private void fireContentsChanged() {
+        int size = filteredSequences.size();
+        SwingUtilities.invokeLater(() -> fireContentsChanged(this, 0, size - 1));
+    }
+
+    /**
+     * Case insensitive String.contains(), without creating lower case copies.
+     */
+    static boolean containsIgnoreCase(String s, String text) {
+        if (s == null) {
+            return false;
+        }
+        int last = s.length() - text.length();
+        for (int i = 0; i <= last; i++) {
+            if (s.regionMatches(true, i, text, 0, text.length())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -42,12 +42,16 @@ public class PackagesTableModel extends AbstractObjectTableModel implements Prop
             Translations.getString("PackagesTableModel.ColumnName.FiducialVision") //$NON-NLS-1$
     };
     private Class[] columnTypes = new Class[] {String.class, String.class, String.class, BottomVisionSettings.class, FiducialVisionSettings.class};
-    private List<Package> packages;
+    /**
+     * The package ids, so packages are only loaded when shown, see 
+     * {@link Configuration#getPackageIds()}.
+     */
+    private List<String> packageIds;
 
     public PackagesTableModel(Configuration configuration) {
         this.configuration = configuration;
         configuration.addPropertyChangeListener("packages", this);
-        packages = new ArrayList<>(configuration.getPackages());
+        packageIds = new ArrayList<>(configuration.getPackageIds());
 
     }
 
@@ -61,7 +65,7 @@ public class PackagesTableModel extends AbstractObjectTableModel implements Prop
     }
 
     public int getRowCount() {
-        return (packages == null) ? 0 : packages.size();
+        return (packageIds == null) ? 0 : packageIds.size();
     }
 
     @Override
@@ -76,18 +80,21 @@ public class PackagesTableModel extends AbstractObjectTableModel implements Prop
 
     @Override
     public Package getRowObjectAt(int index) {
-        return packages.get(index);
+        return configuration.getPackage(packageIds.get(index));
     }
 
     @Override
     public int indexOf(Object selectedPackage) {
-        return packages.indexOf(selectedPackage);
+        if (!(selectedPackage instanceof Package)) {
+            return -1;
+        }
+        return packageIds.indexOf(((Package) selectedPackage).getId());
     }
 
     @Override
     public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
         try {
-            Package this_package = packages.get(rowIndex);
+            Package this_package = getRowObjectAt(rowIndex);
             if (columnIndex == 1) {
                 this_package.setDescription((String) aValue);
             }
@@ -107,7 +114,10 @@ public class PackagesTableModel extends AbstractObjectTableModel implements Prop
     }
 
     public Object getValueAt(int row, int col) {
-        Package this_package = packages.get(row);
+        Package this_package = getRowObjectAt(row);
+        if (this_package == null) {
+            return null;
+        }
         switch (col) {
             case 0:
                 return this_package.getId();
@@ -126,7 +136,7 @@ public class PackagesTableModel extends AbstractObjectTableModel implements Prop
 
     @Override
     public void propertyChange(PropertyChangeEvent arg0) {
-        packages = new ArrayList<>(configuration.getPackages());
+        packageIds = new ArrayList<>(configuration.getPackageIds());
         fireTableDataChanged();
     }
 }
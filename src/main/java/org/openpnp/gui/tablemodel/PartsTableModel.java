@@ -22,7 +22,9 @@ package org.openpnp.gui.tablemodel;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openpnp.Translations;
 import org.openpnp.gui.support.LengthCellValue;
@@ -51,12 +53,19 @@ public class PartsTableModel extends AbstractObjectTableModel implements Propert
     };
     private Class[] columnTypes = new Class[] {String.class, String.class, LengthCellValue.class, LengthCellValue.class,
             Package.class, String.class, BottomVisionSettings.class, FiducialVisionSettings.class, Integer.class, Integer.class};
-    private List<Part> parts;
+    /**
+     * The part ids, so parts are only loaded when shown, see {@link Configuration#getPartIds()}.
+     */
+    private List<String> partIds;
+    /**
+     * The parts this table listens to, by id.
+     */
+    private Map<String, Part> observedParts = new HashMap<>();
     private PercentConverter percentConverter = new PercentConverter();
 
     public PartsTableModel() {
         Configuration.get().addPropertyChangeListener("parts", this);
-        parts = new ArrayList<>(Configuration.get().getParts());
+        partIds = new ArrayList<>(Configuration.get().getPartIds());
     }
 
     @Override
@@ -69,7 +78,7 @@ public class PartsTableModel extends AbstractObjectTableModel implements Propert
     }
 
     public int getRowCount() {
-        return (parts == null) ? 0 : parts.size();
+        return (partIds == null) ? 0 : partIds.size();
     }
 
     @Override
@@ -84,18 +93,21 @@ public class PartsTableModel extends AbstractObjectTableModel implements Propert
 
     @Override
     public Part getRowObjectAt(int index) {
-        return parts.get(index);
+        return Configuration.get().getPart(partIds.get(index));
     }
 
     @Override
     public int indexOf(Object selectedPart) {
-        return parts.indexOf(selectedPart);
+        if (!(selectedPart instanceof Part)) {
+            return -1;
+        }
+        return partIds.indexOf(((Part) selectedPart).getId());
     }
 
     @Override
     public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
         try {
-            Part part = parts.get(rowIndex);
+            Part part = getRowObjectAt(rowIndex);
             if (columnIndex == 1) {
                 part.setName((String) aValue);
             }
@@ -140,7 +152,10 @@ public class PartsTableModel extends AbstractObjectTableModel implements Propert
     }
 
     public Object getValueAt(int row, int col) {
-        Part part = parts.get(row);
+        Part part = getRowObjectAt(row);
+        if (part == null) {
+            return null;
+        }
         switch (col) {
             case 0:
                 return part.getId();
@@ -209,20 +224,22 @@ public class PartsTableModel extends AbstractObjectTableModel implements Propert
         }
         else  {
             // Parts list itself changed
-            List<Part> newParts = new ArrayList<>(Configuration.get().getParts());
+            List<String> newPartIds = new ArrayList<>(Configuration.get().getPartIds());
             
             //Compute the indices of those parts to remove and those to add
             List<int[]> indicesToRemove = new ArrayList<>();
             List<int[]> indicesToAdd = new ArrayList<>();
-            Collect.computeInPlaceUpdateIndices(parts, newParts, indicesToRemove, indicesToAdd);
+            Collect.computeInPlaceUpdateIndices(partIds, newPartIds, indicesToRemove, indicesToAdd);
 
             //Remove the unneeded parts in reverse order so as to not disturb indices of those 
             //parts that are yet to be removed
             for (int[] idxRange : indicesToRemove) {
                 for (int idx=idxRange[0]; idx>=idxRange[1]; idx--) {
-                    Part part = this.getRowObjectAt(idx);
-                    part.removePropertyChangeListener(this);
-                    parts.remove(idx);
+                    Part part = observedParts.remove(partIds.get(idx));
+                    if (part != null) {
+                        part.removePropertyChangeListener(this);
+                    }
+                    partIds.remove(idx);
                 }
                 fireTableRowsDeleted(idxRange[1], idxRange[0]);
             }
@@ -230,9 +247,11 @@ public class PartsTableModel extends AbstractObjectTableModel implements Propert
             //Insert any needed parts into the table
             for (int[] idxRange : indicesToAdd) {
                 for (int idx=idxRange[0]; idx<=idxRange[1]; idx++) {
-                    Part part = newParts.get(idx);
+                    String partId = newPartIds.get(idx);
+                    Part part = Configuration.get().getPart(partId);
                     part.addPropertyChangeListener(this);
-                    parts.add(idx, part);
+                    observedParts.put(partId, part);
+                    partIds.add(idx, partId);
                 }
                 this.fireTableRowsInserted(idxRange[0], idxRange[1]);
             }
@@ -0,0 +1,253 @@
+package org.openpnp.logging;
+
+import java.io.PrintStream;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.pmw.tinylog.Configuration;
+import org.pmw.tinylog.Level;
+import org.pmw.tinylog.LogEntry;
+import org.pmw.tinylog.Logger;
+import org.pmw.tinylog.writers.LogEntryValue;
+import org.pmw.tinylog.writers.Writer;
+
+/**
+ * Hands the log entries over to a dedicated writer thread, which writes them to the given writers
+ * in batches and flushes them after each batch. The logging threads, e.g. the driver threads, thus
+ * never wait on file I/O or on the GUI.<br/>
+ * <br/>
+ * The entries are passed through a bounded lock-free ring buffer. When it is full, entries below
+ * the block level are dropped and counted, and a summary is logged once the writer thread has
+ * caught up. Entries at or above the block level make the logging thread wait for free space, so
+ * they are never lost.
+ */
+public final class AsyncWriter implements Writer {
+    private static final PrintStream stderr = System.err;
+
+    private final Writer[] writers;
+    private final Level blockLevel;
+    private final int mask;
+    private final AtomicReferenceArray<LogEntry> buffer;
+    /**
+     * Sequence of the next entry to be claimed by a logging thread.
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Sequence of the next entry to be taken by the writer thread.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Sequence up to which the entries are written and flushed.
+     */
+    private volatile long flushedSequence;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private long summarizedDroppedCount;
+
+    private volatile Thread thread;
+    private volatile boolean waiting;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity The number of entries that can be queued, rounded up to a power of two.
+     * @param blockLevel Entries at or above this level are never dropped.
+     * @param writers
+     */
+    public AsyncWriter(int capacity, Level blockLevel, Writer... writers) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.blockLevel = blockLevel;
+        this.writers = writers;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                flush();
+            }
+            catch (Exception e) {
+                // Nothing left to report to.
+            }
+        }));
+    }
+
+    /**
+     * @return the number of entries dropped because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return the number of entries waiting to be written.
+     */
+    public long getQueuedCount() {
+        return Math.max(0, head.get() - tail.get());
+    }
+
+    /**
+     * @return the number of entries written.
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public int getCapacity() {
+        return buffer.length();
+    }
+
+    public Level getBlockLevel() {
+        return blockLevel;
+    }
+
+    @Override
+    public Set<LogEntryValue> getRequiredLogEntryValues() {
+        Set<LogEntryValue> values = EnumSet.of(LogEntryValue.LEVEL);
+        for (Writer writer : writers) {
+            values.addAll(writer.getRequiredLogEntryValues());
+        }
+        return values;
+    }
+
+    @Override
+    public synchronized void init(final Configuration configuration) throws Exception {
+        if (thread != null) {
+            return;
+        }
+        for (Writer writer : writers) {
+            writer.init(configuration);
+        }
+        closed = false;
+        thread = new Thread(this::run, "AsyncWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void write(final LogEntry logEntry) {
+        boolean mayBlock = logEntry.getLevel().ordinal() >= blockLevel.ordinal()
+                && Thread.currentThread() != thread;
+        while (!offer(logEntry)) {
+            if (!mayBlock || closed) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Waits until the entries queued so far are written and flushed.
+     */
+    @Override
+    public void flush() throws Exception {
+        Thread thread = this.thread;
+        if (thread == Thread.currentThread()) {
+            return;
+        }
+        long sequence = head.get();
+        while (flushedSequence < sequence && thread != null && thread.isAlive()) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        flush();
+        Thread thread;
+        synchronized (this) {
+            thread = this.thread;
+            this.thread = null;
+            closed = true;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join(1000);
+        }
+        for (Writer writer : writers) {
+            writer.close();
+        }
+    }
+
+    private boolean offer(LogEntry logEntry) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail.get() >= buffer.length()) {
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+        buffer.set((int) sequence & mask, logEntry);
+        return true;
+    }
+
+    private void run() {
+        while (!closed) {
+            int count = drain();
+            if (count == 0) {
+                waiting = true;
+                if (tail.get() == head.get() && !closed) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                }
+                waiting = false;
+                continue;
+            }
+            for (Writer writer : writers) {
+                try {
+                    writer.flush();
+                }
+                catch (Exception e) {
+                    e.printStackTrace(stderr);
+                }
+            }
+            flushedSequence = tail.get();
+            long dropped = droppedCount.get();
+            if (dropped > summarizedDroppedCount && tail.get() == head.get()) {
+                Logger.warn("Log buffer overflow, dropped {} log entries below {} ({} in total).",
+                        dropped - summarizedDroppedCount, blockLevel, dropped);
+                summarizedDroppedCount = dropped;
+            }
+        }
+    }
+
+    /**
+     * Writes the entries queued so far.
+     *
+     * @return the number of entries written.
+     */
+    private int drain() {
+        int count = 0;
+        long sequence = tail.get();
+        while (sequence < head.get()) {
+            int index = (int) sequence & mask;
+            LogEntry logEntry = buffer.get(index);
+            if (logEntry == null) {
+                // Claimed but not yet published, retry after the batch.
+                break;
+            }
+            for (Writer writer : writers) {
+                try {
+                    writer.write(logEntry);
+                }
+                catch (Exception e) {
+                    e.printStackTrace(stderr);
+                }
+            }
+            writtenCount.incrementAndGet();
+            buffer.set(index, null);
+            tail.set(++sequence);
+            count++;
+        }
+        if (count == 0 && sequence < head.get()) {
+            Thread.yield();
+        }
+        return count;
+    }
+}
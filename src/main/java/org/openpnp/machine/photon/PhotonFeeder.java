@@ -25,9 +25,11 @@ import org.simpleframework.xml.Element;
 
 import javax.swing.*;
 
-import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,6 +52,32 @@ public class PhotonFeeder extends ReferenceFeeder {
 
     private static PhotonBusInterface photonBus;
 
+    // Polling starts at this interval and backs off up to the maximum.
+    static final long MIN_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    static final long MAX_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * The feed that was started but not yet confirmed complete, if feeds are pipelined.
+     */
+    protected volatile PendingFeed pendingFeed;
+
+    /**
+     * The time the feeds of this feeder actually take, averaged, or 0 if not yet known.
+     */
+    protected long learnedFeedNanos;
+
+    protected static class PendingFeed {
+        final int slotAddress;
+        final long startNanos;
+        final long expectedNanos;
+
+        PendingFeed(int slotAddress, long startNanos, long expectedNanos) {
+            this.slotAddress = slotAddress;
+            this.startNanos = startNanos;
+            this.expectedNanos = expectedNanos;
+        }
+    }
+
     public PhotonFeeder() {
         Configuration.get().addListener(new ConfigurationListener.Adapter() {
             @Override
@@ -197,7 +225,7 @@ public class PhotonFeeder extends ReferenceFeeder {
         InitializeFeeder.Response response = initializeFeeder.send(photonBus);
 
         if (response == null) {
-            slotAddress = null;
+            forgetSlotAddress();
         } else if (response.error == ErrorTypes.WRONG_FEEDER_UUID) {
             PhotonFeeder otherFeeder = findByHardwareId(response.uuid);
 
@@ -252,6 +280,15 @@ public class PhotonFeeder extends ReferenceFeeder {
 
     @Override
     public void feed(Nozzle nozzle) throws Exception {
+        if (pendingFeed != null) {
+            // The feeder must be done with the previous feed before it can feed again.
+            try {
+                completeFeed(nozzle);
+            } catch (FeedFailureException e) {
+                Logger.debug("{} previous feed failed: {}", getName(), e.getMessage());
+            }
+        }
+
         for (int i = 0; i <= photonProperties.getFeederCommunicationMaxRetry(); i++) {
             findSlotAddressIfNeeded();
             initializeIfNeeded();
@@ -262,45 +299,93 @@ public class PhotonFeeder extends ReferenceFeeder {
 
             verifyFeederLocationIsFullyConfigured();
 
+            long startNanos = System.nanoTime();
             MoveFeedForward moveFeedForward = new MoveFeedForward(slotAddress, partPitch * 10);
             MoveFeedForward.Response moveFeedForwardResponse = moveFeedForward.send(photonBus);
 
             if (moveFeedForwardResponse == null) {
-                slotAddress = null;
-                initialized = false;
+                forgetSlotAddress();
                 throw new FeedFailureException("Feed command timed out");
             } else if (moveFeedForwardResponse.error == ErrorTypes.UNINITIALIZED_FEEDER) {
-                slotAddress = null;
-                initialized = false;
+                forgetSlotAddress();
                 continue;  // We'll initialize it on a retry
             }
 
-            // The feeder gives us expectedTimeToFeed, but it is way too conservative.
-            // Use expectedTimeToFeed to bound how long we will wait,
-            // but use polling to check the status of the feed.
-            Duration expectedFeedDuration = Duration.ofMillis(moveFeedForwardResponse.expectedTimeToFeed);
-            long endTimeNanos = System.nanoTime() + expectedFeedDuration.toNanos() * 3;
-            for (int j = 0; j <= photonProperties.getFeederCommunicationMaxRetry() || System.nanoTime() <= endTimeNanos; j++) {
-                Thread.sleep(50); // MAGIC: this feels like a good number, there is no particular reason it is this way.
+            PendingFeed feed = new PendingFeed(slotAddress, startNanos,
+                    TimeUnit.MILLISECONDS.toNanos(moveFeedForwardResponse.expectedTimeToFeed));
+            if (photonProperties.isFeedPipelining()) {
+                pendingFeed = feed;
+            } else {
+                waitForFeed(feed);
+            }
+            return;
+        }
 
-                MoveFeedStatus moveFeedStatus = new MoveFeedStatus(slotAddress);
-                MoveFeedStatus.Response moveFeedStatusResponse = moveFeedStatus.send(photonBus);
+        throw new FeedFailureException("Failed to feed for an unknown reason. Is the feeder inserted?");
+    }
 
-                if (moveFeedStatusResponse == null) {
-                    continue; // Timeout. retry after delay.
-                }
+    /**
+     * Waits for a pipelined feed to complete, if one is pending.
+     *
+     * @throws FeedFailureException if the feed failed.
+     */
+    @Override
+    public void completeFeed(Nozzle nozzle) throws Exception {
+        PendingFeed feed = pendingFeed;
+        if (feed == null) {
+            return;
+        }
+        pendingFeed = null;
+        waitForFeed(feed);
+    }
+
+    private void waitForFeed(PendingFeed feed) throws Exception {
+        // The feeder gives us expectedTimeToFeed, but it is way too conservative.
+        // Use expectedTimeToFeed to bound how long we will wait. Start polling the status when
+        // the feed should be done according to the time the previous feeds took, then back off.
+        long endTimeNanos = feed.startNanos + feed.expectedNanos * 3;
+        long delayNanos = Math.min(learnedFeedNanos, feed.expectedNanos) - (System.nanoTime() - feed.startNanos);
+        long intervalNanos = MIN_POLL_INTERVAL_NANOS;
+        long inProgressNanos = -1;
+        for (int j = 0; j <= photonProperties.getFeederCommunicationMaxRetry() || System.nanoTime() <= endTimeNanos; j++) {
+            if (delayNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            }
+            delayNanos = intervalNanos;
+            intervalNanos = Math.min(intervalNanos * 2, MAX_POLL_INTERVAL_NANOS);
 
-                if (moveFeedStatusResponse.error == ErrorTypes.NONE) {
-                    return;
-                } else if (moveFeedStatusResponse.error == ErrorTypes.COULD_NOT_REACH) {
-                    throw new FeedFailureException("Feeder could not reach its destination.");
-                }
+            long pollNanos = System.nanoTime() - feed.startNanos;
+            MoveFeedStatus moveFeedStatus = new MoveFeedStatus(feed.slotAddress);
+            MoveFeedStatus.Response moveFeedStatusResponse = moveFeedStatus.send(photonBus);
+
+            if (moveFeedStatusResponse == null) {
+                continue; // Timeout. retry after delay.
             }
 
-            throw new FeedFailureException("Feeder timed out when we requested a feed status update.");
+            if (moveFeedStatusResponse.error == ErrorTypes.NONE) {
+                // The feed was done somewhere after the last poll that found it in progress. If the
+                // first poll found it done already, try polling a bit earlier next time.
+                long feedNanos = inProgressNanos >= 0 ? (inProgressNanos + pollNanos) / 2
+                        : Math.max(pollNanos - MIN_POLL_INTERVAL_NANOS, 0);
+                learnedFeedNanos = learnedFeedNanos == 0 ? feedNanos : (learnedFeedNanos + feedNanos) / 2;
+                return;
+            } else if (moveFeedStatusResponse.error == ErrorTypes.COULD_NOT_REACH) {
+                throw new FeedFailureException("Feeder could not reach its destination.");
+            }
+            inProgressNanos = pollNanos;
         }
 
-        throw new FeedFailureException("Failed to feed for an unknown reason. Is the feeder inserted?");
+        throw new FeedFailureException("Feeder timed out when we requested a feed status update.");
+    }
+
+    /**
+     * The feed is a command on the Photon bus, it neither moves the head nor uses its actuators.
+     * It is only worth feeding ahead if feeds are pipelined, otherwise feed() blocks the machine
+     * until the feed is complete.
+     */
+    @Override
+    public boolean isFeedHeadIndependent() {
+        return photonProperties != null && photonProperties.isFeedPipelining();
     }
 
     @Override
@@ -402,31 +487,48 @@ public class PhotonFeeder extends ReferenceFeeder {
             // Find any other photon feeders and if they have this slot address, set their address to null
             PhotonFeeder otherFeeder = findBySlotAddress(slotAddress);
             if (otherFeeder != null) {
-                otherFeeder.slotAddress = null;
-                otherFeeder.initialized = false;
+                otherFeeder.forgetSlotAddress();
             }
         }
 
         this.slotAddress = slotAddress;
+        PhotonFeederIndex.get().update(this, hardwareId, oldValue);
 
         firePropertyChange("slotAddress", oldValue, slotAddress);
         firePropertyChange("slot", oldSlot, getSlot());
         firePropertyChange("name", oldName, getName());
     }
 
+    /**
+     * The feeder is no longer known to be in its slot, it is searched for and initialized again on
+     * the next use.
+     */
+    private void forgetSlotAddress() {
+        Integer oldValue = slotAddress;
+        String oldName = getName();
+        slotAddress = null;
+        initialized = false;
+        PhotonFeederIndex.get().update(this, hardwareId, oldValue);
+        // The name shows the slot.
+        firePropertyChange("name", oldName, getName());
+    }
+
     public String getHardwareId() {
         return hardwareId;
     }
 
     public void setHardwareId(String hardwareId) {
         String oldValue = this.hardwareId;
+        String oldName = getName();
         this.hardwareId = hardwareId;
+        PhotonFeederIndex.get().update(this, oldValue, slotAddress);
 
         if (getClass().getSimpleName().equals(name)) {
             name = hardwareId;
         }
 
         firePropertyChange("hardwareId", oldValue, hardwareId);
+        firePropertyChange("name", oldName, getName());
     }
 
     @Override
@@ -451,41 +553,19 @@ public class PhotonFeeder extends ReferenceFeeder {
         return partPitch;
     }
 
+    /**
+     * @param hardwareId the hardware id, or null to find a feeder without one.
+     * @return the machine's feeder with the hardware id, or null if there is none.
+     */
     public static PhotonFeeder findByHardwareId(String hardwareId) {
-        for (Feeder feeder : Configuration.get().getMachine().getFeeders()) {
-            if (!(feeder instanceof PhotonFeeder)) {
-                continue;
-            }
-
-            PhotonFeeder photonFeeder = (PhotonFeeder) feeder;
-
-            // Are we explicitly asking for feeders with null hardware ID?
-            if (photonFeeder.hardwareId == null && hardwareId == null) {
-                return photonFeeder;
-            }
-
-            if (photonFeeder.hardwareId != null && photonFeeder.hardwareId.equals(hardwareId)) {
-                return photonFeeder;
-            }
-        }
-
-        return null;
+        return PhotonFeederIndex.get().findByHardwareId(hardwareId);
     }
 
+    /**
+     * @return the machine's feeder in the slot, or null if there is none.
+     */
     public static PhotonFeeder findBySlotAddress(int slotAddress) {
-        for (Feeder feeder : Configuration.get().getMachine().getFeeders()) {
-            if (!(feeder instanceof PhotonFeeder)) {
-                continue;
-            }
-
-            PhotonFeeder photonFeeder = (PhotonFeeder) feeder;
-
-            if (photonFeeder.slotAddress != null && photonFeeder.slotAddress.equals(slotAddress)) {
-                return photonFeeder;
-            }
-        }
-
-        return null;
+        return PhotonFeederIndex.get().findBySlotAddress(slotAddress);
     }
 
     public enum FeederSearchState {
@@ -500,7 +580,6 @@ public class PhotonFeeder extends ReferenceFeeder {
     }
 
     public static void findAllFeeders(FeederSearchProgressConsumer progressUpdate) throws Exception {
-        Logger.info("Searching for Photon Feeders");
         Machine machine = Configuration.get().getMachine();
         PhotonProperties photonProperties = new PhotonProperties(machine);
         int maxFeederAddress = photonProperties.getMaxFeederAddress();
@@ -508,46 +587,135 @@ public class PhotonFeeder extends ReferenceFeeder {
 
         List<PhotonFeeder> feedersToAdd = new ArrayList<>();
 
+        if (photonProperties.isBroadcastDiscovery()) {
+            findAllFeedersByBroadcast(maxFeederAddress, progressUpdate, feedersToAdd);
+        } else {
+            Logger.info("Searching for Photon Feeders");
+            for (int address = 1; address <= maxFeederAddress; address++) {
+                probeFeederAddress(address, progressUpdate, feedersToAdd);
+            }
+        }
+
+        for (PhotonFeeder feeder : feedersToAdd) {
+            Configuration.get().getMachine().addFeeder(feeder);
+        }
+    }
+
+    /**
+     * Only the addresses of the known feeders are probed one by one, these feeders are initialized
+     * and do not respond to the broadcast. Any other feeder on the bus is uninitialized, so it
+     * responds to UninitializedFeedersRespond and is initialized so it stops responding. When the
+     * broadcast is no longer answered, all the remaining addresses are known to be empty, they
+     * time out together instead of one by one.<br/>
+     * <br/>
+     * This relies on the uninitialized feeders answering the broadcast one at a time, like when
+     * they are inserted one by one, and on no other host having initialized feeders unknown to this
+     * configuration. Use the full search otherwise.
+     */
+    private static void findAllFeedersByBroadcast(int maxFeederAddress,
+            FeederSearchProgressConsumer progressUpdate, List<PhotonFeeder> feedersToAdd) throws Exception {
+        Logger.info("Searching for Photon Feeders by broadcast");
+        boolean[] probed = new boolean[maxFeederAddress + 1];
+
         for (int address = 1; address <= maxFeederAddress; address++) {
-            Logger.debug("Querying Photon feeder address: " + address);
+            if (findBySlotAddress(address) != null) {
+                probed[address] = probeFeederAddress(address, progressUpdate, feedersToAdd);
+            }
+        }
 
-            if (progressUpdate != null) {
-                progressUpdate.accept(address, FeederSearchState.SEARCHING);
+        Set<String> respondedUuids = new HashSet<>();
+        for (int i = 0; i < maxFeederAddress; i++) {
+            UninitializedFeedersRespond uninitializedFeedersRespond = new UninitializedFeedersRespond();
+            UninitializedFeedersRespond.Response response = uninitializedFeedersRespond.send(photonBus);
+
+            if (response == null || !response.valid || !respondedUuids.add(response.uuid)) {
+                // No more uninitialized feeders, or one we could not initialize keeps responding.
+                break;
             }
 
-            GetFeederId getFeederId = new GetFeederId(address);
-            GetFeederId.Response response = getFeederId.send(photonBus);
+            int address = response.fromAddress;
+            if (address < 1 || address > maxFeederAddress) {
+                Logger.debug("Uninitialized Photon feeder " + response.uuid + " is not in a slot to scan: " + address);
+                continue;
+            }
 
             if (progressUpdate != null) {
-                progressUpdate.accept(address, response == null ? FeederSearchState.MISSING : FeederSearchState.FOUND);
+                progressUpdate.accept(address, FeederSearchState.FOUND);
             }
+            probed[address] = true;
+            PhotonFeeder feeder = feederFound(address, response.uuid, feedersToAdd);
 
-            if (response == null) {
-                PhotonFeeder otherFeeder = findBySlotAddress(address);
-                if (otherFeeder != null) {
-                    otherFeeder.slotAddress = null;
-                    otherFeeder.initialized = false;
-                }
-            } else {
-                PhotonFeeder otherFeeder = findByHardwareId(response.uuid);
-                if (otherFeeder == null) {
-                    // Try to find an existing feeder without a hardware id before making a new one
-                    otherFeeder = findByHardwareId(null);
-                    if (otherFeeder == null) {
-                        otherFeeder = new PhotonFeeder();
-                        feedersToAdd.add(otherFeeder);
-                    }
+            InitializeFeeder initializeFeeder = new InitializeFeeder(address, response.uuid);
+            InitializeFeeder.Response initializeResponse = initializeFeeder.send(photonBus);
+            feeder.initialized = initializeResponse != null && initializeResponse.error == ErrorTypes.NONE;
+        }
+
+        for (int address = 1; address <= maxFeederAddress; address++) {
+            if (!probed[address]) {
+                if (progressUpdate != null) {
+                    progressUpdate.accept(address, FeederSearchState.MISSING);
                 }
+                feederMissing(address);
+            }
+        }
+    }
 
-                otherFeeder.setHardwareId(response.uuid);
-                otherFeeder.setSlotAddress(address);
+    /**
+     * @return true if a feeder responded at the address.
+     */
+    private static boolean probeFeederAddress(int address, FeederSearchProgressConsumer progressUpdate,
+            List<PhotonFeeder> feedersToAdd) throws Exception {
+        Logger.debug("Querying Photon feeder address: " + address);
+
+        if (progressUpdate != null) {
+            progressUpdate.accept(address, FeederSearchState.SEARCHING);
+        }
+
+        GetFeederId getFeederId = new GetFeederId(address);
+        GetFeederId.Response response = getFeederId.send(photonBus);
+
+        if (progressUpdate != null) {
+            progressUpdate.accept(address, response == null ? FeederSearchState.MISSING : FeederSearchState.FOUND);
+        }
+
+        if (response == null) {
+            feederMissing(address);
+            return false;
+        }
+
+        feederFound(address, response.uuid, feedersToAdd);
+        return true;
+    }
 
-                Logger.trace("Found feeder with hardware uuid " + otherFeeder.getHardwareId() + " at address " + otherFeeder.getSlotAddress());
+    private static PhotonFeeder feederFound(int address, String uuid, List<PhotonFeeder> feedersToAdd) {
+        PhotonFeeder otherFeeder = findByHardwareId(uuid);
+        if (otherFeeder == null) {
+            for (PhotonFeeder feeder : feedersToAdd) {
+                if (uuid.equals(feeder.getHardwareId())) {
+                    otherFeeder = feeder;
+                }
+            }
+        }
+        if (otherFeeder == null) {
+            // Try to find an existing feeder without a hardware id before making a new one
+            otherFeeder = findByHardwareId(null);
+            if (otherFeeder == null) {
+                otherFeeder = new PhotonFeeder();
+                feedersToAdd.add(otherFeeder);
             }
         }
 
-        for (PhotonFeeder feeder : feedersToAdd) {
-            Configuration.get().getMachine().addFeeder(feeder);
+        otherFeeder.setHardwareId(uuid);
+        otherFeeder.setSlotAddress(address);
+
+        Logger.trace("Found feeder with hardware uuid " + otherFeeder.getHardwareId() + " at address " + otherFeeder.getSlotAddress());
+        return otherFeeder;
+    }
+
+    private static void feederMissing(int address) {
+        PhotonFeeder otherFeeder = findBySlotAddress(address);
+        if (otherFeeder != null) {
+            otherFeeder.forgetSlotAddress();
         }
     }
 }
@@ -0,0 +1,150 @@
+package org.openpnp.machine.photon;
+
+import org.openpnp.model.AbstractModelObject;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Machine;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The PhotonFeeders of the machine, indexed by hardware id and by slot address. The index follows
+ * the feeders being added to and removed from the machine, the feeders report changes of their
+ * hardware id and slot address. If several feeders share a key, the first one in machine order is
+ * found, like in a search through the machine feeders. Before a machine is loaded the index is
+ * empty.
+ */
+class PhotonFeederIndex implements PropertyChangeListener {
+    private static PhotonFeederIndex index;
+
+    private final Machine machine;
+    // In machine order, with the position of each feeder.
+    private final List<PhotonFeeder> feeders = new ArrayList<>();
+    private final Map<PhotonFeeder, Integer> positions = new HashMap<>();
+    private final Comparator<PhotonFeeder> machineOrder =
+            Comparator.comparing(feeder -> positions.get(feeder));
+    private final Map<String, PhotonFeeder> byHardwareId = new HashMap<>();
+    private final Map<Integer, PhotonFeeder> bySlotAddress = new HashMap<>();
+    private final Set<PhotonFeeder> withoutHardwareId = new TreeSet<>(machineOrder);
+
+    private PhotonFeederIndex(Machine machine) {
+        this.machine = machine;
+        if (machine == null) {
+            return;
+        }
+        rebuild();
+        if (machine instanceof AbstractModelObject) {
+            ((AbstractModelObject) machine).addPropertyChangeListener("feeders", this);
+        }
+    }
+
+    /**
+     * @return the index of the current machine, empty if no machine is loaded yet.
+     */
+    static synchronized PhotonFeederIndex get() {
+        Configuration configuration = Configuration.get();
+        Machine machine = configuration == null ? null : configuration.getMachine();
+        if (index == null || index.machine != machine) {
+            if (index != null && index.machine instanceof AbstractModelObject) {
+                ((AbstractModelObject) index.machine).removePropertyChangeListener("feeders", index);
+            }
+            index = new PhotonFeederIndex(machine);
+        }
+        return index;
+    }
+
+    @Override
+    public synchronized void propertyChange(PropertyChangeEvent evt) {
+        if (evt.getOldValue() instanceof PhotonFeeder || evt.getNewValue() instanceof PhotonFeeder) {
+            // Feeders are rarely added or removed, so the positions are simply taken anew.
+            rebuild();
+        }
+    }
+
+    /**
+     * @param hardwareId the hardware id, or null to find a feeder without one.
+     */
+    synchronized PhotonFeeder findByHardwareId(String hardwareId) {
+        if (hardwareId == null) {
+            return withoutHardwareId.isEmpty() ? null : withoutHardwareId.iterator().next();
+        }
+        return byHardwareId.get(hardwareId);
+    }
+
+    synchronized PhotonFeeder findBySlotAddress(int slotAddress) {
+        return bySlotAddress.get(slotAddress);
+    }
+
+    /**
+     * Updates the index after the hardware id or slot address of the feeder changed. Feeders that
+     * are not on the machine are ignored.
+     */
+    synchronized void update(PhotonFeeder feeder, String oldHardwareId, Integer oldSlotAddress) {
+        if (!positions.containsKey(feeder)) {
+            return;
+        }
+        unindex(feeder, oldHardwareId, oldSlotAddress);
+        index(feeder);
+    }
+
+    private void rebuild() {
+        feeders.clear();
+        positions.clear();
+        byHardwareId.clear();
+        bySlotAddress.clear();
+        withoutHardwareId.clear();
+        for (Feeder feeder : machine.getFeeders()) {
+            if (feeder instanceof PhotonFeeder && !positions.containsKey(feeder)) {
+                positions.put((PhotonFeeder) feeder, feeders.size());
+                feeders.add((PhotonFeeder) feeder);
+            }
+        }
+        for (PhotonFeeder feeder : feeders) {
+            index(feeder);
+        }
+    }
+
+    private void index(PhotonFeeder feeder) {
+        if (feeder.hardwareId == null) {
+            withoutHardwareId.add(feeder);
+        } else {
+            byHardwareId.merge(feeder.hardwareId, feeder, this::first);
+        }
+        if (feeder.slotAddress != null) {
+            bySlotAddress.merge(feeder.slotAddress, feeder, this::first);
+        }
+    }
+
+    private PhotonFeeder first(PhotonFeeder a, PhotonFeeder b) {
+        return machineOrder.compare(a, b) <= 0 ? a : b;
+    }
+
+    private void unindex(PhotonFeeder feeder, String hardwareId, Integer slotAddress) {
+        withoutHardwareId.remove(feeder);
+        if (hardwareId != null && byHardwareId.remove(hardwareId, feeder)) {
+            // Another feeder may have the same hardware id.
+            for (PhotonFeeder other : feeders) {
+                if (other != feeder && hardwareId.equals(other.hardwareId)) {
+                    byHardwareId.put(hardwareId, other);
+                    break;
+                }
+            }
+        }
+        if (slotAddress != null && bySlotAddress.remove(slotAddress, feeder)) {
+            for (PhotonFeeder other : feeders) {
+                if (other != feeder && slotAddress.equals(other.slotAddress)) {
+                    bySlotAddress.put(slotAddress, other);
+                    break;
+                }
+            }
+        }
+    }
+}
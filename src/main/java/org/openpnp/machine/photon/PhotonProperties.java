@@ -6,6 +6,8 @@ public class PhotonProperties {
     static final String FEEDER_COMMUNICATION_MAX_RETRY = "PhotonFeeder.FeederCommunicationMaxRetry";
     static final String FEEDER_SLOTS_PROPERTY = "PhotonFeeder.FeederSlots";
     static final String MAX_FEEDER_ADDRESS = "PhotonFeeder.MaxFeederAddress";
+    static final String FEED_PIPELINING = "PhotonFeeder.FeedPipelining";
+    static final String BROADCAST_DISCOVERY = "PhotonFeeder.BroadcastDiscovery";
 
     final Machine machine;
 
@@ -43,6 +45,45 @@ public class PhotonProperties {
         machine.setProperty(MAX_FEEDER_ADDRESS, maxFeederAddress);
     }
 
+    /**
+     * When feeds are pipelined, feed() only starts the feed and the completion is awaited in
+     * completeFeed(), right before the pick. Feeds to different slots then run concurrently on the bus, and
+     * the feeders fed ahead by the job processor move while the head is still busy.
+     */
+    public boolean isFeedPipelining() {
+        Boolean feedPipelining = (Boolean) machine.getProperty(FEED_PIPELINING);
+
+        if(feedPipelining == null) {
+            feedPipelining = false;
+            setFeedPipelining(feedPipelining);
+        }
+
+        return feedPipelining;
+    }
+
+    public void setFeedPipelining(boolean feedPipelining) {
+        machine.setProperty(FEED_PIPELINING, feedPipelining);
+    }
+
+    /**
+     * When searching for feeders, only probe the slots of the known feeders and find the others
+     * with the UninitializedFeedersRespond broadcast, instead of probing every slot.
+     */
+    public boolean isBroadcastDiscovery() {
+        Boolean broadcastDiscovery = (Boolean) machine.getProperty(BROADCAST_DISCOVERY);
+
+        if(broadcastDiscovery == null) {
+            broadcastDiscovery = false;
+            setBroadcastDiscovery(broadcastDiscovery);
+        }
+
+        return broadcastDiscovery;
+    }
+
+    public void setBroadcastDiscovery(boolean broadcastDiscovery) {
+        machine.setProperty(BROADCAST_DISCOVERY, broadcastDiscovery);
+    }
+
     public synchronized PhotonFeederSlots getFeederSlots() {
         PhotonFeederSlots feederSlots = (PhotonFeederSlots) machine.getProperty(FEEDER_SLOTS_PROPERTY);
 
@@ -306,6 +306,8 @@ public class FeederConfigurationWizard extends AbstractConfigurationWizard {
 		public void actionPerformed(ActionEvent e) {
 			UiUtils.submitUiMachineTask(() -> {
 				feeder.feed(null); // TODO This probably shouldn't be null
+				// A pipelined feed must be completed, like the job processor does before the pick.
+				feeder.completeFeed(null);
 			});
 		}
 	};
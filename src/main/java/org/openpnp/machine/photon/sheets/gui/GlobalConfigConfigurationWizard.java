@@ -27,6 +27,7 @@ public class GlobalConfigConfigurationWizard extends AbstractConfigurationWizard
     private final FeederSearchProgressBar progressBarPanel;
     private final JButton searchButton;
     private final JSpinner maxFeederSpinner;
+    private final JCheckBox broadcastDiscoveryCheckBox;
     private final JButton btnStartFeedSlotsWizard;
     private final JLabel lblNewLabel;
 
@@ -48,6 +49,8 @@ public class GlobalConfigConfigurationWizard extends AbstractConfigurationWizard
                 FormSpecs.DEFAULT_COLSPEC,
                 FormSpecs.RELATED_GAP_COLSPEC,},
                 new RowSpec[]{
+                        FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC,
@@ -68,8 +71,16 @@ public class GlobalConfigConfigurationWizard extends AbstractConfigurationWizard
         searchButton.addActionListener(searchAction);
         searchPanel.add(searchButton, "6, 2");
 
+        JLabel lblBroadcastDiscovery = new JLabel("Broadcast Discovery");
+        lblBroadcastDiscovery.setToolTipText("<html>Only probe the slots of the known feeders, find the new feeders by broadcast.<br/>"
+                + "Faster, but the new feeders must be inserted one at a time.</html>");
+        searchPanel.add(lblBroadcastDiscovery, "2, 4");
+
+        broadcastDiscoveryCheckBox = new JCheckBox("");
+        searchPanel.add(broadcastDiscoveryCheckBox, "4, 4");
+
         progressBarPanel = new FeederSearchProgressBar();
-        searchPanel.add(progressBarPanel, "2, 4, 5, 1, fill, fill");
+        searchPanel.add(progressBarPanel, "2, 6, 5, 1, fill, fill");
         progressBarPanel.setVisible(false);
         progressBarPanel.setNumberOfElements(initialMaxFeederAddress);
 
@@ -111,6 +122,7 @@ public class GlobalConfigConfigurationWizard extends AbstractConfigurationWizard
     @Override
     public void createBindings() {
         bind(UpdateStrategy.READ_WRITE, photonProperties, "maxFeederAddress", maxFeederSpinner, "value");
+        bind(UpdateStrategy.READ_WRITE, photonProperties, "broadcastDiscovery", broadcastDiscoveryCheckBox, "selected");
     }
 
     private final Action searchAction = new AbstractAction() {
@@ -119,6 +131,7 @@ public class GlobalConfigConfigurationWizard extends AbstractConfigurationWizard
             progressBarPanel.setVisible(true);
             searchButton.setEnabled(false);
             maxFeederSpinner.setEnabled(false);
+            broadcastDiscoveryCheckBox.setEnabled(false);
 
             int maxFeederAddress = photonProperties.getMaxFeederAddress();
             progressBarPanel.setNumberOfElements(maxFeederAddress);
@@ -140,6 +153,7 @@ public class GlobalConfigConfigurationWizard extends AbstractConfigurationWizard
             progressBarPanel.clearAllState();
             searchButton.setEnabled(true);
             maxFeederSpinner.setEnabled(true);
+            broadcastDiscoveryCheckBox.setEnabled(true);
         }
     };
 }
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openpnp.model.Part;
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Nozzle;
+
+/**
+ * Collects the cycle time telemetry of a job: the time spent in each phase of the
+ * {@link ReferencePnpJobProcessor}, for the whole job and broken down per nozzle, feeder and part.
+ * The times are recorded into log-linear histograms, that have a constant relative precision and
+ * only cost an array increment per sample.
+ *
+ * The telemetry can be exported as CSV and two exported runs can be compared, either from the job
+ * processor wizard, or offline:
+ *
+ * <pre>
+ * java -cp openpnp-gui.jar org.openpnp.machine.reference.JobTelemetry baseline.csv candidate.csv
+ * </pre>
+ */
+public class JobTelemetry {
+    public enum Phase {
+        Cycle,
+        FiducialCheck,
+        NozzleTipChange,
+        NozzleTipCalibration,
+        Feed,
+        Pick,
+        VacuumCheck,
+        Alignment,
+        Place
+    }
+
+    public enum Dimension {
+        Job,
+        Nozzle,
+        Feeder,
+        Part
+    }
+
+    static final String CSV_HEADER =
+            "phase,dimension,name,count,total_ms,mean_ms,min_ms,p50_ms,p90_ms,p99_ms,max_ms";
+
+    /**
+     * Series by phase, dimension and name.
+     */
+    private final Map<String, Series> series = new LinkedHashMap<>();
+
+    private final long startTime = System.currentTimeMillis();
+
+    /**
+     * Histogram of durations, HDR style: values below 2^SUB_BUCKET_BITS microseconds are counted
+     * exactly, above that each power of two range is split into 2^(SUB_BUCKET_BITS - 1) linear
+     * sub-buckets, i.e. the relative precision is about 3% (half a sub-bucket). The bucket array
+     * only grows as far as the largest value recorded.
+     */
+    public static class Histogram {
+        static final int SUB_BUCKET_BITS = 5;
+        static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+        static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+        private long[] counts = new long[SUB_BUCKET_COUNT];
+        private long count;
+        private long totalNs;
+        private long minNs = Long.MAX_VALUE;
+        private long maxNs;
+
+        static int getBucketIndex(long us) {
+            if (us < SUB_BUCKET_COUNT) {
+                return (int) us;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(us);
+            int shift = exponent - SUB_BUCKET_BITS + 1;
+            return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT
+                    + (int) (us >> shift) - SUB_BUCKET_HALF_COUNT;
+        }
+
+        /**
+         * @return the value in microseconds that represents the bucket, i.e. its midpoint.
+         */
+        static long getBucketValue(int index) {
+            if (index < SUB_BUCKET_COUNT) {
+                return index;
+            }
+            int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+            long lower = (long) ((index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT
+                    + SUB_BUCKET_HALF_COUNT) << shift;
+            return lower + (1L << (shift - 1));
+        }
+
+        public synchronized void record(long ns) {
+            ns = Math.max(0, ns);
+            int index = getBucketIndex(ns / 1000);
+            if (index >= counts.length) {
+                counts = Arrays.copyOf(counts, index + SUB_BUCKET_HALF_COUNT);
+            }
+            counts[index]++;
+            count++;
+            totalNs += ns;
+            minNs = Math.min(minNs, ns);
+            maxNs = Math.max(maxNs, ns);
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getTotalNs() {
+            return totalNs;
+        }
+
+        public synchronized double getMeanNs() {
+            return count == 0 ? 0 : (double) totalNs / count;
+        }
+
+        public synchronized long getMinNs() {
+            return count == 0 ? 0 : minNs;
+        }
+
+        public synchronized long getMaxNs() {
+            return maxNs;
+        }
+
+        /**
+         * @param percentile 0..100
+         * @return the nearest rank percentile, clamped to the exact minimum and maximum.
+         */
+        public synchronized long getPercentileNs(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            if (rank >= count) {
+                return maxNs;
+            }
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= rank) {
+                    long ns = getBucketValue(i) * 1000;
+                    return Math.max(minNs, Math.min(maxNs, ns));
+                }
+            }
+            return maxNs;
+        }
+    }
+
+    public static class Series {
+        private final Phase phase;
+        private final Dimension dimension;
+        private final String name;
+        private final Histogram histogram = new Histogram();
+
+        Series(Phase phase, Dimension dimension, String name) {
+            this.phase = phase;
+            this.dimension = dimension;
+            this.name = name;
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        public Dimension getDimension() {
+            return dimension;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Histogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    /**
+     * Records the duration of a phase, for the job and for each of the given nozzle, feeder and
+     * part that is not null.
+     */
+    public void record(Phase phase, long ns, Nozzle nozzle, Feeder feeder, Part part) {
+        getSeries(phase, Dimension.Job, "").getHistogram().record(ns);
+        if (nozzle != null) {
+            getSeries(phase, Dimension.Nozzle, nozzle.getName()).getHistogram().record(ns);
+        }
+        if (feeder != null) {
+            getSeries(phase, Dimension.Feeder, feeder.getName()).getHistogram().record(ns);
+        }
+        if (part != null) {
+            getSeries(phase, Dimension.Part, part.getId()).getHistogram().record(ns);
+        }
+    }
+
+    public synchronized Series getSeries(Phase phase, Dimension dimension, String name) {
+        String key = phase.name() + "\t" + dimension.name() + "\t" + name;
+        Series s = series.get(key);
+        if (s == null) {
+            s = new Series(phase, dimension, name);
+            series.put(key, s);
+        }
+        return s;
+    }
+
+    /**
+     * @return a snapshot of all the series, ordered by phase, dimension and name.
+     */
+    public synchronized List<Series> getSeries() {
+        List<Series> list = new ArrayList<>(series.values());
+        list.sort(Comparator.comparing(Series::getPhase)
+                .thenComparing(Series::getDimension)
+                .thenComparing(Series::getName));
+        return list;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the telemetry as CSV, one line per series, times in milliseconds.
+     */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder(CSV_HEADER);
+        csv.append('\n');
+        for (Series s : getSeries()) {
+            Histogram h = s.getHistogram();
+            csv.append(s.getPhase().name());
+            csv.append(',');
+            csv.append(s.getDimension().name());
+            csv.append(',');
+            csv.append(quoteCsv(s.getName()));
+            csv.append(String.format(Locale.US, ",%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+                    h.getCount(), h.getTotalNs()/1e6, h.getMeanNs()/1e6, h.getMinNs()/1e6,
+                    h.getPercentileNs(50)/1e6, h.getPercentileNs(90)/1e6,
+                    h.getPercentileNs(99)/1e6, h.getMaxNs()/1e6));
+        }
+        return csv.toString();
+    }
+
+    public void exportCsv(File file) throws IOException {
+        Files.write(file.toPath(), toCsv().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String quoteCsv(String s) {
+        return "\""+s.replace("\"", "\"\"")+"\"";
+    }
+
+    /**
+     * One line of an exported telemetry CSV.
+     */
+    static class Row {
+        String key;
+        long count;
+        double totalMs;
+        double meanMs;
+        double p50Ms;
+        double p90Ms;
+        double p99Ms;
+        double maxMs;
+    }
+
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append(c);
+                    i++;
+                }
+                else if (c == '"') {
+                    quoted = false;
+                }
+                else {
+                    field.append(c);
+                }
+            }
+            else if (c == '"') {
+                quoted = true;
+            }
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    static Map<String, Row> readCsv(File file) throws IOException {
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(CSV_HEADER)) {
+            throw new IOException(file+" is not a job telemetry file.");
+        }
+        Map<String, Row> rows = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            List<String> fields = parseCsvLine(line);
+            Row row = new Row();
+            row.key = fields.get(0)
+                    + (fields.get(2).isEmpty() ? "" : " " + fields.get(1) + " " + fields.get(2));
+            row.count = Long.parseLong(fields.get(3));
+            row.totalMs = Double.parseDouble(fields.get(4));
+            row.meanMs = Double.parseDouble(fields.get(5));
+            row.p50Ms = Double.parseDouble(fields.get(7));
+            row.p90Ms = Double.parseDouble(fields.get(8));
+            row.p99Ms = Double.parseDouble(fields.get(9));
+            row.maxMs = Double.parseDouble(fields.get(10));
+            rows.put(row.key, row);
+        }
+        return rows;
+    }
+
+    /**
+     * Compares two exported runs. For each series the mean, p50, p90 and p99 of the baseline and
+     * the candidate are reported, with the change of the mean. Series only present in one of the
+     * runs are listed with a count of zero in the other.
+     *
+     * @return the report as text.
+     */
+    public static String compare(File baseline, File candidate) throws IOException {
+        Map<String, Row> a = readCsv(baseline);
+        Map<String, Row> b = readCsv(candidate);
+        List<String> keys = new ArrayList<>(a.keySet());
+        for (String key : b.keySet()) {
+            if (!a.containsKey(key)) {
+                keys.add(key);
+            }
+        }
+        Row none = new Row();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Baseline:  %s\nCandidate: %s\n", baseline, candidate));
+        report.append(String.format(Locale.US, "%-40s %13s %21s %21s %21s %21s %8s\n",
+                "Series", "Count", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Mean"));
+        for (String key : keys) {
+            Row ra = a.getOrDefault(key, none);
+            Row rb = b.getOrDefault(key, none);
+            String change = (ra.count == 0 || rb.count == 0) ? ""
+                    : String.format(Locale.US, "%+.1f%%", (rb.meanMs - ra.meanMs) * 100 / ra.meanMs);
+            report.append(String.format(Locale.US,
+                    "%-40s %6d %6d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %8s\n",
+                    key, ra.count, rb.count, ra.meanMs, rb.meanMs, ra.p50Ms, rb.p50Ms,
+                    ra.p90Ms, rb.p90Ms, ra.p99Ms, rb.p99Ms, change));
+        }
+        return report.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: JobTelemetry <baseline.csv> <candidate.csv>");
+            System.exit(1);
+        }
+        System.out.print(compare(new File(args[0]), new File(args[1])));
+    }
+}
@@ -19,14 +19,21 @@
 
 package org.openpnp.machine.reference;
 
+import java.io.File;
 import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.Map;
 
@@ -36,6 +43,7 @@ import org.openpnp.Translations;
 import org.openpnp.gui.JobPanel;
 import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.support.Wizard;
+import org.openpnp.machine.reference.JobTelemetry.Phase;
 import org.openpnp.machine.reference.vision.AbstractPartAlignment;
 import org.openpnp.machine.reference.wizards.ReferencePnpJobProcessorConfigurationWizard;
 import org.openpnp.model.BoardLocation;
@@ -131,6 +139,32 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     @Attribute(required = false)
     boolean preRotateAllNozzles = true;
 
+    /**
+     * This flag - if enabled - performs independent work for the next cycle ahead of time, while
+     * the current cycle is still aligning and placing, see {@link LookAhead}.
+     */
+    @Attribute(required = false)
+    boolean lookAhead = false;
+
+    /**
+     * This flag - if enabled - collects the time spent in each phase of the job, see
+     * {@link JobTelemetry}. The telemetry is exported to the log/telemetry directory at the end
+     * of the job.
+     */
+    @Attribute(required = false)
+    boolean jobTelemetry = false;
+
+    /**
+     * This flag - if enabled - solves large place location problems of the job planning with 
+     * several annealing chains in parallel, see {@link TravellingSalesman#solveParallel()}. Only 
+     * problems with more than {@link #PARALLEL_PLANNING_MIN_PLACEMENTS} placements are affected.
+     * Off by default, because the placement order differs from the sequential solution.
+     */
+    @Attribute(required = false)
+    boolean parallelPlanning = false;
+
+    public static final int PARALLEL_PLANNING_MIN_PLACEMENTS = 500;
+
     @Element(required = false)
     public PnpJobPlanner planner = new SimplePnpJobPlanner();
 
@@ -150,6 +184,31 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     
     long startTime;
     int totalPartsPlaced;
+
+    /**
+     * The look-ahead of the next cycle, if one is running.
+     */
+    private LookAhead pendingLookAhead;
+
+    /**
+     * The part alignments resolved by the look-ahead, for the current cycle.
+     */
+    private Map<Part, PartAlignment> lookAheadPartAlignments = new HashMap<>();
+
+    /**
+     * The feeders that were fed ahead and the part they were fed for, their next feed must be
+     * skipped. Cleared when a job is started or ends.
+     */
+    private Map<Feeder, Part> feedersFedAhead = new HashMap<>();
+
+    private static ExecutorService lookAheadExecutor;
+
+    /**
+     * The telemetry of the current or last job, null if not enabled.
+     */
+    private JobTelemetry telemetry;
+
+    private long cycleStartNs;
     
     public ReferencePnpJobProcessor() {
     }
@@ -159,6 +218,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             throw new Exception("Can't initialize with a null Job.");
         }
         this.job = job;
+        resetLookAhead();
+        telemetry = jobTelemetry ? new JobTelemetry() : null;
         currentStep = new PreFlight();
         this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.STOPPED);
     }
@@ -488,12 +549,16 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     .map(l -> {return l.getPlacementsHolderLocation(); })
                     .collect(Collectors.toList());
             
+            long t = telemetryStart();
             try {
                 locator.locateAllPlacementsHolder(locationsToProcess, null);
             }
             catch (Exception e) {
                 throw new JobProcessorException(locationsToProcess, e);
             }
+            finally {
+                telemetryRecord(Phase.FiducialCheck, t, null, null, null);
+            }
 
             // increment pass to process next layer on next pass and add processed to completed
             level++;
@@ -562,13 +627,28 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     }
 
     protected class Plan implements Step {
+        /**
+         * The model values the sorting reads, see {@link PlanningSnapshot}.
+         */
+        private PlanningSnapshot snapshot;
+
+        /**
+         * The index of the feeder of each placement along the optimized pick path.
+         */
+        private final Map<JobPlacement, Integer> feederIndexes = new HashMap<>();
+
         public Step step() throws JobProcessorException {
             fireTextStatus("Planning placements.");
+            cycleStartNs = telemetryStart();
 
             ReturnJobPlacementsAndNozzleTips jobPlacementsAndNozzleTips;
 
-            // sort/plan all pending job placements
-            jobPlacementsAndNozzleTips = planJobPlacements(getPendingJobPlacements());
+            // sort/plan all pending job placements, unless the look-ahead already did
+            List<JobPlacement> pendingJobPlacements = getPendingJobPlacements();
+            jobPlacementsAndNozzleTips = takeLookAhead(pendingJobPlacements);
+            if (jobPlacementsAndNozzleTips == null) {
+                jobPlacementsAndNozzleTips = planJobPlacements(new PlanningSnapshot(pendingJobPlacements));
+            }
             
             List<JobPlacement> plannedJobPlacements = jobPlacementsAndNozzleTips.getJobPlacements();
 
@@ -576,9 +656,15 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 return new Finish();
             }
 
-            long t = System.currentTimeMillis();
-            List<PlannedPlacement> plannedPlacements = planner.plan(head, plannedJobPlacements, jobPlacementsAndNozzleTips.getNozzleTips());
-            Logger.debug("Planner complete in {}ms: {}", (System.currentTimeMillis() - t), plannedPlacements);
+            List<PlannedPlacement> plannedPlacements = jobPlacementsAndNozzleTips.plannedPlacements;
+            if (plannedPlacements != null) {
+                Logger.debug("Planner completed by the look-ahead: {}", plannedPlacements);
+            }
+            else {
+                long t = System.currentTimeMillis();
+                plannedPlacements = planner.plan(head, plannedJobPlacements, jobPlacementsAndNozzleTips.getNozzleTips());
+                Logger.debug("Planner complete in {}ms: {}", (System.currentTimeMillis() - t), plannedPlacements);
+            }
 
             if (plannedPlacements.isEmpty()) {
                 throw new JobProcessorException(planner, "Planner failed to plan any placements. Please contact support.");
@@ -602,6 +688,10 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         private class ReturnJobPlacementsAndNozzleTips {
             final List<JobPlacement> jobPlacements;
             final List<NozzleTip> nozzleTips;
+            /**
+             * The planned placements of the cycle, if the look-ahead already planned them. 
+             */
+            List<PlannedPlacement> plannedPlacements;
             
             public ReturnJobPlacementsAndNozzleTips(List<JobPlacement> jobPlacements, List<NozzleTip> nozzleTips) {
                 this.jobPlacements = jobPlacements;
@@ -616,7 +706,14 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 return nozzleTips;
             }
         }
-        private ReturnJobPlacementsAndNozzleTips planJobPlacements(List<JobPlacement> jobPlacements) {
+        /**
+         * Sorts the placements according to the job order. Only reads the given snapshot, so it
+         * can run on a worker thread.
+         */
+        private ReturnJobPlacementsAndNozzleTips planJobPlacements(PlanningSnapshot snapshot) {
+            this.snapshot = snapshot;
+            List<JobPlacement> jobPlacements = new ArrayList<>(snapshot.jobPlacements);
+            JobOrderHint jobOrder = snapshot.jobOrder;
             long t = System.currentTimeMillis();
             List<JobPlacement> plannedJobPlacements = null;
             ReturnJobPlacementsAndNozzleTips plannedJobPlacementsAndNozzleTips = null;
@@ -629,7 +726,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     // Get the list of unfinished placements and sort them by part.
                     plannedJobPlacements = jobPlacements.stream()
                             .sorted(Comparator
-                                    .comparing(JobPlacement::getPartId))
+                                    .comparing(snapshot::getPartId))
                             .collect(Collectors.toList());
                     break;
         
@@ -637,8 +734,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     // Get the list of unfinished placements and sort them by part height.
                     plannedJobPlacements = jobPlacements.stream()
                             .sorted(Comparator
-                                    .comparing(JobPlacement::getPartHeight)
-                                    .thenComparing(JobPlacement::getPartId))
+                                    .comparing(snapshot::getPartHeight)
+                                    .thenComparing(snapshot::getPartId))
                             .collect(Collectors.toList());
                     break;
         
@@ -647,25 +744,25 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 case PartBoard:
                     plannedJobPlacements = jobPlacements.stream()
                             .sorted(Comparator
-                                    .comparing(JobPlacement::getPartId)
-                                    .thenComparing(JobPlacement::getBoardId))
+                                    .comparing(snapshot::getPartId)
+                                    .thenComparing(snapshot::getBoardId))
                             .collect(Collectors.toList());
                     break;
                     
                 case HeightPartBoard:
                     plannedJobPlacements = jobPlacements.stream()
                             .sorted(Comparator
-                                    .comparing(JobPlacement::getPartHeight)
-                                    .thenComparing(JobPlacement::getPartId)
-                                    .thenComparing(JobPlacement::getBoardId))
+                                    .comparing(snapshot::getPartHeight)
+                                    .thenComparing(snapshot::getPartId)
+                                    .thenComparing(snapshot::getBoardId))
                             .collect(Collectors.toList());
                     break;
                     
                 case BoardPart:
                     plannedJobPlacements = jobPlacements.stream()
                             .sorted(Comparator
-                                    .comparing(JobPlacement::getBoardId)
-                                    .thenComparing(JobPlacement::getPartId))
+                                    .comparing(snapshot::getBoardId)
+                                    .thenComparing(snapshot::getPartId))
                             .collect(Collectors.toList());
                     break;
                     
@@ -739,9 +836,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             // sort placements by feeder index
             output = input.stream()
                     .sorted(Comparator
-                            .comparing(JobPlacement::getFeederIndex)
-                            .thenComparing(JobPlacement::getPartId)
-                            .thenComparing(JobPlacement::getBoardId))
+                            .comparing(this::getFeederIndex)
+                            .thenComparing(snapshot::getPartId)
+                            .thenComparing(snapshot::getBoardId))
                     .collect(Collectors.toList());
 
             return new ReturnListAndLocation(output, endLocation);
@@ -767,20 +864,19 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             // we can then easily collect a list of all required feeders
             List<JobPlacement> local = jobPlacements.stream()
                     .sorted(Comparator
-                            .comparing(JobPlacement::getPartId))
+                            .comparing(snapshot::getPartId))
                     .collect(Collectors.toList());
 
             // loop over all placements and collect required feeders
             feeders.clear();
+            Map<Feeder, Part> feederParts = new HashMap<>();
             for (JobPlacement p : local) {
                 // get feeder and add it to the list
-                try {
-                    final Feeder feeder = findFeeder(machine, p.getPlacement().getPart());
-                    if (!feeders.contains(feeder)) {
-                        feeders.add(feeder);
-                    }
-                }
-                catch (Exception e) {
+                final Part part = snapshot.getPart(p);
+                final Feeder feeder = snapshot.getFeeder(part);
+                if (feeder != null && !feeders.contains(feeder)) {
+                    feeders.add(feeder);
+                    feederParts.put(feeder, part);
                 }
             }
 
@@ -796,7 +892,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     new TravellingSalesman.Locator<Feeder>() { 
                         @Override
                         public Location getLocation(Feeder locatable) {
-                            return getPickLocation(locatable);
+                            return snapshot.getPickLocation(locatable);
                         }
                     }, 
                     startLocation,
@@ -809,32 +905,23 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             feeders = tsm.getTravel();
             
             // feed feeder locations back into jobPlacements as feederIndex
+            Map<Part, Integer> feederIndexByPart = new HashMap<>();
+            for (int i = 0; i < feeders.size(); ++i) {
+                feederIndexByPart.putIfAbsent(feederParts.get(feeders.get(i)), i);
+            }
             for (JobPlacement p : local) {
                 // find feeder for this placement
-                final Part part = p.getPlacement().getPart();
-                for (int i = 0; i < feeders.size(); ++i) {
-                    if (feeders.get(i).getPart().equals(part)) {
-                        p.setFeederIndex(i);
-                        break;
-                    }
-                        
+                Integer feederIndex = feederIndexByPart.get(snapshot.getPart(p));
+                if (feederIndex != null) {
+                    feederIndexes.put(p, feederIndex);
                 }
             }
             
-            return getPickLocation(feeders.get(feeders.size() -1));
+            return snapshot.getPickLocation(feeders.get(feeders.size() -1));
         }
 
-        private Location getPickLocation(Feeder f) {
-            Location location = null;
-
-            try {
-                location = f.getPickLocation();
-            }
-            catch (Exception e) {
-                location = null;
-            }
-
-            return location;
+        private int getFeederIndex(JobPlacement jobPlacement) {
+            return feederIndexes.getOrDefault(jobPlacement, 0);
         }
         
         /**
@@ -875,9 +962,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             
             while (!input.isEmpty()) {
                 // get all placements with the same (first) feeder index
-                final int feederIndex = input.get(0).getFeederIndex();
+                final int feederIndex = getFeederIndex(input.get(0));
                 List<JobPlacement> tmp = input.stream()
-                        .filter(jobPlacement -> { return jobPlacement.getFeederIndex() == feederIndex; })
+                        .filter(jobPlacement -> { return getFeederIndex(jobPlacement) == feederIndex; })
                         .collect(Collectors.toList());
 
                 // remove all placements now in tmp from input
@@ -889,20 +976,25 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                         new TravellingSalesman.Locator<JobPlacement>() { 
                             @Override
                             public Location getLocation(JobPlacement locatable) {
-                                return locatable.getPlacement().getLocation();
+                                return snapshot.getPlaceLocation(locatable);
                             }
                         }, 
                         startLocation,
                         null);
                 
-                // Solve it using the default heuristics.
-                tsm.solve();
+                // Solve it using the default heuristics, large problems in parallel if enabled.
+                if (snapshot.parallelPlanning && tmp.size() > PARALLEL_PLANNING_MIN_PLACEMENTS) {
+                    tsm.solveParallel();
+                }
+                else {
+                    tsm.solve();
+                }
                 
                 // add the optimized list of jobPlacements to the output list
                 output.addAll(tsm.getTravel());
                 
                 // update startLocation to the end location of the last placement
-                startLocation = output.get(output.size() -1).getPlacement().getLocation();
+                startLocation = snapshot.getPlaceLocation(output.get(output.size() -1));
             }
             
             return output;
@@ -938,22 +1030,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             
             List<JobPlacement> output;
             
-            // get all nozzle tips
-            List<NozzleTip> nozzleTips = new ArrayList<>(head.getMachine().getNozzleTips());
-            List<Nozzle> nozzles = new ArrayList<>(head.getNozzles());
-            
-            // filter nozzleTips by compatibility with any nozzle
-            nozzleTips = nozzleTips
-                    .stream()
-                    .filter(nozzleTip -> {
-                        for (Nozzle nozzle : nozzles) {
-                            if (nozzle.getCompatibleNozzleTips().contains(nozzleTip)) {
-                                return true;
-                            }
-                        }
-                        return false;
-                    })
-                    .collect(Collectors.toList());
+            // get all nozzle tips, filtered by compatibility with any nozzle
+            List<NozzleTip> nozzleTips = snapshot.nozzleTips;
             
             // this list contains one entry per NozzleTip. Each entry contains in addition a list
             // of all jobPlacments that are compatible with that nozzleTip.
@@ -966,10 +1044,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 
                 // add all job placements that are compatible with that nozzle tip
                 jobPlacementNozzleTip.addAll(input.stream().filter(jobPlacement -> {
-                    Placement placement = jobPlacement.getPlacement();
-                    Part part = placement.getPart();
-                    org.openpnp.model.Package pkg = part.getPackage();
-                    return pkg.getCompatibleNozzleTips().contains(nozzleTip);
+                    return snapshot.getCompatibleNozzleTips(snapshot.getPart(jobPlacement)).contains(nozzleTip);
                 } ).collect(Collectors.toList()));
 
                 if (!jobPlacementNozzleTip.isEmpty()) {
@@ -984,7 +1059,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             // with the same jobPlacments this always results in groups of identical amounts of
             // jobPlacments. Taking the name into account makes the sorting unique again.
             perNozzleTipJobPlacements.sort(Comparator.comparing(JobPlacementNozzleTip::size).reversed()
-                    .thenComparing(j -> j.getNozzleTip().getName()));
+                    .thenComparing(j -> snapshot.getNozzleTipName(j.getNozzleTip())));
             
             // build a list of just all nozzleTips after sorting. This list is to be used by the
             // JobPlanner to select the next nozzleTip to use.
@@ -1032,7 +1107,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 Logger.trace("perNozzlePlacementOptions {}",perNozzlePlacementOptions);
                 perNozzleTipJobPlacements.sort(Comparator.comparing( (JobPlacementNozzleTip j) -> perNozzlePlacementOptions.getOrDefault(j.getNozzleTip(),0))
                                                         .thenComparing(Comparator.comparing(JobPlacementNozzleTip::size).reversed())
-                                                        .thenComparing(j -> j.getNozzleTip().getName()));
+                                                        .thenComparing(j -> snapshot.getNozzleTipName(j.getNozzleTip())));
             }
 
             // optimize each nozzle tip group using PickPlaceLocation
@@ -1051,7 +1126,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 output.addAll(data.getJobPlacements());
 
                 // build a debug message to report about the selected nozzle tips and the amount of components each takes
-                traceMessage += " " + jobPlacementNozzleTip.getNozzleTip().getName() + " (" + data.getJobPlacements().size() + ")";
+                traceMessage += " " + snapshot.getNozzleTipName(jobPlacementNozzleTip.getNozzleTip()) + " (" + data.getJobPlacements().size() + ")";
             }
             
             Logger.trace(traceMessage);
@@ -1083,6 +1158,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             fireTextStatus("Change nozzle tip on nozzle %s to %s.", 
                     nozzle.getName(), 
                     nozzleTip.getName());
+            long t = telemetryStart();
             try {
                 nozzle.loadNozzleTip(nozzleTip, allowImmediateNozzleTipCalibration);
             }
@@ -1094,6 +1170,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     throw new JobProcessorException(nozzleTip, e);
                 }
             }
+            finally {
+                telemetryRecord(Phase.NozzleTipChange, t, nozzle, null, null);
+            }
             
             return this;
         }
@@ -1131,12 +1210,16 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             }
             
             fireTextStatus("Calibrate nozzle tip %s on nozzle %s", nozzleTip.getName(), nozzle.getName());
+            long t = telemetryStart();
             try {
                 nozzle.calibrate();
             }
             catch (Exception e) {
                 throw new JobProcessorException(nozzleTip, e);
             }
+            finally {
+                telemetryRecord(Phase.NozzleTipCalibration, t, nozzle, null, null);
+            }
             
             return this;
         }
@@ -1169,6 +1252,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
         public Step step() throws JobProcessorException {
             
+            // Start the feeds that do not need the head first, so they advance meanwhile.
+            feedCycleAhead(plannedPlacements);
+
             // In order for the pick-prerotation to return the correct rotation, the 
             // nozzle rotation mode has to be applied. If not, the pickLocation may
             // return the wrong angle.
@@ -1218,6 +1304,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         @Override
         public Step stepImpl(PlannedPlacement plannedPlacement) throws JobProcessorException {
             if (plannedPlacement == null) {
+                startLookAhead();
                 return new OptimizeNozzlesForAlign(plannedPlacements);
             }
             
@@ -1265,6 +1352,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                  * feed method. It will either succeed or throw after the retries. We catch the
                  * Exception so that we can continue the loop.
                  */
+                long t = telemetryStart();
                 try {
                     feed(feeder, nozzle);
                 }
@@ -1272,6 +1360,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     lastException = jpe;
                     continue;
                 }
+                finally {
+                    telemetryRecord(Phase.Feed, t, nozzle, feeder, part);
+                }
 
                 /**
                  * Currently this will throw and abort the placement if it fails. Probably it should
@@ -1305,6 +1396,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
         
         private void feed(Feeder feeder, Nozzle nozzle) throws JobProcessorException {
+            boolean fedAhead = takeFeedAhead(feeder);
             Exception lastException = null;
 
             Map<String, Object> globals = new HashMap<>();
@@ -1314,10 +1406,18 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
             for (int i = 0; i < 1 + feeder.getFeedRetryCount(); i++) {
                 try {
-                    fireTextStatus("Feed %s on %s.", feeder.getName(), feeder.getPart().getId());
-                    
-                    Configuration.get().getScripting().on("Feeder.BeforeFeed", globals);
-                    feeder.feed(nozzle);
+                    if (fedAhead) {
+                        // Only complete it, a failed feed ahead is retried like any other feed.
+                        fedAhead = false;
+                        Logger.debug("Feeder {} was already fed ahead.", feeder.getName());
+                    }
+                    else {
+                        fireTextStatus("Feed %s on %s.", feeder.getName(), feeder.getPart().getId());
+
+                        Configuration.get().getScripting().on("Feeder.BeforeFeed", globals);
+                        feeder.feed(nozzle);
+                    }
+                    feeder.completeFeed(nozzle);
                     Configuration.get().getScripting().on("Feeder.AfterFeed", globals);
                     return;
                 }
@@ -1333,6 +1433,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             if (!nozzle.isPartOffEnabled(Nozzle.PartOffStep.BeforePick)) {
                 return;
             }
+            long t = telemetryStart();
             try {
                 // Part-off check can only be done at safe Z. An explicit move to safe Z is needed, because some feeder classes 
                 // may move the nozzle to (near) the pick location i.e. down in Z in feed().
@@ -1347,6 +1448,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             catch (Exception e) {
                 throw new JobProcessorException(nozzle, part, e);
             }
+            finally {
+                telemetryRecord(Phase.VacuumCheck, t, nozzle, null, part);
+            }
         }
         
         private void feederPickRetry(Nozzle nozzle, Feeder feeder, JobPlacement jobPlacement, Part part) throws JobProcessorException {
@@ -1366,6 +1470,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
         
         private void pick(Nozzle nozzle, Feeder feeder, JobPlacement jobPlacement, Part part) throws JobProcessorException {
+            long t = telemetryStart();
             try {
                 fireTextStatus("Pick %s from %s for %s using nozzle %s.", part.getId(), feeder.getName(),
                         jobPlacement.getPlacement().getId(), nozzle.getName());
@@ -1386,6 +1491,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             catch (Exception e) {
                 throw new JobProcessorException(nozzle, e);
             }
+            finally {
+                telemetryRecord(Phase.Pick, t, nozzle, feeder, part);
+            }
         }
         
         private void postPick(Feeder feeder, Nozzle nozzle) throws JobProcessorException {
@@ -1401,6 +1509,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             if (!nozzle.isPartOnEnabled(Nozzle.PartOnStep.AfterPick)) {
                 return;
             }
+            long t = telemetryStart();
             try {
                 if(!nozzle.isPartOn()) {
                     throw new JobProcessorException(nozzle, "No part vacuum-detected after pick.");
@@ -1412,6 +1521,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             catch (Exception e) {
                 throw new JobProcessorException(nozzle, e);
             }
+            finally {
+                telemetryRecord(Phase.VacuumCheck, t, nozzle, null, nozzle.getPart());
+            }
         }
     }
 
@@ -1460,6 +1572,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         @Override
         public Step stepImpl(PlannedPlacement plannedPlacement) throws JobProcessorException {
             if (plannedPlacement == null) {
+                feedAhead();
                 return new OptimizeNozzlesForPlace(plannedPlacements);
             }
             
@@ -1468,7 +1581,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             final Placement placement = jobPlacement.getPlacement();
             final Part part = placement.getPart();
 
-            final PartAlignment partAlignment = AbstractPartAlignment.getPartAlignment(part);
+            final PartAlignment partAlignment = lookAheadPartAlignments.containsKey(part) ?
+                    lookAheadPartAlignments.get(part) : AbstractPartAlignment.getPartAlignment(part);
             
             if (partAlignment == null) {
                 plannedPlacement.alignmentOffsets = null;
@@ -1476,7 +1590,13 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 return this;
             }
 
-            align(plannedPlacement, partAlignment);
+            long t = telemetryStart();
+            try {
+                align(plannedPlacement, partAlignment);
+            }
+            finally {
+                telemetryRecord(Phase.Alignment, t, nozzle, null, part);
+            }
             
             checkPartOn(nozzle);
 
@@ -1513,6 +1633,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             if (!nozzle.isPartOnEnabled(Nozzle.PartOnStep.Align)) {
                 return;
             }
+            long t = telemetryStart();
             try {
                 if(!nozzle.isPartOn()) {
                     throw new JobProcessorException(nozzle, "No part vacuum-detected after alignment. Part may have been lost in transit.");
@@ -1524,6 +1645,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             catch (Exception e) {
                 throw new JobProcessorException(nozzle, e);
             }
+            finally {
+                telemetryRecord(Phase.VacuumCheck, t, nozzle, null, nozzle.getPart());
+            }
         }
     }
 
@@ -1618,6 +1742,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         private void place(Nozzle nozzle, Part part, Placement placement, Location placementLocation) throws JobProcessorException {
             fireTextStatus("Placing %s for %s using nozzle %s.", part.getId(), placement.getId(), nozzle.getName());
             
+            long t = telemetryStart();
             try {
                 // Move to the placement location
                nozzle.moveToPlacementLocation(placementLocation, part);
@@ -1631,6 +1756,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             catch (Exception e) {
                 throw new JobProcessorException(nozzle, e);
             }
+            finally {
+                telemetryRecord(Phase.Place, t, nozzle, null, part);
+            }
         }
         
         private void checkPartOn(Nozzle nozzle, Part part) throws JobProcessorException {
@@ -1642,6 +1770,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             }
 
             if (nozzle.isPartOnEnabled(Nozzle.PartOnStep.BeforePlace)) {
+                long t = telemetryStart();
                 try {
                     if (!nozzle.isPartOn()) {
                         throw new JobProcessorException(nozzle, "No part vacuum-detected on nozzle before place.");
@@ -1653,11 +1782,15 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 catch (Exception e) {
                     throw new JobProcessorException(nozzle, e);
                 }
+                finally {
+                    telemetryRecord(Phase.VacuumCheck, t, nozzle, null, part);
+                }
             }
         }
         
         private void checkPartOff(Nozzle nozzle, Part part) throws JobProcessorException {
             if (nozzle.isPartOffEnabled(Nozzle.PartOffStep.AfterPlace)) {
+                long t = telemetryStart();
                 try {
                     // Note, we 're already at safe Z, see place().
                     if (!nozzle.isPartOff()) {
@@ -1670,6 +1803,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 catch (Exception e) {
                     throw new JobProcessorException(nozzle, e);
                 }
+                finally {
+                    telemetryRecord(Phase.VacuumCheck, t, nozzle, null, part);
+                }
             }
         }
         
@@ -1740,6 +1876,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     protected class FinishCycle implements Step {
         public Step step() throws JobProcessorException {
             discardAll(head);
+            telemetryRecord(Phase.Cycle, cycleStartNs, null, null, null);
             return new Plan();
         }
     }
@@ -1747,6 +1884,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     protected class Cleanup implements Step {
         public Step step() throws JobProcessorException {
             fireTextStatus("Cleaning up.");
+            resetLookAhead();
             
             try {
                 // Safe Z the machine
@@ -1777,6 +1915,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     protected class Finish implements Step {
         public Step step() throws JobProcessorException {
             new Cleanup().step();
+            exportTelemetry();
           
             double dtSec = (System.currentTimeMillis() - startTime) / 1000.0;
             DecimalFormat df = new DecimalFormat("###,###.0");
@@ -1830,6 +1969,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     protected class Abort implements Step {
         public Step step() throws JobProcessorException {
             new Cleanup().step();
+            exportTelemetry();
             
             fireTextStatus("Aborted.");
             
@@ -1837,6 +1977,435 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
     }
      
+    /**
+     * What an operation performed for the next cycle depends on. Only operations that do not depend
+     * on the head can be performed ahead, while the current cycle is still using the head.
+     */
+    public enum LookAheadDependency {
+        /**
+         * Pure computation, performed on a worker thread, concurrently to the machine.
+         */
+        Compute,
+        /**
+         * Needs the machine thread but not the head, e.g. actuating a machine mounted feeder
+         * actuator. Performed on the machine thread, after the current cycle is aligned.
+         */
+        Machine,
+        /**
+         * Needs the head. Never performed ahead.
+         */
+        Head
+    }
+
+    public static LookAheadDependency getFeedDependency(Feeder feeder) {
+        return feeder.isFeedHeadIndependent() ? LookAheadDependency.Machine : LookAheadDependency.Head;
+    }
+
+    /**
+     * The model values the placement sorting of the {@link Plan} step reads, taken on the machine
+     * thread. The look-ahead sorts on a worker thread while the machine thread feeds, picks and
+     * changes the feeders, so the sorting must not read the model directly.
+     */
+    protected class PlanningSnapshot {
+        final List<JobPlacement> jobPlacements;
+        final JobOrderHint jobOrder;
+        final boolean parallelPlanning;
+        /**
+         * The nozzle tips that are compatible with any nozzle, in machine order.
+         */
+        final List<NozzleTip> nozzleTips = new ArrayList<>();
+        private final Map<JobPlacement, PlacementValues> placementValues = new HashMap<>();
+        private final Map<Part, Feeder> feeders = new HashMap<>();
+        private final Map<Feeder, Location> pickLocations = new HashMap<>();
+        private final Map<Part, Set<NozzleTip>> compatibleNozzleTips = new HashMap<>();
+        private final Map<NozzleTip, String> nozzleTipNames = new HashMap<>();
+
+        PlanningSnapshot(List<JobPlacement> jobPlacements) {
+            this.jobPlacements = new ArrayList<>(jobPlacements);
+            this.jobOrder = ReferencePnpJobProcessor.this.jobOrder;
+            this.parallelPlanning = ReferencePnpJobProcessor.this.parallelPlanning;
+            boolean nozzleTipOrder = (jobOrder == JobOrderHint.NozzleTips 
+                    || jobOrder == JobOrderHint.NozzleTipsByFlexibility);
+            boolean pickLocationOrder = nozzleTipOrder 
+                    || jobOrder == JobOrderHint.PickLocation 
+                    || jobOrder == JobOrderHint.PickPlaceLocation;
+            for (JobPlacement jobPlacement : jobPlacements) {
+                Placement placement = jobPlacement.getPlacement();
+                Part part = placement.getPart();
+                placementValues.put(jobPlacement, new PlacementValues(part, jobPlacement.getPartId(), 
+                        jobPlacement.getPartHeight(), jobPlacement.getBoardId(), placement.getLocation()));
+                if (part == null) {
+                    continue;
+                }
+                if (pickLocationOrder && !feeders.containsKey(part)) {
+                    Feeder feeder = findFeederWithoutException(part);
+                    feeders.put(part, feeder);
+                    if (feeder != null && !pickLocations.containsKey(feeder)) {
+                        pickLocations.put(feeder, getPickLocationWithoutException(feeder));
+                    }
+                }
+                if (nozzleTipOrder && !compatibleNozzleTips.containsKey(part)) {
+                    compatibleNozzleTips.put(part, 
+                            new HashSet<>(part.getPackage().getCompatibleNozzleTips()));
+                }
+            }
+            if (nozzleTipOrder) {
+                for (NozzleTip nozzleTip : head.getMachine().getNozzleTips()) {
+                    for (Nozzle nozzle : head.getNozzles()) {
+                        if (nozzle.getCompatibleNozzleTips().contains(nozzleTip)) {
+                            nozzleTips.add(nozzleTip);
+                            nozzleTipNames.put(nozzleTip, nozzleTip.getName());
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        Part getPart(JobPlacement jobPlacement) {
+            return placementValues.get(jobPlacement).part;
+        }
+
+        String getPartId(JobPlacement jobPlacement) {
+            return placementValues.get(jobPlacement).partId;
+        }
+
+        double getPartHeight(JobPlacement jobPlacement) {
+            return placementValues.get(jobPlacement).partHeight;
+        }
+
+        String getBoardId(JobPlacement jobPlacement) {
+            return placementValues.get(jobPlacement).boardId;
+        }
+
+        Location getPlaceLocation(JobPlacement jobPlacement) {
+            return placementValues.get(jobPlacement).placeLocation;
+        }
+
+        /**
+         * @return the feeder to pick the part from, or null if there is none.
+         */
+        Feeder getFeeder(Part part) {
+            return feeders.get(part);
+        }
+
+        /**
+         * @return the pick location of the feeder, or null if it has none.
+         */
+        Location getPickLocation(Feeder feeder) {
+            return pickLocations.get(feeder);
+        }
+
+        Set<NozzleTip> getCompatibleNozzleTips(Part part) {
+            Set<NozzleTip> nozzleTips = compatibleNozzleTips.get(part);
+            return nozzleTips != null ? nozzleTips : Collections.emptySet();
+        }
+
+        String getNozzleTipName(NozzleTip nozzleTip) {
+            return nozzleTipNames.get(nozzleTip);
+        }
+    }
+
+    private static class PlacementValues {
+        final Part part;
+        final String partId;
+        final double partHeight;
+        final String boardId;
+        final Location placeLocation;
+
+        PlacementValues(Part part, String partId, double partHeight, String boardId, 
+                Location placeLocation) {
+            this.part = part;
+            this.partId = partId;
+            this.partHeight = partHeight;
+            this.boardId = boardId;
+            this.placeLocation = placeLocation;
+        }
+    }
+
+    /**
+     * Work for the next cycle that is performed ahead, while the current cycle is still aligning
+     * and placing:
+     * 
+     * Once all the parts of the current cycle are picked, the pending placements are sorted on a
+     * worker thread ({@link LookAheadDependency#Compute}). The worker only reads a
+     * {@link PlanningSnapshot} taken on the machine thread, never the feeders, parts or placements.
+     * 
+     * Once all the parts of the current cycle are aligned, the nozzles of the next cycle are planned
+     * and its feeders are fed with the nozzle that will pick, if they are head independent 
+     * ({@link LookAheadDependency#Machine}), so they can mechanically advance while the parts are 
+     * placed.
+     * 
+     * The next {@link Plan} step takes over the sorted and planned placements, if the pending 
+     * placements are still the same, otherwise the look-ahead is discarded. Feeders fed ahead skip 
+     * their next feed within the job run, also if the look-ahead is discarded. Feeds ahead expire 
+     * when the feeder is disabled or gets another part, and when the job is started or ends.
+     */
+    protected class LookAhead {
+        final List<JobPlacement> pendingJobPlacements;
+        final Map<Part, PartAlignment> partAlignments = new HashMap<>();
+        final Future<Plan.ReturnJobPlacementsAndNozzleTips> planning;
+        volatile long computeTimeNs;
+        long waitTimeNs;
+        int feedersFedAhead;
+
+        LookAhead(List<JobPlacement> pendingJobPlacements) {
+            this.pendingJobPlacements = pendingJobPlacements;
+            // Everything the worker needs is read here, on the machine thread.
+            PlanningSnapshot snapshot = new PlanningSnapshot(pendingJobPlacements);
+            for (JobPlacement jobPlacement : pendingJobPlacements) {
+                Part part = jobPlacement.getPlacement().getPart();
+                if (!partAlignments.containsKey(part)) {
+                    partAlignments.put(part, AbstractPartAlignment.getPartAlignment(part));
+                }
+            }
+            this.planning = getLookAheadExecutor().submit(() -> {
+                long t = System.nanoTime();
+                Plan.ReturnJobPlacementsAndNozzleTips result = new Plan().planJobPlacements(snapshot);
+                computeTimeNs = System.nanoTime() - t;
+                return result;
+            });
+        }
+
+        /**
+         * @return the sorted placements or null if the look-ahead failed.
+         */
+        Plan.ReturnJobPlacementsAndNozzleTips getPlanning() {
+            long t = System.nanoTime();
+            try {
+                return planning.get();
+            }
+            catch (Exception e) {
+                Logger.warn(e, "Look-ahead planning failed.");
+                return null;
+            }
+            finally {
+                waitTimeNs += System.nanoTime() - t;
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getLookAheadExecutor() {
+        if (lookAheadExecutor == null) {
+            lookAheadExecutor = Executors.newSingleThreadExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "ReferencePnpJobProcessor look-ahead");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return lookAheadExecutor;
+    }
+
+    private void startLookAhead() {
+        if (!lookAhead) {
+            return;
+        }
+        List<JobPlacement> pendingJobPlacements = getPendingJobPlacements();
+        if (pendingJobPlacements.isEmpty()) {
+            return;
+        }
+        pendingLookAhead = new LookAhead(pendingJobPlacements);
+    }
+
+    /**
+     * Feed the head independent feeders of the first placements of the next cycle.
+     * 
+     * @throws JobProcessorException
+     */
+    private void feedAhead() throws JobProcessorException {
+        LookAhead lookAhead = pendingLookAhead;
+        if (lookAhead == null) {
+            return;
+        }
+        Plan.ReturnJobPlacementsAndNozzleTips planning = lookAhead.getPlanning();
+        if (planning == null || planning.getJobPlacements() == null) {
+            return;
+        }
+        if (planning.plannedPlacements == null) {
+            // Plan the nozzles of the next cycle now, so each feeder is fed with the nozzle that 
+            // will pick from it. The Plan step takes the planned placements over. The lists are 
+            // copied, as the planner removes what it planned. 
+            try {
+                planning.plannedPlacements = planner.plan(head, 
+                        new ArrayList<>(planning.getJobPlacements()),
+                        planning.getNozzleTips() == null ? null : new ArrayList<>(planning.getNozzleTips()));
+            }
+            catch (Exception e) {
+                Logger.warn(e, "Look-ahead nozzle planning failed.");
+                return;
+            }
+        }
+        for (PlannedPlacement plannedPlacement : planning.plannedPlacements) {
+            Part part = plannedPlacement.jobPlacement.getPlacement().getPart();
+            if (feedAhead(findFeederWithoutException(part), plannedPlacement.nozzle)) {
+                lookAhead.feedersFedAhead++;
+            }
+        }
+    }
+
+    /**
+     * Feed the head independent feeders of the cycle, before the first pick, so the feeds
+     * advance while the nozzles move to the feeders and pick. This does not depend on the
+     * look-ahead.
+     * 
+     * @param plannedPlacements
+     */
+    private void feedCycleAhead(List<PlannedPlacement> plannedPlacements) {
+        for (PlannedPlacement plannedPlacement : plannedPlacements) {
+            Part part = plannedPlacement.jobPlacement.getPlacement().getPart();
+            feedAhead(findFeederWithoutException(part), plannedPlacement.nozzle);
+        }
+    }
+
+    /**
+     * Feed the feeder ahead of its pick, if it is head independent and not already fed ahead. 
+     * The feed is completed and the Feeder.AfterFeed script run in the Pick step. 
+     * 
+     * @param feeder
+     * @param nozzle
+     * @return true if the feeder was fed.
+     */
+    private boolean feedAhead(Feeder feeder, Nozzle nozzle) {
+        if (feeder == null 
+                || feedersFedAhead.containsKey(feeder)
+                || getFeedDependency(feeder) != LookAheadDependency.Machine) {
+            return false;
+        }
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("nozzle", nozzle);
+        globals.put("feeder", feeder);
+        globals.put("part", feeder.getPart());
+        try {
+            fireTextStatus("Feed %s on %s ahead.", feeder.getName(), feeder.getPart().getId());
+            Configuration.get().getScripting().on("Feeder.BeforeFeed", globals);
+            feeder.feed(nozzle);
+            feedersFedAhead.put(feeder, feeder.getPart());
+            return true;
+        }
+        catch (Exception e) {
+            // Leave it to the regular feed, including its retries and error handling.
+            Logger.warn("Feeding {} ahead failed: {}", feeder.getName(), e.getMessage());
+            return false;
+        }
+    }
+
+    private Feeder findFeederWithoutException(Part part) {
+        try {
+            return findFeeder(machine, part);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Location getPickLocationWithoutException(Feeder feeder) {
+        try {
+            return feeder.getPickLocation();
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Take over the look-ahead for the cycle that is being planned.
+     * 
+     * @param pendingJobPlacements
+     * @return the sorted placements, or null if there is no valid look-ahead.
+     */
+    private Plan.ReturnJobPlacementsAndNozzleTips takeLookAhead(List<JobPlacement> pendingJobPlacements) {
+        LookAhead lookAhead = pendingLookAhead;
+        pendingLookAhead = null;
+        lookAheadPartAlignments.clear();
+        if (lookAhead == null) {
+            return null;
+        }
+        if (!lookAhead.pendingJobPlacements.equals(pendingJobPlacements)) {
+            Logger.debug("Look-ahead discarded, the pending placements have changed.");
+            lookAhead.planning.cancel(false);
+            return null;
+        }
+        Plan.ReturnJobPlacementsAndNozzleTips planning = lookAhead.getPlanning();
+        if (planning == null) {
+            return null;
+        }
+        lookAheadPartAlignments.putAll(lookAhead.partAlignments);
+        Logger.debug("Look-ahead cycle: {} ms computed ahead, {} ms waited, {} ms saved, {} feeders fed ahead.",
+                String.format("%.1f", lookAhead.computeTimeNs/1e6), 
+                String.format("%.1f", lookAhead.waitTimeNs/1e6),
+                String.format("%.1f", Math.max(0, lookAhead.computeTimeNs - lookAhead.waitTimeNs)/1e6),
+                lookAhead.feedersFedAhead);
+        return planning;
+    }
+
+    /**
+     * @param feeder
+     * @return true if the feeder was fed ahead and the feed has not expired. 
+     */
+    private boolean takeFeedAhead(Feeder feeder) {
+        Part part = feedersFedAhead.remove(feeder);
+        if (part == null) {
+            return false;
+        }
+        if (isFeedAheadExpired(feeder, part)) {
+            Logger.debug("Feed ahead of {} expired.", feeder.getName());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isFeedAheadExpired(Feeder feeder, Part part) {
+        return !feeder.isEnabled() || feeder.getPart() != part
+                || !machine.getFeeders().contains(feeder);
+    }
+
+    /**
+     * Discards the look-ahead and the feeds ahead, when the job is started or ends, so a job run
+     * never skips a feed it did not request itself.
+     */
+    private void resetLookAhead() {
+        if (pendingLookAhead != null) {
+            pendingLookAhead.planning.cancel(false);
+            pendingLookAhead = null;
+        }
+        lookAheadPartAlignments.clear();
+        if (!feedersFedAhead.isEmpty()) {
+            Logger.debug("Discarding the feeds ahead of {}.", feedersFedAhead.keySet());
+            feedersFedAhead.clear();
+        }
+    }
+
+    private long telemetryStart() {
+        return telemetry == null ? 0 : System.nanoTime();
+    }
+
+    private void telemetryRecord(Phase phase, long startNs, Nozzle nozzle, Feeder feeder, Part part) {
+        if (telemetry != null) {
+            telemetry.record(phase, System.nanoTime() - startNs, nozzle, feeder, part);
+        }
+    }
+
+    /**
+     * Export the telemetry of the job, if enabled, to the log/telemetry directory.
+     */
+    private void exportTelemetry() {
+        if (telemetry == null) {
+            return;
+        }
+        try {
+            File file = new File(Configuration.get().getConfigurationDirectory(), "log");
+            file = new File(file, "telemetry");
+            file.mkdirs();
+            SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH.mm.ss");
+            file = new File(file, String.format("job_%s.csv", df.format(new Date(telemetry.getStartTime()))));
+            telemetry.exportCsv(file);
+            Logger.info("Job telemetry exported to {}", file);
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Job telemetry export failed.");
+        }
+    }
+
     private Location getPlacementLocation(PlannedPlacement plannedPlacement) {
         final JobPlacement jobPlacement = plannedPlacement.jobPlacement;
         final Placement placement = jobPlacement.getPlacement();
@@ -1939,6 +2508,37 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         this.optimizeMultipleNozzles = optimizeMultipleNozzles;
     }
 
+    public boolean isLookAhead() {
+        return lookAhead;
+    }
+
+    public void setLookAhead(boolean lookAhead) {
+        this.lookAhead = lookAhead;
+    }
+
+    public boolean isParallelPlanning() {
+        return parallelPlanning;
+    }
+
+    public void setParallelPlanning(boolean parallelPlanning) {
+        this.parallelPlanning = parallelPlanning;
+    }
+
+    public boolean isJobTelemetry() {
+        return jobTelemetry;
+    }
+
+    public void setJobTelemetry(boolean jobTelemetry) {
+        this.jobTelemetry = jobTelemetry;
+    }
+
+    /**
+     * @return the telemetry of the current or last job, or null if it was not enabled.
+     */
+    public JobTelemetry getTelemetry() {
+        return telemetry;
+    }
+
     public boolean isPreRotateAllNozzles() {
         return preRotateAllNozzles;
     }
@@ -22,9 +22,11 @@ package org.openpnp.machine.reference.camera;
 import java.awt.Color;
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.AbstractAction;
@@ -68,6 +70,7 @@ import org.openpnp.spi.Head;
 import org.openpnp.spi.HeadMountable;
 import org.openpnp.spi.Machine;
 import org.openpnp.util.Collect;
+import org.openpnp.util.MatPool;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.SimpleGraph;
 import org.openpnp.util.VisionUtils;
@@ -144,6 +147,9 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
     @Attribute(required = false)
     protected boolean deinterlace;
 
+    @Attribute(required = false)
+    protected boolean fusedTransforms = false;
+
     @Element(required = false)
     private LensCalibrationParams calibration = new LensCalibrationParams();
 
@@ -186,6 +192,14 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
     private Mat undistortionMap2;
     private Mat lut;
 
+    private Mat fusedTransformMap1;
+    private Mat fusedTransformMap2;
+    private List<Object> fusedTransformKey;
+
+    private final MatPool matPool = new MatPool();
+    private long transformedFrames;
+    private long transformedImageBytes;
+
     private LensCalibration lensCalibration;
 
     private Actuator lightActuator;
@@ -522,6 +536,21 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         this.deinterlace = deinterlace;
     }
 
+    public boolean isFusedTransforms() {
+        return fusedTransforms;
+    }
+
+    /**
+     * @param fusedTransforms If true, the undistort, scale, rotate, offset and flip transforms are composed into 
+     * one remap, so the image is only resampled once.
+     */
+    public void setFusedTransforms(boolean fusedTransforms) {
+        Object oldValue = this.fusedTransforms;
+        this.fusedTransforms = fusedTransforms;
+        firePropertyChange("fusedTransforms", oldValue, fusedTransforms);
+        viewHasChanged();
+    }
+
     public boolean isWhiteBalanced() {
         return redBalance != 1.0 || greenBalance != 1.0 || blueBalance != 1.0
                 || redGamma != 1.0 || greenGamma != 1.0 || blueGamma != 1.0
@@ -576,13 +605,12 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
                 //Skip all the old style image transforms and distortion corrections except for 
                 //deinterlacing, cropping, and white balancing
                 if (isDeinterlaced() || isCropped() || isWhiteBalanced() || advancedCalibration.isEnabled()) {
-                    Mat mat = OpenCvUtils.toMat(image);
+                    Mat mat = matPool.toMat(image);
                     mat = deinterlace(mat);
                     mat = crop(mat);
                     mat = whiteBalance(mat);
                     mat = advancedUndistort(mat);
-                    image = OpenCvUtils.toBufferedImage(mat);
-                    mat.release();
+                    image = toTransformedImage(mat);
                 }
             }
             // Old style of image transforms and distortion correction
@@ -598,7 +626,7 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
                 || isFlipped()
                 || isWhiteBalanced()) {
 
-                Mat mat = OpenCvUtils.toMat(image);
+                Mat mat = matPool.toMat(image);
 
                 mat = deinterlace(mat);
 
@@ -608,19 +636,23 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
 
                 mat = calibrate(mat);
 
-                mat = undistort(mat);
+                if (isFusedTransforms() && !isCalibrating()) {
+                    mat = fusedTransform(mat);
+                }
+                else {
+                    mat = undistort(mat);
 
-                // apply affine transformations
-                mat = scale(mat);
+                    // apply affine transformations
+                    mat = scale(mat);
 
-                mat = rotate(mat);
+                    mat = rotate(mat);
 
-                mat = offset(mat);
+                    mat = offset(mat);
 
-                mat = flip(mat);
+                    mat = flip(mat);
+                }
 
-                image = OpenCvUtils.toBufferedImage(mat);
-                mat.release();
+                image = toTransformedImage(mat);
             }
             if (image != null) {
                 // save the new image dimensions
@@ -635,6 +667,53 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         return image;
     }
 
+    @Override
+    public void close() throws IOException {
+        super.close();
+        matPool.clear();
+    }
+
+    /**
+     * Convert the final Mat of the transforms to the image and return the Mat to the pool. The image itself 
+     * cannot be pooled, as it is handed out to the camera listeners.
+     * 
+     * @param mat
+     * @return
+     */
+    private BufferedImage toTransformedImage(Mat mat) {
+        BufferedImage image = OpenCvUtils.toBufferedImage(mat);
+        matPool.release(mat);
+        transformedFrames++;
+        transformedImageBytes += ((DataBufferByte) image.getRaster().getDataBuffer()).getData().length;
+        return image;
+    }
+
+    /**
+     * @return the pool of the Mats used in the image transforms, with its hit/miss statistics.
+     */
+    public MatPool getMatPool() {
+        return matPool;
+    }
+
+    /**
+     * @return the number of frames that went through the image transforms.
+     */
+    public long getTransformedFrameCount() {
+        return transformedFrames;
+    }
+
+    /**
+     * @return the average number of bytes allocated per transformed frame, i.e. the native memory for newly 
+     * allocated Mats plus the resulting images. 
+     */
+    public double getTransformBytesAllocatedPerFrame() {
+        long frames = transformedFrames;
+        if (frames == 0) {
+            return 0;
+        }
+        return (double) (matPool.getAllocatedBytes() + transformedImageBytes) / frames;
+    }
+
     @Override
     public synchronized Location getUnitsPerPixel(Length viewingPlaneZ) {
         if (advancedCalibration.isOverridingOldTransformsAndDistortionCorrectionSettings() && 
@@ -653,7 +732,7 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         if (!advancedCalibration.isEnabled()) {
             return mat;
         }
-        Mat dst = mat.clone();
+        Mat dst = matPool.acquire(mat.rows(), mat.cols(), mat.type());
         if (undistortionMap1 == null || undistortionMap2 == null) {
             if (undistortionMap1 == null) {
                 undistortionMap1 = new Mat();
@@ -664,7 +743,7 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
             advancedCalibration.initUndistortRectifyMap(undistortionMap1, undistortionMap2);
         }
         Imgproc.remap(mat, dst, undistortionMap1, undistortionMap2, Imgproc.INTER_LINEAR);
-        mat.release();
+        matPool.release(mat);
 
         return dst;
     }
@@ -672,9 +751,9 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
     private Mat whiteBalance(Mat mat) {
         if (isWhiteBalanced() && mat.channels() == 3) {
             initWhiteBalanceLut();
-            Mat whiteBalanced = new Mat();
+            Mat whiteBalanced = matPool.acquire(mat.rows(), mat.cols(), mat.type());
             Core.LUT(mat, lut, whiteBalanced);
-            mat.release();
+            matPool.release(mat);
             mat = whiteBalanced;
         }
         return mat;
@@ -973,8 +1052,11 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
                     cw,
                     ch);
             Mat tmp = new Mat(mat, roi);
-            tmp.copyTo(mat);
+            Mat dst = matPool.acquire(ch, cw, mat.type());
+            tmp.copyTo(dst);
             tmp.release();
+            matPool.release(mat);
+            mat = dst;
         }
         return mat;
     }
@@ -987,12 +1069,12 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         if (!isDeinterlaced()) {
             return mat;
         }
-        Mat dst = new Mat(mat.size(), mat.type());
+        Mat dst = matPool.acquire(mat.rows(), mat.cols(), mat.type());
         for (int i = 0; i < mat.rows() / 2; i++) {
             mat.row(i).copyTo(dst.row(i * 2));
             mat.row(i + mat.rows() / 2).copyTo(dst.row(i * 2 + 1));
         }
-        mat.release();
+        matPool.release(mat);
         return dst;
     }
 
@@ -1020,9 +1102,9 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         mapMatrix.put(0, 2, cx);
         mapMatrix.put(1, 2, cy);
 
-        Mat dst = new Mat(bbox.width, bbox.height, mat.type());
+        Mat dst = matPool.acquire(bbox.height, bbox.width, mat.type());
         Imgproc.warpAffine(mat, dst, mapMatrix, bbox.size(), Imgproc.INTER_LINEAR);
-        mat.release();
+        matPool.release(mat);
 
         mapMatrix.release();
 
@@ -1045,9 +1127,9 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
             }
         };
 
-        Mat dst = mat.clone();
+        Mat dst = matPool.acquire(mat.rows(), mat.cols(), mat.type());
         Imgproc.warpAffine(mat, dst, mapMatrix, mat.size(), Imgproc.INTER_LINEAR);
-        mat.release();
+        matPool.release(mat);
 
         mapMatrix.release();
 
@@ -1062,9 +1144,12 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         if (!isScaled()) {
             return mat;
         }
-        Mat dst = new Mat();
-        Imgproc.resize(mat, dst, new Size(scaleWidth, scaleHeight));
-        mat.release();
+        Size size = new Size(scaleWidth, scaleHeight);
+        Mat dst = (size.width >= 1 && size.height >= 1 ? 
+                matPool.acquire((int) size.height, (int) size.width, mat.type()) 
+                : new Mat());
+        Imgproc.resize(mat, dst, size);
+        matPool.release(mat);
         return dst;
     }
 
@@ -1077,24 +1162,183 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
             return mat;
         }
 
+        initUndistortionMaps(mat.size());
+
+        Mat dst = matPool.acquire(mat.rows(), mat.cols(), mat.type());
+        Imgproc.remap(mat, dst, undistortionMap1, undistortionMap2, Imgproc.INTER_LINEAR);
+        matPool.release(mat);
+
+        return dst;
+    }
+
+    private synchronized void initUndistortionMaps(Size size) {
         if (undistortionMap1 == null || undistortionMap2 == null) {
             undistortionMap1 = new Mat();
             undistortionMap2 = new Mat();
             Mat rectification = Mat.eye(3, 3, CvType.CV_32F);
             Calib3d.initUndistortRectifyMap(calibration.getCameraMatrixMat(),
                     calibration.getDistortionCoefficientsMat(), rectification,
-                    calibration.getCameraMatrixMat(), mat.size(), CvType.CV_32FC1, undistortionMap1,
+                    calibration.getCameraMatrixMat(), size, CvType.CV_32FC1, undistortionMap1,
                     undistortionMap2);
             rectification.release();
         }
+    }
 
-        Mat dst = mat.clone();
-        Imgproc.remap(mat, dst, undistortionMap1, undistortionMap2, Imgproc.INTER_LINEAR);
-        mat.release();
-
+    /**
+     * Applies undistort(), scale(), rotate(), offset() and flip() in one remap. The composed map is cached until 
+     * the frame size or one of the transform settings changes.
+     * 
+     * @param mat
+     * @return
+     */
+    private synchronized Mat fusedTransform(Mat mat) {
+        if (!(isUndistorted() || isScaled() || isRotated() || isOffset() || isFlipped())) {
+            return mat;
+        }
+        List<Object> key = Arrays.asList(mat.cols(), mat.rows(), isUndistorted(), undistortionMap1, 
+                scaleWidth, scaleHeight, rotation, offsetX, offsetY, flipX, flipY);
+        if (fusedTransformMap1 == null || !key.equals(fusedTransformKey)) {
+            initFusedTransformMap(mat.size());
+            // The undistortion maps may just have been created.
+            key.set(3, undistortionMap1);
+            fusedTransformKey = key;
+        }
+        Mat dst = matPool.acquire(fusedTransformMap1.rows(), fusedTransformMap1.cols(), mat.type());
+        Imgproc.remap(mat, dst, fusedTransformMap1, fusedTransformMap2, Imgproc.INTER_LINEAR);
+        matPool.release(mat);
         return dst;
     }
 
+    /**
+     * Composes the fused transform map. For each destination pixel, the transforms are inverted in reverse order, 
+     * i.e. flip, offset, rotate, scale, and finally the undistortion map is interpolated, to get the source pixel.
+     * 
+     * @param size
+     */
+    private void initFusedTransformMap(Size size) {
+        releaseFusedTransformMap();
+        int width = (int) size.width;
+        int height = (int) size.height;
+        float[] undistortionX = null;
+        float[] undistortionY = null;
+        if (isUndistorted()) {
+            initUndistortionMaps(size);
+            undistortionX = new float[width*height];
+            undistortionY = new float[width*height];
+            undistortionMap1.get(0, 0, undistortionX);
+            undistortionMap2.get(0, 0, undistortionY);
+        }
+        // Same sizes and pixel center conventions as in scale() i.e. Imgproc.resize(). 
+        boolean scaled = (isScaled() && scaleWidth > 0 && scaleHeight > 0);
+        int scaledWidth = (scaled ? scaleWidth : width);
+        int scaledHeight = (scaled ? scaleHeight : height);
+        double scaleX = (double) width/scaledWidth;
+        double scaleY = (double) height/scaledHeight;
+        // Same matrix as in rotate(), inverted. 
+        int rotatedWidth = scaledWidth;
+        int rotatedHeight = scaledHeight;
+        double[] inverseRotation = null;
+        if (isRotated()) {
+            Point center = new Point(scaledWidth / 2D, scaledHeight / 2D);
+            Mat mapMatrix = Imgproc.getRotationMatrix2D(center, rotation, 1.0);
+            Rect bbox = new RotatedRect(center, new Size(scaledWidth, scaledHeight), rotation).boundingRect();
+            double[] cx = mapMatrix.get(0, 2);
+            double[] cy = mapMatrix.get(1, 2);
+            cx[0] += bbox.width / 2D - center.x;
+            cy[0] += bbox.height / 2D - center.y;
+            mapMatrix.put(0, 2, cx);
+            mapMatrix.put(1, 2, cy);
+            Mat inverse = new Mat();
+            Imgproc.invertAffineTransform(mapMatrix, inverse);
+            inverseRotation = new double[6];
+            inverse.get(0, 0, inverseRotation);
+            inverse.release();
+            mapMatrix.release();
+            rotatedWidth = bbox.width;
+            rotatedHeight = bbox.height;
+        }
+        // Maps to the (black) border, within the range of the fixed point map.
+        final double outside = -10;
+        float[] mapX = new float[rotatedWidth*rotatedHeight];
+        float[] mapY = new float[rotatedWidth*rotatedHeight];
+        for (int y = 0, i = 0; y < rotatedHeight; y++) {
+            for (int x = 0; x < rotatedWidth; x++, i++) {
+                double u = x;
+                double v = y;
+                // flipX means to flip about the x-axis which is a vertical flip, see flip(). 
+                if (flipY) {
+                    u = rotatedWidth - 1 - u;
+                }
+                if (flipX) {
+                    v = rotatedHeight - 1 - v;
+                }
+                u -= offsetX;
+                v -= offsetY;
+                if (inverseRotation != null) {
+                    double ur = inverseRotation[0]*u + inverseRotation[1]*v + inverseRotation[2];
+                    double vr = inverseRotation[3]*u + inverseRotation[4]*v + inverseRotation[5];
+                    u = ur;
+                    v = vr;
+                }
+                if (scaled) {
+                    if (u > -1 && v > -1 && u < scaledWidth && v < scaledHeight) {
+                        // Imgproc.resize() replicates the border.
+                        u = Math.max(0, Math.min(width - 1, (u + 0.5)*scaleX - 0.5));
+                        v = Math.max(0, Math.min(height - 1, (v + 0.5)*scaleY - 0.5));
+                    }
+                    else {
+                        u = outside;
+                        v = outside;
+                    }
+                }
+                if (undistortionX != null) {
+                    if (u >= 0 && v >= 0 && u <= width - 1 && v <= height - 1) {
+                        // Bilinear interpolation of the undistortion map.
+                        int u0 = Math.min((int) u, width - 2);
+                        int v0 = Math.min((int) v, height - 2);
+                        double fu = u - u0;
+                        double fv = v - v0;
+                        int j = v0*width + u0;
+                        double ux = (undistortionX[j]*(1 - fu) + undistortionX[j + 1]*fu)*(1 - fv)
+                                + (undistortionX[j + width]*(1 - fu) + undistortionX[j + width + 1]*fu)*fv;
+                        double uy = (undistortionY[j]*(1 - fu) + undistortionY[j + 1]*fu)*(1 - fv)
+                                + (undistortionY[j + width]*(1 - fu) + undistortionY[j + width + 1]*fu)*fv;
+                        u = ux;
+                        v = uy;
+                    }
+                    else {
+                        u = outside;
+                        v = outside;
+                    }
+                }
+                mapX[i] = (float) u;
+                mapY[i] = (float) v;
+            }
+        }
+        Mat map1 = new Mat(rotatedHeight, rotatedWidth, CvType.CV_32FC1);
+        Mat map2 = new Mat(rotatedHeight, rotatedWidth, CvType.CV_32FC1);
+        map1.put(0, 0, mapX);
+        map2.put(0, 0, mapY);
+        // The fixed point representation makes remap() faster.
+        fusedTransformMap1 = new Mat();
+        fusedTransformMap2 = new Mat();
+        Imgproc.convertMaps(map1, map2, fusedTransformMap1, fusedTransformMap2, CvType.CV_16SC2);
+        map1.release();
+        map2.release();
+    }
+
+    private void releaseFusedTransformMap() {
+        if (fusedTransformMap1 != null) {
+            fusedTransformMap1.release();
+            fusedTransformMap1 = null;
+        }
+        if (fusedTransformMap2 != null) {
+            fusedTransformMap2.release();
+            fusedTransformMap2 = null;
+        }
+        fusedTransformKey = null;
+    }
+
     public void setUndistorted(boolean undistorted) {
         if (!undistorted) {
             clearCalibrationCache();
@@ -1186,6 +1430,7 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
             undistortionMap2.release();
             undistortionMap2 = null;
         }
+        releaseFusedTransformMap();
     }
 
     public void startCalibration(CalibrationCallback callback) {
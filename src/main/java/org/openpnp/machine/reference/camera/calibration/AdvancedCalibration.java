@@ -171,6 +171,12 @@ public class AdvancedCalibration extends LensCalibrationParams {
     @Attribute(required = false)
     private boolean disableTangentialDistortionCorrection = true;
     
+    @Attribute(required = false)
+    private boolean warmStart = false;
+    
+    @ElementArray(required = false)
+    private double[] cameraParameters = new double[0];
+    
     @Attribute(required = false)
     private Double version;
 
@@ -815,6 +821,27 @@ public class AdvancedCalibration extends LensCalibrationParams {
         this.disableTangentialDistortionCorrection = disableTangentialDistortionCorrection;
     }
 
+    public boolean isWarmStart() {
+        return warmStart;
+    }
+
+    /**
+     * @param warmStart - if true, the camera model fit starts from the previous solution rather 
+     * than from the Calib3d.calibrateCamera estimate. This usually converges in fewer iterations
+     * when recalibrating a camera that has not changed much. 
+     */
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    /**
+     * @return the camera parameters fx, fy, cx, cy, k1, k2, p1, p2, k3, Rx, Ry, Rz, and cam_z of 
+     * the last solution, or an empty array if there is none.
+     */
+    public double[] getCameraParameters() {
+        return cameraParameters;
+    }
+
     /**
      * @return the camera's raw image width in pixels after cropping has been applied
      */
@@ -1147,6 +1174,25 @@ public class AdvancedCalibration extends LensCalibrationParams {
         cameraParams[11] = rvec.get(2, 0)[0];
         rvec.release();
 
+        //Optionally warm-start from the previous solution. The camera X/Y coordinates of each 
+        //test pattern are still taken from the new estimate, as the test patterns may have been
+        //collected at different locations
+        if (warmStart && cameraParameters.length == 13) {
+            Logger.trace("warm-starting from the previous camera parameters = " + 
+                    Arrays.toString(cameraParameters));
+            System.arraycopy(cameraParameters, 0, cameraParams, 0, 13);
+            if (disableDistortionCorrection) {
+                Arrays.fill(cameraParams, 4, 9, 0);
+            }
+            else if (disableTangentialDistortionCorrection) {
+                Arrays.fill(cameraParams, 6, 8, 0);
+            }
+            if (disableTiltCorrection) {
+                cameraParams[9] = 0;
+                cameraParams[10] = 0;
+            }
+        }
+        
         //Compute a new set of camera parameters based on openpnp's more restrictive camera
         //model that avoids the excess degree of freedom problem discussed above
         flags = CameraCalibrationUtils.FIX_PRINCIPAL_POINT;
@@ -1200,6 +1246,8 @@ public class AdvancedCalibration extends LensCalibrationParams {
             throw new Exception("Model didn't converge as expected - distortion coefficients have"
                     + " much larger magnitudes than expected, resetting them to zero.");
         }
+        //Keep the solution for a warm start of the next calibration
+        cameraParameters = Arrays.copyOf(cameraParams, 13);
         
         //Convert the new estimate of the rotation vector to a rotation matrix
         rvec = Mat.zeros(3, 1, CvType.CV_64FC1);
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.stream.IntStream;
 
 import org.apache.commons.math3.exception.TooManyEvaluationsException;
 import org.apache.commons.math3.fitting.leastsquares.LeastSquaresFactory;
@@ -32,8 +33,8 @@ import org.apache.commons.math3.fitting.leastsquares.LeastSquaresOptimizer.Optim
 import org.apache.commons.math3.fitting.leastsquares.LeastSquaresProblem;
 import org.apache.commons.math3.fitting.leastsquares.LevenbergMarquardtOptimizer;
 import org.apache.commons.math3.fitting.leastsquares.MultivariateJacobianFunction;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.optim.ConvergenceChecker;
@@ -234,13 +235,14 @@ public class CameraCalibrationUtils {
 
             // A vector of the observed 2D image points (in x0, y0, x1, y1, ... order) is created
             // omitting any in outlierPoints
-            RealVector observed = new ArrayRealVector();
+            RealVector observed = new ArrayRealVector(2 * model.totalNumberOfPoints);
             int iPoint = 0;
+            int iObserved = 0;
             for (int i = 0; i < numberOfTestPatterns; i++) {
                 for (int j = 0; j < testPatternImagePoints[i].length; j++) {
                     if (!outlierPoints.contains(iPoint)) {
-                        observed =
-                                observed.append(new ArrayRealVector(testPatternImagePoints[i][j]));
+                        observed.setEntry(iObserved++, testPatternImagePoints[i][j][0]);
+                        observed.setEntry(iObserved++, testPatternImagePoints[i][j][1]);
                     }
                     iPoint++;
                 }
@@ -339,6 +341,9 @@ public class CameraCalibrationUtils {
         double allowTangentialDistortionToChange;
         double allowTiltToChange;
         TreeSet<Integer> outlierPoints;
+        boolean[] outlier;
+        int[] firstPointIndex;
+        int[] firstRowIndex;
         int flags;
 
         /**
@@ -364,11 +369,28 @@ public class CameraCalibrationUtils {
             }
             this.flags = flags;
             this.testPattern3dPoints = testPattern3dPoints;
+            // Index the points and the rows of each test pattern, so the test patterns can be
+            // evaluated independently
+            firstPointIndex = new int[numberOfTestPatterns];
+            firstRowIndex = new int[numberOfTestPatterns];
+            int numberOfPoints = 0;
+            for (int iTP = 0; iTP < numberOfTestPatterns; iTP++) {
+                firstPointIndex[iTP] = numberOfPoints;
+                numberOfPoints += testPattern3dPoints[iTP].length;
+            }
+            outlier = new boolean[numberOfPoints];
+            for (int iPoint : this.outlierPoints) {
+                outlier[iPoint] = true;
+            }
             totalNumberOfPoints = 0;
             for (int iTP = 0; iTP < numberOfTestPatterns; iTP++) {
-                totalNumberOfPoints += testPattern3dPoints[iTP].length;
+                firstRowIndex[iTP] = 2 * totalNumberOfPoints;
+                for (int iPt = 0; iPt < testPattern3dPoints[iTP].length; iPt++) {
+                    if (!outlier[firstPointIndex[iTP] + iPt]) {
+                        totalNumberOfPoints++;
+                    }
+                }
             }
-            totalNumberOfPoints -= this.outlierPoints.size();
 
             if ((flags & FIX_PRINCIPAL_POINT) == 0) {
                 allowCenterToChange = 1;
@@ -412,10 +434,11 @@ public class CameraCalibrationUtils {
         public Pair<RealVector, RealMatrix> value(RealVector cameraParameters) {
             // parameter order is fx, fy, cx, cy, k1, k2, p1, p2, k3, Rx, Ry, Rz, cam_z,
             // cam_x[0], cam_y[0], ... cam_x[numberOfTestPatterns-1], cam_y[numberOfTestPatterns-1]
-            RealVector funcValue =
-                    MatrixUtils.createRealVector(new double[2 * totalNumberOfPoints]);
+            // Note, the test patterns are evaluated in parallel, each one filling its own rows.
+            // Array2DRowRealMatrix has an array per row, so these rows can be set concurrently.
+            RealVector funcValue = new ArrayRealVector(2 * totalNumberOfPoints);
             RealMatrix funcJacobian =
-                    MatrixUtils.createRealMatrix(2 * totalNumberOfPoints, numberOfParameters);
+                    new Array2DRowRealMatrix(2 * totalNumberOfPoints, numberOfParameters);
             double fx = cameraParameters.getEntry(0);
             double fy;
             if ((flags & FIX_ASPECT_RATIO) == 0) {
@@ -433,10 +456,9 @@ public class CameraCalibrationUtils {
             double k3 = cameraParameters.getEntry(8);
             double rx = cameraParameters.getEntry(9);
             double ry = cameraParameters.getEntry(10);
-            double rz = cameraParameters.getEntry(11);
-            if (rx == 0 && ry == 0 && rz == 0) {
-                rz = 1e-6;
-            }
+            // A zero rotation vector is singular, so it is nudged a bit.
+            double rz = (rx == 0 && ry == 0 && cameraParameters.getEntry(11) == 0) ? 
+                    1e-6 : cameraParameters.getEntry(11);
             double camZ = cameraParameters.getEntry(12);
 
             // Note: all variables of the form tempnnn are the result of common subexpression
@@ -501,11 +523,11 @@ public class CameraCalibrationUtils {
             double temp096 = rx * temp006 * temp011;
             double temp107 = temp006 * temp010 * temp012;
 
-            int rowIdx = 0;
-            int iPoint = 0;
-            for (int iTP = 0; iTP < numberOfTestPatterns; iTP++) {
+            IntStream.range(0, numberOfTestPatterns).parallel().forEach(iTP -> {
+                int rowIdx = firstRowIndex[iTP];
+                int iPoint = firstPointIndex[iTP];
                 for (int iPt = 0; iPt < testPattern3dPoints[iTP].length; iPt++) {
-                    if (!outlierPoints.contains(iPoint)) {
+                    if (!outlier[iPoint]) {
                         double temp023 = camZ - testPattern3dPoints[iTP][iPt][2];
                         double temp022 = cameraParameters.getEntry(14 + 2 * iTP)
                                 - testPattern3dPoints[iTP][iPt][1];
@@ -782,7 +804,7 @@ public class CameraCalibrationUtils {
                     }
                     iPoint++;
                 }
-            }
+            });
             return new Pair<RealVector, RealMatrix>(funcValue, funcJacobian);
         }
 
@@ -0,0 +1,137 @@
+package org.openpnp.machine.reference.driver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The values an actuator reported unsolicited, e.g. through the periodic sensor auto-report of the
+ * controller. The latest value and a short history are kept. Adding a report is lock-free, unless
+ * a reader is waiting for the next one.
+ */
+public class ActuatorReports {
+    static final int HISTORY_SIZE = 256;
+
+    public static class Report {
+        private final String value;
+        private final long nanos;
+        private final long sequence;
+
+        Report(String value, long nanos, long sequence) {
+            this.value = value;
+            this.nanos = nanos;
+            this.sequence = sequence;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return the System.nanoTime() when the report was received.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    private final AtomicReferenceArray<Report> history = new AtomicReferenceArray<>(HISTORY_SIZE);
+    private volatile Report latest;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition reported = lock.newCondition();
+
+    /**
+     * Adds a report. Called by the single reader thread of the driver.
+     */
+    void add(String value) {
+        Report previous = latest;
+        Report report = new Report(value, System.nanoTime(), previous == null ? 0 : previous.sequence + 1);
+        history.set((int) (report.sequence % HISTORY_SIZE), report);
+        latest = report;
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                reported.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the latest report, or null if none was received yet.
+     */
+    public Report getLatest() {
+        return latest;
+    }
+
+    /**
+     * Waits for a report received after the given time.
+     *
+     * @param afterNanos the System.nanoTime() the report must be younger than.
+     * @param timeout in milliseconds.
+     * @return the report, or null if none arrived before the timeout.
+     * @throws InterruptedException
+     */
+    public Report awaitReport(long afterNanos, long timeout) throws InterruptedException {
+        Report report = latest;
+        if (report != null && report.nanos - afterNanos > 0) {
+            return report;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+        waiting.incrementAndGet();
+        lock.lock();
+        try {
+            while (true) {
+                report = latest;
+                if (report != null && report.nanos - afterNanos > 0) {
+                    return report;
+                }
+                if (remaining <= 0) {
+                    return null;
+                }
+                remaining = reported.awaitNanos(remaining);
+            }
+        }
+        finally {
+            lock.unlock();
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param afterNanos the System.nanoTime() the reports must be younger than.
+     * @return the reports received after the given time, as far as they are still in the history,
+     * oldest first.
+     */
+    public List<Report> getHistory(long afterNanos) {
+        List<Report> reports = new ArrayList<>();
+        Report report = latest;
+        if (report == null) {
+            return reports;
+        }
+        long last = report.sequence;
+        for (long sequence = last; sequence > last - HISTORY_SIZE && sequence >= 0; sequence--) {
+            report = history.get((int) (sequence % HISTORY_SIZE));
+            if (report == null || report.sequence != sequence || report.nanos - afterNanos <= 0) {
+                // Overwritten by a newer one, or too old.
+                break;
+            }
+            reports.add(report);
+        }
+        Collections.reverse(reports);
+        return reports;
+    }
+}
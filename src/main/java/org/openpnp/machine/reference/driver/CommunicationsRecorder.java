@@ -0,0 +1,215 @@
+package org.openpnp.machine.reference.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.openpnp.model.Configuration;
+import org.pmw.tinylog.Logger;
+
+/**
+ * Records the lines sent to and received from a controller, with their timestamps, into a compact
+ * binary file. Enable with -DcommunicationsRecording=true. Each connection of a driver is recorded
+ * into its own file in the recordings directory of the configuration. The recordings can be
+ * played back by the GcodeServer, see {@link CommunicationsRecording}.<br/>
+ * <br/>
+ * Records are encoded into an in-memory chunk on the calling thread, full chunks are written by a
+ * background thread, so the driver threads never wait on the file.<br/>
+ * <br/>
+ * Format (big-endian): magic "OPNPCOMM", int version, long start time in epoch milliseconds,
+ * string connection name, then records of byte direction (0 sent, 1 received), varlong nanoseconds
+ * since the previous record and string line. Strings are a varint byte length followed by
+ * ISO-8859-1 bytes, as in {@link ReferenceDriverCommunications#readLine()}.
+ */
+public class CommunicationsRecorder {
+    static final byte[] MAGIC = "OPNPCOMM".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final byte SENT = 0;
+    static final byte RECEIVED = 1;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static ExecutorService executor;
+
+    private final File file;
+    private OutputStream output;
+    private byte[] chunk = new byte[CHUNK_SIZE];
+    private int chunkLength;
+    private long lastNanos;
+    private boolean closed;
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("communicationsRecording");
+    }
+
+    /**
+     * Creates a new recording in the recordings directory of the configuration.
+     *
+     * @param connectionName
+     * @return
+     * @throws IOException
+     */
+    public static CommunicationsRecorder create(String connectionName) throws IOException {
+        File directory = new File(Configuration.get().getConfigurationDirectory(), "recordings");
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        return new CommunicationsRecorder(new File(directory,
+                getFileNamePrefix(connectionName) + timestamp + CommunicationsRecording.FILE_EXTENSION),
+                connectionName);
+    }
+
+    /**
+     * @return the prefix of the recording file names of the connection.
+     */
+    static String getFileNamePrefix(String connectionName) {
+        String name = connectionName == null ? "" : connectionName;
+        int colon = name.indexOf(':');
+        if (colon > 0) {
+            // Only the driver name, it stays the same across communications types.
+            name = name.substring(0, colon);
+        }
+        return name.replaceAll("[^A-Za-z0-9._-]", "_") + "-";
+    }
+
+    public CommunicationsRecorder(File file, String connectionName) throws IOException {
+        this.file = file;
+        file.getParentFile().mkdirs();
+        output = Files.newOutputStream(file.toPath());
+        writeBytes(MAGIC);
+        writeInt(VERSION);
+        writeLong(System.currentTimeMillis());
+        writeString(connectionName == null ? "" : connectionName);
+        lastNanos = System.nanoTime();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void recordSent(String line) {
+        record(SENT, line);
+    }
+
+    public void recordReceived(String line) {
+        record(RECEIVED, line);
+    }
+
+    synchronized void record(byte direction, String line) {
+        if (closed) {
+            return;
+        }
+        long nanos = System.nanoTime();
+        ensureCapacity(1 + 10 + 5 + line.length());
+        chunk[chunkLength++] = direction;
+        writeVarLong(nanos - lastNanos);
+        lastNanos = nanos;
+        writeString(line);
+        if (chunkLength >= CHUNK_SIZE) {
+            submitChunk();
+        }
+    }
+
+    /**
+     * Writes the remaining records and closes the file.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        submitChunk();
+        OutputStream output = this.output;
+        getExecutor().submit(() -> {
+            try {
+                output.close();
+            }
+            catch (IOException e) {
+                Logger.warn(e, "Cannot close communications recording {}", file);
+            }
+        });
+    }
+
+    /**
+     * Waits for the submitted chunks to be written.
+     *
+     * @throws Exception
+     */
+    public static void flush() throws Exception {
+        getExecutor().submit(() -> {}).get();
+    }
+
+    private void submitChunk() {
+        if (chunkLength == 0) {
+            return;
+        }
+        byte[] bytes = Arrays.copyOf(chunk, chunkLength);
+        chunkLength = 0;
+        OutputStream output = this.output;
+        getExecutor().submit(() -> {
+            try {
+                output.write(bytes);
+            }
+            catch (IOException e) {
+                Logger.warn(e, "Cannot write communications recording {}", file);
+            }
+        });
+    }
+
+    private void ensureCapacity(int length) {
+        if (chunkLength + length > chunk.length) {
+            chunk = Arrays.copyOf(chunk, Math.max(chunk.length * 2, chunkLength + length));
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, chunk, chunkLength, bytes.length);
+        chunkLength += bytes.length;
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            chunk[chunkLength++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            chunk[chunkLength++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            chunk[chunkLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        chunk[chunkLength++] = (byte) value;
+    }
+
+    private void writeString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+        writeVarLong(bytes.length);
+        writeBytes(bytes);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "CommunicationsRecorder writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+}
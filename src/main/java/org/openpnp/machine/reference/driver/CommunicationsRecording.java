@@ -0,0 +1,171 @@
+package org.openpnp.machine.reference.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recorded controller conversation, as written by the {@link CommunicationsRecorder}. The
+ * GcodeServer plays it back with its original timing, if -DcommunicationsReplay is set to the
+ * recording file, or to a directory where the latest recording of the driver is taken.
+ */
+public class CommunicationsRecording {
+    static final String FILE_EXTENSION = ".gcrec";
+
+    public static class Event {
+        private final boolean sent;
+        private final long nanos;
+        private final String line;
+
+        public Event(boolean sent, long nanos, String line) {
+            this.sent = sent;
+            this.nanos = nanos;
+            this.line = line;
+        }
+
+        /**
+         * @return true if the line was sent to the controller, false if it was received from it.
+         */
+        public boolean isSent() {
+            return sent;
+        }
+
+        /**
+         * @return the nanoseconds since the start of the recording.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        @Override
+        public String toString() {
+            return (sent ? ">> " : "<< ") + line;
+        }
+    }
+
+    private final String connectionName;
+    private final long startTime;
+    private final List<Event> events;
+
+    public CommunicationsRecording(String connectionName, long startTime, List<Event> events) {
+        this.connectionName = connectionName;
+        this.startTime = startTime;
+        this.events = Collections.unmodifiableList(events);
+    }
+
+    public String getConnectionName() {
+        return connectionName;
+    }
+
+    /**
+     * @return the start time in epoch milliseconds.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return the nanoseconds from the start to the last event.
+     */
+    public long getDurationNanos() {
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).getNanos();
+    }
+
+    public int getSentCount() {
+        int count = 0;
+        for (Event event : events) {
+            if (event.isSent()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static CommunicationsRecording read(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        byte[] magic = new byte[CommunicationsRecorder.MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, CommunicationsRecorder.MAGIC)
+                || buffer.getInt() != CommunicationsRecorder.VERSION) {
+            throw new IOException("Not a communications recording: " + file);
+        }
+        long startTime = buffer.getLong();
+        String connectionName = readString(buffer);
+        List<Event> events = new ArrayList<>();
+        long nanos = 0;
+        // A recording cut short by a crash ends with an incomplete record.
+        try {
+            while (buffer.hasRemaining()) {
+                byte direction = buffer.get();
+                nanos += readVarLong(buffer);
+                String line = readString(buffer);
+                events.add(new Event(direction == CommunicationsRecorder.SENT, nanos, line));
+            }
+        }
+        catch (RuntimeException e) {
+            // Keep the complete events.
+        }
+        return new CommunicationsRecording(connectionName, startTime, events);
+    }
+
+    /**
+     * @param driverName
+     * @return the recording to be replayed for the driver, according to -DcommunicationsReplay,
+     * or null if none.
+     */
+    public static File getReplayFile(String driverName) {
+        String replay = System.getProperty("communicationsReplay");
+        if (replay == null || replay.isEmpty()) {
+            return null;
+        }
+        File file = new File(replay);
+        if (!file.isDirectory()) {
+            return file;
+        }
+        String prefix = CommunicationsRecorder.getFileNamePrefix(driverName);
+        File latest = null;
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File candidate : files) {
+                String name = candidate.getName();
+                // The timestamp makes the names sort chronologically.
+                if (name.startsWith(prefix) && name.endsWith(FILE_EXTENSION)
+                        && (latest == null || name.compareTo(latest.getName()) > 0)) {
+                    latest = candidate;
+                }
+            }
+        }
+        return latest;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[(int) readVarLong(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
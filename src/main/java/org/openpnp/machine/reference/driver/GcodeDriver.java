@@ -28,7 +28,9 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -76,6 +78,7 @@ import org.openpnp.spi.base.AbstractHeadMountable;
 import org.openpnp.spi.base.AbstractSingleTransformedAxis;
 import org.openpnp.spi.base.AbstractTransformedAxis;
 import org.openpnp.util.NanosecondTime;
+import org.openpnp.util.TextTemplate;
 import org.openpnp.util.TextUtils;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
@@ -120,6 +123,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         @Deprecated
         ACTUATOR_READ_WITH_DOUBLE_COMMAND(true, "Id", "Name", "Index", "DoubleValue", "IntegerValue"),
         ACTUATOR_READ_REGEX(true),
+        ACTUATOR_REPORT_REGEX(true),
         DELAY_COMMAND("TimeMS", "TimeSeconds");  // delay in [ms]
 
         final boolean headMountable;
@@ -171,6 +175,13 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         @ElementList(required = false, inline = true, entry = "text", data = true)
         public ArrayList<String> commands = new ArrayList<>();
 
+        // Compiled forms of the command, cached until the command is changed.
+        private transient volatile String text;
+        private transient volatile Pattern pattern;
+        private transient volatile TextTemplate template;
+        // Set when the command failed as a report regex, so it is reported and skipped once.
+        private transient volatile boolean reportFailed;
+
         public Command(String headMountableId, CommandType type, String text) {
             this.headMountableId = headMountableId;
             this.type = type;
@@ -178,6 +189,10 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
 
         public void setCommand(String text) {
+            this.text = null;
+            this.pattern = null;
+            this.template = null;
+            this.reportFailed = false;
             this.commands.clear();
             if (text != null) {
                 text = text.trim();
@@ -188,7 +203,36 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
 
         public String getCommand() {
-            return Joiner.on('\n').join(commands);
+            String text = this.text;
+            if (text == null) {
+                text = Joiner.on('\n').join(commands);
+                this.text = text;
+            }
+            return text;
+        }
+
+        /**
+         * @return the command compiled as a regex Pattern, for the _REGEX command types.
+         */
+        public Pattern getPattern() {
+            Pattern pattern = this.pattern;
+            if (pattern == null) {
+                pattern = Pattern.compile(getCommand());
+                this.pattern = pattern;
+            }
+            return pattern;
+        }
+
+        /**
+         * @return the command parsed as a TextTemplate with its variables.
+         */
+        public TextTemplate getTemplate() {
+            TextTemplate template = this.template;
+            if (template == null) {
+                template = new TextTemplate(getCommand());
+                this.template = template;
+            }
+            return template;
         }
 
         private Command() {
@@ -294,6 +338,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     static public class Line {
         final String line;
         final double transmissionTime;
+        boolean actuatorReport;
 
         public Line(String line) {
             super();
@@ -321,6 +366,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     protected LinkedBlockingQueue<Line> responseQueue = new LinkedBlockingQueue<>();
     protected LinkedBlockingQueue<AxesLocation> reportedLocationsQueue = new LinkedBlockingQueue<>();
     protected LinkedBlockingQueue<Line> receivedConfirmationsQueue = new LinkedBlockingQueue<>();
+    protected Map<String, ActuatorReports> actuatorReports = new ConcurrentHashMap<>();
 
     protected Line errorResponse;
     private boolean motionPending;
@@ -365,6 +411,21 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
         
         public String substituteVariable(String command, Double value) {
+            command = GcodeDriver.substituteVariable(command, variable, valueToSend(value));  // call the substitute method of the outer class as used by the rest of the code
+            // always substitute string + "F"
+            command = GcodeDriver.substituteVariable(command, variable + "F", value); // call the substitute method of the outer class as used by the rest of the code
+            
+            return command;
+        }
+
+        public void substituteVariable(TextTemplate.Substitution command, Double value) {
+            command.substitute(variable, valueToSend(value));
+            // always substitute string + "F"
+            command.substitute(variable + "F", value);
+        }
+
+        // returns the value, if it must be sent, or null to remove the variable
+        private Double valueToSend(Double value) {
             // send/substitute string and value
             if (!sendOnChange                                                         // .. if forced
                  || value == null                                                     // .. or value not initialized
@@ -372,14 +433,9 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                  || value == 0.0                                                      // .. of if the new value is 0 - avoid division by zero
                  || Math.abs((lastValue - value) / value) > relativeDeviation) {      // .. or if the value has changed by more then 1e-3 relative
                 lastValue = value;
-                command = GcodeDriver.substituteVariable(command, variable, value);   // call the substitute method of the outer class as used by the rest of the code
-            } else {
-                command = GcodeDriver.substituteVariable(command, variable, null);    // remove the variable
+                return value;
             }
-            // always substitute string + "F"
-            command = GcodeDriver.substituteVariable(command, variable + "F", value); // call the substitute method of the outer class as used by the rest of the code
-            
-            return command;
+            return null;
         }
 
         // reset the send on change behavior by invalidating lastValue
@@ -460,6 +516,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         command = getSendOnChangeJerk().substituteVariable(command, jerk);
         return command;
     }
+    private void sendOnChangeSubstituteAllVariables(TextTemplate.Substitution command, Double feedRate, Double acceleration, Double jerk) {
+        getSendOnChangeFeedRate().substituteVariable(command, feedRate);
+        getSendOnChangeAcceleration().substituteVariable(command, acceleration);
+        getSendOnChangeJerk().substituteVariable(command, jerk);
+    }
     
     @Commit
     public void commit() {
@@ -852,6 +913,30 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         return c.getCommand();
     }
 
+    /**
+     * Same as {@link #getCommand(HeadMountable, CommandType)} but returns the command compiled as a
+     * regex Pattern. The Pattern is cached until the command is changed.
+     */
+    public Pattern getCommandPattern(HeadMountable hm, CommandType type) {
+        Command c = getCommand(hm, type, true);
+        if (c == null) {
+            return null;
+        }
+        return c.getPattern();
+    }
+
+    /**
+     * Same as {@link #getCommand(HeadMountable, CommandType)} but returns the command parsed as a
+     * TextTemplate. The TextTemplate is cached until the command is changed.
+     */
+    public TextTemplate getCommandTemplate(HeadMountable hm, CommandType type) {
+        Command c = getCommand(hm, type, true);
+        if (c == null) {
+            return null;
+        }
+        return c.getTemplate();
+    }
+
     public void setCommand(HeadMountable hm, CommandType type, String text) {
         Command c = getCommand(hm, type, false);
         if (text == null || text.trim().length() == 0) {
@@ -887,8 +972,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             movedAxesLocation.getLengthCoordinate(axis).convertToUnits(getUnits()).getValue() - axis.getDriverCoordinate()).third;
 
         // Start composing the command, will decide later, whether we actually send it.
-        String command = getCommand(hm, CommandType.MOVE_TO_COMMAND);
-        if (command == null) {
+        TextTemplate template = getCommandTemplate(hm, CommandType.MOVE_TO_COMMAND);
+        if (template == null) {
             if (movedAxesLocation.isEmpty()) {
                 return;
             }
@@ -900,7 +985,9 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 throw new Exception(getName()+" MOVE_TO_COMMAND missing, please use Issues & Solutions to propose proper G-code commands.");
             }
         }
-        if (hasVariable(command, "BacklashFeedRate")) {
+        // The template is parsed once and cached, so substituting the variables needs no regex matching.
+        TextTemplate.Substitution command = template.newSubstitution();
+        if (command.hasVariable("BacklashFeedRate")) {
             throw new Exception(getName()+" configuration upgrade needed: Please remove the extra backlash compensation move from your MOVE_TO_COMMAND. "
                     +"Backlash compensation is now done outside of the drivers and configured on the axes.");
         }
@@ -927,9 +1014,9 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             jerk *= driverUnitsFactor;
         }
 
-        command = substituteVariable(command, "Id", hm.getId());
-        command = substituteVariable(command, "Name", hm.getName());
-        command = sendOnChangeSubstituteAllVariables(command, feedRate, acceleration, jerk);
+        command.substitute("Id", hm.getId());
+        command.substitute("Name", hm.getName());
+        sendOnChangeSubstituteAllVariables(command, feedRate, acceleration, jerk);
 
         ReferenceMachine machine = (ReferenceMachine) hm.getHead().getMachine();
         // Get a map of the axes of ...
@@ -956,7 +1043,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 // position change after all. 
                 // Note, there is no need for separate backlash compensation variables, as these are always 
                 // substituted alongside. 
-                if (hasVariable(command, variable+"F")) {
+                if (command.hasVariable(variable+"F")) {
                     // Force it! Must get it from the mappedAxes. If the mappedAxes do not have it, it is 
                     // still suppressed (this never happens when using letter variables). 
                     axis = mappedAxes.getAxisByVariable(this, variable);
@@ -977,15 +1064,15 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 double previousCoordinate = axis.getDriverCoordinate(); 
                 int direction = ((Double)coordinate).compareTo(previousCoordinate);
                 // Substitute the axis variables.
-                command = substituteVariable(command, variable, coordinate);
-                command = substituteVariable(command, variable+"F", coordinate);
-                command = substituteVariable(command, variable+"L", axis.getLetter());
-                if (hasVariable(command, "BacklashOffset"+variable)) {
+                command.substitute(variable, coordinate);
+                command.substitute(variable+"F", coordinate);
+                command.substitute(variable+"L", axis.getLetter());
+                if (command.hasVariable("BacklashOffset"+variable)) {
                     throw new Exception(getName()+" configuration upgrade needed: Please remove the extra backlash compensation move from your MOVE_TO_COMMAND. "
                             +"Backlash compensation is now done outside of the drivers.");
                 }
-                command = substituteVariable(command, variable+"Decreasing", direction < 0 ? true : null);
-                command = substituteVariable(command, variable+"Increasing", direction > 0 ? true : null);
+                command.substitute(variable+"Decreasing", direction < 0 ? true : null);
+                command.substitute(variable+"Increasing", direction > 0 ? true : null);
                 if (isSupportingPreMove() && axis instanceof ReferenceControllerAxis) {
                     // Check for a pre-move command.
                     String preMoveCommand = ((ReferenceControllerAxis) axis).getPreMoveCommand();
@@ -997,27 +1084,27 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 // Axis specific jerk limits are needed on TinyG.
                 double axisDistance = coordinate - previousCoordinate;
                 double axisJerk = (jerk != null ? jerk : 0)*Math.abs(axisDistance)/driverDistance;
-                command = substituteVariable(command, variable+"Jerk", axisJerk > jMin ? axisJerk : null);
-                command = substituteVariable(command, variable+"JerkMupm3", axisJerk > jMin*4.63 ? axisJerk*1e-6*Math.pow(60, 3) : null); // TinyG: Megaunits/min^3 
+                command.substitute(variable+"Jerk", axisJerk > jMin ? axisJerk : null);
+                command.substitute(variable+"JerkMupm3", axisJerk > jMin*4.63 ? axisJerk*1e-6*Math.pow(60, 3) : null); // TinyG: Megaunits/min^3 
                 // Store the new driver coordinate on the axis.
                 axis.setDriverCoordinate(coordinate);
             }
             else {
                 // Delete the unused axis variables.
-                command = substituteVariable(command, variable, null);
-                command = substituteVariable(command, variable+"F", null);
-                command = substituteVariable(command, variable+"L", null); 
-                command = substituteVariable(command, "BacklashOffset"+variable, null);
-                command = substituteVariable(command, variable+"Decreasing", null);
-                command = substituteVariable(command, variable+"Increasing", null);
-                command = substituteVariable(command, variable+"Jerk", null);
-                command = substituteVariable(command, variable+"JerkMupm3", null);  
+                command.substitute(variable, null);
+                command.substitute(variable+"F", null);
+                command.substitute(variable+"L", null); 
+                command.substitute("BacklashOffset"+variable, null);
+                command.substitute(variable+"Decreasing", null);
+                command.substitute(variable+"Increasing", null);
+                command.substitute(variable+"Jerk", null);
+                command.substitute(variable+"JerkMupm3", null);  
             }
         }
         if (doesMove) {
             // We do actually send the command.
             motionPending = true;
-            sendGcode(command);
+            sendGcode(command.toString());
         }
     }
 
@@ -1070,9 +1157,9 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
     }
 
-    private boolean containsMatch(List<Line> responses, String regex) {
+    private boolean containsMatch(List<Line> responses, Pattern pattern) {
         for (Line response : responses) {
-            if (response.line.matches(regex)) {
+            if (pattern.matcher(response.line).matches()) {
                 return true;
             }
         }
@@ -1124,6 +1211,9 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
 
     @Override
     public String actuatorRead(Actuator actuator, Object parameter) throws Exception {
+        if (parameter == null && getCommand(actuator, CommandType.ACTUATOR_REPORT_REGEX, false) != null) {
+            return readActuatorReport(actuator);
+        }
         /*
          * The logic here is a little complicated. This is the only driver method that is
          * not fire and forget. In this case, we need to know if the command was serviced or not
@@ -1182,6 +1272,29 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         return actuatorRead(actuator, null);
     }
 
+    /**
+     * Reads the actuator from the reports the controller sends on its own, e.g. the sensor
+     * auto-report, configured using M155 or similar in the CONNECT_COMMAND. Instead of a
+     * command round-trip, this waits for the next report, so the value is never older than the
+     * read.
+     * 
+     * @param actuator
+     * @return
+     * @throws Exception
+     */
+    protected String readActuatorReport(Actuator actuator) throws Exception {
+        bailOnError();
+        long timeout = timeoutMilliseconds == -1 ? infinityTimeoutMilliseconds : timeoutMilliseconds;
+        ActuatorReports.Report report = getActuatorReports(actuator.getId())
+                .awaitReport(System.nanoTime(), timeout);
+        if (report == null) {
+            throw new Exception(String.format("Actuator \"%s\" read error: No report received within %d ms. Check the ACTUATOR_REPORT_REGEX and that the controller reports periodically.",
+                    actuator.getName(), timeout));
+        }
+        Logger.trace("actuatorRead report: {}", report);
+        return report.getValue();
+    }
+
     public synchronized void disconnect() {
         disconnectRequested = true;
         connected = false;
@@ -1327,10 +1440,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
         long t0 = System.currentTimeMillis(); 
         long t1 = t0 + timeout;
+        Pattern pattern = Pattern.compile(regex);
         List<Line> responses = new ArrayList<>();
         do{ 
             responses.addAll(receiveResponses());
-            if (containsMatch(responses, regex)) {
+            if (containsMatch(responses, pattern)) {
                 long dt = System.currentTimeMillis() - t0;
                 if (dt > 1) {
                     Logger.trace("{} got response matching \"{}\" after {}ms", getName(), regex, dt);
@@ -1534,8 +1648,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 Logger.trace("[{}] << {}", connectionName, line);
                 // Process the response.
                 processResponse(line);
-                // Add to the responseQueue for further processing by the caller.
-                responseQueue.offer(line);
+                // Add to the responseQueue for further processing by the caller. Periodic actuator
+                // reports are consumed, they would pile up in between commands.
+                if (!line.actuatorReport) {
+                    responseQueue.offer(line);
+                }
             }
             Logger.trace("[{}] disconnectRequested, bye-bye.", connectionName);
             if (connected) {
@@ -1550,32 +1667,70 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
      * @param line
      */
     protected void processResponse(Line line) {
-        String regex = getCommand(null, CommandType.COMMAND_CONFIRM_REGEX);
-        if (regex != null && line.getLine().matches(regex)) {
+        Pattern pattern = getCommandPattern(null, CommandType.COMMAND_CONFIRM_REGEX);
+        if (pattern != null && pattern.matcher(line.getLine()).matches()) {
             receivedConfirmationsQueue.add(line);
         }
-        regex = getCommand(null, CommandType.COMMAND_ERROR_REGEX);
-        if (regex != null && line.getLine().matches(regex)) {
+        pattern = getCommandPattern(null, CommandType.COMMAND_ERROR_REGEX);
+        if (pattern != null && pattern.matcher(line.getLine()).matches()) {
             errorResponse = line;
         }
         processPositionReport(line);
+        processActuatorReport(line);
+    }
+
+    /**
+     * Stores the value of an unsolicited actuator report, as matched by the ACTUATOR_REPORT_REGEX
+     * of the actuator. One line may report several actuators.
+     * 
+     * @param line
+     * @return true if the line was an actuator report.
+     */
+    protected boolean processActuatorReport(Line line) {
+        for (Command command : commands) {
+            if (command.type != CommandType.ACTUATOR_REPORT_REGEX || command.headMountableId == null
+                    || command.reportFailed) {
+                continue;
+            }
+            try {
+                Matcher matcher = command.getPattern().matcher(line.getLine());
+                if (matcher.matches()) {
+                    getActuatorReports(command.headMountableId).add(matcher.group("Value"));
+                    line.actuatorReport = true;
+                }
+            }
+            catch (IllegalArgumentException e) {
+                // Reported once, not on every received line. Issues & Solutions also points it out.
+                command.reportFailed = true;
+                Logger.error("{}: ACTUATOR_REPORT_REGEX of {} is invalid or missing the \"Value\" capturing group, "
+                        + "it is ignored until changed: {}", 
+                        getName(), command.headMountableId, e.getMessage());
+            }
+        }
+        return line.actuatorReport;
+    }
+
+    /**
+     * @param actuatorId
+     * @return the reports received for the actuator with the given id.
+     */
+    public ActuatorReports getActuatorReports(String actuatorId) {
+        return actuatorReports.computeIfAbsent(actuatorId, id -> new ActuatorReports());
     }
 
     protected boolean processPositionReport(Line line) {
-        String regex = getCommand(null, CommandType.POSITION_REPORT_REGEX); 
-        if (regex == null) {
+        Pattern pattern = getCommandPattern(null, CommandType.POSITION_REPORT_REGEX); 
+        if (pattern == null) {
             return false;
         }
 
-        if (!line.getLine().matches(regex)) {
+        Matcher matcher = pattern.matcher(line.getLine());
+        if (!matcher.matches()) {
             return false;
         }
 
         Logger.trace("Position report: {}", line);
         ReferenceMachine machine = ((ReferenceMachine) Configuration.get().getMachine());
-        Matcher matcher =
-                Pattern.compile(regex).matcher(line.getLine());
-        matcher.matches();
         AxesLocation position = AxesLocation.zero;
         for (ControllerAxis axis : new AxesLocation(machine).getAxes(this)) {
             try {
@@ -1636,7 +1791,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         if (command == null) {
             return false;
         }
-        Matcher matcher = Pattern.compile("\\{(\\w+)(?::(.+?))?\\}").matcher(command);
+        Matcher matcher = TextUtils.VARIABLE_PATTERN.matcher(command);
         while (matcher.find()) {
             String n = matcher.group(1);
             if (!n.equals(name)) {
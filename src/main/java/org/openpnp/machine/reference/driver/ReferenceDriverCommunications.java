@@ -20,6 +20,8 @@
 package org.openpnp.machine.reference.driver;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,6 +61,23 @@ public abstract class ReferenceDriverCommunications {
 
     protected String driverName;
 
+    /**
+     * Initial capacity of the receive buffer. It grows automatically, if a single line exceeds it.
+     */
+    protected static final int READ_BUFFER_SIZE = 4096;
+
+    /**
+     * The receive buffer. It is kept in read mode, i.e. the bytes between position and limit are
+     * received but not yet consumed. Both {@link #read()} and {@link #readLine()} consume from it, so
+     * they can be mixed freely.
+     */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE).flip();
+
+    /**
+     * Records the lines sent and received, if -DcommunicationsRecording=true.
+     */
+    private volatile CommunicationsRecorder recorder;
+
     abstract public void connect() throws Exception;
     abstract public void disconnect() throws Exception;
 
@@ -72,7 +91,97 @@ public abstract class ReferenceDriverCommunications {
 
     abstract protected void writeBytes(byte[] data) throws IOException;
 
-    abstract public int read() throws TimeoutException, IOException;
+    /**
+     * Read a block of bytes from the connection into the given array. Blocks until at least one byte 
+     * is available. If the read times out a TimeoutException is thrown. Any other failure to read 
+     * results in an IOExeption;
+     * 
+     * @param buffer
+     * @param offset
+     * @param length maximum number of bytes to read.
+     * @return the number of bytes read, or -1 if the end of the stream was reached.
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    abstract protected int readBytes(byte[] buffer, int offset, int length) throws TimeoutException, IOException;
+
+    /**
+     * Starts a new recording of the conversation, if enabled. Must be called when connected.
+     */
+    protected void startRecording() {
+        stopRecording();
+        if (CommunicationsRecorder.isEnabled()) {
+            try {
+                recorder = CommunicationsRecorder.create(getConnectionName());
+                Logger.info("[{}] Recording communications to {}", getConnectionName(), recorder.getFile());
+            }
+            catch (Exception e) {
+                Logger.warn(e, "[{}] Cannot record communications", getConnectionName());
+            }
+        }
+    }
+
+    /**
+     * Ends the recording of the conversation, if any. Must be called when disconnecting.
+     */
+    protected void stopRecording() {
+        CommunicationsRecorder recorder = this.recorder;
+        if (recorder != null) {
+            this.recorder = null;
+            recorder.close();
+        }
+    }
+
+    /**
+     * Discard any received bytes that were not yet consumed. Must be called when (re-)connecting.
+     */
+    protected void clearReadBuffer() {
+        readBuffer.clear().flip();
+    }
+
+    /**
+     * Read one byte from the input stream. Blocks for the default timeout. If the read times out a
+     * TimeoutException is thrown. Any other failure to read results in an IOExeption;
+     * 
+     * @return the byte as an unsigned value, or -1 if the end of the stream was reached.
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    public int read() throws TimeoutException, IOException {
+        if (!readBuffer.hasRemaining() && fillReadBuffer() == -1) {
+            return -1;
+        }
+        return readBuffer.get() & 0xff;
+    }
+
+    /**
+     * Read the next block of bytes from the connection, appending it to the unconsumed bytes in the 
+     * receive buffer.  
+     * 
+     * @return the number of bytes read, or -1 if the end of the stream was reached.
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    private int fillReadBuffer() throws TimeoutException, IOException {
+        ByteBuffer buffer = readBuffer;
+        if (buffer.remaining() == buffer.capacity()) {
+            // Completely filled with one unfinished line, grow.
+            buffer = ByteBuffer.allocate(buffer.capacity()*2).put(buffer).flip();
+            readBuffer = buffer;
+        }
+        buffer.compact();
+        int count = -1;
+        try {
+            count = readBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (count > 0) {
+                buffer.position(buffer.position() + count);
+            }
+        }
+        finally {
+            buffer.flip();
+        }
+        return count;
+    }
 
     /**
      * Read a line from the input stream. Blocks for the default timeout. If the read times out a
@@ -83,11 +192,20 @@ public abstract class ReferenceDriverCommunications {
      * @throws IOException
      */
     public String readLine() throws TimeoutException, IOException {
-        return readUntil("\r\n");
+        String line = readUntil("\r\n");
+        CommunicationsRecorder recorder = this.recorder;
+        if (recorder != null && line != null) {
+            recorder.recordReceived(line);
+        }
+        return line;
     }
 
     public void writeLine(String data) throws IOException {
         byte [] line = Collect.concat(data.getBytes(), getLineEndingType().getLineEnding().getBytes());
+        CommunicationsRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recorder.recordSent(data);
+        }
         writeBytes(line);
     }
 
@@ -101,27 +219,38 @@ public abstract class ReferenceDriverCommunications {
      * @throws IOException
      */
     protected String readUntil(String characters) throws TimeoutException, IOException {
-        StringBuffer line = new StringBuffer();
+        // Number of bytes of the current line that were already scanned for line ending characters.
+        int scanned = 0;
         while (true) {
-            int ch = -1;
+            ByteBuffer buffer = readBuffer;
+            byte[] bytes = buffer.array();
+            int begin = buffer.arrayOffset() + buffer.position();
+            int end = buffer.arrayOffset() + buffer.limit();
+            for (int i = begin + scanned; i < end; i++) {
+                if (characters.indexOf(bytes[i] & 0xff) >= 0) {
+                    if (i == begin) {
+                        // Skip empty lines, i.e. consecutive line ending characters.
+                        begin++;
+                        buffer.position(buffer.position() + 1);
+                    }
+                    else {
+                        // Only now create the String.
+                        String line = new String(bytes, begin, i - begin, StandardCharsets.ISO_8859_1);
+                        buffer.position(buffer.position() + i + 1 - begin);
+                        return line;
+                    }
+                }
+            }
+            scanned = end - begin;
             try {
-                ch = read();
+                if (fillReadBuffer() == -1) {
+                    return null;
+                }
             }
             catch (TimeoutException e) {
                 // In case an implementation has a read timeout, we must not stop reading.
                 continue;
             }
-            if (ch == -1) {
-                return null;
-            }
-            else if (characters.indexOf((char)ch) >= 0) {
-                if (line.length() > 0) {
-                    return line.toString();
-                }
-            }
-            else {
-                line.append((char) ch);
-            }
         }
     }
 
@@ -97,6 +97,7 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
     @Override
     public synchronized void connect() throws Exception {
         disconnect();
+        clearReadBuffer();
         serialPort = SerialPort.getCommPort(portName);
         serialPort.flushIOBuffers();
         serialPort.openPort(0);
@@ -110,10 +111,13 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         }
         serialPort.setComPortTimeouts(
                 SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING, 0, 0);
+
+        startRecording();
     }
 
     @Override
     public synchronized void disconnect() throws Exception {
+        stopRecording();
         if (serialPort != null && serialPort.isOpen()) {
             serialPort.closePort();
             serialPort = null;
@@ -137,11 +141,12 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
     }
 
     @Override
-    public int read() throws TimeoutException, IOException {
-        byte[] b = new byte[1];
+    protected int readBytes(byte[] buffer, int offset, int length) throws TimeoutException, IOException {
         int l;
         try {
-            l = serialPort.readBytes(b, 1);
+            // The port is semi-blocking, i.e. this returns as soon as at least one byte is available, 
+            // with as many bytes as are available.
+            l = serialPort.readBytes(buffer, length, offset);
         }
         catch (NullPointerException e) {
             throw new IOException("Trying to read from a unconnected serial.");
@@ -152,7 +157,7 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         if (l == 0) {
             throw new TimeoutException("Read timeout.");
         }
-        return b[0];
+        return l;
     }
 
     @Override
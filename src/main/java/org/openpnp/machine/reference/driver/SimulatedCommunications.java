@@ -1,9 +1,9 @@
 package org.openpnp.machine.reference.driver;
 
-import java.io.BufferedReader;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.util.concurrent.TimeoutException;
@@ -18,7 +18,7 @@ import org.pmw.tinylog.Logger;
  */
 public class SimulatedCommunications extends ReferenceDriverCommunications {
     protected Socket clientSocket;
-    protected BufferedReader input;
+    protected InputStream input;
     protected DataOutputStream output;
 
     protected GcodeServer gcodeServer;
@@ -27,6 +27,7 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
     @Override
     public synchronized void connect() throws Exception {
         disconnect();
+        clearReadBuffer();
         if (gcodeServer == null) {
             try {
                 gcodeServer = new GcodeServer();
@@ -37,14 +38,22 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
         }
         if (gcodeServer != null) {
             gcodeServer.setDriver(driver);
+            File replayFile = CommunicationsRecording.getReplayFile(driverName);
+            if (replayFile != null) {
+                gcodeServer.setReplay(CommunicationsRecording.read(replayFile));
+                Logger.info("[{}] Replaying {}", getConnectionName(), replayFile);
+            }
         }
         clientSocket = new Socket("localhost", getGcodeServer().getListenerPort());
-        input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+        input = clientSocket.getInputStream();
         output = new DataOutputStream(clientSocket.getOutputStream());
+
+        startRecording();
     }
 
     @Override
     public synchronized void disconnect() throws Exception {
+        stopRecording();
         if (clientSocket != null && clientSocket.isBound()) {
             clientSocket.close();
             input.close();
@@ -71,9 +80,9 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
     }
 
     @Override
-    public int read() throws TimeoutException, IOException {
+    protected int readBytes(byte[] buffer, int offset, int length) throws TimeoutException, IOException {
         try {
-            return input.read();
+            return input.read(buffer, offset, length);
         }
         catch (NullPointerException ex) {
             throw new IOException("Trying to read from a unconnected socket.");
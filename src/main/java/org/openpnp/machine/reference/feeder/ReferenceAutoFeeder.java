@@ -28,6 +28,7 @@ import org.openpnp.machine.reference.feeder.wizards.ReferenceAutoFeederConfigura
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Location;
 import org.openpnp.spi.Actuator;
+import org.openpnp.spi.Head;
 import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.base.AbstractActuator;
@@ -112,6 +113,21 @@ public class ReferenceAutoFeeder extends ReferenceFeeder {
         actuator.actuate((Object)actuatorValue);
     }
     
+    @Override
+    public boolean isFeedHeadIndependent() {
+        if (isMoveBeforeFeed() || getFeedOptions() != FeedOptions.Normal
+                || actuatorName == null || actuatorName.equals("")) {
+            return false;
+        }
+        // Head mounted actuators take precedence in feed().
+        for (Head head : Configuration.get().getMachine().getHeads()) {
+            if (head.getActuatorByName(actuatorName) != null) {
+                return false;
+            }
+        }
+        return Configuration.get().getMachine().getActuatorByName(actuatorName) != null;
+    }
+
     @Override
     public void postPick(Nozzle nozzle) throws Exception {
         if (postPickActuatorName == null || postPickActuatorName.equals("")) {
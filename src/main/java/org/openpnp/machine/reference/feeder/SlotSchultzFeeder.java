@@ -133,7 +133,10 @@ public class SlotSchultzFeeder extends SchultzFeeder {
               throw new Exception("Can't set feeder from another bank.");
           }
         }
+        String oldName = getName();
         getBank().setFeeder(this, feeder);
+        // The name shows the feeder. This also tells the IdentifiableList about the slot that had it.
+        firePropertyChange("name", oldName, getName());
     }
     
     public static synchronized IdentifiableList<Bank> getBanks() {
@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.PatternSyntaxException;
 
 import org.openpnp.machine.reference.ReferenceActuator;
 import org.openpnp.machine.reference.driver.GcodeDriver;
@@ -122,6 +123,15 @@ public class ActuatorSolutions implements Solutions.Subject {
 
     public static void findActuatorReadIssues(Solutions solutions, Solutions.Subject holder, Actuator actuator,
             String qualifier, String uri) {
+        if (actuator != null && actuator.getDriver() instanceof GcodeDriver) {
+            GcodeDriver driver = (GcodeDriver) actuator.getDriver();
+            GcodeDriver.Command reportRegex = driver.getCommand(actuator, CommandType.ACTUATOR_REPORT_REGEX, false);
+            if (reportRegex != null) {
+                // The actuator is read from the reports of the controller, no read command is needed.
+                findActuatorReportIssues(solutions, driver, actuator, qualifier, reportRegex, uri);
+                return;
+            }
+        }
         HashMap<CommandType, String []> suggestions = new HashMap<>();
         suggestions.put(CommandType.ACTUATOR_READ_COMMAND, new String[] { "M105 ; read inputs" });
         suggestions.put(CommandType.ACTUATOR_READ_REGEX, new String[] { 
@@ -133,6 +143,28 @@ public class ActuatorSolutions implements Solutions.Subject {
                 uri);
     }
 
+    private static void findActuatorReportIssues(Solutions solutions, GcodeDriver driver, Actuator actuator,
+            String qualifier, GcodeDriver.Command reportRegex, String uri) {
+        String problem = null;
+        try {
+            reportRegex.getPattern();
+            if (!reportRegex.getCommand().contains("(?<Value>")) {
+                problem = "is missing the \"Value\" capturing group";
+            }
+        }
+        catch (PatternSyntaxException e) {
+            problem = "is invalid: "+e.getDescription();
+        }
+        if (problem != null) {
+            solutions.add(new Solutions.PlainIssue(
+                    driver, 
+                    "The ACTUATOR_REPORT_REGEX of the "+qualifier+" actuator "+actuator.getName()+" "+problem+".", 
+                    "Correct the regular expression on driver "+driver.getName()+" as described in the Wiki.", 
+                    Severity.Error,
+                    uri));
+        }
+    }
+
     protected void findActuatorIssues(Solutions solutions, Solutions.Subject holder, String qualifier,
             CommandType[] commandTypes, Map<CommandType, String[]> suggestions, String uri) {
         if (actuator == null) {
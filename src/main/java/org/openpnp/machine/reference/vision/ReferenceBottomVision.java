@@ -1,9 +1,15 @@
 package org.openpnp.machine.reference.vision;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 import org.opencv.core.Point;
@@ -67,6 +73,11 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
     @Attribute(required = false)
     protected int maxVisionPasses = 3;
 
+    @Attribute(required = false)
+    protected boolean overlapShots = false;
+
+    private static ExecutorService shotExecutor;
+
     @Element(required = false)
     protected Length maxLinearOffset = new Length(1, LengthUnit.Millimeters);
 
@@ -585,42 +596,149 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
             Part part, Nozzle nozzle, Location wantedLocation, Location adjustedNozzleLocation, BottomVisionSettings bottomVisionSettings) throws Exception {
         preparePipeline(pipeline, bottomVisionSettings.getPipelineParameterAssignments(), camera, part.getPackage(), 
                 nozzle, nozzle.getNozzleTip(), wantedLocation, adjustedNozzleLocation, bottomVisionSettings);
-        for (PipelineShot pipelineShot : pipeline.getPipelineShots()) {
-            pipelineShot.apply();
-
-            pipeline.process();
-            Result result = pipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME);
-
-            // Fall back to the old name of "result" instead of "results" for backwards
-            // compatibility.
-            if (result == null) {
-                result = pipeline.getResult("result");
+        // Only the results are needed, not the images of all the stages.
+        boolean productionMode = pipeline.isProductionMode();
+        pipeline.setProductionMode(true);
+        try {
+            if (overlapShots && pipeline.getPipelineShotsCount() > 1) {
+                return processPipelineShotsOverlapped(pipeline, camera, part, nozzle);
             }
+            for (PipelineShot pipelineShot : pipeline.getPipelineShots()) {
+                pipelineShot.apply();
 
-            if (result == null) {
-                throw new Exception(String.format(
-                        "ReferenceBottomVision (%s): Pipeline error. Pipeline must contain a result named '%s'.",
-                        part.getId(), VisionUtils.PIPELINE_RESULTS_NAME));
+                pipeline.process();
+                processPipelineShotResult(pipeline, pipelineShot, camera, part, nozzle);
             }
+            return (RotatedRect) pipeline.getCurrentPipelineShot().processCompositeResult().getModel();
+        }
+        finally {
+            // The pipeline is shared with the editor, which needs the images of all the stages.
+            pipeline.setProductionMode(productionMode);
+        }
+    }
 
-            if (result.model == null) {
-                throw new Exception(String.format(
-                        "ReferenceBottomVision (%s): No result found.",
-                        part.getId()));
+    /**
+     * Process the pipeline shots, overlapping the image processing of each shot with the move to and
+     * the capture of the next shot. The image processing of all but the last shot is done on 
+     * concurrent clones of the pipeline. The results are still assembled in shot order.
+     */
+    private RotatedRect processPipelineShotsOverlapped(CvPipeline pipeline, Camera camera,
+            Part part, Nozzle nozzle) throws Exception {
+        List<PipelineShot> pipelineShots = pipeline.getPipelineShots();
+        List<CvPipeline> shotPipelines = new ArrayList<>();
+        List<Future<Long>> shotProcessing = new ArrayList<>();
+        long machineTimeNs = 0;
+        long waitTimeNs = 0;
+        long visionTimeNs = 0;
+        long lastShotVisionTimeNs = 0;
+        try {
+            for (PipelineShot pipelineShot : pipelineShots) {
+                long t0 = System.nanoTime();
+                pipelineShot.apply();
+                boolean lastShot = (pipelineShot.getIndex() == pipelineShots.size() - 1);
+                CvPipeline shotPipeline = lastShot ? pipeline : pipeline.cloneWithProperties();
+                shotPipelines.add(shotPipeline);
+                // Capture on the machine thread. 
+                shotPipeline.processMachineStages();
+                machineTimeNs += System.nanoTime() - t0;
+                Callable<Long> processing = () -> {
+                    long t = System.nanoTime();
+                    shotPipeline.processRemainingStages();
+                    return System.nanoTime() - t;
+                };
+                if (lastShot) {
+                    lastShotVisionTimeNs = processing.call();
+                    visionTimeNs += lastShotVisionTimeNs;
+                }
+                else {
+                    shotProcessing.add(getShotExecutor().submit(processing));
+                }
             }
-
-            if (!(result.model instanceof RotatedRect)) {
-                throw new Exception(String.format(
-                        "ReferenceBottomVision (%s): Incorrect pipeline result type (%s). Expected RotatedRect.",
-                        part.getId(), result.model.getClass().getSimpleName()));
+            long t0 = System.nanoTime();
+            for (Future<Long> future : shotProcessing) {
+                try {
+                    visionTimeNs += future.get();
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+            waitTimeNs = System.nanoTime() - t0;
+            for (int i = 0; i < shotPipelines.size(); i++) {
+                processPipelineShotResult(shotPipelines.get(i), pipelineShots.get(i), camera, part, nozzle);
             }
-            pipelineShot.processResult(result);
-            // Display the shot result.   
-            displayResult(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), part, null, camera, nozzle);
         }
+        finally {
+            for (int i = 0; i < shotPipelines.size(); i++) {
+                if (shotPipelines.get(i) != pipeline) {
+                    if (i < shotProcessing.size()) {
+                        // Make sure the processing is done, before releasing. 
+                        try {
+                            shotProcessing.get(i).get();
+                        }
+                        catch (Exception e) {
+                            // Already handled above.
+                        }
+                    }
+                    shotPipelines.get(i).release();
+                }
+            }
+        }
+        // Vision time of the earlier shots that was hidden behind motion and capture of the later shots.
+        long overlappedTimeNs = Math.max(0, visionTimeNs - waitTimeNs - lastShotVisionTimeNs);
+        Logger.debug("{} overlapped {} shots: motion and capture {} ms, vision {} ms, overlapped {} ms, waited {} ms.",
+                part.getId(), pipelineShots.size(),
+                String.format("%.1f", machineTimeNs/1e6), String.format("%.1f", visionTimeNs/1e6),
+                String.format("%.1f", overlappedTimeNs/1e6), String.format("%.1f", waitTimeNs/1e6));
         return (RotatedRect) pipeline.getCurrentPipelineShot().processCompositeResult().getModel();
     }
 
+    private void processPipelineShotResult(CvPipeline pipeline, PipelineShot pipelineShot, Camera camera,
+            Part part, Nozzle nozzle) throws Exception {
+        Result result = pipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME);
+
+        // Fall back to the old name of "result" instead of "results" for backwards
+        // compatibility.
+        if (result == null) {
+            result = pipeline.getResult("result");
+        }
+
+        if (result == null) {
+            throw new Exception(String.format(
+                    "ReferenceBottomVision (%s): Pipeline error. Pipeline must contain a result named '%s'.",
+                    part.getId(), VisionUtils.PIPELINE_RESULTS_NAME));
+        }
+
+        if (result.model == null) {
+            throw new Exception(String.format(
+                    "ReferenceBottomVision (%s): No result found.",
+                    part.getId()));
+        }
+
+        if (!(result.model instanceof RotatedRect)) {
+            throw new Exception(String.format(
+                    "ReferenceBottomVision (%s): Incorrect pipeline result type (%s). Expected RotatedRect.",
+                    part.getId(), result.model.getClass().getSimpleName()));
+        }
+        pipelineShot.processResult(result);
+        // Display the shot result.   
+        displayResult(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), part, null, camera, nozzle);
+    }
+
+    private static synchronized ExecutorService getShotExecutor() {
+        if (shotExecutor == null) {
+            shotExecutor = Executors.newCachedThreadPool((runnable) -> {
+                Thread thread = new Thread(runnable, "ReferenceBottomVision shot");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return shotExecutor;
+    }
+
     @Override
     public boolean canHandle(PartSettingsHolder settingsHolder, boolean allowDisabled) {
         BottomVisionSettings visionSettings = getInheritedVisionSettings(settingsHolder);
@@ -692,6 +810,14 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
         this.preRotate = preRotate;
     }
 
+    public boolean isOverlapShots() {
+        return overlapShots;
+    }
+
+    public void setOverlapShots(boolean overlapShots) {
+        this.overlapShots = overlapShots;
+    }
+
     public int getMaxVisionPasses() {
         return maxVisionPasses;
     }
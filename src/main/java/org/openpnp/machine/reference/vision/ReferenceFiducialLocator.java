@@ -614,9 +614,12 @@ public class ReferenceFiducialLocator extends AbstractPartSettingsHolder impleme
     private Location detectFiducialFromViewpoint(Camera camera, Location location,
             CvPipeline pipeline, PartSettingsHolder partSettingsHolder) throws Exception {
         // Perform vision operation
+        boolean productionMode = pipeline.isProductionMode();
         try {
             pipeline.setProperty("fiducial.center", location);
             pipeline.setProperty("MaskCircle.center", location);
+            // Only the results are needed, not the images of all the stages.
+            pipeline.setProductionMode(true);
             pipeline.process();
 
             // Get the results
@@ -662,6 +665,8 @@ public class ReferenceFiducialLocator extends AbstractPartSettingsHolder impleme
         finally {
             pipeline.setProperty("fiducial.center", null);
             pipeline.setProperty("MaskCircle.center", null);
+            // The pipeline is shared with the editor, which needs the images of all the stages.
+            pipeline.setProductionMode(productionMode);
         }
     }
 
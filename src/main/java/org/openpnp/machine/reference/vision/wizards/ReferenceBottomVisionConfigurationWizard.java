@@ -34,6 +34,7 @@ public class ReferenceBottomVisionConfigurationWizard extends AbstractConfigurat
     private final ReferenceBottomVision bottomVision;
     private JCheckBox enabledCheckbox;
     private JCheckBox preRotCheckbox;
+    private JCheckBox overlapShotsCheckbox;
     private JTextField textFieldMaxVisionPasses;
     private JTextField textFieldMaxLinearOffset;
     private JTextField textFieldMaxAngularOffset;
@@ -68,6 +69,8 @@ public class ReferenceBottomVisionConfigurationWizard extends AbstractConfigurat
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,}));
 
         JLabel lblEnabled = new JLabel(Translations.getString(
@@ -130,6 +133,15 @@ public class ReferenceBottomVisionConfigurationWizard extends AbstractConfigurat
         panel.add(textFieldMaxAngularOffset, "8, 10, fill, default");
         textFieldMaxAngularOffset.setColumns(10);
 
+        JLabel lblOverlapShots = new JLabel(Translations.getString(
+                "ReferenceBottomVisionConfigurationWizard.GeneralPanel.OverlapShotsLabel.text")); //$NON-NLS-1$
+        lblOverlapShots.setToolTipText(Translations.getString(
+                "ReferenceBottomVisionConfigurationWizard.GeneralPanel.OverlapShotsLabel.toolTipText")); //$NON-NLS-1$
+        panel.add(lblOverlapShots, "2, 12");
+
+        overlapShotsCheckbox = new JCheckBox("");
+        panel.add(overlapShotsCheckbox, "4, 12");
+
         preRotCheckbox.addActionListener(new ActionListener()
         {
             @Override
@@ -165,6 +177,7 @@ public class ReferenceBottomVisionConfigurationWizard extends AbstractConfigurat
         addWrappedBinding(bottomVision, "bottomVisionSettings", visionSettings, "selectedItem");
         addWrappedBinding(bottomVision, "enabled", enabledCheckbox, "selected");
         addWrappedBinding(bottomVision, "preRotate", preRotCheckbox, "selected");
+        addWrappedBinding(bottomVision, "overlapShots", overlapShotsCheckbox, "selected");
 
         addWrappedBinding(bottomVision, "maxVisionPasses", textFieldMaxVisionPasses, "text", intConverter);
         addWrappedBinding(bottomVision, "maxLinearOffset", textFieldMaxLinearOffset, "text", lengthConverter);
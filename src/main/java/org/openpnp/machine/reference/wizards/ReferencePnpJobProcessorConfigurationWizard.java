@@ -19,21 +19,47 @@
 
 package org.openpnp.machine.reference.wizards;
 
+import java.awt.BorderLayout;
+import java.awt.Dialog;
+import java.awt.Dimension;
+import java.awt.FileDialog;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.Frame;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.AbstractAction;
+import javax.swing.Action;
 import javax.swing.BoxLayout;
+import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.TitledBorder;
+import javax.swing.table.AbstractTableModel;
 
 import org.openpnp.Translations;
 import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.IntegerConverter;
+import org.openpnp.gui.support.MessageBoxes;
+import org.openpnp.machine.reference.JobTelemetry;
 import org.openpnp.machine.reference.ReferencePnpJobProcessor;
 import org.openpnp.machine.reference.ReferencePnpJobProcessor.JobOrderHint;
 import org.openpnp.spi.PnpJobPlanner.Strategy;
+import org.openpnp.util.UiUtils;
 
 import com.jgoodies.forms.layout.ColumnSpec;
 import com.jgoodies.forms.layout.FormLayout;
@@ -49,6 +75,11 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
     private JCheckBox steppingToNextMotion;
     private JCheckBox optimizeMultipleNozzles;
     private JCheckBox preRotateAllNozzles;
+    private JCheckBox lookAhead;
+    private JCheckBox jobTelemetry;
+    private JCheckBox parallelPlanning;
+    private TelemetryTableModel telemetryTableModel;
+    private Timer telemetryTimer;
     
     public ReferencePnpJobProcessorConfigurationWizard(ReferencePnpJobProcessor jobProcessor) {
         this.jobProcessor = jobProcessor;
@@ -75,6 +106,12 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
                         FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC,}));
 
         // FIXME: this translation reference looks quite different to the one used below and shall be synchronized
@@ -120,6 +157,66 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
 
         preRotateAllNozzles = new JCheckBox(); 
         panelGeneral.add(preRotateAllNozzles, "4, 12");
+
+        JLabel lblLookAhead = new JLabel(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblLookAhead.text")); //$NON-NLS-1$
+        lblLookAhead.setToolTipText(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblLookAhead.toolTipText")); //$NON-NLS-1$
+        panelGeneral.add(lblLookAhead, "2, 14, right, default");
+
+        lookAhead = new JCheckBox(); 
+        panelGeneral.add(lookAhead, "4, 14");
+
+        JLabel lblJobTelemetry = new JLabel(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblJobTelemetry.text")); //$NON-NLS-1$
+        lblJobTelemetry.setToolTipText(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblJobTelemetry.toolTipText")); //$NON-NLS-1$
+        panelGeneral.add(lblJobTelemetry, "2, 16, right, default");
+
+        jobTelemetry = new JCheckBox(); 
+        panelGeneral.add(jobTelemetry, "4, 16");
+
+        JLabel lblParallelPlanning = new JLabel(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblParallelPlanning.text")); //$NON-NLS-1$
+        lblParallelPlanning.setToolTipText(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblParallelPlanning.toolTipText")); //$NON-NLS-1$
+        panelGeneral.add(lblParallelPlanning, "2, 18, right, default");
+
+        parallelPlanning = new JCheckBox(); 
+        panelGeneral.add(parallelPlanning, "4, 18");
+
+        JPanel panelTelemetry = new JPanel();
+        panelTelemetry.setBorder(new TitledBorder(null, "Telemetry", TitledBorder.LEADING,
+                TitledBorder.TOP, null, null));
+        contentPanel.add(panelTelemetry);
+        panelTelemetry.setLayout(new BorderLayout(0, 0));
+
+        telemetryTableModel = new TelemetryTableModel();
+        JTable telemetryTable = new JTable(telemetryTableModel);
+        telemetryTable.setAutoCreateRowSorter(true);
+        JScrollPane telemetryScrollPane = new JScrollPane(telemetryTable);
+        telemetryScrollPane.setPreferredSize(new Dimension(600, 250));
+        panelTelemetry.add(telemetryScrollPane, BorderLayout.CENTER);
+
+        JPanel panelTelemetryActions = new JPanel();
+        panelTelemetryActions.setLayout(new FlowLayout(FlowLayout.LEFT));
+        panelTelemetryActions.add(new JButton(exportTelemetryAction));
+        panelTelemetryActions.add(new JButton(compareTelemetryAction));
+        panelTelemetry.add(panelTelemetryActions, BorderLayout.NORTH);
+
+        // Live update of the telemetry, while a job is running.
+        telemetryTimer = new Timer(1000, e -> {
+            if (isShowing()) {
+                telemetryTableModel.setTelemetry(jobProcessor.getTelemetry());
+            }
+        });
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        telemetryTableModel.setTelemetry(jobProcessor.getTelemetry());
+        telemetryTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        telemetryTimer.stop();
+        super.removeNotify();
     }
 
     @Override
@@ -132,7 +229,137 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
         addWrappedBinding(jobProcessor, "steppingToNextMotion", steppingToNextMotion, "selected");
         addWrappedBinding(jobProcessor, "optimizeMultipleNozzles", optimizeMultipleNozzles, "selected");
         addWrappedBinding(jobProcessor, "preRotateAllNozzles", preRotateAllNozzles, "selected");
+        addWrappedBinding(jobProcessor, "lookAhead", lookAhead, "selected");
+        addWrappedBinding(jobProcessor, "jobTelemetry", jobTelemetry, "selected");
+        addWrappedBinding(jobProcessor, "parallelPlanning", parallelPlanning, "selected");
         
         ComponentDecorators.decorateWithAutoSelect(maxVisionRetriesTextField);
     }
+
+    private File chooseFile(String title, int mode, String defaultFile) {
+        Window window = SwingUtilities.getWindowAncestor(this);
+        FileDialog fileDialog = (window instanceof Dialog) 
+                ? new FileDialog((Dialog) window, title, mode)
+                : new FileDialog((Frame) window, title, mode);
+        fileDialog.setFile(defaultFile);
+        fileDialog.setVisible(true);
+        if (fileDialog.getFile() == null) {
+            return null;
+        }
+        return new File(new File(fileDialog.getDirectory()), fileDialog.getFile());
+    }
+
+    private final Action exportTelemetryAction = new AbstractAction() {
+        {
+            putValue(NAME, Translations.getString("ReferencePnpJobProcessorConfigurationWizard.btnExportTelemetry.text")); //$NON-NLS-1$
+            putValue(SHORT_DESCRIPTION, Translations.getString("ReferencePnpJobProcessorConfigurationWizard.btnExportTelemetry.toolTipText")); //$NON-NLS-1$
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            JobTelemetry telemetry = jobProcessor.getTelemetry();
+            if (telemetry == null) {
+                MessageBoxes.errorBox(getTopLevelAncestor(), "Error", "No job telemetry collected.");
+                return;
+            }
+            File file = chooseFile("Export Job Telemetry", FileDialog.SAVE, "job-telemetry.csv");
+            if (file != null) {
+                UiUtils.messageBoxOnException(() -> telemetry.exportCsv(file));
+            }
+        }
+    };
+
+    private final Action compareTelemetryAction = new AbstractAction() {
+        {
+            putValue(NAME, Translations.getString("ReferencePnpJobProcessorConfigurationWizard.btnCompareTelemetry.text")); //$NON-NLS-1$
+            putValue(SHORT_DESCRIPTION, Translations.getString("ReferencePnpJobProcessorConfigurationWizard.btnCompareTelemetry.toolTipText")); //$NON-NLS-1$
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            File baseline = chooseFile("Open Baseline Job Telemetry", FileDialog.LOAD, "*.csv");
+            if (baseline == null) {
+                return;
+            }
+            File candidate = chooseFile("Open Candidate Job Telemetry", FileDialog.LOAD, "*.csv");
+            if (candidate == null) {
+                return;
+            }
+            UiUtils.messageBoxOnException(() -> {
+                JTextArea report = new JTextArea(JobTelemetry.compare(baseline, candidate));
+                report.setFont(new Font(Font.MONOSPACED, Font.PLAIN, report.getFont().getSize()));
+                report.setEditable(false);
+                JScrollPane scrollPane = new JScrollPane(report);
+                scrollPane.setPreferredSize(new Dimension(1000, 500));
+                JOptionPane.showMessageDialog(getTopLevelAncestor(), scrollPane, 
+                        "Job Telemetry Comparison", JOptionPane.PLAIN_MESSAGE);
+            });
+        }
+    };
+
+    private static class TelemetryTableModel extends AbstractTableModel {
+        private final String[] columnNames = new String[] {"Phase", "Dimension", "Name", "Count",
+                "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms"};
+        private List<JobTelemetry.Series> series = new ArrayList<>();
+
+        public void setTelemetry(JobTelemetry telemetry) {
+            series = (telemetry == null) ? new ArrayList<>() : telemetry.getSeries();
+            fireTableDataChanged();
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columnNames[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int columnIndex) {
+            switch (columnIndex) {
+                case 0:
+                case 1:
+                case 2:
+                    return String.class;
+                case 3:
+                    return Long.class;
+                default:
+                    return Double.class;
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return series.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columnNames.length;
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            JobTelemetry.Series s = series.get(rowIndex);
+            JobTelemetry.Histogram h = s.getHistogram();
+            switch (columnIndex) {
+                case 0:
+                    return s.getPhase().name();
+                case 1:
+                    return s.getDimension().name();
+                case 2:
+                    return s.getName();
+                case 3:
+                    return h.getCount();
+                case 4:
+                    return Math.round(h.getMeanNs() / 1e5) / 10.0;
+                case 5:
+                    return Math.round(h.getPercentileNs(50) / 1e5) / 10.0;
+                case 6:
+                    return Math.round(h.getPercentileNs(90) / 1e5) / 10.0;
+                case 7:
+                    return Math.round(h.getPercentileNs(99) / 1e5) / 10.0;
+                default:
+                    return Math.round(h.getMaxNs() / 1e5) / 10.0;
+            }
+        }
+    }
 }
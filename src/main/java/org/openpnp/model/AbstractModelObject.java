@@ -23,6 +23,7 @@ import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeListenerProxy;
 import java.beans.PropertyChangeSupport;
 
+import org.openpnp.util.IdentifiableList;
 import org.pmw.tinylog.Logger;
 
 public abstract class AbstractModelObject {
@@ -113,7 +114,15 @@ public abstract class AbstractModelObject {
         }        
     }
 
+    /**
+     * Fires a property change. An "id" or "name" change must be fired whenever the id or name of
+     * an object changes, even if derived from other properties, so the IdentifiableList indexes
+     * are rebuilt.
+     */
     protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+        if ("id".equals(propertyName) || "name".equals(propertyName)) {
+            IdentifiableList.keyChanged();
+        }
         propertyChangeSupport.firePropertyChange(propertyName, oldValue, newValue);
     }
     
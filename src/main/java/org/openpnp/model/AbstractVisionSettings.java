@@ -58,7 +58,9 @@ public abstract class AbstractVisionSettings extends AbstractModelObject impleme
     }
 
     public void setId(String id) {
+        Object oldValue = this.id;
         this.id = id;
+        firePropertyChange("id", oldValue, id);
     }
 
     @Override
@@ -21,13 +21,15 @@
 
 package org.openpnp.model;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -37,6 +39,7 @@ import org.openpnp.spi.ControllerAxis;
 import org.openpnp.spi.CoordinateAxis;
 import org.openpnp.spi.Driver;
 import org.openpnp.spi.Machine;
+import org.openpnp.spi.base.AbstractAxis;
 import org.openpnp.util.Triplet;
 
 /**
@@ -61,7 +64,18 @@ import org.openpnp.util.Triplet;
  * 
  */
 public class AxesLocation {
-    final private LinkedHashMap<Axis, Double> location;
+    /*
+     * The coordinates are stored in primitive arrays, in the order the axes were added. For a
+     * fast presence test, each axis also sets the bit of its AbstractAxis.getAxisIndex() in the
+     * mask. The indices are assigned per machine. Axes without a machine and axes beyond the mask
+     * width share the last bit, so a set bit still requires the (short) array scan, but a cleared
+     * bit proves absence.
+     */
+    private Axis[] axes;
+    private double[] coordinates;
+    private int size;
+    private long mask;
+
     final public static AxesLocation zero = new AxesLocation();
 
     /**
@@ -83,7 +97,28 @@ public class AxesLocation {
      */
     public AxesLocation() {
         // Empty.
-        location = new LinkedHashMap<>(0);
+        this(0);
+    }
+    /**
+     * Create an empty AxesLocation with capacity for the given number of axes.
+     * 
+     * @param capacity
+     */
+    private AxesLocation(int capacity) {
+        axes = new Axis[capacity];
+        coordinates = new double[capacity];
+    }
+    /**
+     * Create a copy of the other AxesLocation, with capacity for the given number of additional axes. 
+     * 
+     * @param other
+     * @param extraCapacity
+     */
+    private AxesLocation(AxesLocation other, int extraCapacity) {
+        axes = Arrays.copyOf(other.axes, other.size + extraCapacity);
+        coordinates = Arrays.copyOf(other.coordinates, other.size + extraCapacity);
+        size = other.size;
+        mask = other.mask;
     }
     /**
      * Create a single Axis/coordinate pair AxesLocation.  
@@ -92,9 +127,9 @@ public class AxesLocation {
      * @param coordinate
      */
     public AxesLocation(Axis axis, double coordinate) {
-        location = new LinkedHashMap<>(1);
+        this(1);
         if (axis != null) {
-            location.put(axis, coordinate);
+            putCoordinate(axis, coordinate);
         }
     }
     /**
@@ -114,9 +149,9 @@ public class AxesLocation {
      * @param axes
      */
     public AxesLocation(CoordinateAxis... axis) {
-        location = new LinkedHashMap<>(axis.length);
+        this(axis.length);
         for (CoordinateAxis oneAxis : axis) {
-            location.put(oneAxis, oneAxis.getLengthCoordinate().convertToUnits(getUnits()).getValue());
+            putCoordinate(oneAxis, oneAxis.getLengthCoordinate().convertToUnits(getUnits()).getValue());
         }
     }
     /**
@@ -136,11 +171,11 @@ public class AxesLocation {
      * @param initializer
      */
     public <T extends Axis> AxesLocation(Iterable<T> axes, Function<T, Length> initializer) {
-        location = new LinkedHashMap<>();
+        this(axes instanceof Collection ? ((Collection<T>) axes).size() : 4);
         for (T axis : axes) {
             Length coordinate = initializer.apply(axis);
             if (coordinate != null) {
-                location.put(axis, coordinate.convertToUnits(getUnits()).getValue());
+                putCoordinate(axis, coordinate.convertToUnits(getUnits()).getValue());
             }
         }
     }
@@ -161,12 +196,12 @@ public class AxesLocation {
      * @param initializer
      */
     public AxesLocation(Machine machine, Function<CoordinateAxis, Length> initializer) {
-        location = new LinkedHashMap<>();
+        this(machine.getAxes().size());
         for (Axis axis : machine.getAxes()) {
             if (axis instanceof CoordinateAxis) {
                 Length coordinate = initializer.apply((CoordinateAxis) axis);
                 if (coordinate != null) {
-                    location.put(axis, coordinate.convertToUnits(getUnits()).getValue());
+                    putCoordinate(axis, coordinate.convertToUnits(getUnits()).getValue());
                 }
             }
         }
@@ -180,13 +215,13 @@ public class AxesLocation {
      * @param initializer
      */
     public AxesLocation(Machine machine, Driver driver, Function<ControllerAxis, Length> initializer) {
-        location = new LinkedHashMap<>();
+        this(machine.getAxes().size());
         for (Axis axis : machine.getAxes()) {
             if (axis instanceof ControllerAxis) {
                 if (((ControllerAxis) axis).getDriver() == driver) {
                     Length coordinate = initializer.apply((ControllerAxis) axis);
                     if (coordinate != null) {
-                        location.put(axis, coordinate.convertToUnits(getUnits()).getValue());
+                        putCoordinate(axis, coordinate.convertToUnits(getUnits()).getValue());
                     }
                 }
             }
@@ -199,11 +234,26 @@ public class AxesLocation {
      * @param axesLocation
      */
     public AxesLocation(BiFunction<Double, Double, Double> function, AxesLocation... axesLocation) {
-        location = new LinkedHashMap<>();
+        this(4);
         for (AxesLocation oneAxesLocation : axesLocation) {
             if (oneAxesLocation != null) {
-                for (Axis axis : oneAxesLocation.getAxes()) {
-                    location.merge(axis, oneAxesLocation.getCoordinate(axis), function);
+                for (int i = 0; i < oneAxesLocation.size; i++) {
+                    Axis axis = oneAxesLocation.axes[i];
+                    double coordinate = oneAxesLocation.coordinates[i];
+                    int index = indexOf(axis);
+                    if (index < 0) {
+                        putCoordinate(axis, coordinate);
+                    }
+                    else {
+                        // Same semantics as Map.merge().
+                        Double merged = function.apply(coordinates[index], coordinate);
+                        if (merged == null) {
+                            removeAt(index);
+                        }
+                        else {
+                            coordinates[index] = merged;
+                        }
+                    }
                 }
             }
         }
@@ -215,32 +265,126 @@ public class AxesLocation {
      * @param axesLocation
      */
     public AxesLocation(Function<Double, Double> function, AxesLocation axesLocation) {
-        location = new LinkedHashMap<>();
-        for (Axis axis : axesLocation.getAxes()) {
-            location.put(axis, function.apply(axesLocation.getCoordinate(axis)));
+        this(axesLocation, 0);
+        for (int i = 0; i < size; i++) {
+            coordinates[i] = function.apply(coordinates[i]);
+        }
+    }
+
+    /**
+     * @param axis
+     * @return the mask bit of the axis.
+     */
+    private static long maskBit(Axis axis) {
+        int index = (axis instanceof AbstractAxis ? ((AbstractAxis) axis).getAxisIndex() : Long.SIZE - 1);
+        return 1L << Math.min(index, Long.SIZE - 1);
+    }
+
+    /**
+     * @param axis
+     * @return the position of the axis in the arrays, or -1 if not present. 
+     */
+    private int indexOf(Axis axis) {
+        if ((mask & maskBit(axis)) != 0) {
+            for (int i = 0; i < size; i++) {
+                if (axes[i] == axis) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Put the coordinate for the axis. Only to be used while constructing a new AxesLocation, as 
+     * AxesLocations are otherwise immutable. 
+     * 
+     * @param axis
+     * @param coordinate
+     */
+    private void putCoordinate(Axis axis, double coordinate) {
+        int index = indexOf(axis);
+        if (index >= 0) {
+            // Like a Map, keep the original position.
+            coordinates[index] = coordinate;
+            return;
+        }
+        if (size == axes.length) {
+            int capacity = Math.max(4, size*2);
+            axes = Arrays.copyOf(axes, capacity);
+            coordinates = Arrays.copyOf(coordinates, capacity);
+        }
+        axes[size] = axis;
+        coordinates[size] = coordinate;
+        size++;
+        mask |= maskBit(axis);
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(axes, index + 1, axes, index, size - index - 1);
+        System.arraycopy(coordinates, index + 1, coordinates, index, size - index - 1);
+        size--;
+        axes[size] = null;
+        mask = 0;
+        for (int i = 0; i < size; i++) {
+            mask |= maskBit(axes[i]);
         }
     }
 
     public AxesLocation add(AxesLocation other) {
-        return new AxesLocation((a, b) -> (a + b), this, other);
+        AxesLocation result = new AxesLocation(this, other.size);
+        for (int i = 0; i < other.size; i++) {
+            int index = result.indexOf(other.axes[i]);
+            if (index >= 0) {
+                result.coordinates[index] += other.coordinates[i];
+            }
+            else {
+                result.putCoordinate(other.axes[i], other.coordinates[i]);
+            }
+        }
+        return result;
     }
 
     public AxesLocation subtract(AxesLocation other) {
-        return new AxesLocation((a, b) -> (a - b), this, other);
+        AxesLocation result = new AxesLocation(this, other.size);
+        for (int i = 0; i < other.size; i++) {
+            int index = result.indexOf(other.axes[i]);
+            if (index >= 0) {
+                result.coordinates[index] -= other.coordinates[i];
+            }
+            else {
+                // Note, like the Map.merge() based implementation, an axis missing in this is 
+                // taken over unchanged.
+                result.putCoordinate(other.axes[i], other.coordinates[i]);
+            }
+        }
+        return result;
     }
 
     public AxesLocation multiply(double factor) {
-        return new AxesLocation((a) -> (a*factor), this);
+        AxesLocation result = new AxesLocation(this, 0);
+        for (int i = 0; i < result.size; i++) {
+            result.coordinates[i] *= factor;
+        }
+        return result;
     }
 
     public AxesLocation put(AxesLocation other) {
-        return new AxesLocation((a, b) -> (b), this, other);
+        AxesLocation result = new AxesLocation(this, other.size);
+        for (int i = 0; i < other.size; i++) {
+            result.putCoordinate(other.axes[i], other.coordinates[i]);
+        }
+        return result;
     }
 
     public AxesLocation remove(Axis other) {
-        return new AxesLocation(this.getControllerAxes(), 
-                (axis) -> (axis.equals(other) ? 
-                        null : this.getLengthCoordinate(axis)));
+        AxesLocation result = new AxesLocation(size);
+        for (int i = 0; i < size; i++) {
+            if (axes[i] instanceof ControllerAxis && axes[i] != other) {
+                result.putCoordinate(axes[i], coordinates[i]);
+            }
+        }
+        return result;
     }
 
     /**
@@ -251,8 +395,8 @@ public class AxesLocation {
      */
     public double dotProduct(AxesLocation other) {
         double dot = 0;
-        for (Entry<Axis, Double> entry : this.location.entrySet()) {
-            dot += entry.getValue()*other.getCoordinate(entry.getKey());
+        for (int i = 0; i < size; i++) {
+            dot += coordinates[i]*other.getCoordinate(axes[i]);
         }
         return dot;
     }
@@ -308,7 +452,37 @@ public class AxesLocation {
      * @return
      */
     public Set<Axis> getAxes() {
-        return location.keySet();
+        return new AbstractSet<Axis>() {
+            @Override
+            public Iterator<Axis> iterator() {
+                return new Iterator<Axis>() {
+                    private int i = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < size;
+                    }
+
+                    @Override
+                    public Axis next() {
+                        if (i >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        return axes[i++];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return (o instanceof Axis && indexOf((Axis) o) >= 0);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     /**
@@ -336,9 +510,9 @@ public class AxesLocation {
     @SuppressWarnings("unchecked")
     public <T extends Axis> LinkedHashSet<T> getAxes(Class<T> axisClass) {
         LinkedHashSet<T> axes = new LinkedHashSet<>();
-        for (Axis axis : getAxes()) {
-            if (axisClass.isInstance(axis)) {
-                axes.add((T) axis);
+        for (int i = 0; i < size; i++) {
+            if (axisClass.isInstance(this.axes[i])) {
+                axes.add((T) this.axes[i]);
             }
         }
         return axes;
@@ -358,7 +532,7 @@ public class AxesLocation {
         if (axis == null) {
             return true;
         }
-        return (location.containsKey(axis));
+        return (indexOf(axis) >= 0);
     }
 
     /**
@@ -386,11 +560,11 @@ public class AxesLocation {
     }
 
     public int size() {
-        return getAxes().size();
+        return size;
     }
 
     public boolean isEmpty() {
-        return getAxes().isEmpty();
+        return size == 0;
     }
 
     /**
@@ -421,9 +595,9 @@ public class AxesLocation {
      */
     public double getCoordinate(Axis axis) {
         if (axis != null) {
-            Double coordinate = location.get(axis);
-            if (coordinate != null) {
-                return coordinate;
+            int index = indexOf(axis);
+            if (index >= 0) {
+                return coordinates[index];
             }
         }
         return 0.0;
@@ -458,14 +632,13 @@ public class AxesLocation {
     public String toString() {
         StringBuilder str = new StringBuilder();
         str.append("(");
-        int i = 0;
-        for (Entry<Axis, Double> entry : location.entrySet()) {
-            if (i++ > 0) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
                 str.append(", ");
             }
-            str.append(entry.getKey().getName());
+            str.append(axes[i].getName());
             str.append(":");
-            str.append(String.format(Locale.US, "%f", entry.getValue())); 
+            str.append(String.format(Locale.US, "%f", coordinates[i])); 
         }
         str.append(")");
         return str.toString();
@@ -614,9 +787,9 @@ public class AxesLocation {
      */
     public double getEuclideanMetric() {
         double sumSq = 0;
-        for (Entry<Axis, Double> entry : location.entrySet()) {
-            if (entry.getKey() instanceof ControllerAxis) {
-                sumSq += Math.pow(entry.getValue(), 2);
+        for (int i = 0; i < size; i++) {
+            if (axes[i] instanceof ControllerAxis) {
+                sumSq += coordinates[i]*coordinates[i];
             }
         }
         return Math.sqrt(sumSq);
@@ -19,20 +19,24 @@
 
 package org.openpnp.model;
 
+import java.beans.PropertyChangeListener;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -41,6 +45,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.prefs.Preferences;
 
 import javax.swing.JOptionPane;
@@ -127,6 +136,38 @@ public class Configuration extends AbstractModelObject {
     private Scripting scripting;
     private EventBus bus = new EventBus();
     public TreeMap<String, String> scriptState = new TreeMap<>();
+    private static ExecutorService saveExecutor;
+    /**
+     * Indices of the packages and parts not yet loaded, if lazy library loading is enabled 
+     * with -DlazyLibraries=true. The packages and parts maps contain null values for them, to
+     * keep the order. 
+     */
+    private LibraryIndex packagesIndex;
+    private LibraryIndex partsIndex;
+    private final ThreadLocal<List<ConfigurationListener>> deferredListeners = new ThreadLocal<>();
+    private volatile long lastSaveBytesWritten;
+    private volatile List<String> lastSaveFilesWritten = Collections.emptyList();
+
+    /**
+     * The persisted state of the configuration documents, in save order.
+     */
+    private final Map<String, ConfigurationDocument> documents = new LinkedHashMap<>();
+    {
+        documents.put("machine.xml", new ConfigurationDocument("machine.xml", false));
+        documents.put("packages.xml", new ConfigurationDocument("packages.xml", false));
+        documents.put("parts.xml", new ConfigurationDocument("parts.xml", true));
+        documents.put("boards.xml", new ConfigurationDocument("boards.xml", false));
+        documents.put("panels.xml", new ConfigurationDocument("panels.xml", false));
+        documents.put("vision-settings.xml", new ConfigurationDocument("vision-settings.xml", false));
+        documents.put("script-state.xml", new ConfigurationDocument("script-state.xml", false));
+    }
+
+    private final PropertyChangeListener partsChangeListener = e -> {
+        if (!"placementCount".equals(e.getPropertyName()) 
+                && !"assignedFeeders".equals(e.getPropertyName())) {
+            documents.get("parts.xml").dirty = true;
+        }
+    };
 
     public static boolean isInstanceInitialized() {
         return (instance != null);
@@ -393,6 +434,19 @@ public class Configuration extends AbstractModelObject {
     public void addListener(ConfigurationListener listener) {
         listeners.add(listener);
         if (loaded) {
+            List<ConfigurationListener> deferred = deferredListeners.get();
+            if (deferred != null) {
+                // Objects being lazily loaded register their listeners in the constructor, i.e. 
+                // before their fields are deserialized. Notify them afterwards.
+                deferred.add(listener);
+                return;
+            }
+            notifyListeners(Collections.singletonList(listener));
+        }
+    }
+
+    private void notifyListeners(List<ConfigurationListener> listeners) {
+        for (ConfigurationListener listener : listeners) {
             try {
                 listener.configurationLoaded(this);
                 listener.configurationComplete(this);
@@ -421,6 +475,7 @@ public class Configuration extends AbstractModelObject {
                 forceSave = true;
             }
             loadPackages(file);
+            documentLoaded("packages.xml", file);
         }
         catch (Exception e) {
             String message = e.getMessage();
@@ -440,6 +495,7 @@ public class Configuration extends AbstractModelObject {
                 forceSave = true;
             }
             loadParts(file);
+            documentLoaded("parts.xml", file);
         }
         catch (Exception e) {
             String message = e.getMessage();
@@ -458,6 +514,7 @@ public class Configuration extends AbstractModelObject {
                 forceSave = true;
             }
             loadBoards(file);
+            documentLoaded("boards.xml", file);
         }
         catch (Exception e) {
             String message = e.getMessage();
@@ -476,6 +533,7 @@ public class Configuration extends AbstractModelObject {
                 forceSave = true;
             }
             loadPanels(file);
+            documentLoaded("panels.xml", file);
         }
         catch (Exception e) {
             String message = e.getMessage();
@@ -494,6 +552,7 @@ public class Configuration extends AbstractModelObject {
                 forceSave = true;
             }
             loadVisionSettings(file);
+            documentLoaded("vision-settings.xml", file);
         }
         catch (Exception e) {
             String message = e.getMessage();
@@ -513,6 +572,7 @@ public class Configuration extends AbstractModelObject {
                 forceSave = true;
             }
             loadMachine(file);
+            documentLoaded("machine.xml", file);
         }
         catch (Exception e) {
             String message = e.getMessage();
@@ -531,6 +591,7 @@ public class Configuration extends AbstractModelObject {
                 forceSave = true;
             }
             loadScriptState(file);
+            documentLoaded("script-state.xml", file);
         }
         catch (Exception e) {
             String message = e.getMessage();
@@ -559,52 +620,196 @@ public class Configuration extends AbstractModelObject {
         }
     }
 
+    /**
+     * Saves the configuration and waits for the files to be written. Only documents that have
+     * changed since they were last loaded or saved are written, see {@link #saveInBackground()}.
+     * 
+     * @throws Exception
+     */
     public synchronized void save() throws Exception {
-        LocalDateTime now = LocalDateTime.now();
         try {
-           saveMachine(createBackedUpFile("machine.xml", now));
+            saveInBackground().get();
         }
-        catch (Exception e) {
-            throw new Exception("Error while saving machine.xml (" + e.getMessage() + ")", e);
-        }
-        try {
-            savePackages(createBackedUpFile("packages.xml", now));
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
         }
-        catch (Exception e) {
-            throw new Exception("Error while saving packages.xml (" + e.getMessage() + ")", e);
+    }
+
+    /**
+     * Serializes the changed configuration documents and hands them to the background writer.
+     * Serialization happens on the calling thread, so the saved state is consistent with the
+     * model at the time of the call.<br/>
+     * <br/>
+     * The parts document is only serialized when a property change was observed since it was last
+     * loaded or saved. All the other documents are serialized every time, but like the former they
+     * are only written, and their previous version backed up, if the content actually changed.
+     * Package changes are not tracked, because footprint pads and vision compositing do not fire
+     * events. The packages document is only skipped while none of the lazily loaded packages was
+     * loaded. Files are written to a temporary file first and then atomically
+     * renamed.
+     * 
+     * @return the Future of the background write.
+     * @throws Exception if a document could not be serialized.
+     */
+    public synchronized Future<Void> saveInBackground() throws Exception {
+        long t0 = System.nanoTime();
+        List<PendingWrite> pendingWrites = new ArrayList<>();
+        serializeDocument("machine.xml", this::createMachineHolder, pendingWrites);
+        if (!isPackagesUnchanged()) {
+            serializeDocument("packages.xml", this::createPackagesHolder, pendingWrites);
+        }
+        serializeDocument("parts.xml", this::createPartsHolder, pendingWrites);
+        serializeDocument("boards.xml", this::createBoardsHolder, pendingWrites);
+        for (Board board : getBoards()) {
+            confirmSaveOfModified(board);
         }
-        try {
-            saveParts(createBackedUpFile("parts.xml", now));
+        serializeDocument("panels.xml", this::createPanelsHolder, pendingWrites);
+        for (Panel panel : getPanels()) {
+            confirmSaveOfModified(panel);
         }
-        catch (Exception e) {
-            throw new Exception("Error while saving parts.xml (" + e.getMessage() + ")", e);
+        serializeDocument("vision-settings.xml", this::createVisionSettingsHolder, pendingWrites);
+        serializeDocument("script-state.xml", this::createScriptStateHolder, pendingWrites);
+        long serializeNs = System.nanoTime() - t0;
+
+        LocalDateTime now = LocalDateTime.now();
+        return getSaveExecutor().submit(() -> {
+            long t1 = System.nanoTime();
+            long bytesWritten = 0;
+            List<String> filesWritten = new ArrayList<>();
+            for (PendingWrite pendingWrite : pendingWrites) {
+                ConfigurationDocument document = pendingWrite.document;
+                try {
+                    File file = createBackedUpFile(document.fileName, now);
+                    writeAtomically(file, pendingWrite.content);
+                    document.digest = pendingWrite.digest;
+                    bytesWritten += pendingWrite.content.length;
+                    filesWritten.add(document.fileName);
+                }
+                catch (Exception e) {
+                    // Make sure it is retried next time.
+                    document.dirty = true;
+                    document.digest = null;
+                    throw new Exception("Error while saving " + document.fileName + " (" + e.getMessage() + ")", e);
+                }
+            }
+            lastSaveBytesWritten = bytesWritten;
+            lastSaveFilesWritten = Collections.unmodifiableList(filesWritten);
+            Logger.debug("Configuration saved in {} ms (serialize {} ms, write {} ms), {} bytes written to {}",
+                    String.format("%.1f", (serializeNs + System.nanoTime() - t1)/1e6),
+                    String.format("%.1f", serializeNs/1e6),
+                    String.format("%.1f", (System.nanoTime() - t1)/1e6),
+                    bytesWritten, filesWritten);
+            return null;
+        });
+    }
+
+    /**
+     * Marks all the configuration documents as changed, so the next save will serialize them. Use
+     * this after changing parts in ways that do not fire property change events, e.g.
+     * from scripts.
+     */
+    public void setAllDocumentsDirty() {
+        for (ConfigurationDocument document : documents.values()) {
+            document.dirty = true;
         }
-        try {
-            saveBoards(createBackedUpFile("boards.xml", now));
+    }
+
+    /**
+     * @return the number of bytes written by the last completed save.
+     */
+    public long getLastSaveBytesWritten() {
+        return lastSaveBytesWritten;
+    }
+
+    /**
+     * @return the names of the files written by the last completed save.
+     */
+    public List<String> getLastSaveFilesWritten() {
+        return lastSaveFilesWritten;
+    }
+
+    /**
+     * @return true if the packages are lazily loaded and none was loaded, added or removed since
+     * the document was loaded or saved, i.e. there is no package that could have been changed.
+     */
+    private boolean isPackagesUnchanged() {
+        ConfigurationDocument document = documents.get("packages.xml");
+        if (packagesIndex == null || document.dirty || document.digest == null) {
+            return false;
+        }
+        for (Package pkg : packages.values()) {
+            if (pkg != null) {
+                return false;
+            }
         }
-        catch (Exception e) {
-            throw new Exception("Error while saving boards.xml (" + e.getMessage() + ")", e);
+        return true;
+    }
+
+    private void serializeDocument(String fileName, Callable<Object> holderFactory, 
+            List<PendingWrite> pendingWrites) throws Exception {
+        ConfigurationDocument document = documents.get(fileName);
+        if (document.tracked && !document.dirty && document.digest != null) {
+            return;
         }
+        // Clear before serializing, so changes made concurrently are not lost.
+        document.dirty = false;
         try {
-            savePanels(createBackedUpFile("panels.xml", now));
+            byte[] content = serializeObject(holderFactory.call());
+            byte[] digest = computeDigest(content);
+            if (!Arrays.equals(digest, document.digest)) {
+                pendingWrites.add(new PendingWrite(document, content, digest));
+            }
         }
         catch (Exception e) {
-            throw new Exception("Error while saving panels.xml (" + e.getMessage() + ")", e);
-        }
-        try {
-            saveVisionSettings(createBackedUpFile("vision-settings.xml", now));
+            document.dirty = true;
+            throw new Exception("Error while saving " + fileName + " (" + e.getMessage() + ")", e);
         }
-        catch (Exception e) {
-            throw new Exception("Error while saving vision-settings.xml (" + e.getMessage() + ")", e);
+    }
+
+    private void documentLoaded(String fileName, File file) throws Exception {
+        if (!file.equals(new File(configurationDirectory, fileName))) {
+            // Loaded from defaults, must be saved.
+            return;
         }
+        ConfigurationDocument document = documents.get(fileName);
+        document.digest = computeDigest(Files.readAllBytes(file.toPath()));
+        document.dirty = false;
+    }
+
+    private static byte[] computeDigest(byte[] content) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(content);
+    }
+
+    private static void writeAtomically(File file, byte[] content) throws IOException {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        Files.write(tempFile.toPath(), content);
         try {
-            saveScriptState(createBackedUpFile("script-state.xml", now));
+            Files.move(tempFile.toPath(), file.toPath(), 
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         }
-        catch (Exception e) {
-            throw new Exception("Error while saving script-state.xml (" + e.getMessage() + ")", e);
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
+    private static synchronized ExecutorService getSaveExecutor() {
+        if (saveExecutor == null) {
+            saveExecutor = Executors.newSingleThreadExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "Configuration save");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return saveExecutor;
+    }
+
+    /**
+     * Backs up the existing file into a backup directory named after the save timestamp. As only
+     * files with changed content are written, each version is backed up once.
+     */
     protected File createBackedUpFile(String fileName, LocalDateTime now) throws Exception {
         File file = new File(configurationDirectory, fileName);
         if (file.exists()) {
@@ -626,23 +831,55 @@ public class Configuration extends AbstractModelObject {
         if (id == null) {
             return null;
         }
-        return packages.get(id.toUpperCase());
+        String key = id.toUpperCase();
+        Package pkg = packages.get(key);
+        if (pkg == null && packagesIndex != null && packagesIndex.contains(key)) {
+            materializePackages(Collections.singletonList(key));
+            pkg = packages.get(key);
+        }
+        return pkg;
     }
 
     public List<Package> getPackages() {
+        if (packagesIndex != null && !packagesIndex.isEmpty()) {
+            materializePackages(new ArrayList<>(packages.keySet()));
+        }
         return Collections.unmodifiableList(new ArrayList<>(packages.values()));
     }
 
+    /**
+     * @return the ids of all the packages, in order, without loading packages that were not 
+     * yet needed.
+     */
+    public List<String> getPackageIds() {
+        List<String> ids = new ArrayList<>(packages.size());
+        for (Map.Entry<String, Package> entry : new ArrayList<>(packages.entrySet())) {
+            ids.add(entry.getValue() != null ? entry.getValue().getId() 
+                    : packagesIndex.getId(entry.getKey()));
+        }
+        return ids;
+    }
+
     public void addPackage(Package pkg) {
         if (null == pkg.getId()) {
             throw new Error("Package with null Id cannot be added to Configuration.");
         }
-        packages.put(pkg.getId().toUpperCase(), pkg);
+        String key = pkg.getId().toUpperCase();
+        if (packagesIndex != null) {
+            packagesIndex.remove(key);
+        }
+        packages.put(key, pkg);
+        documents.get("packages.xml").dirty = true;
         firePropertyChange("packages", null, packages);
     }
 
     public void removePackage(Package pkg) {
-        packages.remove(pkg.getId().toUpperCase());
+        String key = pkg.getId().toUpperCase();
+        if (packagesIndex != null) {
+            packagesIndex.remove(key);
+        }
+        packages.remove(key);
+        documents.get("packages.xml").dirty = true;
         firePropertyChange("packages", null, packages);
     }
 
@@ -650,26 +887,126 @@ public class Configuration extends AbstractModelObject {
         if (id == null) {
             return null;
         }
-        return parts.get(id.toUpperCase());
+        String key = id.toUpperCase();
+        Part part = parts.get(key);
+        if (part == null && partsIndex != null && partsIndex.contains(key)) {
+            materializeParts(Collections.singletonList(key));
+            part = parts.get(key);
+        }
+        return part;
     }
 
     public List<Part> getParts() {
+        if (partsIndex != null && !partsIndex.isEmpty()) {
+            materializeParts(new ArrayList<>(parts.keySet()));
+        }
         return Collections.unmodifiableList(new ArrayList<>(parts.values()));
     }
 
+    /**
+     * @return the ids of all the parts, in order, without loading parts that were not yet needed.
+     */
+    public List<String> getPartIds() {
+        List<String> ids = new ArrayList<>(parts.size());
+        for (Map.Entry<String, Part> entry : new ArrayList<>(parts.entrySet())) {
+            ids.add(entry.getValue() != null ? entry.getValue().getId() 
+                    : partsIndex.getId(entry.getKey()));
+        }
+        return ids;
+    }
+
     public void addPart(Part part) {
         if (null == part.getId()) {
             throw new Error("Part with null Id cannot be added to Configuration.");
         }
-        parts.put(part.getId().toUpperCase(), part);
+        String key = part.getId().toUpperCase();
+        if (partsIndex != null) {
+            partsIndex.remove(key);
+        }
+        Part oldPart = parts.put(key, part);
+        if (oldPart != part) {
+            if (oldPart != null) {
+                oldPart.removePropertyChangeListener(partsChangeListener);
+            }
+            part.addPropertyChangeListener(partsChangeListener);
+        }
+        documents.get("parts.xml").dirty = true;
         firePropertyChange("parts", null, parts);
     }
 
     public void removePart(Part part) {
-        parts.remove(part.getId().toUpperCase());
+        String key = part.getId().toUpperCase();
+        if (partsIndex != null) {
+            partsIndex.remove(key);
+        }
+        Part oldPart = parts.remove(key);
+        if (oldPart != null) {
+            oldPart.removePropertyChangeListener(partsChangeListener);
+        }
+        documents.get("parts.xml").dirty = true;
         firePropertyChange("parts", null, parts);
     }
 
+    /**
+     * Deserializes the given packages from the lazy index. This is not a change of the 
+     * configuration, so no property change is fired.
+     * 
+     * @param keys The upper-case ids.
+     */
+    private synchronized void materializePackages(List<String> keys) {
+        String xml = packagesIndex.take(keys, "openpnp-packages");
+        if (xml == null) {
+            return;
+        }
+        List<ConfigurationListener> deferred = new ArrayList<>();
+        deferredListeners.set(deferred);
+        try {
+            Serializer serializer = createSerializer();
+            PackagesConfigurationHolder holder = 
+                    serializer.read(PackagesConfigurationHolder.class, xml);
+            for (Package pkg : holder.packages) {
+                packages.put(pkg.getId().toUpperCase(), pkg);
+            }
+        }
+        catch (Exception e) {
+            throw new Error("Error while reading packages.xml (" + e.getMessage() + ")", e);
+        }
+        finally {
+            deferredListeners.remove();
+        }
+        notifyListeners(deferred);
+    }
+
+    /**
+     * Deserializes the given parts from the lazy index. This is not a change of the 
+     * configuration, so no property change is fired.
+     * 
+     * @param keys The upper-case ids.
+     */
+    private synchronized void materializeParts(List<String> keys) {
+        String xml = partsIndex.take(keys, "openpnp-parts");
+        if (xml == null) {
+            return;
+        }
+        List<ConfigurationListener> deferred = new ArrayList<>();
+        deferredListeners.set(deferred);
+        try {
+            Serializer serializer = createSerializer();
+            PartsConfigurationHolder holder = serializer.read(PartsConfigurationHolder.class, xml);
+            for (Part part : holder.parts) {
+                parts.put(part.getId().toUpperCase(), part);
+                part.addPropertyChangeListener(partsChangeListener);
+            }
+        }
+        catch (Exception e) {
+            throw new Error("Error while reading parts.xml (" + e.getMessage() + ")", e);
+        }
+        finally {
+            deferredListeners.remove();
+        }
+        notifyListeners(deferred);
+    }
+
     public void addVisionSettings(AbstractVisionSettings visionSettings) {
         if (null == visionSettings.getId()) {
             throw new Error("Vision Settings with null Id cannot be added to Configuration.");
@@ -856,15 +1193,13 @@ public class Configuration extends AbstractModelObject {
         return board;
     }
     
-    private static void serializeObject(Object o, File file) throws Exception {
+    private static byte[] serializeObject(Object o) throws Exception {
         Serializer serializer = createSerializer();
-        // This write forces any errors that will appear to happen before we start writing to
-        // the file, which keeps us from writing a partial configuration to the real file.
-        serializer.write(o, new ByteArrayOutputStream());
-        FileOutputStream out = new FileOutputStream(file);
+        // Serializing into memory keeps us from writing a partial configuration to the real file.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
         serializer.write(o, out);
         out.write('\n');
-        out.close();
+        return out.toByteArray();
     }
 
     private void loadMachine(File file) throws Exception {
@@ -873,13 +1208,21 @@ public class Configuration extends AbstractModelObject {
         machine = holder.machine;
     }
 
-    private void saveMachine(File file) throws Exception {
+    private Object createMachineHolder() {
         MachineConfigurationHolder holder = new MachineConfigurationHolder();
         holder.machine = machine;
-        serializeObject(holder, file);
+        return holder;
     }
 
     private void loadPackages(File file) throws Exception {
+        if (Boolean.getBoolean("lazyLibraries")) {
+            packagesIndex = LibraryIndex.load(file, "package", 
+                    file.equals(new File(configurationDirectory, "packages.xml")));
+            for (String id : packagesIndex.getIds()) {
+                packages.put(id.toUpperCase(), null);
+            }
+            return;
+        }
         Serializer serializer = createSerializer();
         PackagesConfigurationHolder holder =
                 serializer.read(PackagesConfigurationHolder.class, file);
@@ -888,13 +1231,21 @@ public class Configuration extends AbstractModelObject {
         }
     }
 
-    private void savePackages(File file) throws Exception {
+    private Object createPackagesHolder() {
         PackagesConfigurationHolder holder = new PackagesConfigurationHolder();
-        holder.packages = new ArrayList<>(packages.values());
-        serializeObject(holder, file);
+        holder.packages = new ArrayList<>(getPackages());
+        return holder;
     }
 
     private void loadParts(File file) throws Exception {
+        if (Boolean.getBoolean("lazyLibraries")) {
+            partsIndex = LibraryIndex.load(file, "part", 
+                    file.equals(new File(configurationDirectory, "parts.xml")));
+            for (String id : partsIndex.getIds()) {
+                parts.put(id.toUpperCase(), null);
+            }
+            return;
+        }
         Serializer serializer = createSerializer();
         PartsConfigurationHolder holder = serializer.read(PartsConfigurationHolder.class, file);
         for (Part part : holder.parts) {
@@ -902,10 +1253,10 @@ public class Configuration extends AbstractModelObject {
         }
     }
 
-    private void saveParts(File file) throws Exception {
+    private Object createPartsHolder() {
         PartsConfigurationHolder holder = new PartsConfigurationHolder();
-        holder.parts = new ArrayList<>(parts.values());
-        serializeObject(holder, file);
+        holder.parts = new ArrayList<>(getParts());
+        return holder;
     }
 
     /**
@@ -932,18 +1283,12 @@ public class Configuration extends AbstractModelObject {
     }
 
     /**
-     * Saves the Boards that are currently loaded in the configuration to the specified file
-     * @param file - the file in which to save the Boards
-     * @throws Exception if the file can't be written successfully
+     * @return the holder listing the Boards that are currently loaded in the configuration
      */
-    private void saveBoards(File file) throws Exception {
+    private Object createBoardsHolder() {
         BoardsConfigurationHolder holder = new BoardsConfigurationHolder();
         holder.boards = new ArrayList<>(boards.keySet());
-        serializeObject(holder, file);
-        
-        for (Board board : getBoards()) {
-            confirmSaveOfModified(board);
-        }
+        return holder;
     }
 
     /**
@@ -970,18 +1315,12 @@ public class Configuration extends AbstractModelObject {
     }
 
     /**
-     * Saves the Panels that are currently loaded in the configuration to the specified file
-     * @param file - the file in which to save the Panels
-     * @throws Exception if the file can't be written successfully
+     * @return the holder listing the Panels that are currently loaded in the configuration
      */
-    private void savePanels(File file) throws Exception {
+    private Object createPanelsHolder() {
         PanelsConfigurationHolder holder = new PanelsConfigurationHolder();
         holder.panels = new ArrayList<>(panels.keySet());
-        serializeObject(holder, file);
-        
-        for (Panel panel : getPanels()) {
-            confirmSaveOfModified(panel);
-        }
+        return holder;
     }
 
     private void confirmSaveOfModified(PlacementsHolder<?> placementsHolder) {
@@ -1020,10 +1359,10 @@ public class Configuration extends AbstractModelObject {
         }
     }
 
-    private void saveVisionSettings(File file) throws Exception {
+    private Object createVisionSettingsHolder() {
         VisionSettingsConfigurationHolder holder = new VisionSettingsConfigurationHolder();
         holder.visionSettings = new ArrayList<>(visionSettings.values());
-        serializeObject(holder, file);
+        return holder;
     }
 
     private void loadScriptState(File file) throws Exception {
@@ -1032,10 +1371,10 @@ public class Configuration extends AbstractModelObject {
         scriptState = holder.scriptState;
     }
 
-    private void saveScriptState(File file) throws Exception {
+    private Object createScriptStateHolder() {
         ScriptStateConfigurationHolder holder = new ScriptStateConfigurationHolder();
         holder.scriptState = scriptState;
-        serializeObject(holder, file);
+        return holder;
     }
 
     /**
@@ -1059,6 +1398,7 @@ public class Configuration extends AbstractModelObject {
         job.getRootPanelLocation().dump("");
         
         job.setDirty(job.getVersion() == null);
+        JobSnapshot.restore(job);
         
         return job;
     }
@@ -1436,6 +1776,8 @@ public class Configuration extends AbstractModelObject {
         Serializer serializer = createSerializer();
         serializer.write(job, new ByteArrayOutputStream());
         serializer.write(job, file);
+        JobSnapshot.discard(job.getFile());
+        JobSnapshot.discard(file);
         job.setFile(file);
         job.setDirty(false);
     }
@@ -1595,4 +1937,35 @@ public class Configuration extends AbstractModelObject {
         private TreeMap<String, String> scriptState = new TreeMap<>();
     }
 
+    private static class ConfigurationDocument {
+        final String fileName;
+        /**
+         * True if changes are tracked by property change events, i.e. the document is only
+         * serialized when dirty.
+         */
+        final boolean tracked;
+        volatile boolean dirty = true;
+        /**
+         * The digest of the content last loaded or written.
+         */
+        volatile byte[] digest;
+
+        ConfigurationDocument(String fileName, boolean tracked) {
+            this.fileName = fileName;
+            this.tracked = tracked;
+        }
+    }
+
+    private static class PendingWrite {
+        final ConfigurationDocument document;
+        final byte[] content;
+        final byte[] digest;
+
+        PendingWrite(ConfigurationDocument document, byte[] content, byte[] digest) {
+            this.document = document;
+            this.content = content;
+            this.digest = digest;
+        }
+    }
+
 }
@@ -502,6 +502,9 @@ public class Job extends AbstractModelObject implements PropertyChangeListener {
         if (evt.getSource() != Job.this || !evt.getPropertyName().equals("dirty")) {
             setDirty(true);
         }
+        if (evt.getSource() == Job.this && evt.getPropertyName().equals("placed")) {
+            JobSnapshot.scheduleWrite(this);
+        }
     }
 
 }
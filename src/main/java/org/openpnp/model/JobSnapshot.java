@@ -0,0 +1,267 @@
+package org.openpnp.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.pmw.tinylog.Logger;
+
+/**
+ * Binary snapshot of the job progress, i.e. the placed status of the placements, so a job can be
+ * resumed after a crash. Enable with -DjobSnapshots=true.<br/>
+ * <br/>
+ * The snapshot is written in the background whenever the placed status changes, into the
+ * snapshots directory of the configuration. It is discarded when the job is saved or closed, so a
+ * remaining snapshot means the job was not closed properly. When the job is loaded again and its
+ * file has not been modified since, the placed status is restored from the snapshot. The job file
+ * stays the source of truth.<br/>
+ * <br/>
+ * Format (big-endian): magic "OPNPJOBS", int version, long job file modification time, long
+ * snapshot time, string job file path, int entry count, entries of string key and byte placed.
+ * Strings are an int byte length followed by UTF-8 bytes. The layout is flat, so the file can be
+ * read with a single bulk read, without any reflection.
+ */
+public class JobSnapshot {
+    private static final byte[] MAGIC = "OPNPJOBS".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    private static ExecutorService executor;
+    /**
+     * Latest placed status to be written, by job file. Guarded by itself.
+     */
+    private static final Map<File, Map<String, Boolean>> pendingWrites = new HashMap<>();
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("jobSnapshots");
+    }
+
+    /**
+     * @param jobFile
+     * @return the snapshot file of the job file, in the snapshots directory of the configuration.
+     */
+    public static File getSnapshotFile(File jobFile) {
+        File snapshotsDirectory = new File(Configuration.get().getConfigurationDirectory(), "snapshots");
+        return new File(snapshotsDirectory, hash(getPath(jobFile)) + ".snapshot");
+    }
+
+    /**
+     * Schedules writing the snapshot of the current placed status of the job. Must be called on
+     * the thread changing the status.
+     *
+     * @param job
+     */
+    static void scheduleWrite(Job job) {
+        File jobFile = job.getFile();
+        if (!isEnabled() || jobFile == null) {
+            return;
+        }
+        Map<String, Boolean> placedStatus = new HashMap<>(job.placedStatusMap);
+        boolean submit;
+        synchronized (pendingWrites) {
+            submit = (pendingWrites.put(jobFile, placedStatus) == null);
+        }
+        if (submit) {
+            // Writes are coalesced, only the latest status is written.
+            getExecutor().submit(() -> {
+                Map<String, Boolean> latest;
+                synchronized (pendingWrites) {
+                    latest = pendingWrites.remove(jobFile);
+                }
+                if (latest != null) {
+                    try {
+                        write(jobFile, latest);
+                    }
+                    catch (Exception e) {
+                        Logger.warn(e, "Cannot write job snapshot of {}", jobFile);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Discards the snapshot of the job file, e.g. because the job was saved or closed.
+     *
+     * @param jobFile
+     */
+    public static void discard(File jobFile) {
+        if (!isEnabled() || jobFile == null) {
+            return;
+        }
+        synchronized (pendingWrites) {
+            pendingWrites.remove(jobFile);
+        }
+        getExecutor().submit(() -> {
+            File snapshotFile = getSnapshotFile(jobFile);
+            if (snapshotFile.exists() && !snapshotFile.delete()) {
+                Logger.warn("Cannot delete job snapshot {}", snapshotFile);
+            }
+        });
+    }
+
+    /**
+     * Waits for the scheduled snapshot writes and deletions.
+     *
+     * @throws Exception
+     */
+    public static void flush() throws Exception {
+        getExecutor().submit(() -> {}).get();
+    }
+
+    /**
+     * Restores the placed status of the freshly loaded job from its snapshot, if there is one and
+     * the job file was not modified since. The job is then marked dirty.
+     *
+     * @param job
+     * @return true if the placed status was restored.
+     */
+    static boolean restore(Job job) {
+        File jobFile = job.getFile();
+        if (!isEnabled() || jobFile == null) {
+            return false;
+        }
+        File snapshotFile = getSnapshotFile(jobFile);
+        if (!snapshotFile.exists()) {
+            return false;
+        }
+        try {
+            Map<String, Boolean> placedStatus = read(snapshotFile, jobFile);
+            if (placedStatus == null) {
+                return false;
+            }
+            job.placedStatusMap.clear();
+            job.placedStatusMap.putAll(placedStatus);
+            job.firePropertyChange("placed", null, job.placedStatusMap);
+            job.setDirty(true);
+            Logger.info("Restored the placed status of {} placements of job {} from snapshot {}.",
+                    placedStatus.size(), jobFile, snapshotFile);
+            return true;
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Cannot read job snapshot {}", snapshotFile);
+            return false;
+        }
+    }
+
+    static void write(File jobFile, Map<String, Boolean> placedStatus) throws IOException {
+        long t0 = System.nanoTime();
+        byte[] path = getPath(jobFile).getBytes(StandardCharsets.UTF_8);
+        byte[][] keys = new byte[placedStatus.size()][];
+        boolean[] values = new boolean[keys.length];
+        int size = MAGIC.length + 4 + 8 + 8 + 4 + path.length + 4;
+        int i = 0;
+        for (Map.Entry<String, Boolean> entry : placedStatus.entrySet()) {
+            keys[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            values[i] = entry.getValue();
+            size += 4 + keys[i].length + 1;
+            i++;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(jobFile.lastModified());
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putInt(path.length);
+        buffer.put(path);
+        buffer.putInt(keys.length);
+        for (i = 0; i < keys.length; i++) {
+            buffer.putInt(keys[i].length);
+            buffer.put(keys[i]);
+            buffer.put((byte) (values[i] ? 1 : 0));
+        }
+
+        File snapshotFile = getSnapshotFile(jobFile);
+        snapshotFile.getParentFile().mkdirs();
+        File tempFile = new File(snapshotFile.getParentFile(), snapshotFile.getName() + ".tmp");
+        Files.write(tempFile.toPath(), buffer.array());
+        try {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Logger.trace("Job snapshot of {} placements written in {} ms.", keys.length,
+                String.format("%.2f", (System.nanoTime() - t0)/1e6));
+    }
+
+    /**
+     * @return the placed status from the snapshot, or null if the snapshot is of another version,
+     * of another job file, or older than the job file.
+     */
+    static Map<String, Boolean> read(File snapshotFile, File jobFile) throws IOException {
+        // A plain bulk read rather than mapping the file, as a mapped file cannot be deleted on
+        // Windows until the mapping is garbage collected.
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile.toPath()));
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || buffer.getInt() != VERSION) {
+            Logger.warn("Ignoring job snapshot {} of unknown format.", snapshotFile);
+            return null;
+        }
+        long jobLastModified = buffer.getLong();
+        buffer.getLong();
+        String path = getString(buffer);
+        if (!path.equals(getPath(jobFile)) || jobLastModified != jobFile.lastModified()) {
+            Logger.info("Ignoring job snapshot {}, the job file was modified.", snapshotFile);
+            return null;
+        }
+        int count = buffer.getInt();
+        Map<String, Boolean> placedStatus = new HashMap<>(count*2);
+        for (int i = 0; i < count; i++) {
+            String key = getString(buffer);
+            placedStatus.put(key, buffer.get() != 0);
+        }
+        return placedStatus;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String getPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        }
+        catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    private static String hash(String s) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(s.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "JobSnapshot writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,402 @@
+package org.openpnp.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.pmw.tinylog.Logger;
+
+/**
+ * Index of the top level entries of a library document like parts.xml or packages.xml, i.e. the
+ * entry ids and their byte ranges in the document. It allows the Configuration to deserialize
+ * single entries when they are first needed, instead of the whole library at startup.<br/>
+ * <br/>
+ * The document content is kept in memory as long as entries are not yet materialized, so later
+ * changes of the file cannot corrupt the library. The index is cached next to the document and
+ * invalidated by file size, modification time and content hash.
+ */
+class LibraryIndex {
+    private static final String CACHE_HEADER = "openpnp-library-index 1";
+
+    private final String entryName;
+    private byte[] content;
+    /**
+     * Entries not yet materialized, by upper-case id, in document order. Values are the id, the
+     * offset and the length.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private static class Entry {
+        final String id;
+        final int offset;
+        final int length;
+
+        Entry(String id, int offset, int length) {
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private LibraryIndex(String entryName, byte[] content) {
+        this.entryName = entryName;
+        this.content = content;
+    }
+
+    /**
+     * Creates the index of the file, from the cached index if still valid.
+     *
+     * @param file
+     * @param entryName The element name of the top level entries, e.g. "part".
+     * @param cache If true, the index is cached next to the file.
+     * @return
+     * @throws IOException
+     */
+    static LibraryIndex load(File file, String entryName, boolean cache) throws IOException {
+        long lastModified = file.lastModified();
+        byte[] content = Files.readAllBytes(file.toPath());
+        String hash = computeHash(content);
+        LibraryIndex index = new LibraryIndex(entryName, content);
+        File cacheFile = new File(file.getParentFile(), file.getName()+".index");
+        if (cache && cacheFile.exists()) {
+            try {
+                if (index.readCache(cacheFile, content.length, lastModified, hash)) {
+                    return index;
+                }
+            }
+            catch (Exception e) {
+                Logger.warn("Ignoring invalid library index {}: {}", cacheFile, e.getMessage());
+            }
+            index.entries.clear();
+        }
+        index.scan();
+        if (cache) {
+            try {
+                index.writeCache(cacheFile, content.length, lastModified, hash);
+            }
+            catch (IOException e) {
+                Logger.warn("Cannot write library index {}: {}", cacheFile, e.getMessage());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the ids of the entries not yet materialized, in document order.
+     */
+    synchronized List<String> getIds() {
+        List<String> ids = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+
+    synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    synchronized String getId(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.id;
+    }
+
+    synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Removes the entries from the index and returns their XML, wrapped in the given root element,
+     * ready to be deserialized. Once the index is empty, the document content is released.
+     *
+     * @param keys The upper-case ids.
+     * @param rootName
+     * @return the XML or null if none of the keys was in the index.
+     */
+    synchronized String take(List<String> keys, String rootName) {
+        StringBuilder xml = new StringBuilder();
+        xml.append('<').append(rootName).append('>');
+        boolean found = false;
+        for (String key : keys) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                xml.append(new String(content, entry.offset, entry.length, StandardCharsets.UTF_8));
+                xml.append('\n');
+                found = true;
+            }
+        }
+        xml.append("</").append(rootName).append('>');
+        if (entries.isEmpty()) {
+            content = null;
+        }
+        return found ? xml.toString() : null;
+    }
+
+    /**
+     * Removes the entry without materializing it, e.g. when it is replaced.
+     *
+     * @param key
+     */
+    synchronized void remove(String key) {
+        entries.remove(key);
+        if (entries.isEmpty()) {
+            content = null;
+        }
+    }
+
+    /**
+     * Scans the top level entries of the document. Markup is all ASCII, so the UTF-8 bytes can be
+     * scanned directly.
+     */
+    private void scan() {
+        byte[] b = content;
+        int n = b.length;
+        int depth = 0;
+        int i = 0;
+        int entryStart = -1;
+        String entryId = null;
+        while (i < n) {
+            if (b[i] != '<') {
+                i++;
+                continue;
+            }
+            if (startsWith(b, i, "<?")) {
+                i = skipPast(b, i, "?>");
+            }
+            else if (startsWith(b, i, "<!--")) {
+                i = skipPast(b, i, "-->");
+            }
+            else if (startsWith(b, i, "<![CDATA[")) {
+                i = skipPast(b, i, "]]>");
+            }
+            else if (startsWith(b, i, "<!")) {
+                i = skipPast(b, i, ">");
+            }
+            else if (i + 1 < n && b[i + 1] == '/') {
+                i = skipPast(b, i, ">");
+                depth--;
+                if (depth == 1 && entryStart >= 0) {
+                    addEntry(entryId, entryStart, i);
+                    entryStart = -1;
+                }
+            }
+            else {
+                int tagEnd = skipTag(b, i);
+                boolean selfClosing = b[tagEnd - 2] == '/';
+                if (depth == 1 && isElement(b, i + 1, entryName)) {
+                    entryId = getAttribute(b, i, tagEnd, "id");
+                    entryStart = i;
+                    if (selfClosing) {
+                        addEntry(entryId, entryStart, tagEnd);
+                        entryStart = -1;
+                    }
+                }
+                if (!selfClosing) {
+                    depth++;
+                }
+                i = tagEnd;
+            }
+        }
+    }
+
+    private void addEntry(String id, int start, int end) {
+        if (id == null) {
+            throw new IllegalStateException("Library entry without id at offset "+start);
+        }
+        entries.put(id.toUpperCase(), new Entry(id, start, end - start));
+    }
+
+    private static boolean startsWith(byte[] b, int i, String s) {
+        if (i + s.length() > b.length) {
+            return false;
+        }
+        for (int j = 0; j < s.length(); j++) {
+            if (b[i + j] != s.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipPast(byte[] b, int i, String s) {
+        while (i < b.length && !startsWith(b, i, s)) {
+            i++;
+        }
+        return Math.min(b.length, i + s.length());
+    }
+
+    /**
+     * @return the index after the closing '>' of the tag starting at i, honoring quoted attributes.
+     */
+    private static int skipTag(byte[] b, int i) {
+        byte quote = 0;
+        for (i++; i < b.length; i++) {
+            if (quote != 0) {
+                if (b[i] == quote) {
+                    quote = 0;
+                }
+            }
+            else if (b[i] == '"' || b[i] == '\'') {
+                quote = b[i];
+            }
+            else if (b[i] == '>') {
+                return i + 1;
+            }
+        }
+        return b.length;
+    }
+
+    private static boolean isElement(byte[] b, int i, String name) {
+        if (!startsWith(b, i, name) || i + name.length() >= b.length) {
+            return false;
+        }
+        byte next = b[i + name.length()];
+        return next == ' ' || next == '>' || next == '/' || next == '\t' || next == '\r' || next == '\n';
+    }
+
+    private static String getAttribute(byte[] b, int tagStart, int tagEnd, String name) {
+        int i = tagStart;
+        while (i < tagEnd) {
+            byte c = b[i];
+            if (c == '"' || c == '\'') {
+                // Skip attribute values, they might contain the name.
+                int valueEnd = indexOf(b, i + 1, tagEnd, c);
+                i = valueEnd + 1;
+                continue;
+            }
+            if ((c == ' ' || c == '\t' || c == '\r' || c == '\n') && startsWith(b, i + 1, name)) {
+                int j = i + 1 + name.length();
+                while (j < tagEnd && (b[j] == ' ' || b[j] == '\t' || b[j] == '\r' || b[j] == '\n')) {
+                    j++;
+                }
+                if (j < tagEnd && b[j] == '=') {
+                    j++;
+                    while (j < tagEnd && b[j] != '"' && b[j] != '\'') {
+                        j++;
+                    }
+                    if (j < tagEnd) {
+                        int valueEnd = indexOf(b, j + 1, tagEnd, b[j]);
+                        return unescape(new String(b, j + 1, valueEnd - j - 1, StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            i++;
+        }
+        return null;
+    }
+
+    private static int indexOf(byte[] b, int from, int to, byte c) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Resolves the predefined and numeric character references and normalizes white space, like
+     * an XML parser does for attribute values.
+     */
+    static String unescape(String value) {
+        if (value.indexOf('&') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0
+                && value.indexOf('\t') < 0) {
+            return value;
+        }
+        value = value.replace("\r\n", " ").replace('\r', ' ').replace('\n', ' ').replace('\t', ' ');
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            int semicolon = (c == '&') ? value.indexOf(';', i) : -1;
+            if (semicolon < 0) {
+                sb.append(c);
+                continue;
+            }
+            String reference = value.substring(i + 1, semicolon);
+            if (reference.equals("amp")) {
+                sb.append('&');
+            }
+            else if (reference.equals("lt")) {
+                sb.append('<');
+            }
+            else if (reference.equals("gt")) {
+                sb.append('>');
+            }
+            else if (reference.equals("quot")) {
+                sb.append('"');
+            }
+            else if (reference.equals("apos")) {
+                sb.append('\'');
+            }
+            else if (reference.startsWith("#x")) {
+                sb.appendCodePoint(Integer.parseInt(reference.substring(2), 16));
+            }
+            else if (reference.startsWith("#")) {
+                sb.appendCodePoint(Integer.parseInt(reference.substring(1)));
+            }
+            else {
+                sb.append(c);
+                continue;
+            }
+            i = semicolon;
+        }
+        return sb.toString();
+    }
+
+    private boolean readCache(File cacheFile, int length, long lastModified, String hash)
+            throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            if (!CACHE_HEADER.equals(reader.readLine())) {
+                return false;
+            }
+            String [] header = reader.readLine().split(" ");
+            if (Integer.parseInt(header[0]) != length
+                    || Long.parseLong(header[1]) != lastModified
+                    || !header[2].equals(hash)) {
+                return false;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String [] fields = line.split(" ", 3);
+                String id = unescape(fields[2]);
+                entries.put(id.toUpperCase(), new Entry(id,
+                        Integer.parseInt(fields[0]), Integer.parseInt(fields[1])));
+            }
+        }
+        return true;
+    }
+
+    private void writeCache(File cacheFile, int length, long lastModified, String hash)
+            throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(cacheFile.toPath(), StandardCharsets.UTF_8))) {
+            writer.println(CACHE_HEADER);
+            writer.println(length+" "+lastModified+" "+hash);
+            for (Entry entry : entries.values()) {
+                writer.println(entry.offset+" "+entry.length+" "
+                        +entry.id.replace("&", "&amp;").replace("\n", "&#10;").replace("\r", "&#13;").replace("\t", "&#9;"));
+            }
+        }
+    }
+
+    private static String computeHash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+    }
+}
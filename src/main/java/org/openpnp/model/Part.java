@@ -89,7 +89,9 @@ public class Part extends AbstractPartSettingsHolder {
      * @param id
      */
     public void setId(String id) {
+        Object oldValue = this.id;
         this.id = id;
+        firePropertyChange("id", oldValue, id);
     }
 
     public String getName() {
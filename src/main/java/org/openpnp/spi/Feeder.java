@@ -107,6 +107,27 @@ public interface Feeder extends Identifiable, Named, WizardConfigurable, Propert
      */
     public void feed(Nozzle nozzle) throws Exception;
 
+    /**
+     * Waits for the feed started by {@link #feed(Nozzle)} to complete. Feeders that return from
+     * feed() before the part is presented, e.g. to let the feed overlap with other work, override
+     * this. It is called on the machine thread after each feed, before the part is picked. A
+     * failure here is handled like a failure of the feed itself, i.e. the feed is retried.
+     * 
+     * @param nozzle The Nozzle given to {@link #feed(Nozzle)}.
+     * @throws Exception if the feed failed.
+     */
+    default void completeFeed(Nozzle nozzle) throws Exception {
+    }
+
+    /**
+     * @return true if {@link #feed(Nozzle)} neither moves the head nor uses any of its Actuators or
+     *         Cameras, i.e. if the feeder can be fed ahead of time, while the head is still busy
+     *         elsewhere.
+     */
+    default boolean isFeedHeadIndependent() {
+        return false;
+    }
+
     public void postPick(Nozzle nozzle) throws Exception;
 
     /*
@@ -20,12 +20,14 @@
 package org.openpnp.spi;
 
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
 import org.openpnp.model.Length;
 import org.openpnp.model.Location;
+import org.openpnp.model.Part;
 import org.openpnp.model.Solutions;
 
 import com.google.common.util.concurrent.FutureCallback;
@@ -78,6 +80,22 @@ public interface Machine extends WizardConfigurable, PropertySheetHolder, Closea
 
     public Feeder getFeederByName(String name);
 
+    /**
+     * Gets the enabled Feeders that feed the Part, in the order of {@link #getFeeders()}.
+     * 
+     * @param part
+     * @return
+     */
+    public default List<Feeder> getEnabledFeeders(Part part) {
+        List<Feeder> enabledFeeders = new ArrayList<>();
+        for (Feeder feeder : getFeeders()) {
+            if (feeder.getPart() == part && feeder.isEnabled()) {
+                enabledFeeders.add(feeder);
+            }
+        }
+        return enabledFeeders;
+    }
+
     /**
      * Gets a List of Cameras attached to the Machine that are not attached to Heads.
      * 
@@ -21,6 +21,7 @@
  package org.openpnp.spi.base;
 
 import java.awt.event.ActionEvent;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -57,6 +58,17 @@ public abstract class AbstractAxis extends AbstractModelObject implements Axis {
     @Attribute(required = false)
     protected Axis.Type type;
 
+    /**
+     * The index of the axis among the axes of its machine, used by AxesLocation for fast lookup.
+     * Assigned by the machine when the axis is added or loaded, see 
+     * {@link AbstractMachine#assignAxisIndexes()}. Once read, the index never changes, because
+     * existing AxesLocations depend on it. Axes that are used before they belong to a machine 
+     * therefore keep the shared last index. -1 while neither assigned nor read. 
+     */
+    private final AtomicInteger axisIndex = new AtomicInteger(-1);
+
+    public static final int SHARED_AXIS_INDEX = Long.SIZE - 1;
+
     public AbstractAxis() {
         this.id = Configuration.createId("AXS");
         this.name = getClass().getSimpleName();
@@ -79,6 +91,31 @@ public abstract class AbstractAxis extends AbstractModelObject implements Axis {
         firePropertyChange("name", oldValue, name);
     }
 
+    public int getAxisIndex() {
+        int index = axisIndex.get();
+        if (index < 0) {
+            axisIndex.compareAndSet(-1, SHARED_AXIS_INDEX);
+            index = axisIndex.get();
+        }
+        return index;
+    }
+
+    /**
+     * @return the assigned index, or -1 if not yet assigned nor read.
+     */
+    int peekAxisIndex() {
+        return axisIndex.get();
+    }
+
+    /**
+     * Assigns the index, unless it was already assigned or read.
+     * 
+     * @param index
+     */
+    void assignAxisIndex(int index) {
+        axisIndex.compareAndSet(-1, index);
+    }
+
     @Override
     public Axis.Type getType() {
         return type;
@@ -50,7 +50,9 @@ public abstract class AbstractDriver extends AbstractModelObject implements Driv
     }
 
     public void setId(String id) {
+        Object oldValue = this.id;
         this.id = id;
+        firePropertyChange("id", oldValue, id);
     }
 
     @Override
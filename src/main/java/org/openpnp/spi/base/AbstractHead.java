@@ -204,15 +204,7 @@ public abstract class AbstractHead extends AbstractModelObject implements Head {
 
     @Override
     public Actuator getActuatorByName(String name) {
-        if (name == null || name.isEmpty()) {
-            return null;
-        }
-        for (Actuator actuator : actuators) {
-            if (actuator.getName().equals(name)) {
-                return actuator;
-            }
-        }
-        return null;
+        return actuators.getByName(name);
     }
 
     @Override
@@ -336,7 +328,9 @@ public abstract class AbstractHead extends AbstractModelObject implements Head {
 
     @Override
     public void setName(String name) {
+        Object oldValue = this.name;
         this.name = name;
+        firePropertyChange("name", oldValue, name);
     }
 
     @Override
@@ -1,10 +1,12 @@
 package org.openpnp.spi.base;
 
+import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -23,6 +25,7 @@ import org.openpnp.machine.reference.axis.ReferenceLinearTransformAxis;
 import org.openpnp.model.AbstractModelObject;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
+import org.openpnp.model.Part;
 import org.openpnp.model.Solutions;
 import org.openpnp.spi.Actuator;
 import org.openpnp.spi.Axis;
@@ -99,6 +102,15 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
 
     protected Set<MachineListener> listeners = Collections.synchronizedSet(new HashSet<>());
 
+    private volatile Map<Part, List<Feeder>> feedersByPart;
+    private final Set<Feeder> observedFeeders = new HashSet<>();
+    private final PropertyChangeListener feederChangeListener = e -> {
+        // Only these change the map, most other feeder properties change frequently while feeding.
+        if ("part".equals(e.getPropertyName()) || "enabled".equals(e.getPropertyName())) {
+            feedersByPart = null;
+        }
+    };
+
     protected ThreadPoolExecutor executor;
 
     volatile protected Thread taskThread;
@@ -111,6 +123,33 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
         for (Head head : heads) {
             head.setMachine(this);
         }
+        assignAxisIndexes();
+    }
+
+    /**
+     * Assigns the axes of this machine that have no index yet the lowest index not used by the
+     * others, see {@link AbstractAxis#getAxisIndex()}. Indices are never changed, so those of
+     * removed axes are only reused by axes added later. 
+     */
+    protected void assignAxisIndexes() {
+        long used = 0;
+        for (Axis axis : axes) {
+            if (axis instanceof AbstractAxis) {
+                int index = ((AbstractAxis) axis).peekAxisIndex();
+                if (index >= 0 && index < AbstractAxis.SHARED_AXIS_INDEX) {
+                    used |= 1L << index;
+                }
+            }
+        }
+        for (Axis axis : axes) {
+            if (axis instanceof AbstractAxis && ((AbstractAxis) axis).peekAxisIndex() < 0) {
+                int index = Math.min(Long.numberOfTrailingZeros(~used), AbstractAxis.SHARED_AXIS_INDEX);
+                ((AbstractAxis) axis).assignAxisIndex(index);
+                if (index < AbstractAxis.SHARED_AXIS_INDEX) {
+                    used |= 1L << index;
+                }
+            }
+        }
     }
 
     public void addHead(Head head) {
@@ -274,25 +313,50 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
 
     @Override
     public Actuator getActuatorByName(String name) {
-        if (name == null || name.isEmpty()) {
-            return null;
+        return actuators.getByName(name);
+    }
+
+    @Override
+    public Feeder getFeederByName(String name) {
+        return feeders.getByName(name);
+    }
+
+    @Override
+    public List<Feeder> getEnabledFeeders(Part part) {
+        List<Feeder> enabledFeeders = new ArrayList<>();
+        for (Feeder feeder : getFeedersByPart().getOrDefault(part, Collections.emptyList())) {
+            // Some feeders, like slot feeders, change their part or enabled state without notice.
+            if (feeder.getPart() == part && feeder.isEnabled()) {
+                enabledFeeders.add(feeder);
+            }
         }
-        for (Actuator actuator : actuators) {
-            if (actuator.getName().equals(name)) {
-                return actuator;
+        if (enabledFeeders.isEmpty()) {
+            enabledFeeders = Machine.super.getEnabledFeeders(part);
+            if (!enabledFeeders.isEmpty()) {
+                // Outdated.
+                feedersByPart = null;
             }
         }
-        return null;
+        return enabledFeeders;
     }
 
-    @Override
-    public Feeder getFeederByName(String name) {
-        for (Feeder feeder : feeders) {
-            if (feeder.getName().equals(name)) {
-                return feeder;
+    /**
+     * @return the feeders by their part, in machine order. Built lazily, and discarded when a
+     * feeder is added or removed or fires a part or enabled property change.
+     */
+    protected synchronized Map<Part, List<Feeder>> getFeedersByPart() {
+        Map<Part, List<Feeder>> feedersByPart = this.feedersByPart;
+        if (feedersByPart == null) {
+            feedersByPart = new HashMap<>();
+            for (Feeder feeder : feeders) {
+                if (feeder instanceof AbstractModelObject && observedFeeders.add(feeder)) {
+                    ((AbstractModelObject) feeder).addPropertyChangeListener(feederChangeListener);
+                }
+                feedersByPart.computeIfAbsent(feeder.getPart(), part -> new ArrayList<>()).add(feeder);
             }
+            this.feedersByPart = feedersByPart;
         }
-        return null;
+        return feedersByPart;
     }
 
     @Override
@@ -320,6 +384,7 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
     @Override
     public void addAxis(Axis axis) throws Exception {
         axes.add(axis);
+        assignAxisIndexes();
         fireIndexedPropertyChange("axes", axes.size() - 1, null, axis);
     }
 
@@ -354,6 +419,7 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
     @Override
     public void addFeeder(Feeder feeder) throws Exception {
         feeders.add(feeder);
+        feedersByPart = null;
         fireIndexedPropertyChange("feeders", feeders.size() - 1, null, feeder);
     }
 
@@ -361,6 +427,12 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
     public void removeFeeder(Feeder feeder) {
         int index = feeders.indexOf(feeder);
         if (feeders.remove(feeder)) {
+            synchronized (this) {
+                feedersByPart = null;
+                if (observedFeeders.remove(feeder)) {
+                    ((AbstractModelObject) feeder).removePropertyChangeListener(feederChangeListener);
+                }
+            }
             fireIndexedPropertyChange("feeders", index, feeder, null);
         }
     }
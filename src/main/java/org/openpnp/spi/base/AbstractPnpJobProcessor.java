@@ -1,5 +1,7 @@
 package org.openpnp.spi.base;
 
+import java.util.List;
+
 import org.openpnp.model.Part;
 import org.openpnp.spi.Feeder;
 import org.openpnp.spi.Head;
@@ -41,10 +43,9 @@ public abstract class AbstractPnpJobProcessor extends AbstractJobProcessor
      * @throws Exception If no Feeder is found that is both enabled and is serving the Part.
      */
     public static Feeder findFeeder(Machine machine, Part part) throws JobProcessorException {
-        for (Feeder feeder : machine.getFeeders()) {
-            if (feeder.getPart() == part && feeder.isEnabled()) {
-                return feeder;
-            }
+        List<Feeder> feeders = machine.getEnabledFeeders(part);
+        if (!feeders.isEmpty()) {
+            return feeders.get(0);
         }
         throw new JobProcessorException(part, "No compatible, enabled feeder found for part " + part.getId());
     }
@@ -47,7 +47,9 @@ public abstract class AbstractSignaler extends AbstractModelObject implements Si
 
     @Override
     public void setName(String name) {
+        Object oldValue = this.name;
         this.name = name;
+        firePropertyChange("name", oldValue, name);
     }
     
     @Override
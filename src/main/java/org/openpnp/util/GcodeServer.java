@@ -10,10 +10,15 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 import org.openpnp.Main;
 import org.openpnp.machine.reference.ReferenceMachine;
 import org.openpnp.machine.reference.SimulationModeMachine;
+import org.openpnp.machine.reference.driver.CommunicationsRecording;
 import org.openpnp.model.AxesLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.LengthUnit;
@@ -26,7 +31,7 @@ import org.openpnp.spi.Driver;
 import org.pmw.tinylog.Logger;
 
 public class GcodeServer extends Thread {
-    final Map<String, String> commandResponses = new HashMap<>();
+    final Map<String, Supplier<String>> commandResponses = new HashMap<>();
     final ServerSocket serverSocket;
     Driver driver;
     ReferenceMachine machine;
@@ -41,6 +46,121 @@ public class GcodeServer extends Thread {
 
     private long maxDwellTimeMilliseconds = 20000;
 
+    /**
+     * Simulated latency of the line, before each response.
+     */
+    private long responseDelayMilliseconds;
+
+    /**
+     * If set, the report is sent periodically, like the sensor auto-report of a controller.
+     */
+    private volatile Supplier<String> periodicReport;
+    private volatile long reportPeriodMilliseconds;
+    private final List<Worker> workers = new CopyOnWriteArrayList<>();
+
+    /**
+     * If set, the recorded conversation is played back instead of interpreting the Gcode.
+     */
+    private CommunicationsRecording replay;
+    private volatile ReplayStatistics replayStatistics;
+
+    /**
+     * Statistics of a replayed conversation, to benchmark the driver against the recording.
+     */
+    public static class ReplayStatistics {
+        private int commands;
+        private int mismatches;
+        private int responses;
+        private long recordedNanos;
+        private long replayNanos;
+        private int turnarounds;
+        private long turnaroundNanos;
+        private long maxTurnaroundNanos;
+        private boolean complete;
+
+        /**
+         * @return the number of commands received from the driver.
+         */
+        public synchronized int getCommands() {
+            return commands;
+        }
+
+        /**
+         * @return the number of commands that differ from the recorded ones.
+         */
+        public synchronized int getMismatches() {
+            return mismatches;
+        }
+
+        public synchronized int getResponses() {
+            return responses;
+        }
+
+        public synchronized long getRecordedNanos() {
+            return recordedNanos;
+        }
+
+        public synchronized long getReplayNanos() {
+            return replayNanos;
+        }
+
+        /**
+         * @return the commands per second achieved in the replay.
+         */
+        public synchronized double getThroughput() {
+            return replayNanos == 0 ? 0 : commands*1e9/replayNanos;
+        }
+
+        /**
+         * @return the mean time the driver took to send the next command after a response.
+         */
+        public synchronized double getMeanTurnaroundMilliseconds() {
+            return turnarounds == 0 ? 0 : turnaroundNanos/1e6/turnarounds;
+        }
+
+        public synchronized double getMaxTurnaroundMilliseconds() {
+            return maxTurnaroundNanos/1e6;
+        }
+
+        /**
+         * @return true if the whole recording was played back.
+         */
+        public synchronized boolean isComplete() {
+            return complete;
+        }
+
+        synchronized void addCommand(boolean mismatch, long turnaroundNanos) {
+            commands++;
+            if (mismatch) {
+                mismatches++;
+            }
+            if (turnaroundNanos >= 0) {
+                turnarounds++;
+                this.turnaroundNanos += turnaroundNanos;
+                maxTurnaroundNanos = Math.max(maxTurnaroundNanos, turnaroundNanos);
+            }
+        }
+
+        synchronized void addResponse() {
+            responses++;
+        }
+
+        synchronized void finish(long recordedNanos, long replayNanos, boolean complete) {
+            this.recordedNanos = recordedNanos;
+            this.replayNanos = replayNanos;
+            this.complete = complete;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format(Locale.US, "%d commands (%d mismatched), %d responses, "
+                    + "recorded %.1f ms, replayed %.1f ms, %.1f commands/s, "
+                    + "driver turnaround mean %.3f ms, max %.3f ms",
+                    commands, mismatches, responses, recordedNanos/1e6, replayNanos/1e6,
+                    getThroughput(), getMeanTurnaroundMilliseconds(), getMaxTurnaroundMilliseconds());
+        }
+    }
+
     static final String firmware = "FIRMWARE_NAME:GcodeServer, FIRMWARE_URL:http%3A//openpnp.org, X-SOURCE_CODE_URL:https%3A//github.com/openpnp/openpnp, FIRMWARE_VERSION:"+Main.getVersion()+", "
             +"X-FIRMWARE_BUILD_DATE:Oct 23 2020 00:00:00";
 
@@ -93,10 +213,67 @@ public class GcodeServer extends Thread {
         return machineLocation;
     }
 
+    public CommunicationsRecording getReplay() {
+        return replay;
+    }
+
+    /**
+     * Sets a recorded conversation to be played back with its original timing, instead of
+     * interpreting the Gcode. The commands of the driver are matched to the recorded ones, and each recorded
+     * response is sent with its recorded delay after the preceding command.
+     *
+     * @param replay
+     */
+    public void setReplay(CommunicationsRecording replay) {
+        this.replay = replay;
+    }
+
+    /**
+     * @return the statistics of the running or last replay, or null if none.
+     */
+    public ReplayStatistics getReplayStatistics() {
+        return replayStatistics;
+    }
+
     public void addCommandResponse(String command, String response) {
+        commandResponses.put(command, () -> response);
+    }
+
+    /**
+     * Adds a response that is computed each time the command is received, e.g. a simulated sensor
+     * reading.
+     * 
+     * @param command
+     * @param response
+     */
+    public void addCommandResponse(String command, Supplier<String> response) {
         commandResponses.put(command, response);
     }
 
+    public long getResponseDelayMilliseconds() {
+        return responseDelayMilliseconds;
+    }
+
+    public void setResponseDelayMilliseconds(long responseDelayMilliseconds) {
+        this.responseDelayMilliseconds = responseDelayMilliseconds;
+    }
+
+    /**
+     * Lets the controller send a report periodically on its own, like the sensor auto-report of
+     * M155.
+     * 
+     * @param periodicReport supplies the report line, or null to send none at that time. Set
+     * periodicReport to null to stop reporting.
+     * @param reportPeriodMilliseconds
+     */
+    public void setPeriodicReport(Supplier<String> periodicReport, long reportPeriodMilliseconds) {
+        this.reportPeriodMilliseconds = reportPeriodMilliseconds;
+        this.periodicReport = periodicReport;
+        for (Worker worker : workers) {
+            worker.startReporting();
+        }
+    }
+
     public void shutdown() {
         try {
             serverSocket.close();
@@ -164,6 +341,7 @@ public class GcodeServer extends Thread {
         private LengthUnit lengthUnit = LengthUnit.Millimeters; 
         private boolean absolute = true;
         private String response;
+        private Thread reporter;
 
         public Worker(Socket socket) throws Exception {
             this.socket = socket;
@@ -190,19 +368,119 @@ public class GcodeServer extends Thread {
         }
 
         void write(String s) throws Exception {
-            output.write((s + "\n").getBytes("UTF8"));
+            synchronized (output) {
+                output.write((s + "\n").getBytes("UTF8"));
+            }
+        }
+
+        synchronized void startReporting() {
+            if (reporter == null && periodicReport != null && replay == null) {
+                reporter = new Thread(this::report, "GcodeServer report");
+                reporter.setDaemon(true);
+                reporter.start();
+            }
+        }
+
+        /**
+         * Sends the periodic report until it is reset or the connection is closed.
+         */
+        void report() {
+            long next = System.nanoTime();
+            while (!socket.isClosed() && !serverSocket.isClosed()) {
+                next += TimeUnit.MILLISECONDS.toNanos(reportPeriodMilliseconds);
+                LockSupport.parkNanos(next - System.nanoTime());
+                try {
+                    Supplier<String> periodicReport = GcodeServer.this.periodicReport;
+                    if (periodicReport == null) {
+                        break;
+                    }
+                    String report = periodicReport.get();
+                    if (report != null) {
+                        write(report);
+                    }
+                }
+                catch (Exception e) {
+                    break;
+                }
+            }
+            synchronized (this) {
+                reporter = null;
+            }
+        }
+
+        /**
+         * Plays back the recorded conversation. Each recorded command waits for the next command of
+         * the driver, each recorded response is sent when due relative to the preceding command.
+         * Any commands after the end of the recording are confirmed with "ok".
+         */
+        void replay(CommunicationsRecording replay) throws Exception {
+            ReplayStatistics statistics = new ReplayStatistics();
+            replayStatistics = statistics;
+            long t0 = System.nanoTime();
+            long anchorRecorded = 0;
+            long anchorReal = t0;
+            long lastResponseReal = -1;
+            boolean complete = true;
+            for (CommunicationsRecording.Event event : replay.getEvents()) {
+                if (event.isSent()) {
+                    String command = read();
+                    long now = System.nanoTime();
+                    if (command == null) {
+                        complete = false;
+                        break;
+                    }
+                    boolean mismatch = !command.trim().equals(event.getLine().trim());
+                    if (mismatch) {
+                        Logger.trace("Replay expected {} but got {}", event.getLine(), command);
+                    }
+                    statistics.addCommand(mismatch, lastResponseReal < 0 ? -1 : Math.max(0, now - lastResponseReal));
+                    lastResponseReal = -1;
+                    anchorRecorded = event.getNanos();
+                    anchorReal = now;
+                }
+                else {
+                    long delay = anchorReal + event.getNanos() - anchorRecorded - System.nanoTime();
+                    if (delay > 0) {
+                        LockSupport.parkNanos(delay);
+                    }
+                    write(event.getLine());
+                    statistics.addResponse();
+                    lastResponseReal = System.nanoTime();
+                }
+            }
+            statistics.finish(replay.getDurationNanos(), System.nanoTime() - t0, complete);
+            Logger.info("Replay of {} finished: {}", replay.getConnectionName(), statistics);
+            while (complete && !serverSocket.isClosed()) {
+                if (read() == null) {
+                    break;
+                }
+                write("ok");
+            }
         }
 
         public void run() {
-            while (!serverSocket.isClosed()) {
+            CommunicationsRecording replay = GcodeServer.this.replay;
+            if (replay != null) {
+                try {
+                    replay(replay);
+                }
+                catch (Exception e) {
+                    Logger.error(e);
+                }
+            }
+            workers.add(this);
+            startReporting();
+            while (replay == null && !serverSocket.isClosed()) {
                 try {
                     String input = read();
                     if (input != null) {
+                        if (responseDelayMilliseconds > 0) {
+                            Thread.sleep(responseDelayMilliseconds);
+                        }
                         // Canned responses.
-                        String response = null;
-                        response = commandResponses.get(input.trim());
+                        Supplier<String> response = commandResponses.get(input.trim());
                         if (response != null) {
-                            write(response);
+                            write(response.get());
                         }
                         else if (driver != null) {
                             try {
@@ -239,6 +517,7 @@ public class GcodeServer extends Thread {
             }
             catch (Exception e) {
             }
+            workers.remove(this);
             Logger.debug("Worker port "+getListenerPort()+" bye-bye.");
         }
 
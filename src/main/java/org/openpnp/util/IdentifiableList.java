@@ -1,34 +1,76 @@
 package org.openpnp.util;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
+import org.openpnp.model.AbstractModelObject;
 import org.openpnp.model.Identifiable;
+import org.openpnp.model.Named;
 
 /**
  * A List specifically for storing implementations of Identifiable. This class adds a get(String)
- * method for getting the Identifiable object with the specified id from the list. Currently
- * performs a simple search through the list but is intended to be indexed eventually.
- * 
- * TODO: Perform indexing on insert and remove so that get(String) can perform better. Consider what
- * happens if an id changes out from under us.
- * 
+ * method for getting the Identifiable object with the specified id from the list, and a
+ * getByName(String) method for Named elements.
+ *
+ * Both are backed by a hash index that is rebuilt lazily after the list was modified, or after any
+ * id or name changed, which elements announce by firing an "id" or "name" property change, see
+ * {@link AbstractModelObject}. A key that is not in the index is therefore not in the list. Names
+ * derived from other properties must fire a "name" change when these change.
+ *
  * @param <E>
  */
 public class IdentifiableList<E extends Identifiable> extends ArrayList<E> {
     private static final long serialVersionUID = -2350184908321182804L;
-    
+
+    /**
+     * Counts the id and name changes of all elements, as these are rare a single count will do.
+     */
+    private static final AtomicInteger keyVersion = new AtomicInteger();
+
+    private static class Index<E> {
+        final Map<String, E> map;
+        final int modCount;
+        final int keyVersion;
+
+        Index(Map<String, E> map, int modCount, int keyVersion) {
+            this.map = map;
+            this.modCount = modCount;
+            this.keyVersion = keyVersion;
+        }
+    }
+
+    private transient volatile Index<E> idIndex;
+    private transient volatile Index<E> nameIndex;
+
     public IdentifiableList() {
         super();
     }
-    
+
     public IdentifiableList(IdentifiableList<E> identifiableList) {
         super(identifiableList);
     }
-    
+
+    /**
+     * Tells all lists that the id or name of an element may have changed, so their indexes are
+     * rebuilt on the next lookup.
+     */
+    public static void keyChanged() {
+        keyVersion.incrementAndGet();
+    }
+
     public String createId(String prefix) {
+        Set<String> ids = new HashSet<>();
+        for (E e : this) {
+            ids.add(e.getId());
+        }
         //Only software people start counting at zero! Everyone else starts counting at one.
         for (int i = 1; ; i++) {
-            if (get(prefix + i) == null) {
+            if (!ids.contains(prefix + i)) {
                 return prefix + i;
             }
         }
@@ -38,11 +80,71 @@ public class IdentifiableList<E extends Identifiable> extends ArrayList<E> {
         if (id == null || id.isEmpty()) {
             return null;
         }
+        E e = getIdIndex().map.get(id);
+        if (e != null && !id.equals(e.getId())) {
+            // The id was changed without telling.
+            idIndex = null;
+            e = getIdIndex().map.get(id);
+        }
+        return e;
+    }
+
+    /**
+     * @param name
+     * @return the first Named element with the name, or null if there is none.
+     */
+    public E getByName(String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        E e = getNameIndex().map.get(name);
+        if (e != null && !name.equals(getName(e))) {
+            // The name was changed without telling.
+            nameIndex = null;
+            e = getNameIndex().map.get(name);
+        }
+        return e;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        // Not a structural modification, so modCount does not tell.
+        idIndex = null;
+        nameIndex = null;
+        return super.set(index, element);
+    }
+
+    private Index<E> getIdIndex() {
+        Index<E> index = idIndex;
+        if (index == null || index.modCount != modCount || index.keyVersion != keyVersion.get()) {
+            index = idIndex = buildIndex(Identifiable::getId);
+        }
+        return index;
+    }
+
+    private Index<E> getNameIndex() {
+        Index<E> index = nameIndex;
+        if (index == null || index.modCount != modCount || index.keyVersion != keyVersion.get()) {
+            index = nameIndex = buildIndex(IdentifiableList::getName);
+        }
+        return index;
+    }
+
+    private Index<E> buildIndex(Function<E, String> keyFunction) {
+        // Taken before the keys are read, so a concurrent change leaves the index outdated.
+        int version = keyVersion.get();
+        Map<String, E> map = new HashMap<>(size() * 2);
         for (E e : this) {
-            if (e.getId().equals(id)) {
-                return e;
+            String key = keyFunction.apply(e);
+            if (key != null) {
+                // The first one wins, like in a search through the list.
+                map.putIfAbsent(key, e);
             }
         }
-        return null;
+        return new Index<>(map, modCount, version);
+    }
+
+    private static String getName(Identifiable e) {
+        return e instanceof Named ? ((Named) e).getName() : null;
     }
 }
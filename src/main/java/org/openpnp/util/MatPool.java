@@ -0,0 +1,166 @@
+package org.openpnp.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * A pool of native OpenCV Mats, keyed by their geometry and type. Used to recycle the Mats of a stream of frames
+ * with the same geometry, e.g. in camera image transforms, instead of allocating and freeing native memory for
+ * each frame and step.
+ *
+ * Only Mats that are no longer referenced anywhere else may be returned to the pool. The pool is thread-safe.
+ */
+public class MatPool {
+    /**
+     * Maximum number of pooled Mats per geometry.
+     */
+    private final int maxPerGeometry;
+
+    /**
+     * Pooled Mats by geometry key, least recently used geometries are evicted first.
+     */
+    private final LinkedHashMap<Long, ArrayDeque<Mat>> pool;
+
+    private long hits;
+    private long misses;
+    private long allocatedBytes;
+
+    /**
+     * @param maxGeometries Maximum number of different geometries that are pooled.
+     * @param maxPerGeometry Maximum number of pooled Mats per geometry.
+     */
+    public MatPool(int maxGeometries, int maxPerGeometry) {
+        this.maxPerGeometry = maxPerGeometry;
+        this.pool = new LinkedHashMap<Long, ArrayDeque<Mat>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ArrayDeque<Mat>> eldest) {
+                if (size() > maxGeometries) {
+                    releaseAll(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public MatPool() {
+        this(4, 4);
+    }
+
+    private static long getKey(int rows, int cols, int type) {
+        return ((long) rows << 40) | ((long) cols << 16) | type;
+    }
+
+    /**
+     * Get a Mat of the given geometry and type, either from the pool or newly allocated. Note, the content of the
+     * Mat is undefined.
+     *
+     * @param rows
+     * @param cols
+     * @param type
+     * @return
+     */
+    public synchronized Mat acquire(int rows, int cols, int type) {
+        ArrayDeque<Mat> mats = pool.get(getKey(rows, cols, type));
+        if (mats != null && !mats.isEmpty()) {
+            hits++;
+            return mats.pop();
+        }
+        misses++;
+        allocatedBytes += (long) rows * cols * CvType.ELEM_SIZE(type);
+        return new Mat(rows, cols, type);
+    }
+
+    /**
+     * Return the Mat to the pool. If the pool is full, the Mat is released.
+     *
+     * @param mat
+     */
+    public synchronized void release(Mat mat) {
+        if (mat == null) {
+            return;
+        }
+        if (mat.empty() || !mat.isContinuous() || mat.isSubmatrix()) {
+            mat.release();
+            return;
+        }
+        ArrayDeque<Mat> mats = pool.computeIfAbsent(getKey(mat.rows(), mat.cols(), mat.type()),
+                (key) -> new ArrayDeque<>());
+        if (mats.size() < maxPerGeometry) {
+            mats.push(mat);
+        }
+        else {
+            mat.release();
+        }
+    }
+
+    /**
+     * Same as {@link OpenCvUtils#toMat(BufferedImage)} but into a pooled Mat.
+     *
+     * @param img
+     * @return
+     */
+    public Mat toMat(BufferedImage img) {
+        int type;
+        if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            type = CvType.CV_8UC1;
+        }
+        else if (img.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            type = CvType.CV_8UC3;
+        }
+        else {
+            img = ImageUtils.convertBufferedImage(img, BufferedImage.TYPE_3BYTE_BGR);
+            type = CvType.CV_8UC3;
+        }
+        Mat mat = acquire(img.getHeight(), img.getWidth(), type);
+        mat.put(0, 0, ((DataBufferByte) img.getRaster().getDataBuffer()).getData());
+        return mat;
+    }
+
+    /**
+     * Release all the pooled Mats. The pool can still be used afterwards.
+     */
+    public synchronized void clear() {
+        for (Iterator<ArrayDeque<Mat>> it = pool.values().iterator(); it.hasNext(); ) {
+            releaseAll(it.next());
+            it.remove();
+        }
+    }
+
+    private static void releaseAll(ArrayDeque<Mat> mats) {
+        for (Mat mat : mats) {
+            mat.release();
+        }
+        mats.clear();
+    }
+
+    /**
+     * @return the number of acquired Mats that were taken from the pool.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of acquired Mats that had to be newly allocated.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of native bytes that were newly allocated for acquired Mats.
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,186 @@
+package org.openpnp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * A text template with variables in the format {Name:Format}, parsed once into literal text and
+ * variable slots. The template is immutable and can be cached as long as the text does not change.
+ *
+ * Rendering is done through a {@link Substitution} that gives exactly the same result as the
+ * equivalent chain of {@link TextUtils#substituteVar(String, String, Object)} calls, but without
+ * any regex matching or intermediate Strings.
+ */
+public class TextTemplate {
+    private final String text;
+    /**
+     * The segments of the template. For a literal segment the name is null and the text is the
+     * literal. For a variable slot, the text is the original variable text, i.e. {Name:Format}.
+     */
+    private final String[] texts;
+    private final String[] names;
+    private final String[] formats;
+    /**
+     * True if no literal segment contains curly brackets, i.e. substituted values can never
+     * combine with the literal text to form new variables.
+     */
+    private final boolean simple;
+
+    public TextTemplate(String text) {
+        this.text = text;
+        List<String> texts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> formats = new ArrayList<>();
+        Matcher matcher = TextUtils.VARIABLE_PATTERN.matcher(text);
+        int pos = 0;
+        boolean simple = true;
+        while (matcher.find()) {
+            if (matcher.start() > pos) {
+                simple &= !containsBrackets(text.substring(pos, matcher.start()));
+                texts.add(text.substring(pos, matcher.start()));
+                names.add(null);
+                formats.add(null);
+            }
+            texts.add(matcher.group());
+            names.add(matcher.group(1));
+            formats.add(matcher.group(2));
+            pos = matcher.end();
+        }
+        if (pos < text.length()) {
+            simple &= !containsBrackets(text.substring(pos));
+            texts.add(text.substring(pos));
+            names.add(null);
+            formats.add(null);
+        }
+        this.texts = texts.toArray(new String[texts.size()]);
+        this.names = names.toArray(new String[names.size()]);
+        this.formats = formats.toArray(new String[formats.size()]);
+        this.simple = simple;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @param name
+     * @return true if the template contains the variable.
+     */
+    public boolean hasVariable(String name) {
+        for (String n : names) {
+            if (name.equals(n)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a new Substitution, with all the variables still unsubstituted.
+     */
+    public Substitution newSubstitution() {
+        return new Substitution();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * The mutable substitution state of one rendering of the template. Not thread-safe.
+     */
+    public class Substitution {
+        private final String[] values = new String[texts.length];
+        /**
+         * Once a substituted value contains text that could itself be interpreted as a variable
+         * or as a replacement escape, the slots can no longer represent the result. From then on,
+         * the rendered text is kept here and substitution falls back to
+         * {@link TextUtils#substituteVar(String, String, Object)}.
+         */
+        private String fallback = (simple ? null : text);
+
+        private Substitution() {
+        }
+
+        /**
+         * Substitute the variable, as in {@link TextUtils#substituteVar(String, String, Object)}.
+         * A null value replaces the variable with "".
+         *
+         * @param name
+         * @param value
+         * @return this Substitution, for chaining.
+         */
+        public Substitution substitute(String name, Object value) {
+            if (fallback != null) {
+                fallback = TextUtils.substituteVar(fallback, name, value);
+                return this;
+            }
+            for (int i = 0; i < texts.length; i++) {
+                if (values[i] == null && name.equals(names[i])) {
+                    String v = TextUtils.formatVar(formats[i], value);
+                    if (isSpecial(v)) {
+                        // Render what we have so far and substitute the rest the classic way.
+                        fallback = TextUtils.substituteVar(toString(), name, value);
+                        return this;
+                    }
+                    values[i] = v;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @param name
+         * @return true if the variable is present and not yet substituted.
+         */
+        public boolean hasVariable(String name) {
+            if (fallback != null) {
+                Matcher matcher = TextUtils.VARIABLE_PATTERN.matcher(fallback);
+                while (matcher.find()) {
+                    if (matcher.group(1).equals(name)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            for (int i = 0; i < texts.length; i++) {
+                if (values[i] == null && name.equals(names[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            if (fallback != null) {
+                return fallback;
+            }
+            StringBuilder sb = new StringBuilder(text.length());
+            for (int i = 0; i < texts.length; i++) {
+                sb.append(values[i] != null ? values[i] : texts[i]);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static boolean containsBrackets(String literal) {
+        return literal.indexOf('{') >= 0 || literal.indexOf('}') >= 0;
+    }
+
+    /**
+     * @return true if the text contains characters that are interpreted in the substitution, i.e. 
+     * curly brackets of variables, or the escape characters of {@link Matcher#appendReplacement}.
+     */
+    private static boolean isSpecial(String v) {
+        for (int i = 0; i < v.length(); i++) {
+            char ch = v.charAt(i);
+            if (ch == '{' || ch == '}' || ch == '$' || ch == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
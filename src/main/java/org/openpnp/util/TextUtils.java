@@ -24,6 +24,12 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class TextUtils {
+    /**
+     * The pattern of variables in the format {Name:Format}. Group 1 is the Name, group 2 the 
+     * optional Format.
+     */
+    public static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{(\\w+)(?::(.+?))?\\}");
+
     /**
      * Find matches of variables in the format {Name:Format} and replace them with the specified
      * value formatted using String.format with the specified Format. Format is optional and
@@ -33,25 +39,49 @@ public class TextUtils {
         if (template == null) {
             return template;
         }
+        if (!containsVariableStart(template, name)) {
+            // Quick reject, nothing to substitute.
+            return template;
+        }
         StringBuffer sb = new StringBuffer();
-        Matcher matcher = Pattern.compile("\\{(\\w+)(?::(.+?))?\\}").matcher(template);
+        Matcher matcher = VARIABLE_PATTERN.matcher(template);
         while (matcher.find()) {
             String n = matcher.group(1);
             if (!n.equals(name)) {
                 continue;
             }
-            String format = matcher.group(2);
-            if (format == null) {
-                format = "%s";
-            }
-            String v = "";
-            if (value != null) {
-                v = String.format((Locale) null, format, value)
-                        .replace("<((", "{").replace("))>", "}"); // Unescape nested curly brackets.
-            }
+            String v = formatVar(matcher.group(2), value);
             matcher.appendReplacement(sb, v);
         }
         matcher.appendTail(sb);
         return sb.toString();
     }
+
+    /**
+     * Format a value for substitution into a variable with the given Format, as in 
+     * {@link #substituteVar(String, String, Object)}.
+     */
+    public static String formatVar(String format, Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (format == null) {
+            format = "%s";
+        }
+        return String.format((Locale) null, format, value)
+                .replace("<((", "{").replace("))>", "}"); // Unescape nested curly brackets.
+    }
+
+    /**
+     * @return true if the template contains "{Name", i.e. it might contain the variable.
+     */
+    private static boolean containsVariableStart(String template, String name) {
+        int length = name.length();
+        for (int pos = template.indexOf('{'); pos >= 0; pos = template.indexOf('{', pos + 1)) {
+            if (template.regionMatches(pos + 1, name, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
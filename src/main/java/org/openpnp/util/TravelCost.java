@@ -144,15 +144,30 @@ public class TravelCost {
     public double getXyzCost(Location a, Location b) {
         a = a.convertToUnits(units);
         b = b.convertToUnits(units);
-        double cost = getCost(a, b);
+        return getXyzCost(a.getX() - b.getX(), a.getY() - b.getY(), a.getZ() - b.getZ());
+    }
+
+    /**
+     * @param dx
+     * @param dy
+     * @param dz
+     * @return cost to travel the given distances, in the units of this TravelCost, using mapped 
+     * axes parameters
+     */
+    public double getXyzCost(double dx, double dy, double dz) {
+        double cost = Math.max(estimateCost(dx, xAxis), estimateCost(dy, yAxis));
         // if zAxis parameters are not available, assume 0 and return cost on XY only
         if (zAxis != null) {
-            cost = Math.max(cost, estimateCost(a.getZ() - b.getZ(), zAxis));
+            cost = Math.max(cost, estimateCost(dz, zAxis));
         }
         
         return cost;
     }
 
+    public LengthUnit getUnits() {
+        return units;
+    }
+
     public double getXyzcCost(Location a, Location b) {
         a = a.convertToUnits(units);
         b = b.convertToUnits(units);
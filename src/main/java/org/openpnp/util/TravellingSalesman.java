@@ -22,7 +22,11 @@ package org.openpnp.util;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
 
+import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.spi.HeadMountable;
@@ -40,6 +44,9 @@ import org.pmw.tinylog.Logger;
  * 
  * The solver uses Simulated Annealing.
  * 
+ * With {@link #solveParallel(long...)} several independently seeded annealing chains are run in parallel on a 
+ * primitive cost matrix, and the best route is then refined by a 2-opt/Or-opt local search. 
+ * 
  * The implementation is a bit extended from the typical school book examples to not only use "swaps" of two Locations 
  * but also "twists", that reverse the travel direction between the swapped out Locations. The latter really improves the 
  * solutions a lot, because it allows the solver to quickly "untwist" routes at (or near) crossing points. These crossing 
@@ -106,6 +113,34 @@ public class TravellingSalesman<T> {
      */
     private static final double globalBestDistanceScalingFactor = 1.0 - 1e-5;
         
+    /**
+     * The seeds of the annealing chains used by {@link #solveParallel()}. The number of chains is deliberately not 
+     * derived from the number of processors, so the solution is the same on every computer.
+     */
+    private static final long[] defaultSeeds = { 0, 1, 2, 3 };
+
+    /**
+     * Up to this number of locations, the costs are precomputed into a full matrix (~50MB at the limit). Above 
+     * that, the costs are computed on demand from primitive coordinate arrays.
+     */
+    private static final int costMatrixMaxSize = 2500;
+
+    /**
+     * Number of nearest neighbours of each location, the local search tries to connect to.
+     */
+    private static final int neighbourCount = 10;
+
+    /**
+     * Maximum number of annealing iterations per chain in {@link #solveParallel(long...)}. On very large problems, 
+     * random swaps rarely hit nearby locations, so more iterations are mostly wasted.
+     */
+    private static final int parallelMaxIterations = 2000000;
+
+    /**
+     * Maximum number of local search sweeps. 
+     */
+    private static final int localSearchMaxSweeps = 100;
+
     /**
      * Define the units that are used for internal processing
      */
@@ -352,6 +387,413 @@ public class TravellingSalesman<T> {
         return simulateAnnealing(getTravellingDistance()/size*2.0, 1.0-0.001/size, size*1000+10000000);
     }
 
+    /**
+     * Solve the problem using the default seed set, see {@link #solveParallel(long...)}.
+     * 
+     * @return the cost of the best route.
+     */
+    public double solveParallel() {
+        return solveParallel(defaultSeeds);
+    }
+
+    /**
+     * Solve the problem with one Simulated Annealing chain per seed, run in parallel in the ForkJoin common pool. The 
+     * chains use the same moves as {@link #solve()}, but work on a cost matrix that is computed once, instead of 
+     * estimating the cost on Locations. They cool down faster and refine their route by a 2-opt/Or-opt local search 
+     * instead. The best route of all the chains wins. 
+     * 
+     * The solution only depends on the problem and the seeds, not on the number of processors or the scheduling 
+     * of the chains. 
+     * 
+     * @param seeds One seed per annealing chain.
+     * @return the cost of the best route.
+     */
+    public double solveParallel(long... seeds) {
+        long startTime = System.currentTimeMillis();
+        if (this.travelSize > 1) {
+            List<TravelLocation> locations = new ArrayList<>(this.travel);
+            int[] initialRoute = new int[this.travelSize];
+            for (int i = 0; i < this.travelSize; i++) {
+                TravelLocation l = this.travel.get(i);
+                locations.set(l.index, l);
+                initialRoute[i] = l.index;
+            }
+            CostMatrix costs = new CostMatrix(locations);
+            if (this.travelSize > costMatrixMaxSize) {
+                // With a random input order, the few iterations of the chains would be wasted on untangling the 
+                // route. Start from a greedy route instead. 
+                initialRoute = costs.getNearestNeighbourRoute();
+            }
+            List<AnnealingChain> chains = new ArrayList<>();
+            for (long seed : seeds) {
+                chains.add(new AnnealingChain(costs, initialRoute, seed));
+            }
+            ForkJoinTask.invokeAll(chains);
+            // Take the best route, the first chain wins on ties.
+            int[] route = initialRoute;
+            double bestDistance = costs.getRouteCost(initialRoute);
+            for (AnnealingChain chain : chains) {
+                int[] chainRoute = chain.join();
+                double distance = costs.getRouteCost(chainRoute);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    route = chainRoute;
+                }
+            }
+            this.travel.clear();
+            for (int i = 0; i < this.travelSize; i++) {
+                this.travel.add(locations.get(route[i]));
+            }
+        }
+        double bestDistance = getTravellingDistance();
+        long endTime = System.currentTimeMillis();
+        this.solverDuration = endTime - startTime;
+        return bestDistance;
+    }
+
+    /**
+     * Primitive travel cost between the nodes of the problem. Node 0 is the start Location, nodes 1..n the travel 
+     * Locations with index 0..n-1, and node n+1 the end Location. 
+     */
+    private class CostMatrix {
+        private final int nodes = travelSize + 2;
+        private final double[] x = new double[nodes];
+        private final double[] y = new double[nodes];
+        private final double[] z = new double[nodes];
+        private final boolean[] present = new boolean[nodes];
+        private final TravelCost cost = travelCost;
+        private final double costScale;
+        private final double[] matrix;
+        private final int[] neighbours;
+
+        private CostMatrix(List<TravelLocation> locations) {
+            for (int node = 0; node < nodes; node++) {
+                TravelLocation l = (node == 0 ? startLocation 
+                        : node == nodes - 1 ? endLocation 
+                                : locations.get(node - 1));
+                if (l != null) {
+                    x[node] = l.getX();
+                    y[node] = l.getY();
+                    z[node] = l.getZ();
+                    present[node] = true;
+                }
+            }
+            costScale = (cost != null ? new Length(1, unit).convertToUnits(cost.getUnits()).getValue() : 1.0);
+            if (nodes <= costMatrixMaxSize) {
+                matrix = new double[nodes*nodes];
+                IntStream.range(0, nodes).parallel().forEach(a -> {
+                    for (int b = 0; b < nodes; b++) {
+                        matrix[a*nodes + b] = computeCost(a, b);
+                    }
+                });
+            }
+            else {
+                matrix = null;
+            }
+            neighbours = getNeighbours();
+        }
+
+        private double computeCost(int a, int b) {
+            if (!(present[a] && present[b])) {
+                // no start and/or end location, so the distance is just 0.0
+                return 0.0;
+            }
+            double dx = x[a] - x[b];
+            double dy = y[a] - y[b];
+            double dz = z[a] - z[b];
+            if (cost != null) {
+                return cost.getXyzCost(dx*costScale, dy*costScale, dz*costScale);
+            }
+            return Math.sqrt(dx*dx + dy*dy + dz*dz);
+        }
+
+        /**
+         * @param route
+         * @param a Position in the route, -1 for the start Location, route.length for the end Location.
+         * @param b Position in the route, as a.
+         * @return the cost between the Locations at the route positions.
+         */
+        private double getCost(int[] route, int a, int b) {
+            int na = (a < 0 ? 0 : a >= route.length ? nodes - 1 : route[a] + 1);
+            int nb = (b < 0 ? 0 : b >= route.length ? nodes - 1 : route[b] + 1);
+            return getNodeCost(na, nb);
+        }
+
+        private double getNodeCost(int na, int nb) {
+            if (matrix != null) {
+                return matrix[na*nodes + nb];
+            }
+            return computeCost(na, nb);
+        }
+
+        /**
+         * @return a route that always travels to the nearest Location not yet visited, beginning at the start 
+         * Location, or at the first Location if there is no start Location. 
+         */
+        private int[] getNearestNeighbourRoute() {
+            int n = nodes - 2;
+            int[] route = new int[n];
+            boolean[] visited = new boolean[n];
+            int node = (present[0] ? 0 : 1);
+            for (int i = 0; i < n; i++) {
+                int nearest = -1;
+                double nearestCost = Double.POSITIVE_INFINITY;
+                if (i == 0 && node == 1) {
+                    nearest = 0;
+                }
+                else {
+                    for (int k = 0; k < n; k++) {
+                        if (!visited[k]) {
+                            double cost = getNodeCost(node, k + 1);
+                            if (cost < nearestCost) {
+                                nearestCost = cost;
+                                nearest = k;
+                            }
+                        }
+                    }
+                }
+                route[i] = nearest;
+                visited[nearest] = true;
+                node = nearest + 1;
+            }
+            return route;
+        }
+
+        private double getRouteCost(int[] route) {
+            double distance = 0.0;
+            for (int i = 0; i <= route.length; i++) {
+                distance += getCost(route, i - 1, i);
+            }
+            return distance;
+        }
+
+        /**
+         * Same as {@link TravellingSalesman#getSwapDistance(int, int, boolean)}, on the route.
+         */
+        private double getSwapCost(int[] route, int a, int b, boolean twist) {
+            if (a > b) {
+                int s = a;
+                a = b;
+                b = s;
+            }
+            if (twist) {
+                return getCost(route, a-1, b) + getCost(route, a, b+1) 
+                        - getCost(route, a-1, a) - getCost(route, b, b+1);
+            }
+            else if (a + 1 == b) {
+                return getCost(route, a-1, b) + getCost(route, b, a) + getCost(route, a, b+1)
+                        - getCost(route, a-1, a) - getCost(route, a, b) - getCost(route, b, b+1);
+            }
+            else {
+                return getCost(route, a-1, b) + getCost(route, b, a+1) + getCost(route, b-1, a) + getCost(route, a, b+1)
+                        - getCost(route, a-1, a) - getCost(route, a, a+1) - getCost(route, b-1, b) - getCost(route, b, b+1);
+            }
+        }
+
+        private void swapLocations(int[] route, int a, int b, boolean twist) {
+            if (twist) {
+                if (a > b) {
+                    int s = a;
+                    a = b;
+                    b = s;
+                }
+                reverse(route, a, b);
+            }
+            else {
+                int s = route[a];
+                route[a] = route[b];
+                route[b] = s;
+            }
+        }
+
+        /**
+         * @return the nearest {@link #neighbourCount} Locations of each Location, by ascending cost, as a flat array. 
+         */
+        private int[] getNeighbours() {
+            int n = nodes - 2;
+            int count = Math.min(neighbourCount, n - 1);
+            int[] neighbours = new int[n*count];
+            IntStream.range(0, n).parallel().forEach(a -> {
+                double[] costs = new double[count];
+                int found = 0;
+                for (int b = 0; b < n; b++) {
+                    if (b != a) {
+                        double cost = getNodeCost(a + 1, b + 1);
+                        if (found < count || cost < costs[found - 1]) {
+                            // Insertion sort into the list.
+                            int k = (found < count ? found++ : found - 1);
+                            for (; k > 0 && costs[k - 1] > cost; k--) {
+                                costs[k] = costs[k - 1];
+                                neighbours[a*count + k] = neighbours[a*count + k - 1];
+                            }
+                            costs[k] = cost;
+                            neighbours[a*count + k] = b;
+                        }
+                    }
+                }
+            });
+            return neighbours;
+        }
+
+        /**
+         * Improve the route by 2-opt moves (reversing a part of the route) and Or-opt moves (moving one to three 
+         * consecutive Locations elsewhere), until no more improvement is found. Only moves that connect a Location 
+         * to one of its nearest neighbours are tried, so a sweep is O(n). 
+         * 
+         * @param route
+         */
+        private void localSearch(int[] route) {
+            final double epsilon = 1e-9;
+            int n = route.length;
+            int count = neighbours.length/n;
+            int[] position = new int[n];
+            for (int i = 0; i < n; i++) {
+                position[route[i]] = i;
+            }
+            boolean improved = true;
+            for (int sweep = 0; improved && sweep < localSearchMaxSweeps; sweep++) {
+                improved = false;
+                for (int i = 0; i < n; i++) {
+                    // 2-opt, connecting the Location at i to a neighbour at j, replacing its successor or 
+                    // predecessor edge.
+                    for (int k = 0; k < count; k++) {
+                        int j = position[neighbours[route[i]*count + k]];
+                        int a = (j > i ? i + 1 : j + 1);
+                        int b = (j > i ? j : i);
+                        if (b > a && getSwapCost(route, a, b, true) < -epsilon) {
+                            reverse(route, position, a, b);
+                            improved = true;
+                            break;
+                        }
+                        a = (j > i ? i : j);
+                        b = (j > i ? j - 1 : i - 1);
+                        if (b > a && getSwapCost(route, a, b, true) < -epsilon) {
+                            reverse(route, position, a, b);
+                            improved = true;
+                            break;
+                        }
+                    }
+                    // Or-opt, moving the segment starting at i next to a neighbour of its first or last Location. 
+                    for (int length = 1; length <= 3 && i + length <= n; length++) {
+                        int e = i + length - 1;
+                        double removeGain = getCost(route, i-1, i) + getCost(route, e, e+1) 
+                                - getCost(route, i-1, e+1);
+                        boolean moved = false;
+                        for (int k = 0; k < 2*count && !moved; k++) {
+                            // Insert after the neighbour of the first, or before the neighbour of the last Location.
+                            int insert = (k < count ? 
+                                    position[neighbours[route[i]*count + k]] 
+                                    : position[neighbours[route[e]*count + k - count]] - 1);
+                            if (insert >= i - 1 && insert <= e) {
+                                // Insertion point must be outside the segment and not be its current place.
+                                continue;
+                            }
+                            double insertCost = getCost(route, insert, i) + getCost(route, e, insert+1) 
+                                    - getCost(route, insert, insert+1);
+                            if (insertCost - removeGain < -epsilon) {
+                                if (insert > e) {
+                                    rotate(route, position, i, insert, length);
+                                }
+                                else {
+                                    rotate(route, position, insert + 1, e, e - insert - length);
+                                }
+                                improved = true;
+                                moved = true;
+                            }
+                        }
+                        if (moved) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void reverse(int[] route, int a, int b) {
+        for (; a < b; a++, b--) {
+            int s = route[a];
+            route[a] = route[b];
+            route[b] = s;
+        }
+    }
+
+    private static void reverse(int[] route, int[] position, int a, int b) {
+        reverse(route, a, b);
+        for (int i = a; i <= b; i++) {
+            position[route[i]] = i;
+        }
+    }
+
+    /**
+     * Rotate the route positions from..to (inclusive) left by the given distance.
+     */
+    private static void rotate(int[] route, int[] position, int from, int to, int distance) {
+        reverse(route, from, from + distance - 1);
+        reverse(route, from + distance, to);
+        reverse(route, position, from, to);
+    }
+
+    /**
+     * One Simulated Annealing chain on the cost matrix, followed by the local search. Same moves as 
+     * {@link TravellingSalesman#simulateAnnealing(double, double, int)}.
+     */
+    private class AnnealingChain extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+        private final CostMatrix costs;
+        private final int[] initialRoute;
+        private final long seed;
+
+        private AnnealingChain(CostMatrix costs, int[] initialRoute, long seed) {
+            this.costs = costs;
+            this.initialRoute = initialRoute;
+            this.seed = seed;
+        }
+
+        @Override
+        protected int[] compute() {
+            int[] route = initialRoute.clone();
+            int size = route.length;
+            double bestDistance = costs.getRouteCost(route);
+            // heuristic for the simulated annealing params, same as solve()
+            double temperature = bestDistance/size*2.0;
+            // Cool down ten times faster than solve(), the local search finishes the job.
+            double coolingRate = 1.0-0.01/size;
+            double endTemperature = temperature/1000;
+            int[] globalRoute = route.clone();
+            double globalBestDistance = globalBestDistanceScalingFactor * bestDistance;
+            Random rnd = new java.util.Random(seed);
+            for (int i = parallelMaxIterations; i > 0 && temperature > endTemperature; i--) {
+                int a = rnd.nextInt(size);
+                int b;
+                do {
+                    b = rnd.nextInt(size);
+                }
+                while (b == a);
+                boolean twist = false;
+                double swapDistance = costs.getSwapCost(route, a, b, false);
+                double twistDistance = costs.getSwapCost(route, a, b, true);
+                // choose the better option
+                if (twistDistance < swapDistance) {
+                    twist = true;
+                    swapDistance = twistDistance;
+                }
+                if (swapDistance < 0.0 || (Math.exp(-swapDistance / temperature) >= rnd.nextDouble())) {
+                    // better or within annealing probability
+                    costs.swapLocations(route, a, b, twist);
+                    bestDistance += swapDistance;
+                    if (bestDistance < globalBestDistance) {
+                        globalBestDistance = globalBestDistanceScalingFactor * bestDistance;
+                        System.arraycopy(route, 0, globalRoute, 0, size);
+                    }
+                }
+                temperature *= coolingRate;
+            }
+            costs.localSearch(globalRoute);
+            return globalRoute;
+        }
+    }
+
     public List<T> getTravel() {
         // convert the working list back to a list of the input objects using the now rearranged t.index order. 
         List<T> travelOutput = new ArrayList<>();
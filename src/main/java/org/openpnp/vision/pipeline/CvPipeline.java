@@ -5,10 +5,13 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.opencv.core.CvType;
@@ -16,6 +19,7 @@ import org.opencv.core.Mat;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
+import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.FluentCv.ColorSpace;
 import org.openpnp.vision.pipeline.CvStage.Result;
 import org.pmw.tinylog.Logger;
@@ -69,10 +73,25 @@ public class CvPipeline implements AutoCloseable {
 
     private long totalProcessingTimeNs;
 
+    private int nextStageIndex;
+    private long[] profileTimeNs;
+    private long[] profileMatBytes;
+    private long[] profileResultSize;
+
     private BufferedImage lastCapturedImage;
 
     private int currentShot;
 
+    private boolean productionMode;
+
+    private Set<String> outputStageNames = new HashSet<>(Collections.singleton(VisionUtils.PIPELINE_RESULTS_NAME));
+
+    /**
+     * In production mode, the index of the last stage that reads the result of each stage by name,
+     * or Integer.MAX_VALUE for output stages. Null if all the result images are retained.
+     */
+    private int[] lastReaderIndex;
+
     public CvPipeline() {
         
     }
@@ -257,13 +276,65 @@ public class CvPipeline implements AutoCloseable {
     }
 
     public void process() throws Exception {
+        processMachineStages();
+        processRemainingStages();
+    }
+
+    /**
+     * Process the stages up to and including the last stage that interacts with the machine, see
+     * {@link CvStage#isMachineInteraction()}. Must be followed by {@link #processRemainingStages()}
+     * which can be called on a different thread, so the machine is free to move on while the
+     * image is still being processed.
+     * 
+     * @throws Exception
+     */
+    public void processMachineStages() throws Exception {
         terminalException = null;
         totalProcessingTimeNs = 0;
         release();
         for (CvStage stage : stages) {
             stage.processPrepare(this);
         }
-        for (CvStage stage : stages) {
+        if (CvPipelineProfiler.isEnabled()) {
+            profileTimeNs = new long[stages.size()];
+            profileMatBytes = new long[stages.size()];
+            profileResultSize = new long[stages.size()];
+        }
+        else {
+            profileTimeNs = null;
+        }
+        nextStageIndex = 0;
+        lastReaderIndex = productionMode ? getLastReaderIndex() : null;
+        int lastMachineStageIndex = -1;
+        for (int i = 0; i < stages.size(); i++) {
+            if (stages.get(i).isMachineInteraction()) {
+                lastMachineStageIndex = i;
+            }
+        }
+        processStages(lastMachineStageIndex + 1);
+    }
+
+    /**
+     * Process the stages remaining after {@link #processMachineStages()}.
+     * 
+     * @throws Exception
+     */
+    public void processRemainingStages() throws Exception {
+        processStages(stages.size());
+        if (profileTimeNs != null) {
+            CvPipelineProfiler.get().record(this, profileTimeNs, profileMatBytes, profileResultSize,
+                    totalProcessingTimeNs);
+            profileTimeNs = null;
+        }
+        if (terminalException != null) {
+            throw (terminalException);
+        }
+    }
+
+    private void processStages(int endStageIndex) {
+        boolean profiling = (profileTimeNs != null);
+        for (; nextStageIndex < endStageIndex; nextStageIndex++) {
+            CvStage stage = stages.get(nextStageIndex);
             // Process and time the stage and get the result.
             long processingTimeNs = System.nanoTime();
             Result result = null;
@@ -286,6 +357,21 @@ public class CvPipeline implements AutoCloseable {
             }
             processingTimeNs = System.nanoTime() - processingTimeNs;
             totalProcessingTimeNs += processingTimeNs;
+            if (profiling) {
+                profileTimeNs[nextStageIndex] = processingTimeNs;
+                if (result != null) {
+                    // Only count a result image that the stage newly created.
+                    if (result.image != null && result.image != workingImage) {
+                        profileMatBytes[nextStageIndex] = result.image.total()*result.image.elemSize();
+                    }
+                    if (result.model instanceof Collection) {
+                        profileResultSize[nextStageIndex] = ((Collection<?>) result.model).size();
+                    }
+                    else if (result.model != null) {
+                        profileResultSize[nextStageIndex] = 1;
+                    }
+                }
+            }
 
             Mat image = null;
             Object model = null;
@@ -301,10 +387,14 @@ public class CvPipeline implements AutoCloseable {
             if(stage.isEnabled() && colorSpace != null) {
                 workingColorSpace = colorSpace;
             }
+            // In production mode, only the result images that are read later or that are outputs
+            // are retained.
+            boolean retainImage = (lastReaderIndex == null 
+                    || lastReaderIndex[nextStageIndex] > nextStageIndex);
             // If the result image is null and there is a working image,
             // replace the result image with a clone of the working image.
             if (image == null) {
-                if (workingImage != null) {
+                if (workingImage != null && retainImage) {
                     image = workingImage.clone();
                 }
             }
@@ -317,7 +407,7 @@ public class CvPipeline implements AutoCloseable {
                     workingImage.release();
                 }
                 workingImage = image;
-                image = image.clone();
+                image = retainImage ? image.clone() : null;
             }
 
             // If the result colorSpace is null and there is a working colorSpace,
@@ -329,12 +419,100 @@ public class CvPipeline implements AutoCloseable {
             }
 
             results.put(stage, new Result(image, colorSpace, model, processingTimeNs, stage));
+            if (lastReaderIndex != null) {
+                releaseReadImages(nextStageIndex);
+            }
         }
-        if (terminalException != null) {
-            throw (terminalException);
+    }
+
+    /**
+     * Release the retained result images whose last reader is the given stage.
+     * 
+     * @param stageIndex
+     */
+    private void releaseReadImages(int stageIndex) {
+        for (int i = 0; i < stageIndex; i++) {
+            if (lastReaderIndex[i] == stageIndex) {
+                CvStage stage = stages.get(i);
+                Result result = results.get(stage);
+                if (result != null && result.image != null) {
+                    // A stage may have returned the retained image itself as its result, which
+                    // then became the working image. That one is released with the working image.
+                    if (result.image != workingImage) {
+                        result.image.release();
+                    }
+                    results.put(stage, new Result(null, result.colorSpace, result.model,
+                            result.processingTimeNs, stage));
+                }
+            }
         }
     }
 
+    /**
+     * @return for each stage, the index of the last stage that reads its result by name, -1 if
+     *         none, Integer.MAX_VALUE for the output stages, or null if the references can't be
+     *         known, i.e. all the result images must be retained.
+     */
+    private int[] getLastReaderIndex() {
+        int[] lastReaderIndex = new int[stages.size()];
+        Map<String, Integer> stageIndex = new HashMap<>();
+        for (int i = 0; i < stages.size(); i++) {
+            String name = stages.get(i).getName();
+            stageIndex.put(name, i);
+            lastReaderIndex[i] = outputStageNames.contains(name) ? Integer.MAX_VALUE : -1;
+        }
+        for (int j = 0; j < stages.size(); j++) {
+            CvStage stage = stages.get(j);
+            if (!stage.isEnabled()) {
+                continue;
+            }
+            List<String> referencedStageNames = stage.getReferencedStageNames();
+            if (referencedStageNames == null) {
+                return null;
+            }
+            for (String name : referencedStageNames) {
+                Integer i = stageIndex.get(name);
+                if (i != null && i < j) {
+                    lastReaderIndex[i] = Math.max(lastReaderIndex[i], j);
+                }
+            }
+        }
+        return lastReaderIndex;
+    }
+
+    public boolean isProductionMode() {
+        return productionMode;
+    }
+
+    /**
+     * In production mode, the pipeline does not retain a copy of the image of each stage for
+     * display in the pipeline editor. Only the result images that a later stage reads by name
+     * (see {@link CvStage#getReferencedStageNames()}) or that are outputs (see
+     * {@link #setOutputStageNames(Set)}) are retained, the former only until the last stage that
+     * reads them has been processed. The result models and the working image are always retained.
+     * 
+     * The pipeline editor always processes the pipeline with production mode off.
+     * 
+     * @param productionMode
+     */
+    public void setProductionMode(boolean productionMode) {
+        this.productionMode = productionMode;
+    }
+
+    public Set<String> getOutputStageNames() {
+        return Collections.unmodifiableSet(outputStageNames);
+    }
+
+    /**
+     * Set the names of the stages whose result images are retained in production mode. The
+     * default is the "results" stage.
+     * 
+     * @param outputStageNames
+     */
+    public void setOutputStageNames(Set<String> outputStageNames) {
+        this.outputStageNames = new HashSet<>(outputStageNames);
+    }
+
     /**
      * Reset all the modified parameters to default values
      * (we do not want the parameters to permanently modify the pipeline). 
@@ -431,16 +609,36 @@ public class CvPipeline implements AutoCloseable {
         }
     }
 
+    /**
+     * Create a new instance of the pipeline with the same stages, from the cached
+     * {@link CvPipelineTemplate} of the pipeline, i.e. without an XML round trip, unless the
+     * content of the pipeline was not seen before.
+     */
     @Override
     public CvPipeline clone() throws CloneNotSupportedException {
         try {
-            return new CvPipeline(toXmlString());
+            return CvPipelineTemplate.get(this).newPipeline();
         }
         catch (Exception e) {
             throw new CloneNotSupportedException(e.getMessage());
         }
     }
     
+    /**
+     * Clone the pipeline including its current properties, e.g. to process a {@link PipelineShot}
+     * concurrently with the next one.
+     * 
+     * @return
+     * @throws CloneNotSupportedException
+     */
+    public CvPipeline cloneWithProperties() throws CloneNotSupportedException {
+        CvPipeline pipeline = clone();
+        pipeline.properties.putAll(properties);
+        pipeline.productionMode = productionMode;
+        pipeline.outputStageNames = new HashSet<>(outputStageNames);
+        return pipeline;
+    }
+
     public Object getProperty(String name) {
         return properties.get(name);
     }
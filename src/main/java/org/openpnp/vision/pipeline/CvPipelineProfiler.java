@@ -0,0 +1,417 @@
+package org.openpnp.vision.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects per stage profiling statistics of CvPipeline executions: wall time, native Mat bytes
+ * allocated and result size. Statistics are kept over a rolling window of the most recent
+ * executions, per pipeline and per stage name, and aggregated per stage class across all the
+ * pipelines.
+ *
+ * Profiling is disabled by default. When disabled, the only overhead in CvPipeline.process() is
+ * a check of the enabled flag. Profiling can be enabled in the pipeline editor or from a script,
+ * e.g. to collect and export the statistics over a job:
+ *
+ * <pre>
+ * org.openpnp.vision.pipeline.CvPipelineProfiler.setEnabled(true);
+ * ...
+ * org.openpnp.vision.pipeline.CvPipelineProfiler.get().exportCsv(new java.io.File("profile.csv"));
+ * </pre>
+ */
+public class CvPipelineProfiler {
+    /**
+     * Number of most recent executions that the percentiles are computed over.
+     */
+    public static final int WINDOW_SIZE = 256;
+
+    private static volatile boolean enabled;
+
+    private static final CvPipelineProfiler instance = new CvPipelineProfiler();
+
+    /**
+     * Pipeline profiles by pipeline key, see {@link #getPipelineKey(CvPipeline)}.
+     */
+    private final Map<String, PipelineProfile> pipelineProfiles = new LinkedHashMap<>();
+
+    /**
+     * Stage profiles aggregated by stage class.
+     */
+    private final Map<String, StageProfile> stageClassProfiles = new TreeMap<>();
+
+    public static CvPipelineProfiler get() {
+        return instance;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        CvPipelineProfiler.enabled = enabled;
+    }
+
+    /**
+     * Rolling statistics over the most recent samples.
+     */
+    public static class RollingStatistics {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private long count;
+
+        public synchronized void add(long sample) {
+            samples[(int) (count % samples.length)] = sample;
+            count++;
+        }
+
+        /**
+         * @return the total number of samples added.
+         */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        private long[] getWindow() {
+            return Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+        }
+
+        /**
+         * @param percentile In the range 0 to 100.
+         * @return the given percentile of the samples in the window, using the nearest rank method.
+         */
+        public synchronized long getPercentile(double percentile) {
+            long[] window = getWindow();
+            if (window.length == 0) {
+                return 0;
+            }
+            Arrays.sort(window);
+            int rank = (int) Math.ceil(percentile/100.0*window.length);
+            return window[Math.max(0, Math.min(window.length - 1, rank - 1))];
+        }
+
+        public synchronized double getMean() {
+            long[] window = getWindow();
+            if (window.length == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (long sample : window) {
+                sum += sample;
+            }
+            return sum/window.length;
+        }
+
+        public synchronized long getMax() {
+            long max = 0;
+            for (long sample : getWindow()) {
+                max = Math.max(max, sample);
+            }
+            return max;
+        }
+    }
+
+    public static class StageProfile {
+        private final String stageName;
+        private final String stageClass;
+        private final RollingStatistics processingTimeNs = new RollingStatistics();
+        private final RollingStatistics matBytes = new RollingStatistics();
+        private final RollingStatistics resultSize = new RollingStatistics();
+
+        public StageProfile(String stageName, String stageClass) {
+            this.stageName = stageName;
+            this.stageClass = stageClass;
+        }
+
+        public String getStageName() {
+            return stageName;
+        }
+
+        public String getStageClass() {
+            return stageClass;
+        }
+
+        public RollingStatistics getProcessingTimeNs() {
+            return processingTimeNs;
+        }
+
+        public RollingStatistics getMatBytes() {
+            return matBytes;
+        }
+
+        public RollingStatistics getResultSize() {
+            return resultSize;
+        }
+
+        void add(long processingTimeNs, long matBytes, long resultSize) {
+            this.processingTimeNs.add(processingTimeNs);
+            this.matBytes.add(matBytes);
+            this.resultSize.add(resultSize);
+        }
+    }
+
+    public static class PipelineProfile {
+        private final String pipelineKey;
+        private final RollingStatistics processingTimeNs = new RollingStatistics();
+        private final Map<String, StageProfile> stageProfiles = new LinkedHashMap<>();
+
+        public PipelineProfile(String pipelineKey) {
+            this.pipelineKey = pipelineKey;
+        }
+
+        public String getPipelineKey() {
+            return pipelineKey;
+        }
+
+        public RollingStatistics getProcessingTimeNs() {
+            return processingTimeNs;
+        }
+
+        public synchronized List<StageProfile> getStageProfiles() {
+            return new ArrayList<>(stageProfiles.values());
+        }
+
+        public synchronized StageProfile getStageProfile(String stageName) {
+            return stageProfiles.get(stageName);
+        }
+
+        synchronized StageProfile getOrCreateStageProfile(CvStage stage) {
+            return stageProfiles.computeIfAbsent(stage.getName(),
+                    (name) -> new StageProfile(name, stage.getClass().getSimpleName()));
+        }
+    }
+
+    /**
+     * The key under which the profile of the pipeline is collected. As the same pipeline is
+     * often cloned from its vision settings, the key is the sequence of its stage classes
+     * rather than the instance.
+     *
+     * @param pipeline
+     * @return
+     */
+    public static String getPipelineKey(CvPipeline pipeline) {
+        StringBuilder key = new StringBuilder();
+        for (CvStage stage : pipeline.getStages()) {
+            if (key.length() > 0) {
+                key.append(',');
+            }
+            key.append(stage.getClass().getSimpleName());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Records one execution of the pipeline. The arrays are indexed like the pipeline stages.
+     *
+     * @param pipeline
+     * @param processingTimeNs
+     * @param matBytes
+     * @param resultSize
+     * @param totalProcessingTimeNs
+     */
+    void record(CvPipeline pipeline, long[] processingTimeNs, long[] matBytes, long[] resultSize,
+            long totalProcessingTimeNs) {
+        PipelineProfile pipelineProfile = getOrCreatePipelineProfile(getPipelineKey(pipeline));
+        pipelineProfile.processingTimeNs.add(totalProcessingTimeNs);
+        List<CvStage> stages = pipeline.getStages();
+        for (int i = 0; i < stages.size() && i < processingTimeNs.length; i++) {
+            CvStage stage = stages.get(i);
+            pipelineProfile.getOrCreateStageProfile(stage)
+                .add(processingTimeNs[i], matBytes[i], resultSize[i]);
+            getOrCreateStageClassProfile(stage)
+                .add(processingTimeNs[i], matBytes[i], resultSize[i]);
+        }
+    }
+
+    private synchronized PipelineProfile getOrCreatePipelineProfile(String pipelineKey) {
+        return pipelineProfiles.computeIfAbsent(pipelineKey, (key) -> new PipelineProfile(key));
+    }
+
+    private synchronized StageProfile getOrCreateStageClassProfile(CvStage stage) {
+        String stageClass = stage.getClass().getSimpleName();
+        return stageClassProfiles.computeIfAbsent(stageClass,
+                (key) -> new StageProfile(null, stageClass));
+    }
+
+    /**
+     * @param pipeline
+     * @return the profile collected for the pipeline, or null if none was collected.
+     */
+    public synchronized PipelineProfile getPipelineProfile(CvPipeline pipeline) {
+        return pipelineProfiles.get(getPipelineKey(pipeline));
+    }
+
+    public synchronized List<PipelineProfile> getPipelineProfiles() {
+        return new ArrayList<>(pipelineProfiles.values());
+    }
+
+    public synchronized List<StageProfile> getStageClassProfiles() {
+        return new ArrayList<>(stageClassProfiles.values());
+    }
+
+    public synchronized void clear() {
+        pipelineProfiles.clear();
+        stageClassProfiles.clear();
+    }
+
+    private static final String CSV_HEADER =
+            "scope,pipeline,stage,stageClass,count,timeP50Ms,timeP90Ms,timeP99Ms,timeMaxMs,matBytesMean,resultSizeMean";
+
+    /**
+     * @return the statistics as CSV, one line per pipeline, per pipeline stage and per stage class.
+     */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder(CSV_HEADER);
+        csv.append('\n');
+        for (PipelineProfile pipelineProfile : getPipelineProfiles()) {
+            appendCsv(csv, "pipeline", pipelineProfile.getPipelineKey(), null, null,
+                    pipelineProfile.getProcessingTimeNs(), null, null);
+            for (StageProfile stageProfile : pipelineProfile.getStageProfiles()) {
+                appendCsv(csv, "stage", pipelineProfile.getPipelineKey(),
+                        stageProfile.getStageName(), stageProfile.getStageClass(),
+                        stageProfile.getProcessingTimeNs(), stageProfile.getMatBytes(),
+                        stageProfile.getResultSize());
+            }
+        }
+        for (StageProfile stageProfile : getStageClassProfiles()) {
+            appendCsv(csv, "stageClass", null, null, stageProfile.getStageClass(),
+                    stageProfile.getProcessingTimeNs(), stageProfile.getMatBytes(),
+                    stageProfile.getResultSize());
+        }
+        return csv.toString();
+    }
+
+    private static void appendCsv(StringBuilder csv, String scope, String pipeline, String stage,
+            String stageClass, RollingStatistics time, RollingStatistics matBytes,
+            RollingStatistics resultSize) {
+        csv.append(scope);
+        csv.append(',');
+        csv.append(quoteCsv(pipeline));
+        csv.append(',');
+        csv.append(quoteCsv(stage));
+        csv.append(',');
+        csv.append(quoteCsv(stageClass));
+        csv.append(String.format(Locale.US, ",%d,%.3f,%.3f,%.3f,%.3f,%.0f,%.1f\n",
+                time.getCount(),
+                time.getPercentile(50)/1e6, time.getPercentile(90)/1e6,
+                time.getPercentile(99)/1e6, time.getMax()/1e6,
+                matBytes == null ? 0 : matBytes.getMean(),
+                resultSize == null ? 0 : resultSize.getMean()));
+    }
+
+    private static String quoteCsv(String s) {
+        if (s == null) {
+            return "";
+        }
+        return "\""+s.replace("\"", "\"\"")+"\"";
+    }
+
+    /**
+     * @return the statistics as JSON, with the pipelines and their stages, and the stage classes.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"pipelines\": [");
+        String separator = "\n";
+        for (PipelineProfile pipelineProfile : getPipelineProfiles()) {
+            json.append(separator);
+            json.append("    {\"pipeline\": ");
+            json.append(quoteJson(pipelineProfile.getPipelineKey()));
+            json.append(", ");
+            appendJson(json, pipelineProfile.getProcessingTimeNs(), null, null);
+            json.append(", \"stages\": [");
+            String stageSeparator = "\n";
+            for (StageProfile stageProfile : pipelineProfile.getStageProfiles()) {
+                json.append(stageSeparator);
+                appendJson(json, "      ", stageProfile);
+                stageSeparator = ",\n";
+            }
+            json.append("]}");
+            separator = ",\n";
+        }
+        json.append("],\n  \"stageClasses\": [");
+        separator = "\n";
+        for (StageProfile stageProfile : getStageClassProfiles()) {
+            json.append(separator);
+            appendJson(json, "    ", stageProfile);
+            separator = ",\n";
+        }
+        json.append("]\n}\n");
+        return json.toString();
+    }
+
+    private static void appendJson(StringBuilder json, String indent, StageProfile stageProfile) {
+        json.append(indent);
+        json.append('{');
+        if (stageProfile.getStageName() != null) {
+            json.append("\"stage\": ");
+            json.append(quoteJson(stageProfile.getStageName()));
+            json.append(", ");
+        }
+        json.append("\"stageClass\": ");
+        json.append(quoteJson(stageProfile.getStageClass()));
+        json.append(", ");
+        appendJson(json, stageProfile.getProcessingTimeNs(), stageProfile.getMatBytes(),
+                stageProfile.getResultSize());
+        json.append('}');
+    }
+
+    private static void appendJson(StringBuilder json, RollingStatistics time,
+            RollingStatistics matBytes, RollingStatistics resultSize) {
+        json.append(String.format(Locale.US,
+                "\"count\": %d, \"timeP50Ms\": %.3f, \"timeP90Ms\": %.3f, \"timeP99Ms\": %.3f, \"timeMaxMs\": %.3f",
+                time.getCount(),
+                time.getPercentile(50)/1e6, time.getPercentile(90)/1e6,
+                time.getPercentile(99)/1e6, time.getMax()/1e6));
+        if (matBytes != null) {
+            json.append(String.format(Locale.US, ", \"matBytesMean\": %.0f", matBytes.getMean()));
+        }
+        if (resultSize != null) {
+            json.append(String.format(Locale.US, ", \"resultSizeMean\": %.1f", resultSize.getMean()));
+        }
+    }
+
+    private static String quoteJson(String s) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\');
+                quoted.append(c);
+            }
+            else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                quoted.append(c);
+            }
+        }
+        quoted.append('"');
+        return quoted.toString();
+    }
+
+    /**
+     * Export the statistics to the given file, as JSON if the file name ends with .json,
+     * otherwise as CSV.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void export(File file) throws IOException {
+        String content = file.getName().toLowerCase().endsWith(".json") ? toJson() : toCsv();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void exportCsv(File file) throws IOException {
+        Files.write(file.toPath(), toCsv().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void exportJson(File file) throws IOException {
+        Files.write(file.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+    }
+}
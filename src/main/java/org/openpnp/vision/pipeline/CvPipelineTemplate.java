@@ -0,0 +1,278 @@
+package org.openpnp.vision.pipeline;
+
+import java.awt.Color;
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Element;
+import org.simpleframework.xml.ElementArray;
+import org.simpleframework.xml.ElementList;
+import org.simpleframework.xml.ElementMap;
+import org.simpleframework.xml.Text;
+
+/**
+ * An immutable, compiled template of a CvPipeline, used to create new instances of the pipeline
+ * without the XML serialization round trip, see {@link CvPipeline#clone()}.
+ *
+ * The template is built once from the XML of the pipeline, so it has exactly the content of a
+ * pipeline read from XML. It holds a snapshot of the persisted fields of each stage, i.e. the
+ * fields annotated for XML serialization. A new instance is created by constructing each stage and
+ * setting its persisted fields from the snapshot. The stage instances are not shared, as stages
+ * are modified while processing (parameter stages, property overrides), but the field values are,
+ * as they are immutable. If a stage has a persisted field of any other type, the template falls
+ * back to parsing the XML it was built from. Methods annotated with @Commit are only run when the
+ * template is built, so they must only migrate the persisted fields.
+ *
+ * Templates are cached, keyed by a content hash of the pipeline. For pipelines whose stages only
+ * have immutable field values, the hash is computed directly from the field values, otherwise it
+ * is computed from the XML.
+ */
+public class CvPipelineTemplate {
+    /**
+     * Maximum number of cached templates.
+     */
+    public static final int CACHE_SIZE = 256;
+
+    private static final Map<String, CvPipelineTemplate> cache =
+            new LinkedHashMap<String, CvPipelineTemplate>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CvPipelineTemplate> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static long cacheHits;
+    private static long cacheMisses;
+
+    /**
+     * The persisted fields by stage class.
+     */
+    private static final Map<Class<?>, List<Field>> persistedFields = new ConcurrentHashMap<>();
+
+    private final String xml;
+
+    /**
+     * The stage templates, or null if the template must be instantiated from the XML.
+     */
+    private final List<StageTemplate> stageTemplates;
+
+    private static class StageTemplate {
+        final Constructor<? extends CvStage> constructor;
+        final List<Field> fields;
+        final Object[] values;
+
+        StageTemplate(CvStage stage) throws Exception {
+            constructor = stage.getClass().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            fields = getPersistedFields(stage.getClass());
+            values = new Object[fields.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = fields.get(i).get(stage);
+            }
+        }
+
+        CvStage newInstance() throws Exception {
+            CvStage stage = constructor.newInstance();
+            for (int i = 0; i < values.length; i++) {
+                fields.get(i).set(stage, values[i]);
+            }
+            return stage;
+        }
+    }
+
+    private CvPipelineTemplate(String xml) throws Exception {
+        this.xml = xml;
+        CvPipeline pipeline = new CvPipeline(xml);
+        List<StageTemplate> stageTemplates = new ArrayList<>();
+        for (CvStage stage : pipeline.getStages()) {
+            if (!isCopyable(stage)) {
+                stageTemplates = null;
+                break;
+            }
+            stageTemplates.add(new StageTemplate(stage));
+        }
+        this.stageTemplates = stageTemplates;
+    }
+
+    /**
+     * Get the template of the given pipeline, from the cache or newly built. As with
+     * {@link CvPipeline#toXmlString()}, the parameter stages of the pipeline are reset to their
+     * defaults.
+     *
+     * @param pipeline
+     * @return
+     * @throws Exception
+     */
+    public static CvPipelineTemplate get(CvPipeline pipeline) throws Exception {
+        pipeline.resetToDefaults();
+        String xml = null;
+        String key = getContentKey(pipeline);
+        if (key == null) {
+            xml = pipeline.toXmlString();
+            key = "xml:" + hash(xml);
+        }
+        synchronized (cache) {
+            CvPipelineTemplate template = cache.get(key);
+            if (template != null) {
+                cacheHits++;
+                return template;
+            }
+            cacheMisses++;
+        }
+        if (xml == null) {
+            xml = pipeline.toXmlString();
+        }
+        CvPipelineTemplate template = new CvPipelineTemplate(xml);
+        synchronized (cache) {
+            cache.put(key, template);
+        }
+        return template;
+    }
+
+    /**
+     * @return a new instance of the pipeline, with its own stages.
+     * @throws Exception
+     */
+    public CvPipeline newPipeline() throws Exception {
+        if (stageTemplates == null) {
+            return new CvPipeline(xml);
+        }
+        CvPipeline pipeline = new CvPipeline();
+        for (StageTemplate stageTemplate : stageTemplates) {
+            pipeline.add(stageTemplate.newInstance());
+        }
+        return pipeline;
+    }
+
+    public String getXml() {
+        return xml;
+    }
+
+    /**
+     * @return true if new instances are created from the compiled stages, false if they are
+     *         parsed from the XML.
+     */
+    public boolean isCompiled() {
+        return stageTemplates != null;
+    }
+
+    public static long getCacheHits() {
+        synchronized (cache) {
+            return cacheHits;
+        }
+    }
+
+    public static long getCacheMisses() {
+        synchronized (cache) {
+            return cacheMisses;
+        }
+    }
+
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+            cacheHits = 0;
+            cacheMisses = 0;
+        }
+    }
+
+    static List<Field> getPersistedFields(Class<?> cls) {
+        return persistedFields.computeIfAbsent(cls, c -> {
+            List<Field> fields = new ArrayList<>();
+            for (; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Attribute.class)
+                            || field.isAnnotationPresent(Element.class)
+                            || field.isAnnotationPresent(ElementList.class)
+                            || field.isAnnotationPresent(ElementArray.class)
+                            || field.isAnnotationPresent(ElementMap.class)
+                            || field.isAnnotationPresent(Text.class)) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields;
+        });
+    }
+
+    private static boolean isCopyable(CvStage stage) throws Exception {
+        for (Field field : getPersistedFields(stage.getClass())) {
+            if (Modifier.isFinal(field.getModifiers()) || !isImmutable(field.get(stage))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value == null
+                || value instanceof String
+                || value instanceof Boolean
+                || value instanceof Integer
+                || value instanceof Long
+                || value instanceof Double
+                || value instanceof Float
+                || value instanceof Short
+                || value instanceof Byte
+                || value instanceof Character
+                || value instanceof Enum
+                || value instanceof Color
+                || value instanceof File;
+    }
+
+    /**
+     * @return the content hash of the pipeline computed from the persisted field values of its
+     *         stages, or null if a value is not immutable.
+     * @throws Exception
+     */
+    private static String getContentKey(CvPipeline pipeline) throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (CvStage stage : pipeline.getStages()) {
+            content.append(stage.getClass().getName());
+            content.append('{');
+            for (Field field : getPersistedFields(stage.getClass())) {
+                Object value = field.get(stage);
+                if (!isImmutable(value)) {
+                    return null;
+                }
+                content.append(field.getName());
+                content.append('=');
+                if (value instanceof Color) {
+                    content.append(((Color) value).getRGB());
+                }
+                else if (value instanceof Enum) {
+                    content.append(((Enum<?>) value).name());
+                }
+                else if (value != null) {
+                    content.append(value.getClass().getSimpleName());
+                    content.append(':');
+                    content.append(value.toString().replace("\\", "\\\\").replace(";", "\\;"));
+                }
+                content.append(';');
+            }
+            content.append('}');
+        }
+        return "fields:" + hash(content.toString());
+    }
+
+    private static String hash(String content) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(content.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -9,6 +9,7 @@ import java.beans.Introspector;
 import java.beans.MethodDescriptor;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -57,6 +58,45 @@ public abstract class CvStage {
      */
     public abstract Result process(CvPipeline pipeline) throws Exception;
 
+    /**
+     * @return true if the stage interacts with the machine, e.g. by capturing a camera image,
+     *         by actuating an actuator or by running a script. Stages that can reach the machine
+     *         in any way must return true. These stages are always processed by
+     *         {@link CvPipeline#processMachineStages()}, i.e. on the calling thread.
+     */
+    public boolean isMachineInteraction() {
+        return false;
+    }
+
+    /**
+     * @return the names of the stages whose results this stage reads by name, or null if that
+     *         can't be known, e.g. for a script. The default implementation returns the values of
+     *         the String fields named *StageName, the naming convention of all the stages that
+     *         read the results of other stages. Used by the production mode of the pipeline to
+     *         decide which result images must be retained, see
+     *         {@link CvPipeline#setProductionMode(boolean)}.
+     */
+    public List<String> getReferencedStageNames() {
+        List<String> names = new ArrayList<>();
+        for (Class<?> cls = getClass(); cls != CvStage.class; cls = cls.getSuperclass()) {
+            for (Field field : cls.getDeclaredFields()) {
+                if (field.getType() == String.class && field.getName().endsWith("StageName")) {
+                    try {
+                        field.setAccessible(true);
+                        String name = (String) field.get(this);
+                        if (name != null && !name.isEmpty()) {
+                            names.add(name);
+                        }
+                    }
+                    catch (Exception e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
     void processPrepare(CvPipeline cvPipeline) {
         // Reset any property overrides.
         propertyOverrides = null;
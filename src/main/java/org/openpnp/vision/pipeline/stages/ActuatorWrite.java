@@ -49,6 +49,11 @@ public class ActuatorWrite extends CvStage {
         this.actuatorWriteValue = actuatorWriteValue;
     }
 
+    @Override
+    public boolean isMachineInteraction() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (actuatorName == null || actuatorName.equals("")) {
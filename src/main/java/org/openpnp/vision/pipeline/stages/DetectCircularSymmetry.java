@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import org.opencv.core.Mat;
 import org.openpnp.model.Length;
@@ -324,6 +325,13 @@ public class DetectCircularSymmetry extends CvStage {
                 n++;
             }
         }
+        void merge(ScoreRange other) {
+            minScore = Math.min(minScore, other.minScore); 
+            maxScore = Math.max(maxScore, other.maxScore);
+            finalScore = Math.max(finalScore, other.finalScore);
+            sumScore += other.sumScore;
+            n += other.n;
+        }
         private double scoreHeat(double score) {
             double range = maxScore - minScore;
             double avg = (sumScore/n - minScore)/range;
@@ -368,6 +376,15 @@ public class DetectCircularSymmetry extends CvStage {
      * Some extra debugging stuff used for development, that might be useful again in the future. DEBUG has levels 1 and 2.  
      */
     static final int DEBUG = 0;
+    /**
+     * The minimum number of pixel samples to be scored in a search pass, before it is split into bands 
+     * to be scored in parallel. Smaller passes are faster on one thread. 
+     */
+    static final private long parallelSamplesMin = 200000;
+    /**
+     * If false, the search passes are always evaluated on the calling thread. Used for testing and benchmarking. 
+     */
+    public static boolean parallelSearch = true;
     /**
      * The symmetry score mathematical minimum.
      */
@@ -421,6 +438,7 @@ public class DetectCircularSymmetry extends CvStage {
         // Some sanity checks on the diameters.
         minDiameter = Math.max(3, minDiameter | 1); // make it odd
         maxDiameter = Math.max(minDiameter+4, maxDiameter | 1); // make it odd
+        final int minDiameterEff = minDiameter;
         superSampling = Math.min(16, superSampling);
         // Effective subSampling may have to be finer if the searched circular edge is finer. 
         final int subSamplingEff = Math.max(1, 
@@ -462,8 +480,7 @@ public class DetectCircularSymmetry extends CvStage {
         // Get the pixels out of the Mat.
         final int wPixels = maxDiameter + wSearchRange;
         final int hPixels = maxDiameter + hSearchRange;
-        byte[] pixelSamples = new byte[width*hPixels*channels]; 
-        image.get(y0SearchRange, 0, pixelSamples);
+        byte[] pixelSamples = getPixelSamples(image, y0SearchRange, hPixels); 
 
         // Running best results.
         double scoreBest = Double.NEGATIVE_INFINITY;
@@ -498,14 +515,11 @@ public class DetectCircularSymmetry extends CvStage {
         int [] idxPixelData = new int[maxPixelDataDim]; // Index into the pixel data, relative from the left upper corner.
         int [] idxHistogram = new int[maxPixelDataDim]; // Index into the result histogram.
         int [] rRing = new int [rDim];
-        double [] segmentValues = new double[angleDim]; 
         for (int ri = 0; ri < rDim; ri++) {
             rRing[ri] = r0 + ri*subSamplingEff;
         }
         int [] histogramN = new int[histogramDim];
         double [] histogramFactor = new double[histogramDim];
-        long [] histogramSum = new long[histogramDim]; 
-        long [] histogramSumSq = new long[histogramDim]; 
 
         // Outer super-sampling loop. 
         for (double xOffset : superSamplingOffsets) {
@@ -546,139 +560,175 @@ public class DetectCircularSymmetry extends CvStage {
                 }
 
                 // Now iterate through all the pixel offsets and find the maximum circular symmetry.
-                for (int yi = 0, yis = 0; yi < hSearchRange; yi += subSamplingEff, yis++) {
-                    for (int xi = 0, xis = 0, idxOffset = (yi*width + x0SearchRange) * channels; 
-                            xi < wSearchRange; 
-                            xi += subSamplingEff, xis++, idxOffset += channels*subSamplingEff) {
-                        int distSq = (xi - xSearch)*(xi - xSearch) + (yi - ySearch)*(yi - ySearch);
-                        if (distSq <= rSearchSq) {
-                            Arrays.fill(histogramSum, 0);
-                            Arrays.fill(histogramSumSq, 0);
-                            for (int i = 0; i < samples; i++) {
-                                int idxPixel = idxPixelData[i];
-                                int idxHisto = idxHistogram[i];
-                                int pixel = Byte.toUnsignedInt(pixelSamples[idxOffset + idxPixel]);
-                                histogramSum[idxHisto] += pixel;
-                                histogramSumSq[idxHisto] += pixel*pixel;
-                            }
+                // The rows of center candidates are split into bands that are scored in parallel, each band 
+                // with its own histograms. The band results are then merged in row order, so the result is 
+                // the same as if scored sequentially.  
+                final int samplesCount = samples;
+                final double[] scoreMapBands = scoreMap;
+                final int[] radiusMapBands = radiusMap;
+                final double[] xOffsetMapBands = xOffsetMap;
+                final double[] yOffsetMapBands = yOffsetMap;
+                final int bands = getBandCount(hSearchRangeMap, (long)wSearchRangeMap*hSearchRangeMap*samples);
+                final BandBest[] bandBests = new BandBest[bands];
+                IntStream bandStream = IntStream.range(0, bands);
+                if (bands > 1) {
+                    bandStream = bandStream.parallel();
+                }
+                bandStream.forEach(band -> {
+                    BandBest best = new BandBest();
+                    long [] histogramSum = new long[histogramDim]; 
+                    long [] histogramSumSq = new long[histogramDim]; 
+                    double [] segmentValues = new double[angleDim]; 
+                    double [] sumAcross = new double[channels];
+                    double [] sumSqAcross = new double[channels];
+                    double [] lastAvg = new double[channels];
+                    int [] nAcross = new int[channels];
+                    final int yis0 = hSearchRangeMap*band/bands;
+                    final int yis1 = hSearchRangeMap*(band + 1)/bands;
+                    for (int yis = yis0, yi = yis0*subSamplingEff; yis < yis1; yi += subSamplingEff, yis++) {
+                        for (int xi = 0, xis = 0, idxOffset = (yi*width + x0SearchRange) * channels; 
+                                xi < wSearchRange; 
+                                xi += subSamplingEff, xis++, idxOffset += channels*subSamplingEff) {
+                            int distSq = (xi - xSearch)*(xi - xSearch) + (yi - ySearch)*(yi - ySearch);
+                            if (distSq <= rSearchSq) {
+                                Arrays.fill(histogramSum, 0);
+                                Arrays.fill(histogramSumSq, 0);
+                                for (int i = 0; i < samplesCount; i++) {
+                                    int idxPixel = idxPixelData[i];
+                                    int idxHisto = idxHistogram[i];
+                                    int pixel = Byte.toUnsignedInt(pixelSamples[idxOffset + idxPixel]);
+                                    histogramSum[idxHisto] += pixel;
+                                    histogramSumSq[idxHisto] += pixel*pixel;
+                                }
 
-                            // Analyze the ring sums to find the circular symmetry score, which is ratio between radial 
-                            // and circular variance.
-                            // We use the naive formula
-                            //    Var = (SumSq − (Sum × Sum) / n) / (n − 1), 
-                            // See https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Na%C3%AFve_algorithm
-                            // But we weigh all our variances by the pixel count, so we do not divide by (n - 1).
-                            final double div0Guard = 0.1;
-                            double score;
-                            double contrastBest = Double.NEGATIVE_INFINITY;
-                            int riContrastBest = 0;
-                            double varianceRing = 0;
-                            double [] sumAcross = new double[channels];
-                            double [] sumSqAcross = new double[channels];
-                            double [] lastAvg = new double[channels];
-                            int [] nAcross = new int[channels];
-                            for (int idxR = 0; idxR < rDim; idxR++) {
-                                double contrast = 0;
-                                for (int ch = 0; ch < channels; ch++) {
-                                    double sumRing = 0;
-                                    double sumSqRing = 0;
-
-                                    int nRing = 0;
-                                    switch (symmetryScore) { 
-                                        case OverallVarianceVsRingVarianceSum:
-                                        {
-                                            int idxHisto = (idxR*angleDim + 0)*channels + ch;
-                                            sumRing += histogramSum[idxHisto];
-                                            sumSqRing += histogramSumSq[idxHisto];
-                                            nRing += histogramN[idxHisto];
-                                            double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
-                                            varianceRing += variance;
-                                            sumAcross[ch] += sumRing;
-                                            sumSqAcross[ch] += sumSqRing;
-                                        }
-                                        break;
-                                        case RingAvgeragesVarianceVsRingVarianceSum:
-                                        {
-                                            for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
-                                                int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
-                                                int n = histogramN[idxHisto];
-                                                double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
-                                                double segmentAvgSq = Math.pow(segmentAvg, 2);
+                                // Analyze the ring sums to find the circular symmetry score, which is ratio between radial 
+                                // and circular variance.
+                                // We use the naive formula
+                                //    Var = (SumSq − (Sum × Sum) / n) / (n − 1), 
+                                // See https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Na%C3%AFve_algorithm
+                                // But we weigh all our variances by the pixel count, so we do not divide by (n - 1).
+                                final double div0Guard = 0.1;
+                                double score;
+                                double contrastBest = Double.NEGATIVE_INFINITY;
+                                int riContrastBest = 0;
+                                double varianceRing = 0;
+                                Arrays.fill(sumAcross, 0);
+                                Arrays.fill(sumSqAcross, 0);
+                                Arrays.fill(lastAvg, 0);
+                                Arrays.fill(nAcross, 0);
+                                for (int idxR = 0; idxR < rDim; idxR++) {
+                                    double contrast = 0;
+                                    for (int ch = 0; ch < channels; ch++) {
+                                        double sumRing = 0;
+                                        double sumSqRing = 0;
+
+                                        int nRing = 0;
+                                        switch (symmetryScore) { 
+                                            case OverallVarianceVsRingVarianceSum:
+                                            {
+                                                int idxHisto = (idxR*angleDim + 0)*channels + ch;
                                                 sumRing += histogramSum[idxHisto];
                                                 sumSqRing += histogramSumSq[idxHisto];
-                                                sumSqAcross[ch] += segmentAvgSq*n;
-                                                nRing += n;
+                                                nRing += histogramN[idxHisto];
+                                                double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
+                                                varianceRing += variance;
+                                                sumAcross[ch] += sumRing;
+                                                sumSqAcross[ch] += sumSqRing;
                                             }
-                                            sumAcross[ch] += sumRing;
-                                            double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
-                                            varianceRing += variance;
-                                        }
-                                        break;
-                                        case RingMedianVarianceVsRingVarianceSum: 
-                                        {
-                                            int slotAngle = 0; 
-                                            for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
-                                                int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
-                                                int n = histogramN[idxHisto];
-                                                if (n > 0) {
+                                            break;
+                                            case RingAvgeragesVarianceVsRingVarianceSum:
+                                            {
+                                                for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
+                                                    int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
+                                                    int n = histogramN[idxHisto];
                                                     double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
-                                                    //double segmentAvgSq = Math.pow(segmentAvg, 2);
-                                                    segmentValues[slotAngle++] = segmentAvg;
+                                                    double segmentAvgSq = Math.pow(segmentAvg, 2);
                                                     sumRing += histogramSum[idxHisto];
-                                                    sumSqRing += /*segmentAvgSq*n;*/histogramSumSq[idxHisto];
+                                                    sumSqRing += histogramSumSq[idxHisto];
+                                                    sumSqAcross[ch] += segmentAvgSq*n;
                                                     nRing += n;
                                                 }
+                                                sumAcross[ch] += sumRing;
+                                                double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
+                                                varianceRing += variance;
                                             }
-                                            Arrays.sort(segmentValues, 0, slotAngle);
-                                            double median = (segmentValues[Math.max(0, slotAngle/2 - 1)] + segmentValues[slotAngle/2])*0.5;
-                                            double medianSq = Math.pow(median, 2);
-                                            sumAcross[ch] += median*nRing;
-                                            sumSqAcross[ch] += medianSq*nRing;
-                                            double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
-                                            varianceRing += variance;
+                                            break;
+                                            case RingMedianVarianceVsRingVarianceSum: 
+                                            {
+                                                int slotAngle = 0; 
+                                                for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
+                                                    int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
+                                                    int n = histogramN[idxHisto];
+                                                    if (n > 0) {
+                                                        double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
+                                                        //double segmentAvgSq = Math.pow(segmentAvg, 2);
+                                                        segmentValues[slotAngle++] = segmentAvg;
+                                                        sumRing += histogramSum[idxHisto];
+                                                        sumSqRing += /*segmentAvgSq*n;*/histogramSumSq[idxHisto];
+                                                        nRing += n;
+                                                    }
+                                                }
+                                                Arrays.sort(segmentValues, 0, slotAngle);
+                                                double median = (segmentValues[Math.max(0, slotAngle/2 - 1)] + segmentValues[slotAngle/2])*0.5;
+                                                double medianSq = Math.pow(median, 2);
+                                                sumAcross[ch] += median*nRing;
+                                                sumSqAcross[ch] += medianSq*nRing;
+                                                double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
+                                                varianceRing += variance;
+                                            }
+                                            break;
                                         }
-                                        break;
+                                        nAcross[ch] += nRing;
+                                        double avg1 = sumRing/nRing;
+                                        contrast += Math.pow(lastAvg[ch] - avg1, 2);
+                                        lastAvg[ch] = avg1;
                                     }
-                                    nAcross[ch] += nRing;
-                                    double avg1 = sumRing/nRing;
-                                    contrast += Math.pow(lastAvg[ch] - avg1, 2);
-                                    lastAvg[ch] = avg1;
-                                }
-                                if (rRing[idxR]*2 >= minDiameter) {
-                                    if (contrastBest < contrast) {
-                                        contrastBest = contrast;
-                                        riContrastBest = rRing[idxR];
+                                    if (rRing[idxR]*2 >= minDiameterEff) {
+                                        if (contrastBest < contrast) {
+                                            contrastBest = contrast;
+                                            riContrastBest = rRing[idxR];
+                                        }
                                     }
                                 }
-                            }
-                            double varianceAcross = 0;
-                            for (int ch = 0; ch < channels; ch++) {
-                                varianceAcross += (sumSqAcross[ch] - Math.pow(sumAcross[ch], 2) / nAcross[ch]);
-                            }
-                            score = (varianceAcross + div0Guard)/(varianceRing + div0Guard);
-                            scoreRange.add(score);
-                            if (scoreBestSampling < score) {
-                                scoreBestSampling = score;
-                                xBestSampling = xi + x0SearchRange + r + 0.5 + xOffset;
-                                yBestSampling = yi + y0SearchRange + r + 0.5 + yOffset;
-                                if (scoreBest < score) {
-                                    scoreBest = score;
-                                    xBest = xBestSampling;
-                                    yBest = yBestSampling;
-                                    rContrastBest = riContrastBest;
+                                double varianceAcross = 0;
+                                for (int ch = 0; ch < channels; ch++) {
+                                    varianceAcross += (sumSqAcross[ch] - Math.pow(sumAcross[ch], 2) / nAcross[ch]);
                                 }
-                            }
-                            if (scoreMap != null) {
-                                int idx = yis*wSearchRangeMap + xis;
-                                if (scoreMap[idx] < score) {
-                                    scoreMap[idx] = score;
-                                    radiusMap[idx] = riContrastBest;
-                                    xOffsetMap[idx] = xOffset;
-                                    yOffsetMap[idx] = yOffset;
+                                score = (varianceAcross + div0Guard)/(varianceRing + div0Guard);
+                                best.scoreRange.add(score);
+                                if (best.score < score) {
+                                    best.score = score;
+                                    best.x = xi + x0SearchRange + r + 0.5 + xOffset;
+                                    best.y = yi + y0SearchRange + r + 0.5 + yOffset;
+                                    best.rContrast = riContrastBest;
+                                }
+                                if (scoreMapBands != null) {
+                                    int idx = yis*wSearchRangeMap + xis;
+                                    if (scoreMapBands[idx] < score) {
+                                        scoreMapBands[idx] = score;
+                                        radiusMapBands[idx] = riContrastBest;
+                                        xOffsetMapBands[idx] = xOffset;
+                                        yOffsetMapBands[idx] = yOffset;
+                                    }
                                 }
                             }
                         }
                     }
+                    bandBests[band] = best;
+                });
+                for (BandBest best : bandBests) {
+                    scoreRange.merge(best.scoreRange);
+                    if (scoreBestSampling < best.score) {
+                        scoreBestSampling = best.score;
+                        xBestSampling = best.x;
+                        yBestSampling = best.y;
+                        if (scoreBest < best.score) {
+                            scoreBest = best.score;
+                            xBest = xBestSampling;
+                            yBest = yBestSampling;
+                            rContrastBest = best.rContrast;
+                        }
+                    }
                 }
                 if (DEBUG >= 1) {
                     Logger.trace("best circular symmetry at subSampling "+subSamplingEff+", range W"+wSearchRange+" H"+hSearchRange
@@ -912,6 +962,56 @@ public class DetectCircularSymmetry extends CvStage {
         return ret;
     }
 
+    /**
+     * The best center candidate of a band of rows, and the score range of the band. 
+     */
+    private static class BandBest {
+        double score = Double.NEGATIVE_INFINITY;
+        double x = 0;
+        double y = 0;
+        int rContrast = 0;
+        ScoreRange scoreRange = new ScoreRange();
+    }
+
+    /**
+     * @param rows          Number of rows of center candidates.
+     * @param samples       Total number of pixel samples to be scored.
+     * @return The number of bands the rows are split into, to be scored in parallel.
+     */
+    static int getBandCount(int rows, long samples) {
+        if (!parallelSearch || samples < parallelSamplesMin) {
+            return 1;
+        }
+        return Math.max(1, Math.min(rows, Runtime.getRuntime().availableProcessors()*2));
+    }
+
+    /**
+     * The pixel samples buffers are reused between calls, one per thread. 
+     */
+    private static final ThreadLocal<byte[]> pixelSamplesBuffer = new ThreadLocal<>();
+
+    /**
+     * Get the pixels of whole rows out of the Mat, into the reused buffer of the thread. 
+     * 
+     * @param image
+     * @param row0
+     * @param rows
+     * @return The buffer with the pixels, it may be larger than needed.
+     */
+    static byte[] getPixelSamples(Mat image, int row0, int rows) {
+        int size = image.cols()*rows*image.channels();
+        byte[] pixelSamples = pixelSamplesBuffer.get();
+        if (pixelSamples == null || pixelSamples.length < size) {
+            pixelSamples = new byte[size];
+            pixelSamplesBuffer.set(pixelSamples);
+        }
+        // Note, the Mat.get() copies as many pixels as fit the buffer, so use a sub-matrix of the rows.
+        Mat rowsMat = image.submat(row0, Math.min(image.rows(), row0 + rows), 0, image.cols());
+        rowsMat.get(0, 0, pixelSamples);
+        rowsMat.release();
+        return pixelSamples;
+    }
+
     protected static List<SymmetryCircle> sortAndLimit(List<SymmetryCircle> circles,
             int maxTargetCount, double corrSymmetry) {
         // Sort best results first.
@@ -19,10 +19,13 @@
 
 package org.openpnp.vision.pipeline.stages;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.stream.IntStream;
 
 import org.opencv.core.Mat;
 import org.opencv.core.RotatedRect;
@@ -486,6 +489,39 @@ public class DetectRectlinearSymmetry extends CvStage {
      * Some extra debugging stuff used for development, that might be useful again in the future. DEBUG has levels 1 and 2.  
      */
     static final int DEBUG = 0;
+    /**
+     * The minimum number of pixel samples to be evaluated in a search pass, before its angles are split into 
+     * chunks to be evaluated in parallel. Smaller passes are faster on one thread. 
+     */
+    static final private long parallelSamplesMin = 200000;
+    /**
+     * If false, the search passes are always evaluated on the calling thread. Used for testing and benchmarking. 
+     */
+    public static boolean parallelSearch = true;
+
+    /**
+     * The best angle of a chunk of angles, with its cross-sections. 
+     */
+    private static class AngleBest {
+        double score = Double.NEGATIVE_INFINITY;
+        double angle = Double.NaN;
+        double [] xCrossSection;
+        double [] yCrossSection;
+        double [] xCrossSectionMasked;
+        double [] yCrossSectionMasked;
+    }
+
+    /**
+     * @param angles        Number of angles to be evaluated.
+     * @param samples       Total number of pixel samples to be evaluated.
+     * @return The number of chunks the angles are split into, to be evaluated in parallel.
+     */
+    static int getChunkCount(int angles, long samples) {
+        if (!parallelSearch || samples < parallelSamplesMin) {
+            return 1;
+        }
+        return Math.max(1, Math.min(angles, Runtime.getRuntime().availableProcessors()*2));
+    }
 
     /**
      * Find the angle, location and bounds of the subject with largest rectlinear symmetry. 
@@ -552,8 +588,7 @@ public class DetectRectlinearSymmetry extends CvStage {
         final int hPixels = y1Pixels - y0Pixels;
         final int cxPixels = xCenter - x0Pixels;
         final int cyPixels = yCenter - y0Pixels;
-        byte[] pixelSamples = new byte[width*hPixels*channels]; 
-        image.get(y0Pixels, 0, pixelSamples);
+        byte[] pixelSamples = DetectCircularSymmetry.getPixelSamples(image, y0Pixels, hPixels); 
 
         int symmetrySearch = (superSamplingEff*searchDiameter/subSamplingEff/2)*2;
         int symmetryWidth= superSamplingEff*(int)maxWidth/subSamplingEff;
@@ -566,14 +601,6 @@ public class DetectRectlinearSymmetry extends CvStage {
         // Running best results.
         double scoreBest = Double.NEGATIVE_INFINITY;
         double angleBest = Double.NaN;
-        double [] xCrossSection = new double[wCross*channels];
-        double [] yCrossSection = new double[hCross*channels];
-        double [] xCrossSectionN = new double[wCross];
-        double [] yCrossSectionN = new double[hCross];
-        double [] xCrossSectionMasked = new double[wCross];
-        double [] yCrossSectionMasked = new double[hCross];
-        double [] xCrossSectionFiltered = new double[wCross*channels];
-        double [] yCrossSectionFiltered = new double[hCross*channels];
         double [] xBestCrossSection = new double[wCross*channels];
         double [] yBestCrossSection = new double[hCross*channels];
         double [] xBestCrossSectionMasked = new double[wCross];
@@ -590,121 +617,161 @@ public class DetectRectlinearSymmetry extends CvStage {
         double thresholdLuminance = Math.pow(threshold, gamma)*channels;
 
         // Determine the angle with the largest rectlinear cross-section contrast.
+        // The angles are split into chunks that are evaluated in parallel, each chunk with its own cross-sections. 
+        // The chunk results are then merged in angle order, so the result is the same as if evaluated sequentially.
+        List<Double> angles = new ArrayList<>();
         for (double angle = a0; angle <= a1; angle += angleStep) {
-            // Note, this is the reverse rotation, i.e. angle is negative.
-            double s = superSamplingEff*Math.sin(-angle)/subSamplingEff;
-            double c = superSamplingEff*Math.cos(-angle)/subSamplingEff;
-            // Reset cross-sections. 
-            Arrays.fill(xCrossSection, 0);
-            Arrays.fill(yCrossSection, 0);
-            Arrays.fill(xCrossSectionN, 0);
-            Arrays.fill(yCrossSectionN, 0);
-            Arrays.fill(xCrossSectionMasked, 0);
-            Arrays.fill(yCrossSectionMasked, 0);
-            // Calculate the cross-sections from the pixels.
-            for (int y = 0, dy = -cyPixels, iy = 0; y < hPixels; y += subSamplingEff, dy += subSamplingEff, iy += width*channels*subSamplingEff) {
-                double sy = s*dy;
-                double cy = c*dy;
-                for (int x = 0, dx = -cxPixels, idx = iy + x0Pixels*channels; x < wPixels; x += subSamplingEff, dx += subSamplingEff, idx += channels*subSamplingEff) {
-                    double sx = s*dx;
-                    double cx = c*dx;
-                    // Note: this is a left-handed coordinate system, i.e. y pointing down.
-                    double xCross = cx + sy + cxCross;
-                    double yCross = -sx + cy + cyCross;
-                    int ixCross = (int) Math.round(xCross);
-                    int iyCross = (int) Math.round(yCross);
-                    double xWeight1 = xCross + 0.5 - ixCross;
-                    double xWeight0 = 1 - xWeight1;
-                    double yWeight1 = yCross + 0.5 - iyCross;
-                    double yWeight0 = 1 - yWeight1;
-                    if (iyCross > 1 && iyCross < hCross) {
-                        if (ixCross > 1 && ixCross < wCross) {
-                            /*int dSq = dx*dx + dy*dy;
-                            if (dSq < rSq)*/ {
-                                double luminance = 0;
-                                for (int ch = 0; ch < channels; ch++) {
-                                    int xai = ixCross*channels + ch;
-                                    int yai = iyCross*channels + ch;
-                                    double pixel = Math.pow(Byte.toUnsignedInt(pixelSamples[idx + ch]), gamma);
-                                    luminance += pixel;
-                                    xCrossSection[xai] += pixel*xWeight1;
-                                    xCrossSection[xai - channels] += pixel*xWeight0;
-                                    yCrossSection[yai] += pixel*yWeight1;
-                                    yCrossSection[yai - channels] += pixel*yWeight0;
-                                    if (DEBUG >= 2) {
-                                        if (Math.abs(angle - (a0+a1)/2) < angleStep) {
-                                            byte [] pixelData = new byte[channels];
-                                            image.get(y0Pixels + y, x0Pixels + x, pixelData);
-                                            if (ch == 2) {
-                                                pixelData[ch] = (byte)(127.0*ixCross/wCross + pixelData[ch]/2);
-                                            }
-                                            else if (ch == 1) {
-                                                pixelData[ch] = (byte)(127.0*iyCross/hCross + pixelData[ch]/2);
+            angles.add(angle);
+        }
+        final double[] angleContrast = new double[angles.size()];
+        final int chunks = getChunkCount(angles.size(), 
+                (long)angles.size()*(hPixels/subSamplingEff)*(wPixels/subSamplingEff));
+        final AngleBest[] chunkBests = new AngleBest[chunks];
+        IntStream chunkStream = IntStream.range(0, chunks);
+        if (chunks > 1) {
+            chunkStream = chunkStream.parallel();
+        }
+        chunkStream.forEach(chunk -> {
+            AngleBest best = new AngleBest();
+            double [] xCrossSection = new double[wCross*channels];
+            double [] yCrossSection = new double[hCross*channels];
+            double [] xCrossSectionN = new double[wCross];
+            double [] yCrossSectionN = new double[hCross];
+            double [] xCrossSectionMasked = new double[wCross];
+            double [] yCrossSectionMasked = new double[hCross];
+            double [] xCrossSectionFiltered = new double[wCross*channels];
+            double [] yCrossSectionFiltered = new double[hCross*channels];
+            for (int ia = angles.size()*chunk/chunks; ia < angles.size()*(chunk + 1)/chunks; ia++) {
+                double angle = angles.get(ia);
+                // Note, this is the reverse rotation, i.e. angle is negative.
+                double s = superSamplingEff*Math.sin(-angle)/subSamplingEff;
+                double c = superSamplingEff*Math.cos(-angle)/subSamplingEff;
+                // Reset cross-sections. 
+                Arrays.fill(xCrossSection, 0);
+                Arrays.fill(yCrossSection, 0);
+                Arrays.fill(xCrossSectionN, 0);
+                Arrays.fill(yCrossSectionN, 0);
+                Arrays.fill(xCrossSectionMasked, 0);
+                Arrays.fill(yCrossSectionMasked, 0);
+                // Calculate the cross-sections from the pixels.
+                for (int y = 0, dy = -cyPixels, iy = 0; y < hPixels; y += subSamplingEff, dy += subSamplingEff, iy += width*channels*subSamplingEff) {
+                    double sy = s*dy;
+                    double cy = c*dy;
+                    for (int x = 0, dx = -cxPixels, idx = iy + x0Pixels*channels; x < wPixels; x += subSamplingEff, dx += subSamplingEff, idx += channels*subSamplingEff) {
+                        double sx = s*dx;
+                        double cx = c*dx;
+                        // Note: this is a left-handed coordinate system, i.e. y pointing down.
+                        double xCross = cx + sy + cxCross;
+                        double yCross = -sx + cy + cyCross;
+                        int ixCross = (int) Math.round(xCross);
+                        int iyCross = (int) Math.round(yCross);
+                        double xWeight1 = xCross + 0.5 - ixCross;
+                        double xWeight0 = 1 - xWeight1;
+                        double yWeight1 = yCross + 0.5 - iyCross;
+                        double yWeight0 = 1 - yWeight1;
+                        if (iyCross > 1 && iyCross < hCross) {
+                            if (ixCross > 1 && ixCross < wCross) {
+                                /*int dSq = dx*dx + dy*dy;
+                                if (dSq < rSq)*/ {
+                                    double luminance = 0;
+                                    for (int ch = 0; ch < channels; ch++) {
+                                        int xai = ixCross*channels + ch;
+                                        int yai = iyCross*channels + ch;
+                                        double pixel = Math.pow(Byte.toUnsignedInt(pixelSamples[idx + ch]), gamma);
+                                        luminance += pixel;
+                                        xCrossSection[xai] += pixel*xWeight1;
+                                        xCrossSection[xai - channels] += pixel*xWeight0;
+                                        yCrossSection[yai] += pixel*yWeight1;
+                                        yCrossSection[yai - channels] += pixel*yWeight0;
+                                        if (DEBUG >= 2) {
+                                            if (Math.abs(angle - (a0+a1)/2) < angleStep) {
+                                                byte [] pixelData = new byte[channels];
+                                                image.get(y0Pixels + y, x0Pixels + x, pixelData);
+                                                if (ch == 2) {
+                                                    pixelData[ch] = (byte)(127.0*ixCross/wCross + pixelData[ch]/2);
+                                                }
+                                                else if (ch == 1) {
+                                                    pixelData[ch] = (byte)(127.0*iyCross/hCross + pixelData[ch]/2);
+                                                }
+                                                image.put(y0Pixels + y, x0Pixels + x, pixelData);
                                             }
-                                            image.put(y0Pixels + y, x0Pixels + x, pixelData);
                                         }
                                     }
-                                }
-                                xCrossSectionN[ixCross] += xWeight1;
-                                xCrossSectionN[ixCross - 1] += xWeight0;
-                                yCrossSectionN[iyCross] += yWeight1;
-                                yCrossSectionN[iyCross - 1] += yWeight0;
-                                if (luminance > thresholdLuminance) {
-                                    xCrossSectionMasked[ixCross] += xWeight1;
-                                    xCrossSectionMasked[ixCross - 1] += xWeight0;
-                                    yCrossSectionMasked[iyCross] += yWeight1;
-                                    yCrossSectionMasked[iyCross - 1] += yWeight0;
+                                    xCrossSectionN[ixCross] += xWeight1;
+                                    xCrossSectionN[ixCross - 1] += xWeight0;
+                                    yCrossSectionN[iyCross] += yWeight1;
+                                    yCrossSectionN[iyCross - 1] += yWeight0;
+                                    if (luminance > thresholdLuminance) {
+                                        xCrossSectionMasked[ixCross] += xWeight1;
+                                        xCrossSectionMasked[ixCross - 1] += xWeight0;
+                                        yCrossSectionMasked[iyCross] += yWeight1;
+                                        yCrossSectionMasked[iyCross - 1] += yWeight0;
+                                    }
                                 }
                             }
                         }
                     }
                 }
-            }
-            // Normalize
-            for (int x = 0; x < wCross; x++) {
-                if (xCrossSectionN[x] > 0) {
-                    for (int ch = 0; ch < channels; ch++) {
-                        xCrossSection[x*channels + ch] /= xCrossSectionN[x];
+                // Normalize
+                for (int x = 0; x < wCross; x++) {
+                    if (xCrossSectionN[x] > 0) {
+                        for (int ch = 0; ch < channels; ch++) {
+                            xCrossSection[x*channels + ch] /= xCrossSectionN[x];
+                        }
                     }
                 }
-            }
-            for (int y = 0; y < hCross; y++) {
-                if (yCrossSectionN[y] > 0) {
-                    for (int ch = 0; ch < channels; ch++) {
-                        yCrossSection[y*channels + ch] /= yCrossSectionN[y];
+                for (int y = 0; y < hCross; y++) {
+                    if (yCrossSectionN[y] > 0) {
+                        for (int ch = 0; ch < channels; ch++) {
+                            yCrossSection[y*channels + ch] /= yCrossSectionN[y];
+                        }
                     }
                 }
-            }
-            // We're using a gaussian kernel to get rid of sampling interferences especially at the 45° step angles.
-            KernelUtils.applyKernel(channels, wCross, xCrossSection, kernel, xCrossSectionFiltered); 
-            KernelUtils.applyKernel(channels, hCross, yCrossSection, kernel, yCrossSectionFiltered); 
-            // Analyze cross-sections contrast.
-            double sumContrast = 
-                    sumContrast(channels, wCross, xCrossSectionFiltered, xCrossSectionN)
-                    + sumContrast(channels, hCross, yCrossSectionFiltered, yCrossSectionN);
-            if (DEBUG >= 1) {
-                System.out.print("subSampling "+subSamplingEff+(superSamplingEff > 1 ? " superSampling "+superSamplingEff : "")
-                        +" angle "+Math.toDegrees(angle)+"° contrast "+sumContrast);
-            }
-            if (angleScore != null) {
-                angleScore.put(angle, sumContrast);
-            }
-            // Take the best:
-            if (scoreBest < sumContrast) {
-                scoreBest = sumContrast;
-                angleBest = angle;
-                xBestCrossSection = xCrossSectionFiltered.clone();
-                yBestCrossSection = yCrossSectionFiltered.clone();
-                xBestCrossSectionMasked = xCrossSectionMasked.clone();
-                yBestCrossSectionMasked = yCrossSectionMasked.clone();
+                // We're using a gaussian kernel to get rid of sampling interferences especially at the 45° step angles.
+                KernelUtils.applyKernel(channels, wCross, xCrossSection, kernel, xCrossSectionFiltered); 
+                KernelUtils.applyKernel(channels, hCross, yCrossSection, kernel, yCrossSectionFiltered); 
+                // Analyze cross-sections contrast.
+                double sumContrast = 
+                        sumContrast(channels, wCross, xCrossSectionFiltered, xCrossSectionN)
+                        + sumContrast(channels, hCross, yCrossSectionFiltered, yCrossSectionN);
                 if (DEBUG >= 1) {
-                    System.out.println(" * ");
+                    System.out.print("subSampling "+subSamplingEff+(superSamplingEff > 1 ? " superSampling "+superSamplingEff : "")
+                            +" angle "+Math.toDegrees(angle)+"° contrast "+sumContrast);
                 }
-            }
-            else {
-                if (DEBUG >= 1) {
-                    System.out.println("");
+                angleContrast[ia] = sumContrast;
+                // Take the best:
+                if (best.score < sumContrast) {
+                    best.score = sumContrast;
+                    best.angle = angle;
+                    best.xCrossSection = xCrossSectionFiltered.clone();
+                    best.yCrossSection = yCrossSectionFiltered.clone();
+                    best.xCrossSectionMasked = xCrossSectionMasked.clone();
+                    best.yCrossSectionMasked = yCrossSectionMasked.clone();
+                    if (DEBUG >= 1) {
+                        System.out.println(" * ");
+                    }
                 }
+                else {
+                    if (DEBUG >= 1) {
+                        System.out.println("");
+                    }
+                }
+            }
+            chunkBests[chunk] = best;
+        });
+        for (AngleBest best : chunkBests) {
+            if (scoreBest < best.score) {
+                scoreBest = best.score;
+                angleBest = best.angle;
+                xBestCrossSection = best.xCrossSection;
+                yBestCrossSection = best.yCrossSection;
+                xBestCrossSectionMasked = best.xCrossSectionMasked;
+                yBestCrossSectionMasked = best.yCrossSectionMasked;
+            }
+        }
+        if (angleScore != null) {
+            for (int ia = 0; ia < angleContrast.length; ia++) {
+                angleScore.put(angles.get(ia), angleContrast[ia]);
             }
         }
 
@@ -89,6 +89,11 @@ public class ImageCapture extends CvStage {
             this.count = 1;
         }
     }
+    @Override
+    public boolean isMachineInteraction() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Camera camera = (Camera) pipeline.getProperty("camera");
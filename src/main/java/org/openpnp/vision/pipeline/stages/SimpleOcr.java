@@ -29,10 +29,15 @@ import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.imageio.ImageIO;
 
@@ -292,23 +297,8 @@ public class SimpleOcr extends CvStage {
         // Note, the following is an ugly HACK, to get this functionality within the constraints of pipeline processing
         if (autoDetectSize) {
             autoDetectSize = false;
-            // very crude and brute force 
-            OcrModel bestRes = null;
-            double bestSize = Double.NaN;
-            for (double testSize = getFontSizePt()*0.5;
-                    testSize < getFontSizePt()*2.0;
-                    testSize *= 1.05) {  // 5% steps
-                Logger.debug("["+getClass().getName()+"] auto-detecting at font size = "+testSize+"pt");
-                OcrModel res = (OcrModel)performOcr(pipeline, camera, fontName, testSize, alphabet).model;
-                if (res.overallScore > 0.0) {
-                    if (bestRes == null ||  bestRes.overallScore < res.overallScore) {
-                        bestRes = res;
-                        bestSize = testSize;
-                        Logger.debug("["+getClass().getName()+"] new best font size = "+testSize+"pt, overallScore = "+bestRes.overallScore+", text = "+bestRes.text);
-                    }
-                }
-            }
-            if (bestRes != null) {
+            double bestSize = detectFontSize(pipeline, camera, fontName, getFontSizePt(), alphabet);
+            if (!Double.isNaN(bestSize)) {
                 setFontSizePt(Math.round(bestSize*100.0)/100.0); 
                 fontSizePt = bestSize;
             }
@@ -317,6 +307,177 @@ public class SimpleOcr extends CvStage {
         return performOcr(pipeline, camera, fontName, fontSizePt, alphabet);
     }
 
+    /**
+     * Step factor of the coarse font size sweep of the auto-detection.
+     */
+    private static final double coarseSizeStep = 1.15;
+    /**
+     * Step factor of the fine font size sweep of the auto-detection.
+     */
+    private static final double fineSizeStep = 1.03;
+
+    /**
+     * Auto-detect the font size with the best overall OCR score, between 0.5 and 2.0 times the
+     * given font size. The range is first swept in coarse steps, then the neighborhood of the best
+     * coarse size is swept in fine steps. If the coarse sweep does not recognize any characters,
+     * the whole range is swept in fine steps.
+     *
+     * @return The detected font size, or NaN if none was found.
+     * @throws IOException
+     */
+    protected double detectFontSize(CvPipeline pipeline, Camera camera, String fontName, double fontSizePt,
+            String alphabet) throws IOException {
+        // best[0] is the font size, best[1] the overall score
+        double[] best = new double[] { Double.NaN, 0.0 };
+        sweepFontSize(pipeline, camera, fontName, fontSizePt*0.5, fontSizePt*2.0, coarseSizeStep, alphabet, best);
+        if (Double.isNaN(best[0])) {
+            sweepFontSize(pipeline, camera, fontName, fontSizePt*0.5, fontSizePt*2.0, fineSizeStep, alphabet, best);
+        }
+        else {
+            double coarseSize = best[0];
+            sweepFontSize(pipeline, camera, fontName, coarseSize/coarseSizeStep, coarseSize*coarseSizeStep,
+                    fineSizeStep, alphabet, best);
+        }
+        return best[0];
+    }
+
+    private void sweepFontSize(CvPipeline pipeline, Camera camera, String fontName, double fromSize, double toSize,
+            double step, String alphabet, double[] best) throws IOException {
+        for (double testSize = fromSize; testSize < toSize; testSize *= step) {
+            Logger.debug("["+getClass().getName()+"] auto-detecting at font size = "+testSize+"pt");
+            Result result = performOcr(pipeline, camera, fontName, testSize, alphabet, DrawStyle.None);
+            OcrModel res = (OcrModel)result.model;
+            if (result.image != pipeline.getWorkingImage()) {
+                result.image.release();
+            }
+            if (res.overallScore > 0.0 && best[1] < res.overallScore) {
+                best[0] = testSize;
+                best[1] = res.overallScore;
+                Logger.debug("["+getClass().getName()+"] new best font size = "+testSize+"pt, overallScore = "+res.overallScore+", text = "+res.text);
+            }
+        }
+    }
+
+    /**
+     * A character of the alphabet, rendered as a template image.
+     */
+    protected static class Glyph {
+        private final char ch;
+        private final Mat template;
+
+        public Glyph(char ch, Mat template) {
+            this.ch = ch;
+            this.template = template;
+        }
+
+        public char getCh() {
+            return ch;
+        }
+
+        public Mat getTemplate() {
+            return template;
+        }
+    }
+
+    /**
+     * The glyphs of an alphabet rendered in a given font and pixel size. Glyph banks are cached and
+     * shared between OCR runs and threads, therefore the template images must not be modified or
+     * released.
+     */
+    protected static class GlyphBank {
+        private final int maxAscent;
+        private final int fontHeight;
+        private final List<Glyph> glyphs = new ArrayList<>();
+
+        public GlyphBank(String fontName, int fontPixelSize, String alphabet, int type) {
+            Font font = new Font(fontName, Font.PLAIN, fontPixelSize);
+            // Create a pseudo graphics context to get font metrics
+            Graphics2D gfm = new BufferedImage(1, 1, type).createGraphics();
+            FontMetrics fm = gfm.getFontMetrics(font);
+            gfm.dispose();
+            maxAscent = fm.getAscent();// fm.getMaxAscent();
+            fontHeight = maxAscent+fm.getDescent();//fm.getHeight();
+            if (fontHeight < 5) {
+                // dud
+                return;
+            }
+            final int margin = 0; // tests have shown that no margin is best
+            final int height = fontHeight+2*margin;
+            for (char ch : alphabet.toCharArray()) {
+                if (ch == ' ' ) {
+                    // we can't search for nothing :-)
+                    // spaces will be recognized by discontinuity
+                    continue;
+                }
+                String character = new String(new char[] { ch });
+                // create a template image of the current character
+                int width = fm.stringWidth(character)+2*margin;
+                BufferedImage templateImage =
+                        new BufferedImage(width, height, type);
+                Graphics2D g2d = (Graphics2D) templateImage.getGraphics();
+                g2d.setColor(Color.white);
+                g2d.fillRect(0, 0, width, height);
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setColor(Color.black);
+                g2d.setFont(font);
+                g2d.drawString(character, margin, margin+maxAscent);
+                g2d.dispose();
+                glyphs.add(new Glyph(ch, OpenCvUtils.toMat(templateImage)));
+            }
+        }
+
+        public int getMaxAscent() {
+            return maxAscent;
+        }
+
+        public int getFontHeight() {
+            return fontHeight;
+        }
+
+        public List<Glyph> getGlyphs() {
+            return Collections.unmodifiableList(glyphs);
+        }
+    }
+
+    /**
+     * Maximum number of cached glyph banks.
+     */
+    public static final int GLYPH_CACHE_SIZE = 32;
+
+    private static final Map<String, GlyphBank> glyphCache =
+            new LinkedHashMap<String, GlyphBank>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GlyphBank> eldest) {
+            // Note, the evicted templates are not released, as they might still be in use.
+            return size() > GLYPH_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Get the glyph bank for the given font, pixel size, alphabet and BufferedImage type, from the
+     * cache or newly rendered.
+     */
+    protected static GlyphBank getGlyphBank(String fontName, int fontPixelSize, String alphabet, int type) {
+        String key = fontName+"|"+fontPixelSize+"|"+type+"|"+alphabet;
+        synchronized (glyphCache) {
+            GlyphBank glyphBank = glyphCache.get(key);
+            if (glyphBank != null) {
+                return glyphBank;
+            }
+        }
+        GlyphBank glyphBank = new GlyphBank(fontName, fontPixelSize, alphabet, type);
+        synchronized (glyphCache) {
+            glyphCache.put(key, glyphBank);
+        }
+        return glyphBank;
+    }
+
+    public static void clearGlyphCache() {
+        synchronized (glyphCache) {
+            glyphCache.clear();
+        }
+    }
+
     public static class OcrModel {
         private String text;
         private int numChars;
@@ -348,6 +509,11 @@ public class SimpleOcr extends CvStage {
     }
 
     protected Result performOcr(CvPipeline pipeline, Camera camera, String fontName, double fontSizePt, String alphabet) throws Error, IOException {
+        return performOcr(pipeline, camera, fontName, fontSizePt, alphabet, drawStyle);
+    }
+
+    protected Result performOcr(CvPipeline pipeline, Camera camera, String fontName, double fontSizePt, String alphabet,
+            DrawStyle drawStyle) throws Error, IOException {
 
         // Determine the scaling factor to go from given LengthUnit/pt units to
         // Camera units and pixels.
@@ -397,78 +563,28 @@ public class SimpleOcr extends CvStage {
                     textImage.type(), textImage.channels(), textImage.depth()));
         }
 
-        // create the font
-        Font font = new Font(fontName, Font.PLAIN, (int)Math.round(scalePt*fontSizePt));
-        // Create a pseudo graphics context to get font metrics 
-        Graphics2D gfm = new BufferedImage(1, 1, type).createGraphics();
-        FontMetrics fm = gfm.getFontMetrics(font);
-        final int maxAscent = fm.getAscent();// fm.getMaxAscent();
-        final int fontHeight = maxAscent+fm.getDescent();//fm.getHeight();
-        final int margin = 0; // tests have shown that no margin is best
-        final int height = fontHeight+2*margin;
+        // get the glyphs of the alphabet in the font
+        GlyphBank glyphBank = getGlyphBank(fontName, (int)Math.round(scalePt*fontSizePt), alphabet, type);
+        final int fontHeight = glyphBank.getFontHeight();
+        final int height = fontHeight;
         if (fontHeight < 5 || fontHeight >= textImage.rows()) {
             // dud
             return new Result(textImage, new OcrModel("", 0, 0.0));
         }
 
-        // try find each character of the alphabet in the text image 
-        List<CharacterMatch> matches = new ArrayList<>();
-        for (char ch : alphabet.toCharArray()) {
-            if (ch == ' ' ) {
-                // we can't search for nothing :-) 
-                // spaces will be recognized by discontinuity
-                continue;
-            }
-            String character = new String(new char[] { ch });
-            String characterTag = (Character.isLetterOrDigit(ch) ? character : String.valueOf((int)ch))+"-";
-            // create a template image of the current character
-            int width = fm.stringWidth(character)+2*margin;
-            BufferedImage templateImage =
-                    new BufferedImage(width, height, type);
-            Graphics2D g2d = (Graphics2D) templateImage.getGraphics();
-            g2d.setColor(Color.white);
-            g2d.fillRect(0, 0, width, height);
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setColor(Color.black);
-            g2d.setFont(font);
-            g2d.drawString(character, margin, margin+maxAscent);
-            g2d.dispose();
-            Mat template = OpenCvUtils.toMat(templateImage);
-            if (debug) {
-                File file = Configuration.get().createResourceFile(getClass(), "character-"+characterTag, ".png");
-                Imgcodecs.imwrite(file.getAbsolutePath(), template);
-            }
-
-            // do the actual template match
-            Mat matchMap = new Mat();
-            Imgproc.matchTemplate(textImage, template, matchMap, Imgproc.TM_CCOEFF_NORMED);
-
-            // determine the range
-            MinMaxLocResult mmr = Core.minMaxLoc(matchMap);
-            double maxVal = mmr.maxVal;
-            double rangeMin = threshold;
-            double rangeMax = maxVal;
-
-            // create the matches
-            for (Point point : OpenCvUtils.matMaxima(matchMap, rangeMin, rangeMax)) {
-                int x = point.x;
-                int y = point.y;
-                CharacterMatch match = new CharacterMatch(ch, 
-                        x, y, template.cols(), template.rows(),
-                        matchMap.get(y, x)[0]);
-                matches.add(match);
-            }
-
-            if (debug) {
-                File file = Configuration.get().createResourceFile(getClass(), "match-map-"+characterTag, ".png");
-                // this is a 3x32bit image, cannot save this as .png, need to convert to known image format first
-                BufferedImage img = OpenCvUtils.toBufferedImage(matchMap);
-                ImageIO.write(img, "png", file);
-            }
-
-            // cleanup
-            matchMap.release();
-            template.release();
+        // try find each character of the alphabet in the text image, in parallel
+        final Mat image = textImage;
+        List<Glyph> glyphs = glyphBank.getGlyphs();
+        List<CharacterMatch> matches;
+        try {
+            matches = IntStream.range(0, glyphs.size())
+                    .parallel()
+                    .mapToObj(i -> matchGlyph(image, glyphs.get(i)))
+                    .flatMap(List::stream)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
         }
 
         // ready to harvest
@@ -663,6 +779,59 @@ public class SimpleOcr extends CvStage {
         return new Result(textImage, new OcrModel(text.toString(), numChars, overallScore));
     }
 
+    /**
+     * Find the given glyph in the text image. This is called in parallel for all the glyphs.
+     *
+     * @return The matches of the glyph.
+     * @throws UncheckedIOException if a debug image cannot be written.
+     */
+    protected List<CharacterMatch> matchGlyph(Mat textImage, Glyph glyph) {
+        char ch = glyph.getCh();
+        Mat template = glyph.getTemplate();
+        String characterTag = (Character.isLetterOrDigit(ch) ? String.valueOf(ch) : String.valueOf((int)ch))+"-";
+        try {
+            if (debug) {
+                File file = Configuration.get().createResourceFile(getClass(), "character-"+characterTag, ".png");
+                Imgcodecs.imwrite(file.getAbsolutePath(), template);
+            }
+
+            // do the actual template match
+            Mat matchMap = new Mat();
+            Imgproc.matchTemplate(textImage, template, matchMap, Imgproc.TM_CCOEFF_NORMED);
+
+            // determine the range
+            MinMaxLocResult mmr = Core.minMaxLoc(matchMap);
+            double maxVal = mmr.maxVal;
+            double rangeMin = threshold;
+            double rangeMax = maxVal;
+
+            // create the matches
+            List<CharacterMatch> matches = new ArrayList<>();
+            for (Point point : OpenCvUtils.matMaxima(matchMap, rangeMin, rangeMax)) {
+                int x = point.x;
+                int y = point.y;
+                CharacterMatch match = new CharacterMatch(ch, 
+                        x, y, template.cols(), template.rows(),
+                        matchMap.get(y, x)[0]);
+                matches.add(match);
+            }
+
+            if (debug) {
+                File file = Configuration.get().createResourceFile(getClass(), "match-map-"+characterTag, ".png");
+                // this is a 3x32bit image, cannot save this as .png, need to convert to known image format first
+                BufferedImage img = OpenCvUtils.toBufferedImage(matchMap);
+                ImageIO.write(img, "png", file);
+            }
+
+            // cleanup, the template is owned by the glyph bank
+            matchMap.release();
+            return matches;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private Result decodeBarcode(CvPipeline pipeline) {
         Mat workingImage = pipeline.getWorkingImage();
         BufferedImage image = OpenCvUtils.toBufferedImage(workingImage);
@@ -222,7 +222,11 @@ public class CvPipelineEditor extends JPanel {
     }
 
     public void process() {
-        UiUtils.messageBoxOnException(() -> getPipeline().process());
+        UiUtils.messageBoxOnException(() -> {
+            // The editor displays the images of all the stages.
+            getPipeline().setProductionMode(false);
+            getPipeline().process();
+        });
         resultsPanel.refresh();
     }
 
@@ -2,19 +2,25 @@ package org.openpnp.vision.pipeline.ui;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Dialog;
+import java.awt.FileDialog;
+import java.awt.Frame;
 import java.awt.Point;
 import java.awt.Robot;
+import java.awt.Window;
 import java.awt.event.ActionEvent;
 import java.awt.event.HierarchyEvent;
 import java.awt.event.HierarchyListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.util.List;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -23,6 +29,7 @@ import javax.swing.JSplitPane;
 import javax.swing.JTextPane;
 import javax.swing.JToolBar;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
 import org.opencv.core.KeyPoint;
 import org.opencv.core.Mat;
@@ -32,6 +39,11 @@ import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.spi.Camera;
 import org.openpnp.util.OpenCvUtils;
+import org.openpnp.util.UiUtils;
+import org.openpnp.vision.pipeline.CvPipelineProfiler;
+import org.openpnp.vision.pipeline.CvPipelineProfiler.PipelineProfile;
+import org.openpnp.vision.pipeline.CvPipelineProfiler.RollingStatistics;
+import org.openpnp.vision.pipeline.CvPipelineProfiler.StageProfile;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.CvStage.Result;
 import org.openpnp.vision.pipeline.CvStage.Result.Circle;
@@ -106,6 +118,16 @@ public class ResultsPanel extends JPanel {
         JButton colorResultButton = new JButton(colorResultAction);
         colorResultButton.setHideActionText(true);
         toolBar.add(colorResultButton);
+
+        toolBar.addSeparator();
+
+        JCheckBox profileCheckBox = new JCheckBox(profileAction);
+        profileCheckBox.setSelected(CvPipelineProfiler.isEnabled());
+        toolBar.add(profileCheckBox);
+
+        JButton exportProfileButton = new JButton(exportProfileAction);
+        exportProfileButton.setHideActionText(true);
+        toolBar.add(exportProfileButton);
         
 
         JPanel modelPanel = new JPanel();
@@ -254,9 +276,22 @@ public class ResultsPanel extends JPanel {
         if (image != null) {
             image.release();
         }
+        String profile = "";
+        if (displayStage != null && CvPipelineProfiler.isEnabled()) {
+            PipelineProfile pipelineProfile = CvPipelineProfiler.get().getPipelineProfile(editor.getPipeline());
+            StageProfile stageProfile = pipelineProfile == null ? null 
+                    : pipelineProfile.getStageProfile(displayStage.getName());
+            if (stageProfile != null) {
+                RollingStatistics time = stageProfile.getProcessingTimeNs();
+                profile = String.format(" [p50 %.3f ms, p90 %.3f ms, p99 %.3f ms of %d runs]", 
+                        time.getPercentile(50) / 1000000.0, time.getPercentile(90) / 1000000.0, 
+                        time.getPercentile(99) / 1000000.0, time.getCount());
+            }
+        }
         resultStageNameLabel.setText(result == null || displayStage == null ? ""
                 : (displayStage.getName() + " ( " + (result.processingTimeNs / 1000000.0)
-                        + " ms / " + (editor.getPipeline().getTotalProcessingTimeNs() / 1000000.0) + " ms)"));
+                        + " ms / " + (editor.getPipeline().getTotalProcessingTimeNs() / 1000000.0) + " ms)" 
+                        + profile));
 
         if (selectedStage == null) {
             firstResultAction.setEnabled(false);
@@ -465,6 +500,46 @@ public class ResultsPanel extends JPanel {
         }
     };
 
+    public final Action profileAction = new AbstractAction() {
+        {
+            putValue(NAME, "Profile");
+            putValue(SHORT_DESCRIPTION, "Collect per stage timing statistics of all the pipelines.");
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent arg0) {
+            CvPipelineProfiler.setEnabled(((JCheckBox) arg0.getSource()).isSelected());
+            updateAllEverything();
+        }
+    };
+
+    public final Action exportProfileAction = new AbstractAction() {
+        {
+            putValue(SMALL_ICON, Icons.export);
+            putValue(NAME, "");
+            putValue(SHORT_DESCRIPTION, "Export the collected timing statistics as .csv or .json file.");
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent arg0) {
+            Window window = SwingUtilities.getWindowAncestor(ResultsPanel.this);
+            FileDialog fileDialog = (window instanceof Dialog) 
+                    ? new FileDialog((Dialog) window, "Export Pipeline Profile", FileDialog.SAVE)
+                    : new FileDialog((Frame) window, "Export Pipeline Profile", FileDialog.SAVE);
+            fileDialog.setFile("pipeline-profile.csv");
+            fileDialog.setVisible(true);
+            String filename = fileDialog.getFile();
+            if (filename == null) {
+                return;
+            }
+            if (!filename.toLowerCase().endsWith(".csv") && !filename.toLowerCase().endsWith(".json")) {
+                filename = filename + ".csv";
+            }
+            File file = new File(new File(fileDialog.getDirectory()), filename);
+            UiUtils.messageBoxOnException(() -> CvPipelineProfiler.get().export(file));
+        }
+    };
+
     private JTextPane modelTextPane;
     private JLabel resultStageNameLabel;
     private MatView matView;
@@ -19,17 +19,35 @@
  * For more information about OpenPnP visit http://openpnp.org
  */
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.driver.ReferenceAdvancedMotionPlanner;
 import org.openpnp.model.AbstractMotionPath;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Motion;
 import org.openpnp.model.MotionProfile;
 import org.openpnp.model.MotionProfile.ErrorState;
 import org.openpnp.model.MotionProfile.ProfileOption;
+import org.openpnp.spi.Axis;
 import org.openpnp.spi.Driver.MotionControlType;
+import org.openpnp.spi.HeadMountable;
+import org.openpnp.spi.MotionPlanner.CompletionType;
+import org.openpnp.spi.Nozzle;
 import org.openpnp.util.NanosecondTime;
 
+import com.google.common.io.Files;
+
 public class AdvancedMotionTest {
 
     @Test 
@@ -460,4 +478,103 @@ public class AdvancedMotionTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Plans motion like the ReferenceAdvancedMotionPlanner, but does not execute it against the 
+     * drivers, so the benchmark is not bound by the real-time simulation.
+     */
+    private static class PlanningOnlyMotionPlanner extends ReferenceAdvancedMotionPlanner {
+        @Override
+        protected boolean executeMoveTo(ReferenceMachine machine, HeadMountable hm,
+                Motion plannedMotion, boolean firstAfterCoordination) {
+            return false;
+        }
+
+        /**
+         * @return the planned motions of the moves since the last call.
+         */
+        public List<Motion> plan() throws Exception {
+            executeMotionPlan(CompletionType.CommandStillstand);
+            List<Motion> motions = new ArrayList<>(motionPlan.values());
+            clearMotionPlanOlderThan(Double.POSITIVE_INFINITY);
+            return motions;
+        }
+    }
+
+    /**
+     * Drives the ReferenceAdvancedMotionPlanner with a long synthetic pick & place move sequence 
+     * and checks that each planned sequence is continuous, consistent and ends at its target. 
+     */
+    @Test
+    public void testPlannerSequence() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
+        PlanningOnlyMotionPlanner planner = new PlanningOnlyMotionPlanner();
+        planner.setAllowContinuousMotion(true);
+        machine.setMotionPlanner(planner);
+        machine.setEnabled(true);
+        planner.home();
+
+        Nozzle nozzle = machine.getDefaultHead().getDefaultNozzle();
+        AxesLocation mappedAxes = nozzle.getMappedAxes(machine);
+        Axis axisX = mappedAxes.byType(Axis.Type.X).getAxes().iterator().next();
+        Axis axisY = mappedAxes.byType(Axis.Type.Y).getAxes().iterator().next();
+        Axis axisZ = mappedAxes.byType(Axis.Type.Z).getAxes().iterator().next();
+        Random random = new Random(1);
+        AxesLocation[] targets = new AxesLocation[64];
+        for (int i = 0; i < targets.length; i++) {
+            double x = random.nextDouble()*300;
+            double y = random.nextDouble()*300;
+            double rotation = random.nextDouble()*360 - 180;
+            targets[i] = new AxesLocation(mappedAxes.getAxes(), 
+                    (axis) -> new Length(
+                            axis.getType() == Axis.Type.X ? x :
+                                axis.getType() == Axis.Type.Y ? y :
+                                    axis.getType() == Axis.Type.Rotation ? rotation : 0, 
+                                    LengthUnit.Millimeters));
+        }
+        AxesLocation down = new AxesLocation(mappedAxes.byType(Axis.Type.Z).getAxes(), 
+                (axis) -> new Length(-10, LengthUnit.Millimeters));
+        AxesLocation up = new AxesLocation(mappedAxes.byType(Axis.Type.Z).getAxes(), 
+                (axis) -> new Length(0, LengthUnit.Millimeters));
+
+        final int cycles = 500;
+        final double tolerance = 1e-3;
+        Motion previous = null;
+        for (int i = 0; i < cycles; i++) {
+            AxesLocation target = targets[i % targets.length];
+            // Move over, down and up, then plan the sequence, like a pick or place does.
+            planner.moveTo(nozzle, target, 1.0);
+            planner.moveTo(nozzle, down, 1.0);
+            planner.moveTo(nozzle, up, 1.0);
+            List<Motion> motions = planner.plan();
+            assertTrue(motions.size() >= 3, "cycle "+i+" planned "+motions.size()+" motions");
+            for (Motion motion : motions) {
+                if (previous != null) {
+                    assertTrue(previous.getLocation1().matches(motion.getLocation0()),
+                            "cycle "+i+" motion is not continuous");
+                }
+                assertTrue(Double.isFinite(motion.getTime()) && motion.getTime() >= 0,
+                        "cycle "+i+" motion time "+motion.getTime());
+                for (MotionProfile profile : motion.getAxesProfiles()) {
+                    if (profile != null) {
+                        ErrorState error = profile.checkValidity();
+                        // Only limit violations may remain, the profile must be consistent.
+                        assertTrue(error == null 
+                                || error.compareTo(ErrorState.AccelerationDiscontinuity) > 0,
+                                "cycle "+i+" profile has error "+error);
+                    }
+                }
+                previous = motion;
+            }
+            AxesLocation end = previous.getLocation1();
+            assertEquals(target.getCoordinate(axisX), end.getCoordinate(axisX), tolerance);
+            assertEquals(target.getCoordinate(axisY), end.getCoordinate(axisY), tolerance);
+            assertEquals(0, end.getCoordinate(axisZ), tolerance);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.logging.AsyncWriter;
+import org.pmw.tinylog.Configuration;
+import org.pmw.tinylog.Configurator;
+import org.pmw.tinylog.Level;
+import org.pmw.tinylog.LogEntry;
+import org.pmw.tinylog.Logger;
+import org.pmw.tinylog.writers.LogEntryValue;
+import org.pmw.tinylog.writers.Writer;
+
+public class AsyncWriterTest {
+    /**
+     * A writer as slow as a congested disk.
+     */
+    static class SlowWriter implements Writer {
+        AtomicInteger traces = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger flushes = new AtomicInteger();
+
+        @Override
+        public Set<LogEntryValue> getRequiredLogEntryValues() {
+            return EnumSet.of(LogEntryValue.LEVEL, LogEntryValue.MESSAGE);
+        }
+
+        @Override
+        public void init(Configuration configuration) throws Exception {
+        }
+
+        @Override
+        public void write(LogEntry logEntry) throws Exception {
+            LockSupport.parkNanos(200000);
+            if (logEntry.getMessage().startsWith("AsyncWriterTest")) {
+                if (logEntry.getLevel() == Level.ERROR) {
+                    errors.incrementAndGet();
+                }
+                else {
+                    traces.incrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws Exception {
+            flushes.incrementAndGet();
+        }
+
+        @Override
+        public void close() throws Exception {
+        }
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        SlowWriter slowWriter = new SlowWriter();
+        AsyncWriter asyncWriter = new AsyncWriter(1024, Level.ERROR, slowWriter);
+        Configurator.defaultConfig()
+                .writer(asyncWriter)
+                .level(Level.TRACE)
+                .activate();
+        try {
+            final int traces = 100000;
+            final int errors = 2000;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < traces; i++) {
+                Logger.trace("AsyncWriterTest trace {}", i);
+            }
+            long traceNs = System.nanoTime() - t0;
+            for (int i = 0; i < errors; i++) {
+                Logger.error("AsyncWriterTest error {}", i);
+            }
+            asyncWriter.flush();
+            // Also wait for the overflow summary logged by the writer thread.
+            asyncWriter.flush();
+
+            // Errors block rather than being dropped, traces are dropped rather than blocking.
+            assertEquals(errors, slowWriter.errors.get());
+            assertTrue(asyncWriter.getDroppedCount() > 0);
+            assertEquals(traces, slowWriter.traces.get() + asyncWriter.getDroppedCount());
+            assertEquals(0, asyncWriter.getQueuedCount());
+            // Batched, i.e. far fewer flushes than entries.
+            assertTrue(slowWriter.flushes.get() < asyncWriter.getWrittenCount() / 10);
+
+            System.out.println(String.format("AsyncWriterTest.testOverflow() %d traces logged in %.1f ms, "
+                    + "%d written, %d dropped, %d flushes",
+                    traces, traceNs/1e6, asyncWriter.getWrittenCount(), asyncWriter.getDroppedCount(),
+                    slowWriter.flushes.get()));
+        }
+        finally {
+            asyncWriter.close();
+            Configurator.defaultConfig().activate();
+        }
+    }
+}
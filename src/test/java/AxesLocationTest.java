@@ -0,0 +1,179 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.axis.ReferenceControllerAxis;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.Axis;
+
+import com.google.common.io.Files;
+
+public class AxesLocationTest {
+
+    static List<Axis> createAxes(int count) throws Exception {
+        // The axes are added to a machine, so they get their indices assigned.
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        ReferenceMachine machine = new ReferenceMachine();
+        List<Axis> axes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ReferenceControllerAxis axis = new ReferenceControllerAxis();
+            axis.setName("A"+i);
+            axis.setType(Axis.Type.values()[i % Axis.Type.values().length]);
+            machine.addAxis(axis);
+            axes.add(axis);
+        }
+        return axes;
+    }
+
+    static AxesLocation randomLocation(Random random, List<Axis> axes, Map<Axis, Double> model) {
+        AxesLocation location = new AxesLocation();
+        int n = random.nextInt(6);
+        for (int i = 0; i < n; i++) {
+            Axis axis = axes.get(random.nextInt(axes.size()));
+            double coordinate = Math.round(random.nextGaussian()*1000)/10.0;
+            location = location.put(new AxesLocation(axis, coordinate));
+            model.put(axis, coordinate);
+        }
+        return location;
+    }
+
+    static void assertModel(Map<Axis, Double> model, AxesLocation location) {
+        assertEquals(model.size(), location.size());
+        assertEquals(model.isEmpty(), location.isEmpty());
+        assertEquals(new ArrayList<>(model.keySet()), new ArrayList<>(location.getAxes()));
+        StringBuilder str = new StringBuilder("(");
+        for (Map.Entry<Axis, Double> entry : model.entrySet()) {
+            if (str.length() > 1) {
+                str.append(", ");
+            }
+            str.append(entry.getKey().getName()+":"+String.format(Locale.US, "%f", entry.getValue()));
+            assertTrue(location.contains(entry.getKey()));
+            assertEquals(entry.getValue(), location.getCoordinate(entry.getKey()));
+        }
+        str.append(")");
+        assertEquals(str.toString(), location.toString());
+    }
+
+    /**
+     * Checks the AxesLocation operations against the equivalent LinkedHashMap.merge() operations.
+     * More axes than the presence mask has bits are used, to also cover the shared overflow bit.
+     */
+    @Test
+    public void testEquivalence() throws Exception {
+        List<Axis> axes = createAxes(80);
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 10000; iteration++) {
+            Map<Axis, Double> modelA = new LinkedHashMap<>();
+            Map<Axis, Double> modelB = new LinkedHashMap<>();
+            AxesLocation a = randomLocation(random, axes, modelA);
+            AxesLocation b = randomLocation(random, axes, modelB);
+            assertModel(modelA, a);
+            assertModel(modelB, b);
+            for (Axis axis : axes) {
+                assertEquals(modelA.containsKey(axis), a.contains(axis));
+                assertEquals(modelA.containsKey(axis), a.getAxes().contains(axis));
+            }
+
+            Map<Axis, Double> sum = new LinkedHashMap<>(modelA);
+            Map<Axis, Double> difference = new LinkedHashMap<>(modelA);
+            Map<Axis, Double> put = new LinkedHashMap<>(modelA);
+            Map<Axis, Double> product = new LinkedHashMap<>();
+            double dot = 0;
+            for (Map.Entry<Axis, Double> entry : modelB.entrySet()) {
+                sum.merge(entry.getKey(), entry.getValue(), (x, y) -> x + y);
+                difference.merge(entry.getKey(), entry.getValue(), (x, y) -> x - y);
+                put.merge(entry.getKey(), entry.getValue(), (x, y) -> y);
+            }
+            for (Map.Entry<Axis, Double> entry : modelA.entrySet()) {
+                product.put(entry.getKey(), entry.getValue()*-2.5);
+                dot += entry.getValue()*modelB.getOrDefault(entry.getKey(), 0.0);
+            }
+            assertModel(sum, a.add(b));
+            assertModel(difference, a.subtract(b));
+            assertModel(put, a.put(b));
+            assertModel(product, a.multiply(-2.5));
+            assertEquals(dot, a.dotProduct(b));
+
+            // Merge functions returning null remove the axis.
+            Map<Axis, Double> removed = new LinkedHashMap<>(modelA);
+            for (Map.Entry<Axis, Double> entry : modelB.entrySet()) {
+                removed.merge(entry.getKey(), entry.getValue(), (x, y) -> null);
+            }
+            assertModel(removed, new AxesLocation((x, y) -> null, a, b));
+
+            if (!modelA.isEmpty()) {
+                Axis axis = modelA.keySet().iterator().next();
+                Map<Axis, Double> remaining = new LinkedHashMap<>(modelA);
+                remaining.remove(axis);
+                assertModel(remaining, a.remove(axis));
+                assertFalse(a.remove(axis).contains(axis));
+            }
+        }
+    }
+
+    /**
+     * Checks the AxesLocation operations that the motion planner performs per move against the
+     * same computation on plain coordinate arrays.
+     */
+    @Test
+    public void testMotionSegments() throws Exception {
+        List<Axis> axes = createAxes(6);
+        final int moves = 1000;
+        double[][] targetCoordinates = new double[64][axes.size()];
+        AxesLocation[] targets = new AxesLocation[targetCoordinates.length];
+        Random random = new Random(1);
+        for (int i = 0; i < targets.length; i++) {
+            AxesLocation target = new AxesLocation();
+            for (int j = 0; j < axes.size(); j++) {
+                targetCoordinates[i][j] = random.nextDouble()*100;
+                target = target.put(new AxesLocation(axes.get(j), targetCoordinates[i][j]));
+            }
+            targets[i] = target;
+        }
+        AxesLocation current = targets[0];
+        double[] currentCoordinates = targetCoordinates[0];
+        for (int i = 1; i < moves; i++) {
+            AxesLocation target = targets[i % targets.length];
+            double[] targetCoordinate = targetCoordinates[i % targets.length];
+            double[] expected = new double[axes.size()];
+            double sumSq = 0;
+            for (int j = 0; j < axes.size(); j++) {
+                expected[j] = targetCoordinate[j] - currentCoordinates[j];
+                sumSq += expected[j]*expected[j];
+            }
+            double expectedDistance = Math.sqrt(sumSq);
+
+            AxesLocation segment = current.motionSegmentTo(target);
+            double distance = segment.getEuclideanMetric();
+            assertEquals(expectedDistance, distance, 1e-9);
+            AxesLocation unit = segment.multiply(distance > 0 ? 1/distance : 0);
+            assertEquals(distance > 0 ? 1 : 0, unit.getEuclideanMetric(), 1e-9);
+            assertEquals(distance, unit.dotProduct(segment), 1e-9);
+            // The segment projected onto its own direction is the segment.
+            AxesLocation projected = target.subtract(current).along(unit);
+            for (int j = 0; j < axes.size(); j++) {
+                Axis axis = axes.get(j);
+                if (expected[j] != 0) {
+                    assertEquals(expected[j], segment.getCoordinate(axis), 1e-9);
+                }
+                assertEquals(expected[j], projected.getCoordinate(axis), 1e-9);
+            }
+            current = current.put(target);
+            assertTrue(current.matches(target));
+            currentCoordinates = targetCoordinate;
+        }
+    }
+}
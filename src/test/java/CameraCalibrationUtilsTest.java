@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.camera.calibration.CameraCalibrationUtils;
+
+/**
+ * Fits the camera model to synthetic test pattern data, from a perturbed initial guess (cold
+ * start) and from the previous solution (warm start), and compares convergence time and accuracy.
+ */
+public class CameraCalibrationUtilsTest {
+    // fx, fy, cx, cy, k1, k2, p1, p2, k3, Rx, Ry, Rz, cam_z
+    static final double[] trueParameters = new double[] {
+            1400, 1400, 639.5, 479.5, -0.12, 0.06, 0, 0, 0, Math.PI - 0.01, 0.02, 0.03, 50
+    };
+    static final int numberOfTestPatterns = 10;
+    static final int pointsPerSide = 15;
+
+    /**
+     * Projects a machine point to the image, using the openpnp camera model U = K * D( R * (X - T) ).
+     */
+    static double[] project(double[] parameters, double[] point, double camX, double camY) {
+        double rx = parameters[9];
+        double ry = parameters[10];
+        double rz = parameters[11];
+        double theta = Math.sqrt(rx*rx + ry*ry + rz*rz);
+        double kx = rx/theta;
+        double ky = ry/theta;
+        double kz = rz/theta;
+        double c = Math.cos(theta);
+        double s = Math.sin(theta);
+        double v = 1 - c;
+        double[][] r = new double[][] {
+            { c + kx*kx*v, kx*ky*v - kz*s, kx*kz*v + ky*s },
+            { ky*kx*v + kz*s, c + ky*ky*v, ky*kz*v - kx*s },
+            { kz*kx*v - ky*s, kz*ky*v + kx*s, c + kz*kz*v },
+        };
+        double[] d = new double[] { point[0] - camX, point[1] - camY, point[2] - parameters[12] };
+        double x = r[0][0]*d[0] + r[0][1]*d[1] + r[0][2]*d[2];
+        double y = r[1][0]*d[0] + r[1][1]*d[1] + r[1][2]*d[2];
+        double z = r[2][0]*d[0] + r[2][1]*d[1] + r[2][2]*d[2];
+        double xn = x/z;
+        double yn = y/z;
+        double r2 = xn*xn + yn*yn;
+        double radial = 1 + parameters[4]*r2 + parameters[5]*r2*r2 + parameters[8]*r2*r2*r2;
+        double xd = xn*radial + 2*parameters[6]*xn*yn + parameters[7]*(r2 + 2*xn*xn);
+        double yd = yn*radial + parameters[6]*(r2 + 2*yn*yn) + 2*parameters[7]*xn*yn;
+        return new double[] { parameters[0]*xd + parameters[2], parameters[1]*yd + parameters[3] };
+    }
+
+    @Test
+    public void testBenchmark() throws Exception {
+        Random random = new Random(0);
+        double[][][] testPattern3dPoints = new double[numberOfTestPatterns][][];
+        double[][][] testPatternImagePoints = new double[numberOfTestPatterns][][];
+        double[] camXY = new double[2*numberOfTestPatterns];
+        for (int iTP = 0; iTP < numberOfTestPatterns; iTP++) {
+            double z = -iTP;
+            camXY[2*iTP] = 0.1*iTP;
+            camXY[2*iTP + 1] = -0.05*iTP;
+            testPattern3dPoints[iTP] = new double[pointsPerSide*pointsPerSide][];
+            testPatternImagePoints[iTP] = new double[pointsPerSide*pointsPerSide][];
+            for (int i = 0; i < pointsPerSide; i++) {
+                for (int j = 0; j < pointsPerSide; j++) {
+                    double[] point = new double[] {
+                            -15 + 30.0*i/(pointsPerSide - 1), -15 + 30.0*j/(pointsPerSide - 1), z };
+                    double[] imagePoint = project(trueParameters, point, camXY[2*iTP], camXY[2*iTP + 1]);
+                    // Measurement noise of 0.1 pixel.
+                    imagePoint[0] += 0.1*random.nextGaussian();
+                    imagePoint[1] += 0.1*random.nextGaussian();
+                    testPattern3dPoints[iTP][i*pointsPerSide + j] = point;
+                    testPatternImagePoints[iTP][i*pointsPerSide + j] = imagePoint;
+                }
+            }
+        }
+        // One gross outlier, to exercise the second pass.
+        testPatternImagePoints[3][7][0] += 30;
+
+        int flags = CameraCalibrationUtils.FIX_PRINCIPAL_POINT
+                | CameraCalibrationUtils.FIX_TANGENTIAL_DISTORTION_COEFFICENTS;
+        double[] coldStart = new double[13 + 2*numberOfTestPatterns];
+        System.arraycopy(trueParameters, 0, coldStart, 0, 13);
+        coldStart[0] *= 1.05;
+        coldStart[1] *= 1.05;
+        coldStart[4] = 0;
+        coldStart[5] = 0;
+        coldStart[9] += 0.01;
+        coldStart[11] -= 0.02;
+        coldStart[12] += 2;
+        for (int i = 0; i < camXY.length; i++) {
+            coldStart[13 + i] = camXY[i] + 0.5;
+        }
+
+        double[] parameters = coldStart.clone();
+        double[][][] modeledImagePoints = new double[numberOfTestPatterns][][];
+        List<Integer> outlierPointList = new ArrayList<>();
+        long t0 = System.nanoTime();
+        double coldDrms = CameraCalibrationUtils.computeBestCameraParameters(testPattern3dPoints,
+                testPatternImagePoints, modeledImagePoints, outlierPointList, parameters, flags);
+        long coldNs = System.nanoTime() - t0;
+        double coldFxError = Math.abs(parameters[0] - trueParameters[0]);
+        double coldZError = Math.abs(parameters[12] - trueParameters[12]);
+
+        // Warm start from the solution, with slightly moved test patterns.
+        double[] warmStart = parameters.clone();
+        for (int i = 0; i < camXY.length; i++) {
+            warmStart[13 + i] = camXY[i] + 0.05;
+        }
+        parameters = warmStart;
+        t0 = System.nanoTime();
+        double warmDrms = CameraCalibrationUtils.computeBestCameraParameters(testPattern3dPoints,
+                testPatternImagePoints, modeledImagePoints, outlierPointList, parameters, flags);
+        long warmNs = System.nanoTime() - t0;
+        double warmFxError = Math.abs(parameters[0] - trueParameters[0]);
+
+        System.out.println(String.format("CameraCalibrationUtilsTest.testBenchmark() %d test patterns x %d points: "
+                + "cold start %.1f ms, DRMS %.3f px, fx error %.3f px, cam_z error %.4f; "
+                + "warm start %.1f ms, DRMS %.3f px, fx error %.3f px; outliers %s",
+                numberOfTestPatterns, pointsPerSide*pointsPerSide,
+                coldNs/1e6, coldDrms, coldFxError, coldZError,
+                warmNs/1e6, warmDrms, warmFxError, outlierPointList));
+        assertTrue(coldDrms < 0.3);
+        assertTrue(warmDrms < 0.3);
+        assertTrue(coldFxError < 14);
+        assertTrue(outlierPointList.contains(3*pointsPerSide*pointsPerSide + 7));
+    }
+}
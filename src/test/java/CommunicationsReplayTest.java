@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.driver.CommunicationsRecorder;
+import org.openpnp.machine.reference.driver.CommunicationsRecording;
+import org.openpnp.machine.reference.driver.SimulatedCommunications;
+import org.openpnp.model.Configuration;
+import org.openpnp.util.GcodeServer.ReplayStatistics;
+
+import com.google.common.io.Files;
+
+public class CommunicationsReplayTest {
+    /**
+     * Records a conversation with a controller answering after 10ms, replays it through the
+     * simulated communications, and makes sure the timing is reproduced and the replayed
+     * conversation is recorded again.
+     */
+    @Test
+    public void testRecordAndReplay() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        final int commands = 20;
+        final long latencyMilliseconds = 10;
+        File recordingFile = new File(workingDirectory, "controller.gcrec");
+        CommunicationsRecorder recorder = new CommunicationsRecorder(recordingFile, "ReplayTest:controller");
+        recorder.recordReceived("start");
+        for (int i = 0; i < commands; i++) {
+            recorder.recordSent("G1 X" + i + " F1000");
+            Thread.sleep(latencyMilliseconds);
+            recorder.recordReceived("ok");
+        }
+        recorder.close();
+        CommunicationsRecorder.flush();
+        CommunicationsRecording recording = CommunicationsRecording.read(recordingFile);
+        assertEquals(2 * commands + 1, recording.getEvents().size());
+        assertEquals(commands, recording.getSentCount());
+
+        System.setProperty("communicationsReplay", recordingFile.getAbsolutePath());
+        System.setProperty("communicationsRecording", "true");
+        SimulatedCommunications comms = new SimulatedCommunications();
+        comms.setDriverName("ReplayTest");
+        try {
+            comms.connect();
+            assertEquals("start", comms.readLine());
+            for (int i = 0; i < commands; i++) {
+                long t0 = System.nanoTime();
+                comms.writeLine("G1 X" + i + " F1000");
+                assertEquals("ok", comms.readLine());
+                long latencyNs = System.nanoTime() - t0;
+                assertTrue(latencyNs >= (latencyMilliseconds - 1) * 1000000, "latency " + latencyNs);
+            }
+            // Commands after the end of the recording are confirmed.
+            comms.writeLine("M400");
+            assertEquals("ok", comms.readLine());
+            ReplayStatistics statistics = comms.getGcodeServer().getReplayStatistics();
+            assertTrue(statistics.isComplete());
+            assertEquals(commands, statistics.getCommands());
+            assertEquals(0, statistics.getMismatches());
+            assertEquals(commands + 1, statistics.getResponses());
+            System.out.println("CommunicationsReplayTest.testRecordAndReplay() " + statistics);
+        }
+        finally {
+            comms.disconnect();
+            System.clearProperty("communicationsReplay");
+            System.clearProperty("communicationsRecording");
+        }
+
+        // The replayed conversation was recorded, too.
+        CommunicationsRecorder.flush();
+        File[] recordings = new File(workingDirectory, "recordings").listFiles();
+        assertNotNull(recordings);
+        assertEquals(1, recordings.length);
+        List<CommunicationsRecording.Event> events = CommunicationsRecording.read(recordings[0]).getEvents();
+        assertEquals(2 * (commands + 1) + 1, events.size());
+        assertEquals("G1 X0 F1000", events.get(1).getLine());
+        assertTrue(events.get(1).isSent());
+        assertEquals("ok", events.get(2).getLine());
+    }
+}
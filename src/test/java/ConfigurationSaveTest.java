@@ -0,0 +1,116 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Footprint;
+import org.openpnp.model.Package;
+import org.openpnp.model.Part;
+
+import com.google.common.io.Files;
+
+public class ConfigurationSaveTest {
+    /**
+     * Makes sure only changed documents are written and backed up, and reports the save durations.
+     */
+    @Test
+    public void testIncrementalSave() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        // Loading the defaults saves all documents.
+        Configuration.get().load();
+        Configuration configuration = Configuration.get();
+        assertEquals(7, configuration.getLastSaveFilesWritten().size());
+        // Settle any migration done after loading.
+        configuration.save();
+        FileUtils.deleteDirectory(new File(workingDirectory, "backups"));
+
+        configuration.setAllDocumentsDirty();
+        long t0 = System.nanoTime();
+        configuration.save();
+        long fullNs = System.nanoTime() - t0;
+        assertEquals(0, configuration.getLastSaveBytesWritten());
+
+        Part part = configuration.getParts().get(0);
+        part.setName("Changed name");
+        t0 = System.nanoTime();
+        configuration.save();
+        long incrementalNs = System.nanoTime() - t0;
+        assertEquals(Arrays.asList("parts.xml"), configuration.getLastSaveFilesWritten());
+        long bytesWritten = configuration.getLastSaveBytesWritten();
+        assertEquals(new File(workingDirectory, "parts.xml").length(), bytesWritten);
+
+        t0 = System.nanoTime();
+        configuration.save();
+        long unchangedNs = System.nanoTime() - t0;
+        assertEquals(0, configuration.getLastSaveBytesWritten());
+
+        // Only the previous version of the changed document is backed up.
+        List<String> backups = new ArrayList<>();
+        for (File file : FileUtils.listFiles(new File(workingDirectory, "backups"), null, true)) {
+            backups.add(file.getName());
+        }
+        assertEquals(Arrays.asList("parts.xml"), backups);
+
+        // No temporary files are left.
+        for (File file : workingDirectory.listFiles()) {
+            assertTrue(!file.getName().endsWith(".tmp"));
+        }
+
+        // The change is persisted.
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        assertEquals("Changed name", Configuration.get().getPart(part.getId()).getName());
+
+        System.out.println(String.format("ConfigurationSaveTest.testIncrementalSave(): "
+                + "full serialization %.1f ms, one part changed %.1f ms (%d bytes written), unchanged %.1f ms",
+                fullNs/1e6, incrementalNs/1e6, bytesWritten, unchangedNs/1e6));
+    }
+
+    /**
+     * Makes sure footprint pad edits, which do not fire property change events, are saved.
+     */
+    @Test
+    public void testPadEditSaved() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        Configuration configuration = Configuration.get();
+        configuration.save();
+
+        Package pkg = null;
+        for (Package candidate : configuration.getPackages()) {
+            if (candidate.getFootprint() != null && !candidate.getFootprint().getPads().isEmpty()) {
+                pkg = candidate;
+                break;
+            }
+        }
+        assertTrue(pkg != null);
+        Footprint.Pad pad = pkg.getFootprint().getPads().get(0);
+        pad.setX(pad.getX() + 0.125);
+        double x = pad.getX();
+        Footprint.Pad newPad = new Footprint.Pad();
+        newPad.setName("Added");
+        newPad.setWidth(0.5);
+        newPad.setHeight(0.25);
+        pkg.getFootprint().addPad(newPad);
+        int padCount = pkg.getFootprint().getPads().size();
+        configuration.save();
+        assertEquals(Arrays.asList("packages.xml"), configuration.getLastSaveFilesWritten());
+
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        Footprint footprint = Configuration.get().getPackage(pkg.getId()).getFootprint();
+        assertEquals(x, footprint.getPads().get(0).getX(), 1e-9);
+        assertEquals(padCount, footprint.getPads().size());
+        assertEquals("Added", footprint.getPads().get(padCount - 1).getName());
+    }
+}
@@ -0,0 +1,180 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.machine.reference.vision.ReferenceBottomVision;
+import org.openpnp.machine.reference.vision.ReferenceFiducialLocator;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.Camera;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
+import org.openpnp.vision.pipeline.stages.ImageRecall;
+import org.openpnp.vision.pipeline.stages.ScriptRun;
+
+import com.google.common.io.Files;
+
+public class CvPipelineProductionModeTest {
+    /**
+     * Replaces the camera capture with a clone of a given frame.
+     */
+    public static class FrameStage extends CvStage {
+        Mat frame;
+
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(frame.clone());
+        }
+    }
+
+    public static class BlurStage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            Mat mat = pipeline.getWorkingImage();
+            Imgproc.blur(mat, mat, new Size(3, 3));
+            return null;
+        }
+    }
+
+    public static class ModelStage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(null, getName());
+        }
+    }
+
+    static Mat createFrame(int width, int height) {
+        Mat frame = new Mat(height, width, CvType.CV_8UC3, new Scalar(0, 0, 0));
+        Imgproc.circle(frame, new Point(width/2, height/2), height/8, new Scalar(255, 255, 255), -1);
+        Imgproc.rectangle(frame, new Point(width/2 - 50, height/2 - 30),
+                new Point(width/2 + 50, height/2 + 30), new Scalar(0, 0, 0), -1);
+        return frame;
+    }
+
+    static long getRetainedBytes(CvPipeline pipeline) {
+        long bytes = 0;
+        for (CvStage stage : pipeline.getStages()) {
+            CvStage.Result result = pipeline.getResult(stage);
+            if (result != null && result.image != null) {
+                bytes += result.image.total()*result.image.elemSize();
+            }
+        }
+        return bytes;
+    }
+
+    static CvPipeline createPipeline(Mat frame) {
+        CvPipeline pipeline = new CvPipeline();
+        FrameStage frameStage = new FrameStage();
+        frameStage.frame = frame;
+        pipeline.add("image", frameStage);
+        pipeline.add("blur", new BlurStage());
+        ImageRecall recall = new ImageRecall();
+        recall.setImageStageName("image");
+        pipeline.add("recall", recall);
+        pipeline.add("blur2", new BlurStage());
+        pipeline.add("results", new ModelStage());
+        pipeline.add("draw", new BlurStage());
+        return pipeline;
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        Mat frame = createFrame(320, 240);
+        CvPipeline pipeline = createPipeline(frame);
+        pipeline.process();
+        for (CvStage stage : pipeline.getStages()) {
+            assertNotNull(pipeline.getResult(stage).image, stage.getName());
+        }
+
+        pipeline.setProductionMode(true);
+        pipeline.process();
+        // Read by "recall", released after it.
+        assertNull(pipeline.getResult("image").image);
+        assertNull(pipeline.getResult("blur").image);
+        assertNull(pipeline.getResult("recall").image);
+        assertNull(pipeline.getResult("draw").image);
+        // Output.
+        assertNotNull(pipeline.getResult("results").image);
+        assertEquals("results", pipeline.getExpectedResult("results").model);
+        assertEquals(320*240*3, getRetainedBytes(pipeline));
+        assertEquals(320, pipeline.getWorkingImage().cols());
+
+        // A script may read any result, so all images are retained.
+        ScriptRun script = new ScriptRun();
+        script.setFile(new File("does-not-exist.java"));
+        pipeline.add("script", script);
+        pipeline.process();
+        assertNotNull(pipeline.getResult("image").image);
+        assertNotNull(pipeline.getResult("blur").image);
+        pipeline.release();
+        frame.release();
+    }
+
+    static CvPipeline replaceCapture(CvPipeline pipeline, Mat frame) {
+        for (int i = 0; i < pipeline.getStages().size(); i++) {
+            CvStage stage = pipeline.getStages().get(i);
+            if (stage instanceof ImageCapture) {
+                FrameStage frameStage = new FrameStage();
+                frameStage.frame = frame;
+                pipeline.remove(stage);
+                pipeline.insert(stage.getName(), frameStage, i);
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * Compares the retained result images and processing time of the stock bottom vision and
+     * fiducial pipelines on a 5MP frame, with and without production mode.
+     */
+    @Test
+    public void testStockPipelines() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        Camera camera = Configuration.get().getMachine().getDefaultHead().getDefaultCamera();
+
+        final int runs = 5;
+        Mat frame = createFrame(2592, 1944);
+        CvPipeline[] pipelines = new CvPipeline[] {
+                replaceCapture(ReferenceBottomVision.createStockPipeline("Default"), frame),
+                replaceCapture(ReferenceFiducialLocator.createStockPipeline("Default"), frame),
+        };
+        String[] names = new String[] { "bottom vision", "fiducial" };
+        for (int p = 0; p < pipelines.length; p++) {
+            CvPipeline pipeline = pipelines[p];
+            pipeline.setProperty("camera", camera);
+            long[] timeNs = new long[2];
+            long[] retainedBytes = new long[2];
+            for (int mode = 0; mode < 2; mode++) {
+                pipeline.setProductionMode(mode == 1);
+                // Warm-up.
+                pipeline.process();
+                long t0 = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    pipeline.process();
+                }
+                timeNs[mode] = (System.nanoTime() - t0)/runs;
+                retainedBytes[mode] = getRetainedBytes(pipeline);
+            }
+            pipeline.release();
+            System.out.println(String.format("CvPipelineProductionModeTest.testStockPipelines() %s 5MP, %d stages: "
+                    + "editor %.1f ms/run, %.1f MB result images, production %.1f ms/run, %.1f MB result images",
+                    names[p], pipeline.getStages().size(),
+                    timeNs[0]/1e6, retainedBytes[0]/1e6, timeNs[1]/1e6, retainedBytes[1]/1e6));
+            assertTrue(retainedBytes[1] < retainedBytes[0]);
+        }
+        frame.release();
+    }
+}
@@ -0,0 +1,150 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipelineProfiler;
+import org.openpnp.vision.pipeline.CvPipelineProfiler.PipelineProfile;
+import org.openpnp.vision.pipeline.CvPipelineProfiler.RollingStatistics;
+import org.openpnp.vision.pipeline.CvPipelineProfiler.StageProfile;
+import org.openpnp.vision.pipeline.CvStage;
+
+public class CvPipelineProfilerTest {
+    public static class CreateStage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(new Mat(480, 640, CvType.CV_8UC1));
+        }
+    }
+
+    public static class BlurStage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            Mat mat = pipeline.getWorkingImage();
+            Imgproc.blur(mat, mat, new Size(5, 5));
+            return null;
+        }
+    }
+
+    public static class ModelStage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(null, Arrays.asList(1, 2, 3));
+        }
+    }
+
+    static CvPipeline createPipeline() {
+        CvPipeline pipeline = new CvPipeline();
+        pipeline.add("create", new CreateStage());
+        pipeline.add("blur", new BlurStage());
+        pipeline.add("results", new ModelStage());
+        return pipeline;
+    }
+
+    @Test
+    public void testRollingStatistics() {
+        RollingStatistics statistics = new RollingStatistics();
+        assertEquals(0, statistics.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            statistics.add(i);
+        }
+        assertEquals(50, statistics.getPercentile(50));
+        assertEquals(90, statistics.getPercentile(90));
+        assertEquals(100, statistics.getPercentile(100));
+        assertEquals(50.5, statistics.getMean());
+        // Roll over the window.
+        for (int i = 0; i < CvPipelineProfiler.WINDOW_SIZE; i++) {
+            statistics.add(1000);
+        }
+        assertEquals(1000, statistics.getPercentile(1));
+        assertEquals(100 + CvPipelineProfiler.WINDOW_SIZE, statistics.getCount());
+    }
+
+    @Test
+    public void testProfile() throws Exception {
+        CvPipelineProfiler profiler = CvPipelineProfiler.get();
+        profiler.clear();
+        CvPipeline pipeline = createPipeline();
+        try {
+            pipeline.process();
+            assertNull(profiler.getPipelineProfile(pipeline));
+
+            CvPipelineProfiler.setEnabled(true);
+            for (int i = 0; i < 10; i++) {
+                pipeline.process();
+            }
+            // A clone is profiled under the same key.
+            CvPipeline clone = pipeline.clone();
+            clone.process();
+            clone.release();
+        }
+        finally {
+            CvPipelineProfiler.setEnabled(false);
+            pipeline.release();
+        }
+        PipelineProfile pipelineProfile = profiler.getPipelineProfile(pipeline);
+        assertNotNull(pipelineProfile);
+        assertEquals("CreateStage,BlurStage,ModelStage", pipelineProfile.getPipelineKey());
+        assertEquals(11, pipelineProfile.getProcessingTimeNs().getCount());
+        assertEquals(3, pipelineProfile.getStageProfiles().size());
+
+        StageProfile create = pipelineProfile.getStageProfile("create");
+        assertEquals(480*640, create.getMatBytes().getMean());
+        StageProfile blur = pipelineProfile.getStageProfile("blur");
+        assertEquals(0, blur.getMatBytes().getMean());
+        assertTrue(blur.getProcessingTimeNs().getPercentile(50) > 0);
+        StageProfile results = pipelineProfile.getStageProfile("results");
+        assertEquals(3, results.getResultSize().getMean());
+        assertEquals(3, profiler.getStageClassProfiles().size());
+
+        String csv = profiler.toCsv();
+        System.out.print(csv);
+        // Header, pipeline, 3 stages, 3 stage classes.
+        assertEquals(8, csv.split("\n").length);
+        assertTrue(csv.contains("stage,\"CreateStage,BlurStage,ModelStage\",\"blur\",\"BlurStage\",11,"));
+        String json = profiler.toJson();
+        System.out.print(json);
+        assertTrue(json.contains("\"stage\": \"results\", \"stageClass\": \"ModelStage\", \"count\": 11,"));
+        profiler.clear();
+    }
+
+    /**
+     * Compares the pipeline processing time with profiling disabled and enabled.
+     */
+    @Test
+    public void testOverhead() throws Exception {
+        final int runs = 2000;
+        CvPipeline pipeline = new CvPipeline();
+        for (int i = 0; i < 10; i++) {
+            pipeline.add(new ModelStage());
+        }
+        long t0 = 0, t1 = 0, t2 = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            // First pass is the warm-up.
+            t0 = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                pipeline.process();
+            }
+            t1 = System.nanoTime();
+            CvPipelineProfiler.setEnabled(true);
+            for (int i = 0; i < runs; i++) {
+                pipeline.process();
+            }
+            CvPipelineProfiler.setEnabled(false);
+            t2 = System.nanoTime();
+        }
+        pipeline.release();
+        CvPipelineProfiler.get().clear();
+        System.out.println(String.format("CvPipelineProfilerTest.testOverhead() 10 stages: "
+                + "profiling disabled %.2f us/run, enabled %.2f us/run",
+                (t1 - t0)/1e3/runs, (t2 - t1)/1e3/runs));
+    }
+}
@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.vision.ReferenceBottomVision;
+import org.openpnp.machine.reference.vision.ReferenceFiducialLocator;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipelineTemplate;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.stages.BlurGaussian;
+import org.simpleframework.xml.Element;
+
+public class CvPipelineTemplateTest {
+    public static class LocationStage extends CvStage {
+        @Element(required = false)
+        private Location location = new Location(LengthUnit.Millimeters, 1, 2, 3, 4);
+
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return null;
+        }
+    }
+
+    static CvPipeline[] createStockPipelines() {
+        return new CvPipeline[] {
+                ReferenceBottomVision.createStockPipeline("Default"),
+                ReferenceBottomVision.createStockPipeline("Body"),
+                ReferenceBottomVision.createStockPipeline("Rectlinear"),
+                ReferenceFiducialLocator.createStockPipeline("Default"),
+                ReferenceFiducialLocator.createStockPipeline("Template"),
+        };
+    }
+
+    @Test
+    public void testStockPipelines() throws Exception {
+        CvPipelineTemplate.clearCache();
+        for (CvPipeline pipeline : createStockPipelines()) {
+            CvPipeline clone = pipeline.clone();
+            assertTrue(CvPipelineTemplate.get(pipeline).isCompiled());
+            assertEquals(pipeline.toXmlString(), clone.toXmlString());
+            assertEquals(pipeline.getStages().size(), clone.getStages().size());
+            for (int i = 0; i < pipeline.getStages().size(); i++) {
+                assertNotSame(pipeline.getStages().get(i), clone.getStages().get(i));
+            }
+        }
+        assertEquals(5, CvPipelineTemplate.getCacheMisses());
+    }
+
+    @Test
+    public void testIndependence() throws Exception {
+        CvPipelineTemplate.clearCache();
+        CvPipeline pipeline = new CvPipeline();
+        BlurGaussian blur = new BlurGaussian();
+        blur.setKernelSize(3);
+        pipeline.add("blur", blur);
+
+        CvPipeline clone1 = pipeline.clone();
+        CvPipeline clone2 = pipeline.clone();
+        assertEquals(1, CvPipelineTemplate.getCacheMisses());
+        assertEquals(1, CvPipelineTemplate.getCacheHits());
+        ((BlurGaussian) clone1.getStage("blur")).setKernelSize(5);
+        assertEquals(3, blur.getKernelSize());
+        assertEquals(3, ((BlurGaussian) clone2.getStage("blur")).getKernelSize());
+
+        // Changed content is a different template.
+        blur.setKernelSize(7);
+        CvPipeline clone3 = pipeline.clone();
+        assertEquals(7, ((BlurGaussian) clone3.getStage("blur")).getKernelSize());
+        assertEquals(2, CvPipelineTemplate.getCacheMisses());
+        assertNotSame(CvPipelineTemplate.get(clone2), CvPipelineTemplate.get(clone3));
+        assertSame(CvPipelineTemplate.get(pipeline), CvPipelineTemplate.get(clone3));
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        CvPipeline pipeline = new CvPipeline();
+        pipeline.add("location", new LocationStage());
+        CvPipeline clone = pipeline.clone();
+        assertFalse(CvPipelineTemplate.get(pipeline).isCompiled());
+        assertEquals(pipeline.toXmlString(), clone.toXmlString());
+        assertNotSame(pipeline.getStage("location"), clone.getStage("location"));
+    }
+
+    /**
+     * Compares the XML round trip with the cloning from the template, on the stock pipelines.
+     */
+    @Test
+    public void testBenchmark() throws Exception {
+        final int runs = 200;
+        CvPipeline[] pipelines = createStockPipelines();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            for (CvPipeline pipeline : pipelines) {
+                new CvPipeline(pipeline.toXmlString());
+            }
+        }
+        long t1 = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            for (CvPipeline pipeline : pipelines) {
+                pipeline.clone();
+            }
+        }
+        long t2 = System.nanoTime();
+        System.out.println(String.format("CvPipelineTemplateTest.testBenchmark() stock pipelines: "
+                + "XML round trip %.3f ms/clone, template %.3f ms/clone",
+                (t1 - t0)/1e6/runs/pipelines.length, (t2 - t1)/1e6/runs/pipelines.length));
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.stages.ScriptRun;
+import org.simpleframework.xml.Attribute;
+
+public class CvPipelineTest {
+    public static class ThreadStage extends CvStage {
+        @Attribute(required = false)
+        private boolean machineInteraction;
+        Thread thread;
+
+        @Override
+        public boolean isMachineInteraction() {
+            return machineInteraction;
+        }
+
+        public void setMachineInteraction(boolean machineInteraction) {
+            this.machineInteraction = machineInteraction;
+        }
+
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            thread = Thread.currentThread();
+            return new Result(null, pipeline.getProperty("shot"));
+        }
+    }
+
+    /**
+     * Processes the machine stages of a pipeline on the calling thread and the remaining stages
+     * on a worker thread, while a clone of the pipeline processes the next shot.
+     */
+    @Test
+    public void testSplitProcessing() throws Exception {
+        CvPipeline pipeline = new CvPipeline();
+        ThreadStage capture = new ThreadStage();
+        capture.setMachineInteraction(true);
+        ThreadStage detect = new ThreadStage();
+        pipeline.add("prepare", new ThreadStage());
+        pipeline.add("capture", capture);
+        pipeline.add("results", detect);
+        pipeline.setProperty("shot", 1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CvPipeline clone = pipeline.cloneWithProperties();
+            assertEquals(1, clone.getProperty("shot"));
+            pipeline.setProperty("shot", 2);
+
+            clone.processMachineStages();
+            ThreadStage cloneCapture = (ThreadStage) clone.getStage("capture");
+            ThreadStage cloneDetect = (ThreadStage) clone.getStage("results");
+            assertSame(Thread.currentThread(), cloneCapture.thread);
+            assertNull(cloneDetect.thread);
+            assertNull(clone.getResult("results"));
+            executor.submit(() -> {
+                clone.processRemainingStages();
+                return null;
+            }).get();
+            assertNotSame(Thread.currentThread(), cloneDetect.thread);
+            assertEquals(1, clone.getResult("results").model);
+
+            pipeline.process();
+            assertSame(Thread.currentThread(), detect.thread);
+            assertEquals(2, pipeline.getResult("results").model);
+            clone.release();
+            pipeline.release();
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A script may reach the machine, so it is processed with the machine stages.
+     */
+    @Test
+    public void testScriptIsMachineStage() throws Exception {
+        CvPipeline pipeline = new CvPipeline();
+        ThreadStage prepare = new ThreadStage();
+        ThreadStage detect = new ThreadStage();
+        pipeline.add("prepare", prepare);
+        pipeline.add("script", new ScriptRun());
+        pipeline.add("results", detect);
+
+        pipeline.processMachineStages();
+        assertSame(Thread.currentThread(), prepare.thread);
+        assertNull(detect.thread);
+        pipeline.processRemainingStages();
+        assertSame(Thread.currentThread(), detect.thread);
+        pipeline.release();
+    }
+}
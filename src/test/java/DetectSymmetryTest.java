@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.RotatedRect;
+import org.openpnp.util.OpenCvUtils;
+import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.DetectCircularSymmetry;
+import org.openpnp.vision.pipeline.stages.DetectCircularSymmetry.SymmetryScore;
+import org.openpnp.vision.pipeline.stages.DetectRectlinearSymmetry;
+import org.openpnp.vision.pipeline.stages.DetectRectlinearSymmetry.SymmetryFunction;
+
+/**
+ * Compares the sequential and the parallel symmetry search on the sample board image, both for the
+ * results (must be identical) and the speed.
+ */
+public class DetectSymmetryTest {
+    static Mat loadSample() throws Exception {
+        BufferedImage image = ImageIO.read(DetectSymmetryTest.class.getResource("/samples/pnp-test/pnp-test.png"));
+        return OpenCvUtils.toMat(image);
+    }
+
+    static List<Result.Circle> findCircles(Mat image, int maxTargetCount) throws Exception {
+        return DetectCircularSymmetry.findCircularSymmetry(image, image.cols()/2, image.rows()/2,
+                10, 80, 600, 600, 600, maxTargetCount, 0.0, 0.0, 8, 1,
+                SymmetryScore.OverallVarianceVsRingVarianceSum, false, false,
+                new DetectCircularSymmetry.ScoreRange());
+    }
+
+    static RotatedRect findRect(Mat image) throws Exception {
+        return DetectRectlinearSymmetry.findReclinearSymmetry(image, image.cols()/2, image.rows()/2, 0,
+                200, 200, 150, 45, 0.0, SymmetryFunction.FullSymmetry, SymmetryFunction.FullSymmetry, 40,
+                8, 1, 5, 2.5, 128, false, false, new DetectRectlinearSymmetry.ScoreRange());
+    }
+
+    @Test
+    public void testCircularSymmetry() throws Exception {
+        Mat image = loadSample();
+        final int runs = 5;
+        for (int maxTargetCount : new int[] { 1, 5 }) {
+            String [] results = new String[2];
+            long [] timeNs = new long[2];
+            for (int parallel = 0; parallel < 2; parallel++) {
+                DetectCircularSymmetry.parallelSearch = (parallel == 1);
+                // Warm-up.
+                results[parallel] = findCircles(image, maxTargetCount).toString();
+                long t0 = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    findCircles(image, maxTargetCount);
+                }
+                timeNs[parallel] = (System.nanoTime() - t0)/runs;
+            }
+            DetectCircularSymmetry.parallelSearch = true;
+            assertEquals(results[0], results[1]);
+            System.out.println(String.format("DetectSymmetryTest.testCircularSymmetry() %d targets: "
+                    + "sequential %.1f ms, parallel %.1f ms, %s",
+                    maxTargetCount, timeNs[0]/1e6, timeNs[1]/1e6, results[1]));
+        }
+        image.release();
+    }
+
+    @Test
+    public void testRectlinearSymmetry() throws Exception {
+        Mat image = loadSample();
+        final int runs = 5;
+        String [] results = new String[2];
+        long [] timeNs = new long[2];
+        for (int parallel = 0; parallel < 2; parallel++) {
+            DetectRectlinearSymmetry.parallelSearch = (parallel == 1);
+            // Warm-up.
+            RotatedRect rect = findRect(image);
+            results[parallel] = rect == null ? "none"
+                    : rect.center.x+", "+rect.center.y+", "+rect.size.width+", "+rect.size.height+", "+rect.angle;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                findRect(image);
+            }
+            timeNs[parallel] = (System.nanoTime() - t0)/runs;
+        }
+        DetectRectlinearSymmetry.parallelSearch = true;
+        assertEquals(results[0], results[1]);
+        System.out.println(String.format("DetectSymmetryTest.testRectlinearSymmetry(): "
+                + "sequential %.1f ms, parallel %.1f ms, %s",
+                timeNs[0]/1e6, timeNs[1]/1e6, results[1]));
+        image.release();
+    }
+}
@@ -1,6 +1,9 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,12 +11,14 @@ import org.junit.jupiter.api.Test;
 import org.openpnp.machine.reference.ReferenceActuator;
 import org.openpnp.machine.reference.ReferenceMachine;
 import org.openpnp.machine.reference.driver.AbstractReferenceDriver.CommunicationsType;
+import org.openpnp.machine.reference.driver.ActuatorReports;
 import org.openpnp.machine.reference.driver.GcodeDriver;
 import org.openpnp.machine.reference.driver.GcodeDriver.CommandType;
 import org.openpnp.machine.reference.driver.TcpCommunications;
 import org.openpnp.model.Configuration;
 import org.openpnp.spi.Actuator;
 import org.openpnp.spi.Machine;
+import org.openpnp.spi.base.AbstractActuator.ActuatorCoordinationEnumType;
 import org.openpnp.util.GcodeServer;
 
 import com.google.common.io.Files;
@@ -171,6 +176,59 @@ public class GcodeDriverTest {
         }
     }
     
+    /**
+     * Reads an actuator from the periodic reports of the controller. No command is sent, the read
+     * returns a report received after the read started, and fails when no report arrives.
+     */
+    @Test
+    public void testActuatorReadReport() throws Exception {
+        Machine machine = Configuration.get().getMachine();
+        ReferenceActuator actuator = new ReferenceActuator();
+        actuator.setName("VAC1");
+        actuator.setCoordinatedBeforeReadEnum(ActuatorCoordinationEnumType.None);
+        machine.addActuator(actuator);
+        GcodeDriver driver = (GcodeDriver) ((ReferenceMachine) machine).getDefaultDriver();
+        driver.setCommand(actuator, CommandType.ACTUATOR_READ_COMMAND, "M105");
+        driver.setCommand(actuator, CommandType.ACTUATOR_READ_REGEX, "vac:(?<Value>-?\\d+)");
+        driver.setCommand(actuator, CommandType.ACTUATOR_REPORT_REGEX, "vac:(?<Value>-?\\d+)");
+
+        AtomicInteger commandReads = new AtomicInteger();
+        server.addCommandResponse("M105", () -> "vac:" + (-commandReads.incrementAndGet()) + "\nok");
+        AtomicInteger reports = new AtomicInteger();
+        AtomicBoolean reporting = new AtomicBoolean(true);
+        server.setPeriodicReport(() -> reporting.get() ? "vac:" + reports.incrementAndGet() : null, 5);
+        try {
+            for (int i = 0; i < 10; i++) {
+                long t0 = System.nanoTime();
+                String value = machine.execute(() -> actuator.read());
+                // The value must be from a report received after the read started.
+                boolean received = false;
+                for (ActuatorReports.Report report : driver.getActuatorReports(actuator.getId())
+                        .getHistory(t0)) {
+                    received |= report.getValue().equals(value);
+                }
+                assertTrue(received, "read "+value+" is not a report received after the read started");
+            }
+            assertEquals(0, commandReads.get());
+
+            // Without reports, the read times out.
+            reporting.set(false);
+            // Let the reports still on the line arrive.
+            Thread.sleep(100);
+            try {
+                machine.execute(() -> actuator.read());
+                throw new AssertionError("Expected Actuator.read() to fail because no report arrives.");
+            }
+            catch (Exception e) {
+                assertTrue(e.getMessage().contains("No report received"), e.getMessage());
+            }
+            assertEquals(0, commandReads.get());
+        }
+        finally {
+            server.setPeriodicReport(null, 0);
+        }
+    }
+
     @AfterEach
     public void after() throws Exception {
         /**
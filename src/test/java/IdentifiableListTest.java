@@ -0,0 +1,150 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.feeder.ReferenceTubeFeeder;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Part;
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Machine;
+import org.openpnp.util.IdentifiableList;
+
+import com.google.common.io.Files;
+
+public class IdentifiableListTest {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+    }
+
+    /**
+     * Feeder that changes its part without firing a property change, like the slot feeders do.
+     */
+    private static class SilentFeeder extends ReferenceTubeFeeder {
+        void setPartSilently(Part part) {
+            this.part = part;
+        }
+    }
+
+    private static ReferenceTubeFeeder createFeeder(String name, Part part) {
+        ReferenceTubeFeeder feeder = new ReferenceTubeFeeder();
+        feeder.setName(name);
+        feeder.setPart(part);
+        feeder.setEnabled(true);
+        return feeder;
+    }
+
+    /**
+     * Changes the ids after the index of the list was built.
+     */
+    @Test
+    public void testGetWithChangedId() {
+        IdentifiableList<Part> list = new IdentifiableList<>();
+        Part a = new Part("A");
+        Part b = new Part("B");
+        list.add(a);
+        list.add(b);
+        assertSame(a, list.get("A"));
+        assertSame(b, list.get("B"));
+
+        a.setId("C");
+        assertNull(list.get("A"));
+        assertSame(a, list.get("C"));
+        assertSame(b, list.get("B"));
+
+        // Swap the ids, so the index hits the wrong element for both.
+        a.setId("B");
+        b.setId("C");
+        assertSame(a, list.get("B"));
+        assertSame(b, list.get("C"));
+        assertNull(list.get("A"));
+        assertNull(list.get(null));
+        assertNull(list.get(""));
+
+        // Any list holding the element sees the change.
+        IdentifiableList<Part> copy = new IdentifiableList<>(list);
+        assertSame(a, copy.get("B"));
+        a.setId("D");
+        assertNull(copy.get("B"));
+        assertSame(a, copy.get("D"));
+        assertSame(a, list.get("D"));
+    }
+
+    /**
+     * Changes the names after the index of the list was built.
+     */
+    @Test
+    public void testGetByNameWithChangedName() {
+        IdentifiableList<Feeder> list = new IdentifiableList<>();
+        Feeder a = createFeeder("A", null);
+        Feeder b = createFeeder("B", null);
+        list.add(a);
+        list.add(b);
+        assertSame(a, list.getByName("A"));
+        assertSame(b, list.getByName("B"));
+
+        a.setName("C");
+        assertNull(list.getByName("A"));
+        assertSame(a, list.getByName("C"));
+
+        a.setName("B");
+        b.setName("C");
+        assertSame(a, list.getByName("B"));
+        assertSame(b, list.getByName("C"));
+
+        // The first of equally named elements is found.
+        b.setName("B");
+        assertSame(a, list.getByName("B"));
+        assertNull(list.getByName("C"));
+    }
+
+    @Test
+    public void testEnabledFeedersAfterPartChange() throws Exception {
+        Machine machine = Configuration.get().getMachine();
+        Part p1 = new Part("P1");
+        Part p2 = new Part("P2");
+        ReferenceTubeFeeder f1 = createFeeder("F1", p1);
+        ReferenceTubeFeeder f2 = createFeeder("F2", p1);
+        SilentFeeder f3 = new SilentFeeder();
+        f3.setName("F3");
+        f3.setPart(p2);
+        f3.setEnabled(true);
+        machine.addFeeder(f1);
+        machine.addFeeder(f2);
+        machine.addFeeder(f3);
+        assertEquals(List.of(f1, f2), machine.getEnabledFeeders(p1));
+        assertEquals(List.of(f3), machine.getEnabledFeeders(p2));
+
+        // Part change with a property change.
+        f1.setPart(p2);
+        assertEquals(List.of(f2), machine.getEnabledFeeders(p1));
+        assertEquals(List.of(f1, f3), machine.getEnabledFeeders(p2));
+
+        // Enabled change.
+        f2.setEnabled(false);
+        assertTrue(machine.getEnabledFeeders(p1).isEmpty());
+        f2.setEnabled(true);
+        assertEquals(List.of(f2), machine.getEnabledFeeders(p1));
+
+        // Part change without a property change.
+        f3.setPartSilently(p1);
+        assertEquals(List.of(f1), machine.getEnabledFeeders(p2));
+        f2.setPart(p2);
+        assertEquals(List.of(f3), machine.getEnabledFeeders(p1));
+        assertEquals(List.of(f1, f2), machine.getEnabledFeeders(p2));
+
+        // Removed feeders are gone.
+        machine.removeFeeder(f1);
+        assertEquals(List.of(f2), machine.getEnabledFeeders(p2));
+    }
+}
@@ -0,0 +1,152 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.JobOrderHint;
+import org.openpnp.machine.reference.feeder.ReferenceTubeFeeder;
+import org.openpnp.model.Abstract2DLocatable.Side;
+import org.openpnp.model.Board;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Part;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.base.AbstractPnpJobProcessor;
+
+import com.google.common.io.Files;
+
+public class JobPlanBenchmarkTest {
+    static final int parts = 300;
+    static final int placements = 3000;
+
+    /**
+     * Runs the job processor up to and including the Plan step on a job with 3000 placements of 300
+     * parts, each in its own feeder, and reports the time spent. Also compares the feeder and name
+     * lookups to the linear scans they replace.
+     */
+    @Test
+    public void testPlanLargeJob() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/machine.xml"),
+                new File(workingDirectory, "machine.xml"));
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/packages.xml"),
+                new File(workingDirectory, "packages.xml"));
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/parts.xml"),
+                new File(workingDirectory, "parts.xml"));
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        Machine machine = Configuration.get().getMachine();
+        Part template = Configuration.get().getPart("R-0805-10K");
+        Part[] jobParts = new Part[parts];
+        for (int i = 0; i < parts; i++) {
+            Part part = new Part("P" + i);
+            part.setPackage(template.getPackage());
+            part.setHeight(template.getHeight());
+            Configuration.get().addPart(part);
+            jobParts[i] = part;
+
+            ReferenceTubeFeeder feeder = new ReferenceTubeFeeder();
+            feeder.setName("Tube " + i);
+            feeder.setPart(part);
+            feeder.setEnabled(true);
+            feeder.setLocation(new Location(LengthUnit.Millimeters, -10 - (i % 20) * 10, (i / 20) * 10, -10, 0));
+            machine.addFeeder(feeder);
+        }
+
+        Job job = new Job();
+        Board board = new Board();
+        board.setName("large");
+        for (int i = 0; i < placements; i++) {
+            Placement placement = new Placement("R" + i);
+            placement.setPart(jobParts[(i * 7) % parts]);
+            placement.setLocation(new Location(LengthUnit.Millimeters, (i % 60) * 3, (i / 60) * 3, 0, 0));
+            placement.setSide(Side.Top);
+            board.addPlacement(placement);
+        }
+        BoardLocation boardLocation = new BoardLocation(board);
+        boardLocation.setLocation(new Location(LengthUnit.Millimeters, 0, 0, -10, 0));
+        boardLocation.setGlobalSide(Side.Top);
+        job.addBoardOrPanelLocation(boardLocation);
+
+        // The feeder lookups, compared to a scan through the machine feeders.
+        long t0 = System.nanoTime();
+        for (Placement placement : board.getPlacements()) {
+            Part part = placement.getPart();
+            Feeder found = null;
+            for (Feeder feeder : machine.getFeeders()) {
+                if (feeder.getPart() == part && feeder.isEnabled()) {
+                    found = feeder;
+                    break;
+                }
+            }
+            assertSame(part, found.getPart());
+        }
+        long scanNs = System.nanoTime() - t0;
+        t0 = System.nanoTime();
+        for (Placement placement : board.getPlacements()) {
+            assertSame(placement.getPart(), AbstractPnpJobProcessor.findFeeder(machine, placement.getPart()).getPart());
+        }
+        long findFeederNs = System.nanoTime() - t0;
+        t0 = System.nanoTime();
+        for (int i = 0; i < parts; i++) {
+            assertSame(jobParts[i], machine.getFeederByName("Tube " + i).getPart());
+        }
+        long byNameNs = System.nanoTime() - t0;
+
+        // The index follows changes of the feeders.
+        Feeder first = machine.getFeederByName("Tube 0");
+        first.setEnabled(false);
+        assertTrue(machine.getEnabledFeeders(jobParts[0]).isEmpty());
+        first.setEnabled(true);
+        assertEquals(List.of(first), machine.getEnabledFeeders(jobParts[0]));
+        first.setName("Renamed");
+        assertNull(machine.getFeederByName("Tube 0"));
+        assertSame(first, machine.getFeederByName("Renamed"));
+        first.setName("Tube 0");
+
+        ReferencePnpJobProcessor jobProcessor = (ReferencePnpJobProcessor) machine.getPnpJobProcessor();
+        jobProcessor.setJobOrder(JobOrderHint.PickLocation);
+        long[] planNs = new long[] { 0, 0 };
+        machine.setEnabled(true);
+        machine.home();
+        machine.execute(() -> {
+            jobProcessor.addTextStatusListener(text -> {
+                if (text.equals("Planning placements.")) {
+                    planNs[0] = System.nanoTime();
+                }
+                else if (planNs[0] != 0 && planNs[1] == 0) {
+                    planNs[1] = System.nanoTime();
+                }
+            });
+            long t = System.nanoTime();
+            jobProcessor.initialize(job);
+            while (planNs[1] == 0 && jobProcessor.next()) {
+                //spin
+            }
+            planNs[0] -= t;
+            planNs[1] -= t;
+            jobProcessor.abort();
+            return true;
+        });
+        assertTrue(planNs[1] > planNs[0]);
+
+        System.out.println(String.format("JobPlanBenchmarkTest.testPlanLargeJob() %d placements, %d feeders: "
+                + "preflight %.1f ms, plan %.1f ms, %d feeder lookups %.2f ms (scan %.2f ms), "
+                + "%d feeders by name %.2f ms",
+                placements, machine.getFeeders().size(), planNs[0]/1e6, (planNs[1] - planNs[0])/1e6,
+                placements, findFeederNs/1e6, scanNs/1e6, parts, byNameNs/1e6));
+    }
+}
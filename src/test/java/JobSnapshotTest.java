@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.model.Board;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.JobSnapshot;
+
+import com.google.common.io.Files;
+
+public class JobSnapshotTest {
+    /**
+     * Simulates a crash during a job, i.e. the job is loaded again without having been saved, and
+     * makes sure the placed status is restored from the snapshot.
+     */
+    @Test
+    public void testResume() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        System.setProperty("jobSnapshots", "true");
+        try {
+            File jobFile = new File(workingDirectory, "test.job.xml");
+            Job job = new Job();
+            Configuration.get().saveJob(job, jobFile);
+            BoardLocation boardLocation = new BoardLocation(new Board());
+            boardLocation.setId("B1");
+
+            final int placements = 1000;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < placements; i++) {
+                job.storePlacedStatus(boardLocation, "R" + i, i % 3 == 0);
+            }
+            JobSnapshot.flush();
+            long writeNs = System.nanoTime() - t0;
+            assertTrue(JobSnapshot.getSnapshotFile(jobFile).exists());
+
+            t0 = System.nanoTime();
+            Job resumed = Configuration.get().loadJob(jobFile);
+            long resumeNs = System.nanoTime() - t0;
+            assertTrue(resumed.retrievePlacedStatus(boardLocation, "R3"));
+            assertFalse(resumed.retrievePlacedStatus(boardLocation, "R4"));
+            assertTrue(resumed.isDirty());
+
+            // Saving the job makes the snapshot obsolete.
+            Configuration.get().saveJob(resumed, jobFile);
+            JobSnapshot.flush();
+            assertFalse(JobSnapshot.getSnapshotFile(jobFile).exists());
+            Job reloaded = Configuration.get().loadJob(jobFile);
+            assertFalse(reloaded.isDirty());
+
+            System.out.println(String.format("JobSnapshotTest.testResume() %d placements: "
+                    + "status changes with snapshots %.1f ms, job load with restore %.1f ms",
+                    placements, writeNs/1e6, resumeNs/1e6));
+        }
+        finally {
+            System.clearProperty("jobSnapshots");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.JobTelemetry;
+import org.openpnp.machine.reference.JobTelemetry.Dimension;
+import org.openpnp.machine.reference.JobTelemetry.Histogram;
+import org.openpnp.machine.reference.JobTelemetry.Phase;
+import org.openpnp.machine.reference.JobTelemetry.Series;
+import org.openpnp.model.Part;
+
+import com.google.common.io.Files;
+
+public class JobTelemetryTest {
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentileNs(50));
+        // 1 ms .. 1000 ms
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000L, histogram.getMinNs());
+        assertEquals(1000000000L, histogram.getMaxNs());
+        assertEquals(500.5e6, histogram.getMeanNs());
+        for (double percentile : new double[] { 1, 50, 90, 99 }) {
+            double expected = percentile * 10e6;
+            double error = Math.abs(histogram.getPercentileNs(percentile) - expected) / expected;
+            assertTrue(error < 0.035, "p"+percentile+" relative error "+error);
+        }
+        assertEquals(1000000000L, histogram.getPercentileNs(100));
+
+        // Small values are counted exactly.
+        Histogram small = new Histogram();
+        small.record(5000);
+        small.record(7000);
+        assertEquals(5000, small.getPercentileNs(50));
+        assertEquals(7000, small.getPercentileNs(100));
+    }
+
+    @Test
+    public void testExportAndCompare() throws Exception {
+        Part part = new Part("R0603-1K");
+        JobTelemetry baseline = new JobTelemetry();
+        JobTelemetry candidate = new JobTelemetry();
+        for (int i = 0; i < 100; i++) {
+            baseline.record(Phase.Feed, 200000000L, null, null, part);
+            baseline.record(Phase.Place, 400000000L, null, null, part);
+            candidate.record(Phase.Feed, 100000000L, null, null, part);
+            candidate.record(Phase.Place, 400000000L, null, null, part);
+        }
+        candidate.record(Phase.NozzleTipChange, 3000000000L, null, null, null);
+
+        List<Series> series = baseline.getSeries();
+        assertEquals(4, series.size());
+        assertEquals(Phase.Feed, series.get(0).getPhase());
+        assertEquals(Dimension.Job, series.get(0).getDimension());
+        assertEquals(Dimension.Part, series.get(1).getDimension());
+        assertEquals("R0603-1K", series.get(1).getName());
+
+        File directory = Files.createTempDir();
+        File baselineFile = new File(directory, "baseline.csv");
+        File candidateFile = new File(directory, "candidate.csv");
+        baseline.exportCsv(baselineFile);
+        candidate.exportCsv(candidateFile);
+        String csv = baseline.toCsv();
+        assertTrue(csv.contains("Feed,Part,\"R0603-1K\",100,20000.000,200.000,"), csv);
+
+        String report = JobTelemetry.compare(baselineFile, candidateFile);
+        System.out.print(report);
+        assertTrue(report.contains("Feed Part R0603-1K"), report);
+        assertTrue(report.contains("-50.0%"), report);
+        assertTrue(report.contains("+0.0%"), report);
+        assertTrue(report.contains("NozzleTipChange"), report);
+    }
+
+    /**
+     * Measures the cost of recording a phase with its nozzle, feeder and part breakdown.
+     */
+    @Test
+    public void testOverhead() {
+        final int samples = 1000000;
+        Part part = new Part("C0402-100N");
+        JobTelemetry telemetry = new JobTelemetry();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            telemetry.record(Phase.Pick, i * 1000L, null, null, part);
+        }
+        long t1 = System.nanoTime();
+        System.out.println(String.format("JobTelemetryTest.testOverhead() %.0f ns/record",
+                (double) (t1 - t0) / samples));
+        assertEquals(samples, telemetry.getSeries(Phase.Pick, Dimension.Job, "").getHistogram().getCount());
+    }
+}
@@ -0,0 +1,121 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Part;
+
+import com.google.common.io.Files;
+
+public class LazyLibraryTest {
+    static final int packageCount = 5000;
+    static final int partCount = 20000;
+
+    /**
+     * Appends generated entries to the library files of the configuration directory.
+     */
+    static void generateLibrary(File configurationDirectory) throws Exception {
+        StringBuilder packages = new StringBuilder();
+        for (int i = 0; i < packageCount; i++) {
+            packages.append(String.format("   <package id=\"GEN-PKG-%d\" description=\"Generated &lt;%d&gt;\">\n"
+                    + "      <outline units=\"Millimeters\"/>\n"
+                    + "      <footprint units=\"Millimeters\" body-width=\"2.0\" body-height=\"1.25\">\n"
+                    + "         <pad name=\"1\" x=\"-0.825\" y=\"0.0\" width=\"0.35\" height=\"1.25\" rotation=\"0.0\" roundness=\"0.0\"/>\n"
+                    + "         <pad name=\"2\" x=\"0.825\" y=\"0.0\" width=\"0.35\" height=\"1.25\" rotation=\"0.0\" roundness=\"0.0\"/>\n"
+                    + "      </footprint>\n"
+                    + "   </package>\n", i, i));
+        }
+        StringBuilder parts = new StringBuilder();
+        for (int i = 0; i < partCount; i++) {
+            parts.append(String.format("   <part id=\"GEN-PART-%d\" name=\"R &amp; C %d\" height-units=\"Millimeters\" "
+                    + "height=\"0.5\" package-id=\"GEN-PKG-%d\" speed=\"1.0\"/>\n", i, i, i % packageCount));
+        }
+        parts.append("   <part id=\"A&amp;B\" height-units=\"Millimeters\" height=\"0.5\" package-id=\"R0805\" speed=\"1.0\"/>\n");
+        insertEntries(new File(configurationDirectory, "packages.xml"), "</openpnp-packages>", packages);
+        insertEntries(new File(configurationDirectory, "parts.xml"), "</openpnp-parts>", parts);
+    }
+
+    static void insertEntries(File file, String closingTag, CharSequence entries) throws Exception {
+        String xml = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+        xml = xml.replace(closingTag, entries + closingTag);
+        FileUtils.writeStringToFile(file, xml, StandardCharsets.UTF_8);
+    }
+
+    static long load(File configurationDirectory) throws Exception {
+        long t0 = System.nanoTime();
+        Configuration.initialize(configurationDirectory);
+        Configuration.get().load();
+        return System.nanoTime() - t0;
+    }
+
+    @Test
+    public void testStartup() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        generateLibrary(workingDirectory);
+
+        try {
+            System.clearProperty("lazyLibraries");
+            long eagerNs = load(workingDirectory);
+            List<String> eagerPartIds = Configuration.get().getPartIds();
+            assertEquals(Configuration.get().getParts().size(), eagerPartIds.size());
+            List<String> eagerPackageIds = Configuration.get().getPackageIds();
+
+            System.setProperty("lazyLibraries", "true");
+            long lazyNs = load(workingDirectory);
+            assertTrue(new File(workingDirectory, "parts.xml.index").exists());
+            long lazyCachedNs = load(workingDirectory);
+            Configuration configuration = Configuration.get();
+
+            // Same ids in the same order, without loading.
+            assertEquals(eagerPartIds, configuration.getPartIds());
+            assertEquals(eagerPackageIds, configuration.getPackageIds());
+
+            long t0 = System.nanoTime();
+            Part part = configuration.getPart("gen-part-12345");
+            long firstPartNs = System.nanoTime() - t0;
+            assertNotNull(part);
+            assertEquals("GEN-PART-12345", part.getId());
+            assertEquals("R & C 12345", part.getName());
+            assertEquals("GEN-PKG-2345", part.getPackage().getId());
+            assertEquals("Generated <2345>", part.getPackage().getDescription());
+            assertNotNull(configuration.getPart("A&B"));
+
+            // Unchanged libraries are not rewritten.
+            configuration.save();
+            assertFalse(configuration.getLastSaveFilesWritten().contains("parts.xml"));
+
+            t0 = System.nanoTime();
+            assertEquals(eagerPartIds.size(), configuration.getParts().size());
+            long allPartsNs = System.nanoTime() - t0;
+            for (Part p : configuration.getParts()) {
+                assertNotNull(p.getPackage(), p.getId());
+            }
+
+            // Changes are saved and the stale index is rebuilt.
+            configuration.getPart("GEN-PART-7").setName("Changed");
+            configuration.save();
+            load(workingDirectory);
+            assertEquals("Changed", Configuration.get().getPart("GEN-PART-7").getName());
+            assertEquals(eagerPartIds, Configuration.get().getPartIds());
+
+            System.out.println(String.format("LazyLibraryTest.testStartup() %d parts, %d packages: "
+                    + "eager load %.1f ms, lazy load %.1f ms, lazy load with cached index %.1f ms, "
+                    + "first part %.2f ms, all parts %.1f ms",
+                    partCount, packageCount, eagerNs/1e6, lazyNs/1e6, lazyCachedNs/1e6,
+                    firstPartNs/1e6, allPartsNs/1e6));
+        }
+        finally {
+            System.clearProperty("lazyLibraries");
+        }
+    }
+}
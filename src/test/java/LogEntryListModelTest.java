@@ -0,0 +1,202 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openpnp.gui.support.LogEntryListModel;
+import org.pmw.tinylog.Configurator;
+import org.pmw.tinylog.Level;
+import org.pmw.tinylog.LogEntry;
+import org.pmw.tinylog.Logger;
+
+public class LogEntryListModelTest {
+    static final Level[] levels = { Level.TRACE, Level.DEBUG, Level.INFO, Level.WARNING, Level.ERROR };
+    static final int capacity = 100;
+
+    /**
+     * What the model must hold, the last entries up to the capacity, oldest first.
+     */
+    static class Expected {
+        final Level level;
+        final String threadName;
+        final String message;
+
+        Expected(Level level, String threadName, String message) {
+            this.level = level;
+            this.threadName = threadName;
+            this.message = message;
+        }
+    }
+
+    LogEntryListModel model;
+    ArrayDeque<Expected> expected = new ArrayDeque<>();
+
+    @BeforeEach
+    public void setUp() {
+        model = new LogEntryListModel(capacity);
+        Configurator.defaultConfig()
+                .writer(model)
+                .level(Level.TRACE)
+                .formatPattern("{message}")
+                .activate();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Configurator.defaultConfig().activate();
+    }
+
+    void log(int i) {
+        String message = "Entry " + i;
+        Level level = levels[i % levels.length];
+        switch (level) {
+            case TRACE:
+                Logger.trace(message);
+                break;
+            case DEBUG:
+                Logger.debug(message);
+                break;
+            case INFO:
+                Logger.info(message);
+                break;
+            case WARNING:
+                Logger.warn(message);
+                break;
+            default:
+                Logger.error(message);
+                break;
+        }
+        expect(level, Thread.currentThread().getName(), message);
+    }
+
+    void expect(Level level, String threadName, String message) {
+        expected.addLast(new Expected(level, threadName, message));
+        if (expected.size() > capacity) {
+            expected.removeFirst();
+        }
+    }
+
+    /**
+     * Asserts the filtered entries of the model are the expected ones matching the filter, in order.
+     */
+    void assertFiltered(Predicate<Expected> filter) {
+        List<String> messages = new ArrayList<>();
+        for (Expected entry : expected) {
+            if (filter.test(entry)) {
+                messages.add(entry.message);
+            }
+        }
+        List<String> filtered = new ArrayList<>();
+        for (int i = 0; i < model.getSize(); i++) {
+            filtered.add(model.getElementAt(i).getRenderedLogEntry().trim());
+        }
+        assertEquals(messages, filtered);
+    }
+
+    /**
+     * Passes many times the capacity through the model and checks that the oldest entries are
+     * evicted, and that the level and thread filters select the right remaining entries.
+     */
+    @Test
+    public void testRingAndFilters() throws Exception {
+        final int total = 2000;
+        final int batch = 37;
+        for (int i = 0; i < total; i++) {
+            log(i);
+            if (i == total - 50) {
+                Thread otherThread = new Thread(() -> Logger.info("Entry from the other thread"), "Other");
+                otherThread.start();
+                otherThread.join();
+                expect(Level.INFO, "Other", "Entry from the other thread");
+            }
+            if ((i + 1) % batch == 0) {
+                model.refresh();
+                assertFiltered(entry -> true);
+            }
+        }
+        model.refresh();
+        assertEquals(capacity, model.getSize());
+        assertFiltered(entry -> true);
+
+        for (Level level : levels) {
+            model.setMinimumLevel(level);
+            assertFiltered(entry -> entry.level.ordinal() >= level.ordinal());
+            model.forEachFilteredLogEntry(logEntry -> assertTrue(logEntry.getLevel().ordinal() >= level.ordinal()));
+        }
+        model.setMinimumLevel(Level.TRACE);
+
+        assertTrue(model.getThreadNames().containsAll(Arrays.asList("Other", Thread.currentThread().getName())));
+        model.setThreadName("Other");
+        assertFiltered(entry -> entry.threadName.equals("Other"));
+        assertEquals(1, model.getSize());
+        model.setThreadName(Thread.currentThread().getName());
+        assertFiltered(entry -> entry.threadName.equals(Thread.currentThread().getName()));
+
+        // Level and thread combined, also for entries added while filtered.
+        model.setMinimumLevel(Level.WARNING);
+        for (int i = total; i < total + 20; i++) {
+            log(i);
+        }
+        model.refresh();
+        assertFiltered(entry -> entry.level.ordinal() >= Level.WARNING.ordinal()
+                && entry.threadName.equals(Thread.currentThread().getName()));
+        model.setThreadName(null);
+        model.setMinimumLevel(Level.TRACE);
+        assertFiltered(entry -> true);
+
+        // The thread of the other entry is gone once the entry is evicted.
+        for (int i = total + 20; i < total + 20 + capacity; i++) {
+            log(i);
+        }
+        model.refresh();
+        assertFiltered(entry -> true);
+        assertEquals(Arrays.asList(Thread.currentThread().getName()), model.getThreadNames());
+    }
+
+    @Test
+    public void testSearchAndPredicateFilter() throws Exception {
+        LogEntryListModel.LogEntryFilter filter = new LogEntryListModel.LogEntryFilter();
+        model.addFilter(filter);
+        for (int i = 0; i < 1000; i++) {
+            log(i);
+        }
+        model.refresh();
+
+        model.setSearchText("ENTRY 99");
+        // Entry 990 to 999.
+        assertFiltered(entry -> entry.message.startsWith("Entry 99"));
+        assertEquals(10, model.getSize());
+        LogEntry selected = model.getElementAt(3);
+        model.setSearchText("");
+        assertEquals(capacity, model.getSize());
+        assertEquals(capacity - 10 + 3, model.indexOf(selected));
+
+        filter.setFilter(logEntry -> logEntry.getRenderedLogEntry().trim().endsWith("7"));
+        model.filter();
+        assertFiltered(entry -> entry.message.endsWith("7"));
+        assertEquals(capacity / 10, model.getSize());
+
+        model.clear();
+        assertEquals(0, model.getSize());
+    }
+
+    /**
+     * Entries written in between refreshes beyond the capacity are dropped before they are added.
+     */
+    @Test
+    public void testWriteOverflow() throws Exception {
+        for (int i = 0; i < capacity * 5 / 2; i++) {
+            log(i);
+        }
+        model.refresh();
+        assertEquals(capacity, model.getSize());
+        assertFiltered(entry -> true);
+    }
+}
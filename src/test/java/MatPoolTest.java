@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.openpnp.util.MatPool;
+import org.openpnp.util.OpenCvUtils;
+
+public class MatPoolTest {
+    static {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    @Test
+    public void testPool() {
+        MatPool pool = new MatPool(2, 2);
+        Mat mat = pool.acquire(480, 640, CvType.CV_8UC3);
+        assertEquals(0, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(480*640*3, pool.getAllocatedBytes());
+        pool.release(mat);
+        assertSame(mat, pool.acquire(480, 640, CvType.CV_8UC3));
+        assertEquals(1, pool.getHits());
+        // Different geometry or type is a miss.
+        Mat gray = pool.acquire(480, 640, CvType.CV_8UC1);
+        Mat small = pool.acquire(240, 320, CvType.CV_8UC3);
+        assertEquals(3, pool.getMisses());
+        pool.release(mat);
+        pool.release(gray);
+        // Evicts the least recently used geometry.
+        pool.release(small);
+        Mat mat2 = pool.acquire(480, 640, CvType.CV_8UC3);
+        assertEquals(4, pool.getMisses());
+        pool.release(mat2);
+        pool.clear();
+    }
+
+    @Test
+    public void testToMat() {
+        MatPool pool = new MatPool();
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        new Random(1).nextBytes(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+        Mat mat = pool.toMat(image);
+        BufferedImage image2 = OpenCvUtils.toBufferedImage(mat);
+        assertArrayEquals(((DataBufferByte) image.getRaster().getDataBuffer()).getData(),
+                ((DataBufferByte) image2.getRaster().getDataBuffer()).getData());
+        pool.release(mat);
+        pool.clear();
+    }
+
+    /**
+     * Compares a camera transform like chain (convert, white balance LUT, flip, convert back) on a 1080p frame,
+     * with and without pool.
+     */
+    @Test
+    public void testBenchmark() {
+        final int frames = 100;
+        BufferedImage image = new BufferedImage(1920, 1080, BufferedImage.TYPE_3BYTE_BGR);
+        Mat lut = new Mat(256, 1, CvType.CV_8UC3);
+        MatPool pool = new MatPool();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            Mat mat = OpenCvUtils.toMat(image);
+            Mat dst = new Mat();
+            Core.LUT(mat, lut, dst);
+            mat.release();
+            Core.flip(dst, dst, 0);
+            OpenCvUtils.toBufferedImage(dst);
+            dst.release();
+        }
+        long t1 = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            Mat mat = pool.toMat(image);
+            Mat dst = pool.acquire(mat.rows(), mat.cols(), mat.type());
+            Core.LUT(mat, lut, dst);
+            pool.release(mat);
+            Core.flip(dst, dst, 0);
+            OpenCvUtils.toBufferedImage(dst);
+            pool.release(dst);
+        }
+        long t2 = System.nanoTime();
+        System.out.println(String.format("MatPoolTest.testBenchmark() 1080p: unpooled %.2f ms/frame, pooled %.2f ms/frame, "
+                + "pool hits %d, misses %d, %.0f native bytes allocated/frame (unpooled %d)",
+                (t1 - t0)/1e6/frames, (t2 - t1)/1e6/frames, pool.getHits(), pool.getMisses(),
+                (double) pool.getAllocatedBytes()/frames, 2*1920*1080*3));
+        lut.release();
+        pool.clear();
+    }
+}
@@ -0,0 +1,123 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.driver.ReferenceDriverCommunications;
+import org.openpnp.machine.reference.driver.SimulatedCommunications;
+import org.openpnp.model.Configuration;
+import org.openpnp.util.GcodeServer;
+
+import com.google.common.io.Files;
+
+public class ReferenceDriverCommunicationsTest {
+    /**
+     * Communications that serve a fixed byte sequence in small chunks, to exercise line splitting
+     * across block boundaries.
+     */
+    static class ChunkedCommunications extends ReferenceDriverCommunications {
+        final byte[] data;
+        final int chunkSize;
+        int position = 0;
+
+        ChunkedCommunications(String data, int chunkSize) {
+            this.data = data.getBytes();
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public void connect() throws Exception {
+            clearReadBuffer();
+        }
+
+        @Override
+        public void disconnect() throws Exception {
+        }
+
+        @Override
+        public String getConnectionName() {
+            return "chunked";
+        }
+
+        @Override
+        protected void writeBytes(byte[] data) throws IOException {
+        }
+
+        @Override
+        protected int readBytes(byte[] buffer, int offset, int length)
+                throws TimeoutException, IOException {
+            if (position >= data.length) {
+                return -1;
+            }
+            int count = Math.min(Math.min(length, chunkSize), data.length - position);
+            System.arraycopy(data, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+    }
+
+    @Test
+    public void testLineSplitting() throws Exception {
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            longLine.append((char)('a' + i % 26));
+        }
+        String data = "ok\r\n\r\nX:1.000 Y:2.000\n\nerror:1\r" + longLine + "\nlast";
+        for (int chunkSize : new int[] { 1, 3, 7, 4096, 100000 }) {
+            ChunkedCommunications comms = new ChunkedCommunications(data, chunkSize);
+            comms.connect();
+            assertEquals("ok", comms.readLine());
+            assertEquals("X:1.000 Y:2.000", comms.readLine());
+            // Mix in single byte reads, these must consume from the same buffer.
+            assertEquals('\n', comms.read());
+            assertEquals('e', comms.read());
+            assertEquals("rror:1", comms.readLine());
+            assertEquals(longLine.toString(), comms.readLine());
+            // Unterminated line at the end of the stream.
+            assertNull(comms.readLine());
+        }
+    }
+
+    /**
+     * Reads bursts of responses through the read path of a SimulatedCommunications/GcodeServer
+     * connection, line by line.
+     */
+    @Test
+    public void testSimulatedReadBursts() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        final int linesPerBurst = 1000;
+        final int bursts = 10;
+        StringBuilder response = new StringBuilder();
+        for (int i = 0; i < linesPerBurst; i++) {
+            if (i > 0) {
+                response.append("\n");
+            }
+            response.append(i % 2 == 0 ? "ok" : "ok C: X:123.4560 Y:78.9000 Z:-12.5000 A:90.0000");
+        }
+
+        SimulatedCommunications comms = new SimulatedCommunications();
+        comms.connect();
+        try {
+            GcodeServer server = comms.getGcodeServer();
+            server.addCommandResponse("M9999", response.toString());
+
+            for (int burst = 0; burst < bursts; burst++) {
+                comms.writeLine("M9999");
+                for (int i = 0; i < linesPerBurst; i++) {
+                    assertEquals(i % 2 == 0 ? "ok" : "ok C: X:123.4560 Y:78.9000 Z:-12.5000 A:90.0000",
+                            comms.readLine());
+                }
+            }
+        }
+        finally {
+            comms.disconnect();
+        }
+    }
+}
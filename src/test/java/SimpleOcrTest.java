@@ -0,0 +1,143 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.spi.Camera;
+import org.openpnp.util.OpenCvUtils;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.stages.SimpleOcr;
+
+import com.google.common.io.Files;
+
+public class SimpleOcrTest {
+    /**
+     * Sample feeder labels, using the characters of the default alphabet.
+     */
+    static final String[] labels = new String[] {
+            "R0603 10k 1%",
+            "C0402 100nF",
+            "L0805 4.7uH",
+            "D1206 1A",
+    };
+
+    public static class LabelStage extends CvStage {
+        Mat label;
+
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(label.clone());
+        }
+    }
+
+    /**
+     * Render a label image with the given text, font and pixel size, like a label printer would.
+     */
+    static Mat createLabel(String text, String fontName, int fontPixelSize) {
+        Font font = new Font(fontName, Font.PLAIN, fontPixelSize);
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g2d = image.createGraphics();
+        int width = g2d.getFontMetrics(font).stringWidth(text) + 2*fontPixelSize;
+        int height = 3*fontPixelSize;
+        g2d.dispose();
+        image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        g2d = image.createGraphics();
+        g2d.setColor(Color.white);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(Color.black);
+        g2d.setFont(font);
+        g2d.drawString(text, fontPixelSize, 2*fontPixelSize);
+        g2d.dispose();
+        return OpenCvUtils.toMat(image);
+    }
+
+    /**
+     * Compares the OCR time on sample labels with a cold and a warm glyph cache, and the font size
+     * auto-detection time.
+     */
+    @Test
+    public void testBenchmark() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        Camera camera = Configuration.get().getMachine().getDefaultHead().getDefaultCamera();
+
+        // Same scaling as SimpleOcr.
+        final double fontSizePt = 7.0;
+        Location unitsPerPixel = camera.getUnitsPerPixelAtZ().convertToUnits(LengthUnit.Millimeters);
+        Length l = new Length(1.0/72.0, LengthUnit.Inches).convertToUnits(unitsPerPixel.getUnits());
+        double scalePt = l.getValue()/unitsPerPixel.getY();
+
+        LabelStage labelStage = new LabelStage();
+        SimpleOcr ocr = new SimpleOcr();
+        ocr.setFontSizePt(fontSizePt);
+        // No rescaling.
+        ocr.setFontMaxPixelSize(0);
+        ocr.setDrawStyle(SimpleOcr.DrawStyle.None);
+        CvPipeline pipeline = new CvPipeline();
+        pipeline.add("label", labelStage);
+        pipeline.add("ocr", ocr);
+        pipeline.setProperty("camera", camera);
+
+        final int runs = 5;
+        long coldNs = 0;
+        long warmNs = 0;
+        long detectNs = 0;
+        for (String text : labels) {
+            labelStage.label = createLabel(text, ocr.getFontName(), (int)Math.round(scalePt*fontSizePt));
+
+            ocr.setFontSizePt(fontSizePt);
+            String[] ocrText = new String[2];
+            for (int warm = 0; warm < 2; warm++) {
+                long t0 = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    if (warm == 0) {
+                        SimpleOcr.clearGlyphCache();
+                    }
+                    pipeline.process();
+                }
+                long t = (System.nanoTime() - t0)/runs;
+                if (warm == 0) {
+                    coldNs += t;
+                }
+                else {
+                    warmNs += t;
+                }
+                ocrText[warm] = ((SimpleOcr.OcrModel) pipeline.getResult("ocr").model).getText();
+            }
+            assertEquals(ocrText[0], ocrText[1]);
+
+            // Auto-detect from a wrong font size.
+            ocr.setFontSizePt(fontSizePt*1.4);
+            ocr.setAutoDetectSize(true);
+            long t0 = System.nanoTime();
+            pipeline.process();
+            detectNs += System.nanoTime() - t0;
+            double detectedSizePt = ocr.getFontSizePt();
+            System.out.println(String.format("SimpleOcrTest.testBenchmark() \"%s\": recognized \"%s\", "
+                    + "auto-detected %.2fpt of %.2fpt",
+                    text, ocrText[1], detectedSizePt, fontSizePt));
+            assertTrue(Math.abs(detectedSizePt/fontSizePt - 1.0) < 0.1);
+            labelStage.label.release();
+        }
+        pipeline.release();
+        System.out.println(String.format("SimpleOcrTest.testBenchmark() %d labels, %d pixel font: "
+                + "cold glyph cache %.1f ms/label, warm glyph cache %.1f ms/label, auto-detect %.1f ms/label",
+                labels.length, (int)Math.round(scalePt*fontSizePt),
+                coldNs/1e6/labels.length, warmNs/1e6/labels.length, detectNs/1e6/labels.length));
+    }
+}
@@ -20,6 +20,7 @@
 import java.io.File;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 
@@ -68,6 +69,48 @@ public class TavellingSalesmanTest {
         test("C",new Length(3000, LengthUnit.Millimeters), new Length(3000, LengthUnit.Millimeters), new double [] { 2870, 5000, 11500 });
     }
 
+    /**
+     * Benchmark of the parallel multi-start solver against the classic solver on uniformly random Locations. The
+     * classic solver is skipped for the largest problem, as it would take minutes.
+     * 
+     * Checks that the parallel solution is a valid route and deterministic.
+     */
+    @Test
+    public void testSolveParallel() throws Exception {
+        for (int size : new int[] { 100, 1000, 10000 }) {
+            Random rnd = new java.util.Random(42);
+            List<Location> list = new ArrayList<Location>();
+            for (int i = 0; i < size; i++) {
+                list.add(new Location(LengthUnit.Millimeters, rnd.nextDouble()*1000.0, rnd.nextDouble()*500.0, rnd.nextDouble()*10.0, 0.0));
+            }
+            TravellingSalesman.Locator<Location> locator = new TravellingSalesman.Locator<Location>() { 
+                @Override
+                public Location getLocation(Location locatable) {
+                    return locatable;
+                }
+            };
+            Location startLocation = new Location(LengthUnit.Millimeters);
+            String classic = "";
+            if (size <= 1000) {
+                TravellingSalesman<Location> tsm = new TravellingSalesman<>(list, locator, startLocation, null);
+                double cost = tsm.solve();
+                classic = ", solve() cost: "+cost+", time: "+tsm.getSolverDuration()+"ms";
+            }
+            TravellingSalesman<Location> tsm = new TravellingSalesman<>(list, locator, startLocation, null);
+            double cost = tsm.solveParallel();
+            System.out.println("TavellingSalesmanTest.testSolveParallel() "+size+" locations, solveParallel() cost: "+cost+", time: "+tsm.getSolverDuration()+"ms"+classic);
+
+            if (tsm.getTravel().size() != size || !new HashSet<>(tsm.getTravel()).equals(new HashSet<>(list))) {
+                throw new Exception("org.openpnp.util.TravellingSalesman.solveParallel("+size+") travel is not a permutation of the input");
+            }
+            TravellingSalesman<Location> tsm2 = new TravellingSalesman<>(list, locator, startLocation, null);
+            tsm2.solveParallel();
+            if (!tsm.getTravel().equals(tsm2.getTravel())) {
+                throw new Exception("org.openpnp.util.TravellingSalesman.solveParallel("+size+") is not deterministic");
+            }
+        }
+    }
+
     public void test(String name,Length xacceleration, Length yacceleration, double targets[]) throws Exception {
         File workingDirectory = Files.createTempDir();
         workingDirectory = new File(workingDirectory, ".openpnp");
@@ -0,0 +1,142 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.util.TextTemplate;
+import org.openpnp.util.TextUtils;
+
+public class TextTemplateTest {
+    static final String MOVE_TO_COMMAND = "{Acceleration:M204 S%.1f} G0 {XL}{X:%.4f} {YL}{Y:%.4f} {ZL}{Z:%.4f} {RotationL}{Rotation:%.4f} {FeedRate:F%.1f} ; Send standard Gcode move";
+
+    /**
+     * Substitutes the same variables on a TextTemplate and through the classic TextUtils.substituteVar()
+     * chain and asserts the same results.
+     */
+    void assertSubstitution(String text, Object... nameValues) {
+        TextTemplate.Substitution substitution = new TextTemplate(text).newSubstitution();
+        String expected = text;
+        for (int i = 0; i < nameValues.length; i += 2) {
+            String name = (String) nameValues[i];
+            Object value = nameValues[i + 1];
+            expected = TextUtils.substituteVar(expected, name, value);
+            substitution.substitute(name, value);
+            assertEquals(expected, substitution.toString());
+            assertEquals(hasVariable(expected, name), substitution.hasVariable(name));
+        }
+    }
+
+    static boolean hasVariable(String text, String name) {
+        Matcher matcher = TextUtils.VARIABLE_PATTERN.matcher(text);
+        while (matcher.find()) {
+            if (matcher.group(1).equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testSubstitution() {
+        assertSubstitution(MOVE_TO_COMMAND,
+                "Acceleration", 1000.0, "X", 12.3456789, "XL", "X", "Y", null, "YL", null,
+                "Z", -1.5, "ZL", "Z", "Rotation", 90.0, "RotationL", "A", "FeedRate", null);
+        // Repeated variables.
+        assertSubstitution("{X:%.2f} {X:%.3f} {X}", "X", 1.0, "X", 2.0);
+        // Variables that are not substituted remain.
+        assertSubstitution("G0 {X:%.4f} {Unknown:%d}", "X", 1.0);
+        // Nested variables produced by a substituted value are substituted later.
+        assertSubstitution("M42 {True:<((IntegerValue:P%%d))>}{False:P0}", "True", true, "False", null,
+                "IntegerValue", 255);
+        // Replacement escape characters in values.
+        assertSubstitution("M117 {StringValue}", "StringValue", "costs $1 \\o/");
+        // Curly brackets in the literal text.
+        assertSubstitution("{\"gc\":\"G0 X{X:%.4f}\"}", "X", 5.0);
+        assertSubstitution("{{X}:%d}", "X", "Y", "Y", 3);
+        // Multi-line.
+        assertSubstitution("G0 {X:%.4f}\nG0 {Y:%.4f}", "Y", 2.0, "X", 1.0);
+        // Malformed variables are left alone.
+        assertSubstitution("{X: {:%s} {X:}", "X", 1.0);
+    }
+
+    @Test
+    public void testHasVariable() {
+        TextTemplate template = new TextTemplate(MOVE_TO_COMMAND);
+        assertTrue(template.hasVariable("XL"));
+        assertFalse(template.hasVariable("BacklashFeedRate"));
+        TextTemplate.Substitution substitution = template.newSubstitution();
+        substitution.substitute("XL", null);
+        assertFalse(substitution.hasVariable("XL"));
+        assertTrue(substitution.hasVariable("X"));
+    }
+
+    /**
+     * Microbenchmark of the response classification and move command rendering, before (String.matches()
+     * and TextUtils.substituteVar() chains) and after (cached Pattern and TextTemplate).
+     */
+    @Test
+    public void testBenchmark() {
+        final String confirmRegex = "^ok.*";
+        final String errorRegex = "^error.*";
+        final String positionReportRegex = "^ok C: X:(?<X>-?\\d+\\.\\d+) Y:(?<Y>-?\\d+\\.\\d+) Z:(?<Z>-?\\d+\\.\\d+) A:(?<A>-?\\d+\\.\\d+).*";
+        final String[] lines = new String[] { "ok", "ok C: X:123.4560 Y:78.9000 Z:-12.5000 A:90.0000", "echo:busy" };
+        final int iterations = 100000;
+        int matches = 0;
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            String line = lines[i % lines.length];
+            matches += line.matches(confirmRegex) ? 1 : 0;
+            matches += line.matches(errorRegex) ? 1 : 0;
+            matches += line.matches(positionReportRegex) ? 1 : 0;
+        }
+        long t1 = System.nanoTime();
+        Pattern confirmPattern = Pattern.compile(confirmRegex);
+        Pattern errorPattern = Pattern.compile(errorRegex);
+        Pattern positionReportPattern = Pattern.compile(positionReportRegex);
+        for (int i = 0; i < iterations; i++) {
+            String line = lines[i % lines.length];
+            matches -= confirmPattern.matcher(line).matches() ? 1 : 0;
+            matches -= errorPattern.matcher(line).matches() ? 1 : 0;
+            matches -= positionReportPattern.matcher(line).matches() ? 1 : 0;
+        }
+        long t2 = System.nanoTime();
+        assertEquals(0, matches);
+        System.out.println(String.format("TextTemplateTest.testBenchmark() classification: String.matches() %.0f lines/s, cached Pattern %.0f lines/s",
+                iterations*1e9/(t1 - t0), iterations*1e9/(t2 - t1)));
+
+        String [] variables = new String[] { "X", "Y", "Z", "Rotation" };
+        TextTemplate template = new TextTemplate(MOVE_TO_COMMAND);
+        String expected = null;
+        t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            String command = MOVE_TO_COMMAND;
+            command = TextUtils.substituteVar(command, "Acceleration", 1000.0);
+            for (String variable : variables) {
+                command = TextUtils.substituteVar(command, variable, (double) i);
+                command = TextUtils.substituteVar(command, variable+"L", variable);
+            }
+            command = TextUtils.substituteVar(command, "FeedRate", null);
+            expected = command;
+        }
+        t1 = System.nanoTime();
+        String rendered = null;
+        for (int i = 0; i < iterations; i++) {
+            TextTemplate.Substitution command = template.newSubstitution();
+            command.substitute("Acceleration", 1000.0);
+            for (String variable : variables) {
+                command.substitute(variable, (double) i);
+                command.substitute(variable+"L", variable);
+            }
+            command.substitute("FeedRate", null);
+            rendered = command.toString();
+        }
+        t2 = System.nanoTime();
+        assertEquals(expected, rendered);
+        System.out.println(String.format("TextTemplateTest.testBenchmark() move rendering: substituteVar() %.0f commands/s, TextTemplate %.0f commands/s",
+                iterations*1e9/(t1 - t0), iterations*1e9/(t2 - t1)));
+    }
+}
@@ -7,6 +7,7 @@ import org.openpnp.machine.photon.exceptions.FeedFailureException;
 import org.openpnp.machine.photon.exceptions.FeederHasNoLocationOffsetException;
 import org.openpnp.machine.photon.exceptions.NoSlotAddressException;
 import org.openpnp.machine.photon.exceptions.UnconfiguredSlotException;
+import org.openpnp.machine.photon.protocol.Packet;
 import org.openpnp.machine.photon.protocol.commands.*;
 import org.openpnp.machine.photon.protocol.helpers.ResponsesHelper;
 import org.openpnp.machine.photon.protocol.helpers.TestBus;
@@ -438,6 +439,33 @@ public class PhotonFeederTest {
         bus.verifyInMockedOrder();
     }
 
+    @Test
+    public void findByHardwareIdFindsFeedersInMachineOrder() throws Exception {
+        PhotonFeeder otherFeeder = new PhotonFeeder();
+        machine.addFeeder(otherFeeder);
+
+        assertSame(feeder, PhotonFeeder.findByHardwareId(null));
+
+        // Re-indexing the first feeder must not move it behind the other.
+        feeder.setHardwareId(hardwareId);
+        assertSame(otherFeeder, PhotonFeeder.findByHardwareId(null));
+        feeder.setHardwareId(null);
+        assertSame(feeder, PhotonFeeder.findByHardwareId(null));
+
+        // The same for feeders sharing a hardware id.
+        otherFeeder.setHardwareId(hardwareId);
+        feeder.setHardwareId(hardwareId);
+        assertSame(feeder, PhotonFeeder.findByHardwareId(hardwareId));
+        feeder.setSlotAddress(feederAddress);
+        otherFeeder.setHardwareId(null);
+        otherFeeder.setHardwareId(hardwareId);
+        assertSame(feeder, PhotonFeeder.findByHardwareId(hardwareId));
+
+        machine.removeFeeder(feeder);
+        assertSame(otherFeeder, PhotonFeeder.findByHardwareId(hardwareId));
+        assertNull(PhotonFeeder.findBySlotAddress(feederAddress));
+    }
+
     @Test
     public void prepareForJobFindsFeederAgainIfWrongFeederUUIDAndUsesExistingFeeder() throws Exception {
         feeder.setHardwareId(hardwareId);
@@ -838,6 +866,197 @@ public class PhotonFeederTest {
         bus.verifyInMockedOrder();
     }
 
+    @Test
+    public void feedCompletesWithoutAFixedPollingDelay() throws Exception {
+        feeder.setHardwareId(hardwareId);
+        feeder.setPartPitch(2);
+        feeder.setOffset(feederOffset);
+        feeder.setSlotAddress(feederAddress);
+        setSlotLocation(feederAddress, baseLocation);
+
+        bus.when(new InitializeFeeder(feederAddress, hardwareId))
+                .reply(responses.initializeFeeder.ok(feederAddress, hardwareId));
+
+        bus.when(new MoveFeedForward(feederAddress, 20))
+                .reply(responses.moveFeedForward.ok(feederAddress, 0));
+
+        bus.when(new MoveFeedStatus(feederAddress))
+                .reply(responses.moveFeedStatus.ok(feederAddress));
+
+        feeder.feed(mockedNozzle);
+
+        long t0 = System.nanoTime();
+        feeder.feed(mockedNozzle);
+        long feedNanos = System.nanoTime() - t0;
+
+        // The status polling used to sleep 50ms before the first poll.
+        assertTrue(feedNanos < PhotonFeeder.MAX_POLL_INTERVAL_NANOS, "feed took " + feedNanos + "ns");
+    }
+
+    @Test
+    public void feedWaitsUntilTheFeederReportsTheFeedIsDone() throws Exception {
+        TimedBus timedBus = new TimedBus(40);
+        PhotonFeeder.setBus(timedBus);
+
+        feeder.setHardwareId(hardwareId);
+        feeder.setPartPitch(2);
+        feeder.setOffset(feederOffset);
+        feeder.setSlotAddress(feederAddress);
+        setSlotLocation(feederAddress, baseLocation);
+
+        timedBus.when(new InitializeFeeder(feederAddress, hardwareId))
+                .reply(responses.initializeFeeder.ok(feederAddress, hardwareId));
+
+        timedBus.when(new MoveFeedForward(feederAddress, 20))
+                .reply(responses.moveFeedForward.ok(feederAddress, 200));
+
+        for (int i = 0; i < 3; i++) {
+            long t0 = System.nanoTime();
+            int polls = timedBus.statusPolls;
+            feeder.feed(mockedNozzle);
+            long feedMillis = (System.nanoTime() - t0) / 1000000;
+            polls = timedBus.statusPolls - polls;
+            System.out.println("PhotonFeederTest.feedWaitsUntilTheFeederReportsTheFeedIsDone() feed " + i
+                    + " took " + feedMillis + "ms, " + polls + " status polls");
+
+            assertTrue(feedMillis >= 40, "feed took " + feedMillis + "ms");
+            if (i > 0) {
+                // Polling starts when the feed should be done according to the previous feeds,
+                // long before the expected time of 200ms.
+                assertTrue(feedMillis < 40 + 25, "feed took " + feedMillis + "ms");
+                assertTrue(polls <= 3, polls + " status polls");
+            }
+        }
+    }
+
+    @Test
+    public void pipelinedFeedsToDifferentSlotsOverlap() throws Exception {
+        TimedBus timedBus = new TimedBus(30);
+        PhotonFeeder.setBus(timedBus);
+        photonProperties.setFeedPipelining(true);
+
+        int otherFeederAddress = feederAddress + 1;
+        String otherHardwareId = "FFEEDDCCBBAA998877665544";
+        PhotonFeeder otherFeeder = new PhotonFeeder();
+        machine.addFeeder(otherFeeder);
+
+        PhotonFeeder[] feeders = { feeder, otherFeeder };
+        String[] hardwareIds = { hardwareId, otherHardwareId };
+        int[] addresses = { feederAddress, otherFeederAddress };
+        for (int i = 0; i < feeders.length; i++) {
+            feeders[i].setHardwareId(hardwareIds[i]);
+            feeders[i].setPartPitch(2);
+            feeders[i].setOffset(feederOffset);
+            feeders[i].setSlotAddress(addresses[i]);
+            setSlotLocation(addresses[i], baseLocation);
+
+            timedBus.when(new InitializeFeeder(addresses[i], hardwareIds[i]))
+                    .reply(responses.initializeFeeder.ok(addresses[i], hardwareIds[i]));
+
+            timedBus.when(new MoveFeedForward(addresses[i], 20))
+                    .reply(responses.moveFeedForward.ok(addresses[i], 200));
+        }
+
+        long t0 = System.nanoTime();
+        // Like the job processor feeding ahead, then picking.
+        feeder.feed(mockedNozzle);
+        otherFeeder.feed(mockedNozzle);
+        long feedMillis = (System.nanoTime() - t0) / 1000000;
+        assertEquals(0, timedBus.statusPolls);
+
+        // The pick location does not wait for the feed.
+        assertNotNull(feeder.getPickLocation());
+        assertEquals(0, timedBus.statusPolls);
+
+        feeder.completeFeed(mockedNozzle);
+        otherFeeder.completeFeed(mockedNozzle);
+        long totalMillis = (System.nanoTime() - t0) / 1000000;
+        System.out.println("PhotonFeederTest.pipelinedFeedsToDifferentSlotsOverlap() feeds started in "
+                + feedMillis + "ms, both complete after " + totalMillis + "ms");
+
+        assertTrue(feedMillis < 30, "feeds started in " + feedMillis + "ms");
+        assertTrue(totalMillis >= 30, "feeds complete after " + totalMillis + "ms");
+        // Sequential feeds would take at least 60ms.
+        assertTrue(totalMillis < 60, "feeds complete after " + totalMillis + "ms");
+
+        // The completion is only awaited once.
+        int polls = timedBus.statusPolls;
+        feeder.completeFeed(mockedNozzle);
+        assertEquals(polls, timedBus.statusPolls);
+    }
+
+    @Test
+    public void pipelinedFeedFailureIsThrownWhenTheFeedIsCompleted() throws Exception {
+        photonProperties.setFeedPipelining(true);
+
+        feeder.setHardwareId(hardwareId);
+        feeder.setPartPitch(2);
+        feeder.setOffset(feederOffset);
+        feeder.setSlotAddress(feederAddress);
+        setSlotLocation(feederAddress, baseLocation);
+
+        bus.when(new InitializeFeeder(feederAddress, hardwareId))
+                .reply(responses.initializeFeeder.ok(feederAddress, hardwareId));
+
+        bus.when(new MoveFeedForward(feederAddress, 20))
+                .reply(responses.moveFeedForward.ok(feederAddress, 0));
+
+        bus.when(new MoveFeedStatus(feederAddress))
+                .reply(responses.errors.couldNotReach(feederAddress));
+
+        feeder.feed(mockedNozzle);
+
+        // The pick location has no side effects.
+        assertNotNull(feeder.getPickLocation());
+        ContinuedVerification verification = bus.verify(new InitializeFeeder(feederAddress, hardwareId))
+                .then(new MoveFeedForward(feederAddress, 20));
+        verification.nothingElseSent();
+
+        assertThrows(FeedFailureException.class, () -> feeder.completeFeed(mockedNozzle));
+        // The failure is only thrown once, the job processor then feeds again.
+        feeder.completeFeed(mockedNozzle);
+
+        verification.then(new MoveFeedStatus(feederAddress)).nothingElseSent();
+    }
+
+    /**
+     * A bus where the feeders report their feed in progress until the feed time has passed.
+     */
+    private class TimedBus extends TestBus {
+        private final long feedNanos;
+        private final Map<Integer, Long> feedStartNanos = new HashMap<>();
+        int statusPolls;
+
+        TimedBus(long feedMillis) {
+            this.feedNanos = feedMillis * 1000000;
+        }
+
+        @Override
+        public Optional<Packet> send(Packet commandPacket) throws Exception {
+            int commandId = commandPacket.payload[0];
+            if (commandId == MoveFeedForward.COMMAND_ID) {
+                feedStartNanos.put(commandPacket.toAddress, System.nanoTime());
+            } else if (commandId == MoveFeedStatus.COMMAND_ID) {
+                statusPolls++;
+                Long startNanos = feedStartNanos.get(commandPacket.toAddress);
+                Packet packet = (startNanos != null && System.nanoTime() - startNanos < feedNanos)
+                        ? responses.errors.feedingInProgress(commandPacket.toAddress)
+                        : responses.moveFeedStatus.ok(commandPacket.toAddress);
+                packet.packetId = commandPacket.packetId;
+                return Optional.of(packet);
+            }
+            return super.send(commandPacket);
+        }
+    }
+
+    @Test
+    public void feedIsOnlyHeadIndependentIfPipelined() {
+        assertFalse(feeder.isFeedHeadIndependent());
+
+        photonProperties.setFeedPipelining(true);
+        assertTrue(feeder.isFeedHeadIndependent());
+    }
+
     @Test
     public void twoFeedersCanNotHaveTheSameAddress() throws Exception {
         // Remove the main feeder, so we can make two of our own in this test
@@ -1110,6 +1329,200 @@ public class PhotonFeederTest {
         bus.verifyInMockedOrder();
     }
 
+    @Test
+    public void findByHardwareIdAndSlotAddressFollowTheMachineFeeders() throws Exception {
+        feeder.setHardwareId(hardwareId);
+        feeder.setSlotAddress(feederAddress);
+        assertSame(feeder, PhotonFeeder.findByHardwareId(hardwareId));
+        assertSame(feeder, PhotonFeeder.findBySlotAddress(feederAddress));
+        assertNull(PhotonFeeder.findByHardwareId(null));
+
+        feeder.setSlotAddress(feederAddress + 1);
+        assertNull(PhotonFeeder.findBySlotAddress(feederAddress));
+        assertSame(feeder, PhotonFeeder.findBySlotAddress(feederAddress + 1));
+
+        // Taking the slot of another feeder
+        PhotonFeeder otherFeeder = new PhotonFeeder();
+        machine.addFeeder(otherFeeder);
+        assertSame(otherFeeder, PhotonFeeder.findByHardwareId(null));
+        otherFeeder.setHardwareId("FFEEDDCCBBAA998877665544");
+        otherFeeder.setSlotAddress(feederAddress + 1);
+        assertNull(feeder.getSlotAddress());
+        assertSame(otherFeeder, PhotonFeeder.findBySlotAddress(feederAddress + 1));
+        assertSame(otherFeeder, PhotonFeeder.findByHardwareId("FFEEDDCCBBAA998877665544"));
+
+        machine.removeFeeder(otherFeeder);
+        assertNull(PhotonFeeder.findBySlotAddress(feederAddress + 1));
+        assertNull(PhotonFeeder.findByHardwareId("FFEEDDCCBBAA998877665544"));
+
+        machine.removeFeeder(feeder);
+        assertNull(PhotonFeeder.findByHardwareId(hardwareId));
+    }
+
+    @Test
+    public void findAllFeedersByBroadcastProbesOnlyKnownFeeders() throws Exception {
+        int maxFeederAddress = 5;
+        photonProperties.setMaxFeederAddress(maxFeederAddress);
+        photonProperties.setBroadcastDiscovery(true);
+
+        /*
+        - Existing feeder has address 2 and still responds there
+        - New feeder responds to the broadcast on address 4
+        - Address 1, 3 and 5 are not probed
+         */
+
+        String newHardwareUuid = "FFEEDDCCBBAA998877665544";
+        feeder.setHardwareId(hardwareId);
+        feeder.setSlotAddress(2);
+
+        BankBus bankBus = new BankBus(0);
+        PhotonFeeder.setBus(bankBus);
+        bankBus.insert(2, hardwareId, true);
+        bankBus.insert(4, newHardwareUuid, false);
+
+        Map<Integer, PhotonFeeder.FeederSearchState> states = new HashMap<>();
+        PhotonFeeder.findAllFeeders(states::put);
+
+        assertEquals(2, (int) feeder.getSlotAddress());
+        PhotonFeeder newFeeder = PhotonFeeder.findByHardwareId(newHardwareUuid);
+        assertNotNull(newFeeder);
+        assertEquals(4, (int) newFeeder.getSlotAddress());
+        assertTrue(newFeeder.isInitialized());
+
+        bankBus.verify(new GetFeederId(2))
+                .then(new UninitializedFeedersRespond())
+                .then(new InitializeFeeder(4, newHardwareUuid))
+                .then(new UninitializedFeedersRespond())
+                .nothingElseSent();
+
+        for (int address = 1; address <= maxFeederAddress; address++) {
+            assertEquals(address == 2 || address == 4
+                    ? PhotonFeeder.FeederSearchState.FOUND : PhotonFeeder.FeederSearchState.MISSING,
+                    states.get(address));
+        }
+    }
+
+    /**
+     * A full bank of 50 slots, with 30 feeders known and inserted, one more inserted, and a
+     * simulated timeout of 20ms per miss.
+     */
+    @Test
+    public void findAllFeedersTimingsForAFullBank() throws Exception {
+        int maxFeederAddress = 50;
+        int knownFeeders = 30;
+        long missMillis = 20;
+
+        long[] searchMillis = new long[2];
+        int[] misses = new int[2];
+        for (int mode = 0; mode < 2; mode++) {
+            setUp();
+            photonProperties.setMaxFeederAddress(maxFeederAddress);
+            photonProperties.setBroadcastDiscovery(mode == 1);
+            BankBus bankBus = new BankBus(missMillis);
+            PhotonFeeder.setBus(bankBus);
+
+            Map<Integer, String> uuids = new HashMap<>();
+            for (int address = 1; address <= knownFeeders + 1; address++) {
+                String uuid = randomUUID();
+                uuids.put(address, uuid);
+                if (address <= knownFeeders) {
+                    PhotonFeeder knownFeeder = new PhotonFeeder();
+                    knownFeeder.setHardwareId(uuid);
+                    knownFeeder.setSlotAddress(address);
+                    machine.addFeeder(knownFeeder);
+                }
+                bankBus.insert(address, uuid, address <= knownFeeders);
+            }
+
+            long t0 = System.nanoTime();
+            PhotonFeeder.findAllFeeders(null);
+            searchMillis[mode] = (System.nanoTime() - t0) / 1000000;
+            misses[mode] = bankBus.getMisses();
+
+            for (int address = 1; address <= knownFeeders + 1; address++) {
+                PhotonFeeder found = PhotonFeeder.findBySlotAddress(address);
+                assertNotNull(found);
+                assertEquals(uuids.get(address), found.getHardwareId());
+            }
+            assertNull(PhotonFeeder.findBySlotAddress(knownFeeders + 2));
+        }
+
+        System.out.println(String.format("PhotonFeederTest.findAllFeedersTimingsForAFullBank() %d slots, %d feeders, "
+                + "%dms per miss: full search %dms (%d misses), broadcast discovery %dms (%d misses)",
+                maxFeederAddress, knownFeeders + 1, missMillis, searchMillis[0], misses[0],
+                searchMillis[1], misses[1]));
+
+        // The full search probes the 19 empty slots one by one, the broadcast discovery only misses
+        // the final broadcast.
+        assertEquals(maxFeederAddress - knownFeeders - 1, misses[0]);
+        assertEquals(1, misses[1]);
+        assertTrue(misses[1] < misses[0]);
+    }
+
+    /**
+     * A bank of feeders that answer GetFeederId, InitializeFeeder and, while uninitialized,
+     * UninitializedFeedersRespond. Every command no feeder answers times out after the miss time.
+     */
+    private class BankBus extends TestBus {
+        private final long missMillis;
+        private final Map<Integer, String> uuids = new TreeMap<>();
+        private final Set<Integer> initialized = new HashSet<>();
+        private int misses;
+
+        BankBus(long missMillis) {
+            this.missMillis = missMillis;
+        }
+
+        void insert(int address, String uuid, boolean isInitialized) {
+            uuids.put(address, uuid);
+            if (isInitialized) {
+                initialized.add(address);
+            }
+        }
+
+        @Override
+        public Optional<Packet> send(Packet commandPacket) throws Exception {
+            try {
+                // Recorded for the verification, answered below.
+                super.send(commandPacket);
+            } catch (NoPacketMocking e) {
+            }
+            Packet packet = reply(commandPacket);
+            if (packet == null) {
+                misses++;
+                Thread.sleep(missMillis);
+                return Optional.empty();
+            }
+            packet.packetId = commandPacket.packetId;
+            return Optional.of(packet);
+        }
+
+        /**
+         * @return the number of commands that timed out.
+         */
+        int getMisses() {
+            return misses;
+        }
+
+        private Packet reply(Packet commandPacket) {
+            int commandId = commandPacket.payload[0];
+            int address = commandPacket.toAddress;
+            if (commandId == GetFeederId.COMMAND_ID && uuids.containsKey(address)) {
+                return responses.getFeederId.ok(address, uuids.get(address));
+            } else if (commandId == InitializeFeeder.COMMAND_ID && uuids.containsKey(address)) {
+                initialized.add(address);
+                return responses.initializeFeeder.ok(address, uuids.get(address));
+            } else if (commandId == UninitializedFeedersRespond.COMMAND_ID) {
+                for (Map.Entry<Integer, String> entry : uuids.entrySet()) {
+                    if (!initialized.contains(entry.getKey())) {
+                        return responses.uninitializedFeedersRespond.ok(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
     // TODO Fix this since it's not an IntConsumer anymore
 //    @Test
 //    public void findAllFeedersGivesProgressUpdates() throws Exception {
@@ -47,6 +47,15 @@ public class ResponsesHelperTest {
             assertArrayEquals(new int[]{0x02}, error.payload);
         }
 
+        @Test
+        public void testFeedingInProgress() {
+            Packet error = testResponses.errors.feedingInProgress(9);
+
+            assertEquals(9, error.fromAddress);
+            assertEquals(1, error.payloadLength);
+            assertArrayEquals(new int[]{0x04}, error.payload);
+        }
+
         @Test
         public void testUninitializedFeeder() {
             Packet error = testResponses.errors.uninitializedFeeder(11, uuid_s);
@@ -76,6 +85,20 @@ public class ResponsesHelperTest {
         }, getFeederId17.payload);
     }
     
+    @Test
+    public void uninitializedFeedersRespondOk() {
+        Packet response = testResponses.uninitializedFeedersRespond.ok(23, uuid_s);
+
+        assertEquals(23, response.fromAddress);
+        assertEquals(0, response.packetId);
+        assertEquals(13, response.payloadLength);
+        assertArrayEquals(new int[]{
+                0x00, uuid_b[0], uuid_b[1], uuid_b[2], uuid_b[3],
+                uuid_b[4], uuid_b[5], uuid_b[6], uuid_b[7],
+                uuid_b[8], uuid_b[9], uuid_b[10], uuid_b[11]
+        }, response.payload);
+    }
+
     @Test
     public void initializeFeederOk() {
         Packet getFeederId17 = testResponses.initializeFeeder.ok(17, uuid_s);
@@ -20,6 +20,7 @@ public class ResponsesHelper {
     public final GetFeederAddress getFeederAddress = new GetFeederAddress();
     public final IdentifyFeeder identifyFeeder = new IdentifyFeeder();
     public final ProgramFeederFloor programFeederFloor = new ProgramFeederFloor();
+    public final UninitializedFeedersRespond uninitializedFeedersRespond = new UninitializedFeedersRespond();
 
     public ResponsesHelper(int toAddress) {
         this.toAddress = toAddress;
@@ -39,6 +40,12 @@ public class ResponsesHelper {
                     .toPacket();
         }
 
+        public Packet feedingInProgress(int feederAddress) {
+            return PacketBuilder.response(toAddress, feederAddress)
+                    .putError(ErrorTypes.FEEDING_IN_PROGRESS)
+                    .toPacket();
+        }
+
         public Packet uninitializedFeeder(int feederAddress, String uuid) {
             return PacketBuilder.response(toAddress, feederAddress)
                     .putError(ErrorTypes.UNINITIALIZED_FEEDER)
@@ -127,4 +134,13 @@ public class ResponsesHelper {
                     .toPacket();
         }
     }
+
+    public class UninitializedFeedersRespond {
+        public Packet ok(int feederAddress, String uuid) {
+            return PacketBuilder.response(toAddress, feederAddress)
+                    .putOk()
+                    .putUuid(uuid)
+                    .toPacket();
+        }
+    }
 }
@@ -0,0 +1,150 @@
+package org.openpnp.machine.reference.camera;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.openpnp.gui.support.Wizard;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.PropertySheetHolder;
+
+import com.google.common.io.Files;
+
+public class ReferenceCameraFusedTransformsTest {
+    static class TestCamera extends ReferenceCamera {
+        @Override
+        protected BufferedImage internalCapture() {
+            return null;
+        }
+
+        @Override
+        public Wizard getConfigurationWizard() {
+            return null;
+        }
+
+        @Override
+        public String getPropertySheetHolderTitle() {
+            return null;
+        }
+
+        @Override
+        public PropertySheetHolder[] getChildPropertySheetHolders() {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a smooth image, so the fused and the chained transforms only differ by the interpolation, which
+     * is small, while a misplaced pixel would show as a large difference.
+     */
+    static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data[i++] = (byte) Math.round(128 + 100*Math.sin(2*Math.PI*x/64));
+                data[i++] = (byte) Math.round(128 + 100*Math.sin(2*Math.PI*y/64));
+                data[i++] = (byte) Math.round(128 + 100*Math.sin(2*Math.PI*(x + 2*y)/96));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Asserts that the pixels in the inner part of the images are equivalent. The borders differ, as the chained
+     * transforms blend in the border multiple times.
+     */
+    static void assertEquivalent(String message, BufferedImage chained, BufferedImage fused) {
+        assertEquals(chained.getWidth(), fused.getWidth(), message);
+        assertEquals(chained.getHeight(), fused.getHeight(), message);
+        byte[] da = ((DataBufferByte) chained.getRaster().getDataBuffer()).getData();
+        byte[] db = ((DataBufferByte) fused.getRaster().getDataBuffer()).getData();
+        int width = chained.getWidth();
+        int height = chained.getHeight();
+        long sum = 0;
+        long count = 0;
+        for (int y = height/4; y < height*3/4; y++) {
+            for (int x = width/4; x < width*3/4; x++) {
+                for (int c = 0; c < 3; c++) {
+                    int i = (y*width + x)*3 + c;
+                    int difference = Math.abs((da[i] & 0xff) - (db[i] & 0xff));
+                    // The steepest slope of the image is about 10 per pixel, so half a pixel off would exceed this.
+                    assertTrue(difference <= 4, message+" pixel "+x+", "+y+" channel "+c+" differs by "+difference);
+                    sum += difference;
+                    count++;
+                }
+            }
+        }
+        double mean = (double) sum/count;
+        assertTrue(mean < 1.5, message+" differs by "+mean+" on average");
+    }
+
+    static TestCamera createCamera(int width, int height, String transforms) {
+        TestCamera camera = new TestCamera();
+        if (transforms.contains("undistort")) {
+            Mat cameraMatrix = Mat.zeros(3, 3, CvType.CV_64FC1);
+            cameraMatrix.put(0, 0, width, 0, width/2.0, 0, width, height/2.0, 0, 0, 1);
+            Mat distortionCoefficients = Mat.zeros(5, 1, CvType.CV_64FC1);
+            distortionCoefficients.put(0, 0, -0.2, 0.05, 0.001, -0.001, 0);
+            camera.getCalibration().setCameraMatrixMat(cameraMatrix);
+            camera.getCalibration().setDistortionCoefficientsMat(distortionCoefficients);
+            camera.getCalibration().setEnabled(true);
+            cameraMatrix.release();
+            distortionCoefficients.release();
+        }
+        if (transforms.contains("scale")) {
+            camera.setScaleWidth(width*3/4);
+            camera.setScaleHeight(height*3/4);
+        }
+        if (transforms.contains("rotation")) {
+            camera.setRotation(12.5);
+        }
+        if (transforms.contains("offset")) {
+            camera.setOffsetX(7);
+            camera.setOffsetY(-5);
+        }
+        if (transforms.contains("flip")) {
+            camera.setFlipX(true);
+            camera.setFlipY(true);
+        }
+        return camera;
+    }
+
+    /**
+     * Compares the fused and the chained legacy transforms pixel by pixel, for each transform alone and all
+     * combined, at even and odd frame sizes.
+     */
+    @Test
+    public void testFusedTransforms() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        String[] cases = { "undistort", "scale", "rotation", "offset", "flip", 
+                "undistort scale rotation offset flip" };
+        for (int[] size : new int[][] { { 640, 480 }, { 643, 479 } }) {
+            BufferedImage image = createImage(size[0], size[1]);
+            for (String transforms : cases) {
+                String message = size[0]+"x"+size[1]+" "+transforms;
+                TestCamera camera = createCamera(size[0], size[1], transforms);
+                try {
+                    camera.setFusedTransforms(false);
+                    BufferedImage chained = camera.transformImage(image);
+                    camera.setFusedTransforms(true);
+                    BufferedImage fused = camera.transformImage(image);
+                    assertEquivalent(message, chained, fused);
+                }
+                finally {
+                    camera.close();
+                }
+            }
+        }
+    }
+}